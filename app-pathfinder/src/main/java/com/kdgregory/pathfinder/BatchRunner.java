@@ -0,0 +1,398 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+
+import net.sf.kdgcommons.io.IOUtil;
+
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.impl.LibraryCache;
+import com.kdgregory.pathfinder.core.impl.WarMachineImpl;
+import com.kdgregory.pathfinder.util.RouteWriter;
+
+
+/**
+ *  Analyzes many WARs in a single JVM, using a fixed-size pool of threads.
+ *  Each WAR gets its own machine and repository; information about library
+ *  JARs is shared via a {@link LibraryCache}.
+ *  <p>
+ *  Each WAR's report is either written to a file in an output directory
+ *  (named after the WAR, with an extension based on the format), or to the
+ *  main output stream. Where several WARs in the batch have the same name
+ *  (eg, they come from different directories), their report files are prefixed
+ *  with the WAR's position in the batch (starting at 1), which is also its
+ *  position in the summary. In the latter case reports are buffered, and written
+ *  in the order that the WARs were specified. In either case, the reports are
+ *  followed by a per-WAR summary and an aggregate summary.
+ *  <p>
+ *  A WAR that can't be analyzed is reported as a failure; it does not stop
+ *  the batch.
+ */
+public class BatchRunner
+{
+    public final static String ARG_OUTPUT_DIR = "--outputDir";
+    public final static String ARG_LIBRARY_CACHE = "--libraryCache";
+
+    private Logger logger = Logger.getLogger(getClass());
+
+    private Map<InvocationOptions,Boolean> options;
+    private RouteWriter.Format format;
+    private int numThreads;
+    private File outputDir;
+    private PrintStream out;
+
+    private LibraryCache libraryCache;
+
+
+    /**
+     *  @param  options     Invocation options, applied to all WARs.
+     *  @param  format      Format for the per-WAR reports.
+     *  @param  numThreads  Maximum number of WARs analyzed at the same time.
+     *  @param  outputDir   If not null, the directory where per-WAR reports are
+     *                      written; if null, they're written to the output stream.
+     *  @param  out         The output stream for summaries (and reports).
+     */
+    public BatchRunner(Map<InvocationOptions,Boolean> options, RouteWriter.Format format,
+                       int numThreads, File outputDir, PrintStream out)
+    {
+        this(options, format, numThreads, outputDir, out, new LibraryCache());
+    }
+
+
+    /**
+     *  Constructs an instance that uses an existing library cache (for example,
+     *  one loaded from disk).
+     */
+    public BatchRunner(Map<InvocationOptions,Boolean> options, RouteWriter.Format format,
+                       int numThreads, File outputDir, PrintStream out, LibraryCache libraryCache)
+    {
+        this.options = options;
+        this.format = format;
+        this.numThreads = Math.max(1, numThreads);
+        this.outputDir = outputDir;
+        this.out = out;
+        this.libraryCache = libraryCache;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Converts a list of command-line arguments into a list of WARs: files are
+     *  passed through as-is, directories are replaced by the <code>.war</code>
+     *  files that they contain (in name order; not recursive).
+     */
+    public static List<File> expandWars(List<String> args)
+    {
+        List<File> result = new ArrayList<File>();
+        for (String arg : args)
+        {
+            File file = new File(arg);
+            if (! file.isDirectory())
+            {
+                result.add(file);
+                continue;
+            }
+
+            File[] children = file.listFiles();
+            if (children == null)
+                continue;
+            Arrays.sort(children);
+            for (File child : children)
+            {
+                if (child.isFile() && child.getName().toLowerCase().endsWith(".war"))
+                    result.add(child);
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     *  Analyzes the passed WARs, writes reports and summary, and returns the
+     *  number that failed.
+     */
+    public int run(List<File> wars)
+    throws Exception
+    {
+        long start = System.currentTimeMillis();
+        logger.debug("analyzing " + wars.size() + " WARs using " + numThreads + " threads");
+
+        List<String> reportNames = reportNames(wars);
+        List<Result> results = new ArrayList<Result>(wars.size());
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try
+        {
+            List<Future<Result>> futures = new ArrayList<Future<Result>>(wars.size());
+            for (int ii = 0 ; ii < wars.size() ; ii++)
+            {
+                final File war = wars.get(ii);
+                final String reportName = reportNames.get(ii);
+                futures.add(executor.submit(new Callable<Result>()
+                {
+                    @Override
+                    public Result call() throws Exception
+                    {
+                        return analyze(war, reportName);
+                    }
+                }));
+            }
+
+            // reports are written as soon as they (and their predecessors) are done
+            for (Future<Result> future : futures)
+            {
+                Result result = future.get();
+                if (result.report != null)
+                {
+                    out.println("== " + result.war);
+                    out.write(result.report);
+                    out.println();
+                    result.report = null;
+                }
+                results.add(result);
+            }
+        }
+        catch (ExecutionException ex)
+        {
+            // analyze() catches everything but Errors
+            if (ex.getCause() instanceof Error)
+                throw (Error)ex.getCause();
+            throw new IllegalStateException("unexpected exception in batch", ex.getCause());
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        return dumpSummary(results, System.currentTimeMillis() - start);
+    }
+
+
+    /**
+     *  Returns the cache shared by all WARs in this batch.
+     */
+    public LibraryCache getLibraryCache()
+    {
+        return libraryCache;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns the name of each WAR's report file (used only if there's an output
+     *  directory): the WAR's name plus an extension for the format, with the WAR's
+     *  position prefixed if its name isn't unique within the batch.
+     */
+    private List<String> reportNames(List<File> wars)
+    {
+        Map<String,Integer> counts = new HashMap<String,Integer>();
+        for (File war : wars)
+        {
+            Integer count = counts.get(war.getName());
+            counts.put(war.getName(), Integer.valueOf((count == null) ? 1 : count.intValue() + 1));
+        }
+
+        Set<String> used = new HashSet<String>();
+        for (File war : wars)
+        {
+            if (counts.get(war.getName()).intValue() == 1)
+                used.add(war.getName());
+        }
+
+        String extension = "." + format.name().toLowerCase();
+        List<String> result = new ArrayList<String>(wars.size());
+        for (int ii = 0 ; ii < wars.size() ; ii++)
+        {
+            String name = wars.get(ii).getName();
+            if (counts.get(name).intValue() > 1)
+            {
+                // a WAR elsewhere in the batch might already have the prefixed name
+                String unique = (ii + 1) + "-" + name;
+                while (! used.add(unique))
+                    unique = "0" + unique;
+                name = unique;
+            }
+            result.add(name + extension);
+        }
+        return result;
+    }
+
+
+    private Result analyze(File war, String reportName)
+    {
+        Result result = new Result(war);
+        long start = System.currentTimeMillis();
+        WarMachineImpl machine = null;
+        OutputStream reportStream = null;
+        try
+        {
+            machine = new WarMachineImpl(war, libraryCache);
+            reportStream = (outputDir != null)
+                         ? new FileOutputStream(new File(outputDir, reportName))
+                         : new ByteArrayOutputStream();
+
+            PrintStream reportOut = new PrintStream(reportStream);
+            Main main = new Main(options, machine, reportOut);
+            main.run(format);
+            reportOut.flush();
+
+            result.urlCount = main.getRepo().urlCount();
+            if (reportStream instanceof ByteArrayOutputStream)
+                result.report = ((ByteArrayOutputStream)reportStream).toByteArray();
+        }
+        catch (Exception ex)
+        {
+            logger.warn("unable to analyze " + war + ": " + ex.getMessage());
+            result.error = String.valueOf(ex.getMessage());
+        }
+        finally
+        {
+            IOUtil.closeQuietly(reportStream);
+            if (machine != null)
+                machine.close();
+        }
+        result.elapsed = System.currentTimeMillis() - start;
+        return result;
+    }
+
+
+    private int dumpSummary(List<Result> results, long elapsed)
+    {
+        int failures = 0;
+        long totalUrls = 0;
+
+        out.format("%10s  %10s  %s\n", "URLs", "millis", "WAR");
+        for (Result result : results)
+        {
+            if (result.error != null)
+            {
+                failures++;
+                out.format("%10s  %10d  %s  FAILED: %s\n", "-", result.elapsed, result.war, result.error);
+            }
+            else
+            {
+                totalUrls += result.urlCount;
+                out.format("%10d  %10d  %s\n", result.urlCount, result.elapsed, result.war);
+            }
+        }
+
+        out.println();
+        out.format("WARs: %d, succeeded: %d, failed: %d, URLs: %d, elapsed millis: %d\n",
+                   results.size(), results.size() - failures, failures, totalUrls, elapsed);
+        out.format("libraries cached: %d, cache hits: %d, misses: %d\n",
+                   libraryCache.size(), libraryCache.getHitCount(), libraryCache.getMissCount());
+        return failures;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Supporting classes
+//----------------------------------------------------------------------------
+
+    private static class Result
+    {
+        public File war;
+        public int urlCount;
+        public long elapsed;
+        public String error;
+        public byte[] report;
+
+        public Result(File war)
+        {
+            this.war = war;
+        }
+    }
+
+
+    /**
+     *  The "batch" command, as invoked from {@link Main}.
+     */
+    static class BatchCommand
+    implements Command
+    {
+        @Override
+        public String getUsage()
+        {
+            return Main.CMD_BATCH + " [" + Main.ARG_FORMAT + "=FORMAT] [" + Main.ARG_THREADS + "=N] ["
+                 + ARG_OUTPUT_DIR + "=DIR] [" + ARG_LIBRARY_CACHE + "=FILE] WARFILE_OR_DIRECTORY...";
+        }
+
+        @Override
+        public boolean checkArgs(List<String> args)
+        {
+            return ! args.isEmpty();
+        }
+
+        @Override
+        public int run(CommandLine cmdline)
+        throws Exception
+        {
+            String outputDir = cmdline.getValue(ARG_OUTPUT_DIR);
+            File outputDirFile = (outputDir == null) ? null : new File(outputDir);
+            if ((outputDirFile != null) && ! outputDirFile.isDirectory())
+                throw CommandLine.die("invalid " + ARG_OUTPUT_DIR + ": " + outputDir);
+
+            String cacheFilename = cmdline.getValue(ARG_LIBRARY_CACHE);
+            File cacheFile = (cacheFilename == null) ? null : new File(cacheFilename);
+            LibraryCache cache = new LibraryCache();
+            if ((cacheFile != null) && cacheFile.exists())
+            {
+                try
+                {
+                    cache = LibraryCache.load(cacheFile);
+                }
+                catch (IOException ex)
+                {
+                    // a stale or damaged cache only costs time, so we start over
+                    System.err.println("unable to load library cache; ignoring: " + ex.getMessage());
+                }
+            }
+
+            BatchRunner runner = new BatchRunner(cmdline.getOptions(), cmdline.getFormatOrDie(),
+                                                 cmdline.getIntOrDie(Main.ARG_THREADS, Runtime.getRuntime().availableProcessors()),
+                                                 outputDirFile, System.out, cache);
+            int failures = runner.run(BatchRunner.expandWars(cmdline.getArgs()));
+
+            if (cacheFile != null)
+                cache.save(cacheFile);
+            return (failures > 0) ? 2 : 0;
+        }
+    }
+}
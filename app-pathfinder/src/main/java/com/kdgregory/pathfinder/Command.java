@@ -0,0 +1,45 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder;
+
+import java.util.List;
+
+
+/**
+ *  A command invoked from {@link Main}. Each command checks its own positional
+ *  arguments, and is responsible for reading any named arguments that it uses.
+ */
+interface Command
+{
+    /**
+     *  Returns the command's arguments as shown in the usage message (including
+     *  the command name, if it has one).
+     */
+    public String getUsage();
+
+
+    /**
+     *  Returns <code>true</code> if the command can be invoked with the passed
+     *  positional arguments (those following the command name).
+     */
+    public boolean checkArgs(List<String> args);
+
+
+    /**
+     *  Runs the command, returning the process exit status.
+     */
+    public int run(CommandLine cmdline)
+    throws Exception;
+}
@@ -0,0 +1,258 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.kdgcommons.lang.UnreachableCodeException;
+
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.PathRepo;
+import com.kdgregory.pathfinder.core.WarMachine;
+import com.kdgregory.pathfinder.core.impl.ClassAnnotationCache;
+import com.kdgregory.pathfinder.core.impl.WarMachineImpl;
+import com.kdgregory.pathfinder.util.PathRepoSnapshot;
+import com.kdgregory.pathfinder.util.RouteWriter;
+
+
+/**
+ *  The command line as seen by a {@link Command}: the invocation options, the
+ *  positional arguments that follow the command name, and the named arguments
+ *  (<code>--name=value</code>).
+ *  <p>
+ *  Methods whose names end in "OrDie" write a message and exit the process if
+ *  they're unable to do their job.
+ */
+class CommandLine
+{
+    private Map<InvocationOptions,Boolean> options;
+    private String[] argv;
+    private List<String> args;
+
+    private File classCacheFile;
+    private ClassAnnotationCache classCache;
+    private boolean classCacheSavedOnExit;
+
+
+    public CommandLine(Map<InvocationOptions,Boolean> options, String[] argv, List<String> args)
+    {
+        this.options = options;
+        this.argv = argv;
+        this.args = args;
+
+        String cacheFilename = getValue(Main.ARG_INCREMENTAL);
+        classCacheFile = (cacheFilename == null) ? null : new File(cacheFilename);
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    public Map<InvocationOptions,Boolean> getOptions()
+    {
+        return options;
+    }
+
+
+    /**
+     *  Returns the positional arguments that follow the command name.
+     */
+    public List<String> getArgs()
+    {
+        return args;
+    }
+
+
+    /**
+     *  Returns the value of a named argument, <code>null</code> if it wasn't
+     *  specified.
+     */
+    public String getValue(String name)
+    {
+        return InvocationOptions.getArgumentValue(name, argv);
+    }
+
+
+    public int getIntOrDie(String name, int defaultValue)
+    {
+        String value = getValue(name);
+        if (value == null)
+            return defaultValue;
+
+        try
+        {
+            return Integer.parseInt(value);
+        }
+        catch (NumberFormatException ex)
+        {
+            throw die("invalid " + name + ": " + value);
+        }
+    }
+
+
+    public RouteWriter.Format getFormatOrDie()
+    {
+        String value = getValue(Main.ARG_FORMAT);
+        if (value == null)
+            return RouteWriter.Format.TEXT;
+
+        RouteWriter.Format format = RouteWriter.Format.fromString(value);
+        if (format == null)
+            throw die("invalid " + Main.ARG_FORMAT + ": " + value);
+        return format;
+    }
+
+
+    public TimeUnit getElapsedUnitOrDie()
+    {
+        String value = getValue(Main.ARG_ELAPSED_UNIT);
+        if ((value == null) || value.equals("us"))
+            return TimeUnit.MICROSECONDS;
+        if (value.equals("ms"))
+            return TimeUnit.MILLISECONDS;
+        if (value.equals("s"))
+            return TimeUnit.SECONDS;
+
+        throw die("invalid " + Main.ARG_ELAPSED_UNIT + ": " + value);
+    }
+
+
+    /**
+     *  Returns the cache of class annotations named by <code>--incremental</code>,
+     *  loading it on first call; <code>null</code> if that argument wasn't given.
+     *  A cache that can't be loaded is replaced by an empty one.
+     */
+    public ClassAnnotationCache getClassCache()
+    {
+        if ((classCache != null) || (classCacheFile == null))
+            return classCache;
+
+        classCache = new ClassAnnotationCache();
+        if (classCacheFile.exists())
+        {
+            try
+            {
+                classCache = ClassAnnotationCache.load(classCacheFile);
+            }
+            catch (IOException ex)
+            {
+                // a damaged cache only costs time, so we start over
+                System.err.println("unable to load class cache; ignoring: " + ex.getMessage());
+            }
+        }
+        return classCache;
+    }
+
+
+    /**
+     *  Saves the class cache, if one was used. Called by {@link Main} once the
+     *  command returns.
+     */
+    public void saveClassCache()
+    throws IOException
+    {
+        if ((classCache != null) && ! classCacheSavedOnExit)
+            classCache.save(classCacheFile);
+    }
+
+
+    /**
+     *  Arranges for the class cache (if one was used) to be saved when the
+     *  process exits; for commands that run until they're stopped.
+     */
+    public void saveClassCacheOnExit()
+    {
+        if ((classCache == null) || classCacheSavedOnExit)
+            return;
+
+        classCacheSavedOnExit = true;
+        Runtime.getRuntime().addShutdownHook(new Thread("pathfinder-save-class-cache")
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    classCache.save(classCacheFile);
+                }
+                catch (IOException ex)
+                {
+                    System.err.println("unable to save class cache: " + ex.getMessage());
+                }
+            }
+        });
+    }
+
+
+    /**
+     *  Creates a {@link Main} for the named file, which may be either a WAR or a
+     *  snapshot.
+     */
+    public Main createMainOrDie(String fileName)
+    {
+        File file = new File(fileName);
+        return PathRepoSnapshot.isSnapshot(file)
+             ? new Main(options, loadSnapshotOrDie(file), System.out)
+             : new Main(options, openWarOrDie(file), System.out);
+    }
+
+
+    /**
+     *  Writes the passed message and exits the process. The return value exists
+     *  only so that callers can <code>throw</code> it, letting the compiler know
+     *  that the method doesn't return.
+     */
+    public static UnreachableCodeException die(String message)
+    {
+        System.err.println(message);
+        System.exit(1);
+        return new UnreachableCodeException("The compiler doesn't know that exit() doesn't return");
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private WarMachine openWarOrDie(File file)
+    {
+        try
+        {
+            return new WarMachineImpl(file, null, getClassCache());
+        }
+        catch (Exception ex)
+        {
+            throw die("unable to open WARFILE: " + ex.getMessage());
+        }
+    }
+
+
+    private static PathRepo loadSnapshotOrDie(File file)
+    {
+        try
+        {
+            return PathRepoSnapshot.load(file);
+        }
+        catch (Exception ex)
+        {
+            throw die("unable to load snapshot: " + ex.getMessage());
+        }
+    }
+}
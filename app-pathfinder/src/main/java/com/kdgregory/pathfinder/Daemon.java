@@ -0,0 +1,685 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import net.sf.kdgcommons.io.IOUtil;
+
+import com.kdgregory.pathfinder.core.Destination;
+import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.PathRepo;
+import com.kdgregory.pathfinder.core.impl.ClassAnnotationCache;
+import com.kdgregory.pathfinder.core.impl.IndexedPathRepo;
+import com.kdgregory.pathfinder.core.impl.IndexedPathRepo.Mapping;
+import com.kdgregory.pathfinder.core.impl.LibraryCache;
+import com.kdgregory.pathfinder.core.impl.WarMachineImpl;
+import com.kdgregory.pathfinder.util.PathRepoSnapshot;
+import com.kdgregory.pathfinder.util.RouteMatcher;
+import com.kdgregory.pathfinder.util.RouteWriter;
+
+
+/**
+ *  A long-running process that answers queries about WARs, so that clients
+ *  (such as editor plugins) don't pay for JVM startup and inspection on every
+ *  query. The daemon listens on a loopback TCP port; it does not accept
+ *  connections from other hosts.
+ *  <p>
+ *  The protocol is line-oriented, in UTF-8. A client may send any number of
+ *  requests on a connection, one per line; each response is zero or more
+ *  lines followed by a line containing a single period. A request that fails
+ *  returns a single line starting with <code>ERROR:</code>. The requests are:
+ *  <ul>
+ *  <li> <code>routes [--format=text|jsonl|csv] WARFILE</code>: the basic URL
+ *       report (see {@link RouteWriter}).
+ *  <li> <code>match METHOD URL WARFILE</code>: the route that would handle a
+ *       request, as <code>MATCHTYPE METHOD PATTERN DESTINATION</code>, or
+ *       <code>no match</code>. <code>METHOD</code> may be <code>ALL</code>,
+ *       in which case all destinations for the URL are returned.
+ *  <li> <code>class CLASSNAME WARFILE</code>: the routes handled by a class,
+ *       as <code>METHOD URL DESTINATION</code>.
+ *  <li> <code>method [CLASSNAME.]METHODNAME WARFILE</code>: the routes handled
+ *       by a method, either of a specific class or of any class.
+ *  <li> <code>prefix URLPREFIX WARFILE</code>: the routes whose URL starts with
+ *       the passed prefix.
+ *  <li> <code>stats</code>: cache statistics.
+ *  <li> <code>shutdown</code>: stops the daemon once the response is sent.
+ *  </ul>
+ *  The WARFILE is the remainder of the line, so may contain spaces; it may
+ *  also be a snapshot (see {@link PathRepoSnapshot}).
+ *  <p>
+ *  Each connection has its own (daemon) thread, but only a limited number of
+ *  requests are processed at once. A connection that doesn't send a request
+ *  within the idle timeout is closed, as are all idle connections when the
+ *  daemon shuts down.
+ *  <p>
+ *  Inspected repositories are cached, by canonical filename, along with the
+ *  file's size and last-modified time as of the start of inspection. If either
+ *  has changed when the WAR is next queried, it's inspected again. The cache
+ *  holds a limited number of repositories, discarding the least recently used.
+ *  Cached repositories are indexed (see {@link IndexedPathRepo}), so that the
+ *  class, method, and prefix queries don't examine every route. Information
+ *  about library JARs is shared between all WARs (see {@link LibraryCache}),
+ *  as are the annotations of application classes if a {@link
+ *  ClassAnnotationCache} is provided. Exploded WARs are not supported, because
+ *  their timestamp doesn't reflect changes to their contents.
+ */
+public class Daemon
+{
+    public final static String ARG_PORT = "--port";
+    public final static String ARG_MAX_WARS = "--maxWars";
+
+    public final static int DEFAULT_PORT = 7077;
+    public final static int DEFAULT_MAX_WARS = 16;
+    public final static int DEFAULT_IDLE_TIMEOUT = 300000;
+
+    // how long run() waits for requests in progress when shutting down
+    private final static long SHUTDOWN_WAIT_SECONDS = 30;
+
+    private Logger logger = Logger.getLogger(getClass());
+
+    private Map<InvocationOptions,Boolean> options;
+    private int port;
+    private Semaphore requestPermits;
+    private PrintStream out;
+    private volatile int idleTimeout = DEFAULT_IDLE_TIMEOUT;
+
+    private ServerSocket serverSocket;
+    private volatile boolean shutdown;
+
+    // connections waiting for a request; guarded by its own lock, which is also
+    // held when setting the shutdown flag
+    private Set<Socket> idleConnections = new HashSet<Socket>();
+
+    private LibraryCache libraryCache = new LibraryCache();
+    private volatile ClassAnnotationCache classCache;
+    private RepoCache repoCache;
+    private AtomicLong hits = new AtomicLong();
+    private AtomicLong misses = new AtomicLong();
+
+
+    /**
+     *  @param  options     Invocation options, applied to all WARs.
+     *  @param  port        The port to listen on; 0 picks an unused port.
+     *  @param  maxWars     Maximum number of repositories kept in memory.
+     *  @param  numThreads  Maximum number of requests processed at once.
+     *  @param  out         Receives a message once the daemon is listening.
+     */
+    public Daemon(Map<InvocationOptions,Boolean> options, int port, int maxWars, int numThreads, PrintStream out)
+    {
+        this.options = options;
+        this.port = port;
+        this.requestPermits = new Semaphore(Math.max(1, numThreads));
+        this.out = out;
+        this.repoCache = new RepoCache(Math.max(1, maxWars));
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Opens the listening socket. This is called by {@link #run}; it's exposed
+     *  so that tests can find out the port before connecting.
+     */
+    public void start()
+    throws IOException
+    {
+        serverSocket = new ServerSocket(port, 50, InetAddress.getByName("127.0.0.1"));
+        out.println("listening on 127.0.0.1:" + serverSocket.getLocalPort());
+    }
+
+
+    /**
+     *  Sets the number of milliseconds that a connection may wait between
+     *  requests before it's closed; 0 means forever. Affects only connections
+     *  accepted after the call.
+     */
+    public void setIdleTimeout(int millis)
+    {
+        this.idleTimeout = Math.max(0, millis);
+    }
+
+
+    /**
+     *  Sets the cache used to avoid re-parsing unchanged application classes
+     *  when a WAR is inspected; null (the default) disables it.
+     */
+    public void setClassCache(ClassAnnotationCache classCache)
+    {
+        this.classCache = classCache;
+    }
+
+
+    /**
+     *  Returns the port that the daemon is listening on; only valid after
+     *  {@link #start}.
+     */
+    public int getPort()
+    {
+        return serverSocket.getLocalPort();
+    }
+
+
+    /**
+     *  Accepts and handles connections. Does not return until a client sends
+     *  <code>shutdown</code> (or {@link #shutdown} is called).
+     */
+    public void run()
+    throws Exception
+    {
+        if (serverSocket == null)
+            start();
+
+        // idle connections don't tie up request processing, and in-progress
+        // requests don't keep the JVM alive after we've given up waiting
+        ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable r)
+            {
+                Thread thread = new Thread(r, "pathfinder-daemon-connection");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try
+        {
+            while (! shutdown)
+            {
+                final Socket socket;
+                try
+                {
+                    socket = serverSocket.accept();
+                }
+                catch (SocketException ex)
+                {
+                    // thrown when shutdown() closes the socket
+                    if (shutdown)
+                        break;
+                    throw ex;
+                }
+
+                executor.submit(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        handleConnection(socket);
+                    }
+                });
+            }
+        }
+        finally
+        {
+            IOUtil.closeQuietly(serverSocket);
+            executor.shutdown();
+            executor.awaitTermination(SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+
+    /**
+     *  Stops accepting connections and closes idle connections, causing {@link
+     *  #run} to return. Requests that are in progress are allowed to complete,
+     *  after which their connections are closed.
+     */
+    public void shutdown()
+    {
+        List<Socket> toClose;
+        synchronized (idleConnections)
+        {
+            shutdown = true;
+            toClose = new ArrayList<Socket>(idleConnections);
+        }
+
+        IOUtil.closeQuietly(serverSocket);
+        for (Socket socket : toClose)
+            IOUtil.closeQuietly(socket);
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private void handleConnection(Socket socket)
+    {
+        try
+        {
+            socket.setSoTimeout(idleTimeout);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+            Writer writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), "UTF-8"));
+            String request;
+            while ((request = readRequest(socket, in)) != null)
+            {
+                if (request.trim().length() == 0)
+                    continue;
+
+                long start = System.currentTimeMillis();
+                requestPermits.acquireUninterruptibly();
+                try
+                {
+                    processRequest(request.trim(), writer);
+                }
+                catch (Exception ex)
+                {
+                    logger.debug("request failed: " + request, ex);
+                    writer.write("ERROR: " + ex.getMessage() + "\n");
+                }
+                finally
+                {
+                    requestPermits.release();
+                }
+                writer.write(".\n");
+                writer.flush();
+                logger.debug("processed \"" + request + "\" in " + (System.currentTimeMillis() - start) + " millis");
+            }
+        }
+        catch (SocketTimeoutException ex)
+        {
+            logger.debug("closing idle connection");
+        }
+        catch (IOException ex)
+        {
+            // includes the exception thrown when shutdown() closes an idle connection
+            logger.debug("connection failed: " + ex.getMessage());
+        }
+        finally
+        {
+            IOUtil.closeQuietly(socket);
+        }
+    }
+
+
+    /**
+     *  Waits for the next request, returning null if the connection has been
+     *  closed by the client or the daemon is shutting down. While waiting, the
+     *  connection is registered as idle, so that {@link #shutdown} can close it.
+     */
+    private String readRequest(Socket socket, BufferedReader in)
+    throws IOException
+    {
+        synchronized (idleConnections)
+        {
+            if (shutdown)
+                return null;
+            idleConnections.add(socket);
+        }
+
+        try
+        {
+            return in.readLine();
+        }
+        finally
+        {
+            synchronized (idleConnections)
+            {
+                idleConnections.remove(socket);
+            }
+        }
+    }
+
+
+    private void processRequest(String request, Writer writer)
+    throws Exception
+    {
+        String[] words = request.split("\\s+", 2);
+        String command = words[0];
+        String rest = (words.length > 1) ? words[1] : "";
+
+        if (command.equals("routes"))
+            processRoutes(rest, writer);
+        else if (command.equals("match"))
+            processMatch(rest, writer);
+        else if (command.equals("class"))
+            processClass(rest, writer);
+        else if (command.equals("method"))
+            processMethod(rest, writer);
+        else if (command.equals("prefix"))
+            processPrefix(rest, writer);
+        else if (command.equals("stats"))
+            processStats(writer);
+        else if (command.equals("shutdown"))
+            shutdown();
+        else
+            throw new IllegalArgumentException("unknown request: " + command);
+    }
+
+
+    private void processRoutes(String args, Writer writer)
+    throws Exception
+    {
+        RouteWriter.Format format = RouteWriter.Format.TEXT;
+        if (args.startsWith(Main.ARG_FORMAT + "="))
+        {
+            String[] words = args.split("\\s+", 2);
+            format = RouteWriter.Format.fromString(words[0].substring(Main.ARG_FORMAT.length() + 1));
+            if (format == null)
+                throw new IllegalArgumentException("invalid " + words[0]);
+            args = (words.length > 1) ? words[1] : "";
+        }
+
+        CacheEntry entry = getEntry(args);
+        RouteWriter.create(format, writer, options).write(entry.repo);
+    }
+
+
+    private void processMatch(String args, Writer writer)
+    throws Exception
+    {
+        String[] words = args.split("\\s+", 3);
+        if (words.length < 3)
+            throw new IllegalArgumentException("expected: match METHOD URL WARFILE");
+
+        HttpMethod method;
+        try
+        {
+            method = HttpMethod.valueOf(words[0].toUpperCase());
+        }
+        catch (IllegalArgumentException ex)
+        {
+            throw new IllegalArgumentException("invalid method: " + words[0]);
+        }
+
+        CacheEntry entry = getEntry(words[2]);
+        RouteMatcher.Match match = entry.matcher.match(words[1]);
+        if (match == null)
+        {
+            writer.write("no match\n");
+            return;
+        }
+
+        if (method == HttpMethod.ALL)
+        {
+            for (Map.Entry<HttpMethod,Destination> dest : match.getDestinations().entrySet())
+                writeMatch(writer, match, dest.getKey(), dest.getValue());
+        }
+        else
+        {
+            Destination dest = match.getDestination(method);
+            if (dest == null)
+                writer.write("no match\n");
+            else
+                writeMatch(writer, match, method, dest);
+        }
+    }
+
+
+    private void processClass(String args, Writer writer)
+    throws Exception
+    {
+        String[] words = splitQuery("class CLASSNAME WARFILE", args);
+        writeMappings(writer, getEntry(words[1]).repo.findByHandlerClass(words[0]));
+    }
+
+
+    private void processMethod(String args, Writer writer)
+    throws Exception
+    {
+        String[] words = splitQuery("method [CLASSNAME.]METHODNAME WARFILE", args);
+        IndexedPathRepo repo = getEntry(words[1]).repo;
+        int dotIdx = words[0].lastIndexOf('.');
+        List<Mapping> mappings = (dotIdx < 0)
+                               ? repo.findByHandlerMethod(words[0])
+                               : repo.findByHandlerMethod(words[0].substring(0, dotIdx), words[0].substring(dotIdx + 1));
+        writeMappings(writer, mappings);
+    }
+
+
+    private void processPrefix(String args, Writer writer)
+    throws Exception
+    {
+        String[] words = splitQuery("prefix URLPREFIX WARFILE", args);
+        IndexedPathRepo repo = getEntry(words[1]).repo;
+        List<Mapping> mappings = new ArrayList<Mapping>();
+        for (String url : repo.findByUrlPrefix(words[0]))
+        {
+            for (Map.Entry<HttpMethod,Destination> dest : repo.get(url).entrySet())
+                mappings.add(new Mapping(url, dest.getKey(), dest.getValue()));
+        }
+        writeMappings(writer, mappings);
+    }
+
+
+    /**
+     *  Splits the arguments of a query that takes a single value followed by a
+     *  WARFILE, throwing if either is missing.
+     */
+    private static String[] splitQuery(String usage, String args)
+    {
+        String[] words = args.split("\\s+", 2);
+        if (words.length < 2)
+            throw new IllegalArgumentException("expected: " + usage);
+        return words;
+    }
+
+
+    private void writeMappings(Writer writer, List<Mapping> mappings)
+    throws IOException
+    {
+        if (mappings.isEmpty())
+        {
+            writer.write("no match\n");
+            return;
+        }
+
+        for (Mapping mapping : mappings)
+        {
+            writer.write(String.format("%-6s  %s  %s\n", mapping.getMethod(), mapping.getUrl(),
+                                       mapping.getDestination().toString(options)));
+        }
+    }
+
+
+    private void writeMatch(Writer writer, RouteMatcher.Match match, HttpMethod method, Destination dest)
+    throws IOException
+    {
+        writer.write(Main.formatMatch(match, method, dest, options));
+        writer.write('\n');
+    }
+
+
+    private void processStats(Writer writer)
+    throws IOException
+    {
+        writer.write(String.format("cached WARs: %d, hits: %d, misses: %d, libraries cached: %d\n",
+                                   repoCache.sizeSynchronized(), hits.get(), misses.get(), libraryCache.size()));
+    }
+
+
+    /**
+     *  Returns the cache entry for a WAR, inspecting it if it isn't cached or
+     *  has changed. Inspection happens outside of the cache lock, so that a
+     *  slow WAR doesn't block queries against other WARs; two clients that ask
+     *  about the same new WAR at the same time will both inspect it.
+     */
+    private CacheEntry getEntry(String filename)
+    throws Exception
+    {
+        if (filename.length() == 0)
+            throw new IllegalArgumentException("missing WARFILE");
+
+        File file = new File(filename);
+        if (! file.isFile())
+            throw new IllegalArgumentException("not a file: " + filename);
+
+        // size and timestamp are retrieved before inspecting, so that a WAR
+        // that's changed during inspection will be inspected again
+        String key = file.getCanonicalPath();
+        long length = file.length();
+        long lastModified = file.lastModified();
+
+        synchronized (repoCache)
+        {
+            CacheEntry entry = repoCache.get(key);
+            if ((entry != null) && (entry.length == length) && (entry.lastModified == lastModified))
+            {
+                hits.incrementAndGet();
+                return entry;
+            }
+        }
+
+        misses.incrementAndGet();
+        long start = System.currentTimeMillis();
+        CacheEntry entry = new CacheEntry(length, lastModified, inspect(file));
+        logger.debug("inspected " + key + " in " + (System.currentTimeMillis() - start) + " millis");
+
+        synchronized (repoCache)
+        {
+            repoCache.put(key, entry);
+        }
+        return entry;
+    }
+
+
+    private PathRepo inspect(File file)
+    throws Exception
+    {
+        if (PathRepoSnapshot.isSnapshot(file))
+            return PathRepoSnapshot.load(file);
+
+        WarMachineImpl machine = new WarMachineImpl(file, libraryCache, classCache);
+        try
+        {
+            Main main = new Main(options, machine, out);
+            main.inspect();
+            return main.getRepo();
+        }
+        finally
+        {
+            machine.close();
+        }
+    }
+
+
+//----------------------------------------------------------------------------
+//  Supporting classes
+//----------------------------------------------------------------------------
+
+    /**
+     *  An inspected WAR. The indexes and matcher are built when the WAR is
+     *  inspected, so that queries don't pay for them.
+     */
+    private static class CacheEntry
+    {
+        public long length;
+        public long lastModified;
+        public IndexedPathRepo repo;
+        public RouteMatcher matcher;
+
+        public CacheEntry(long length, long lastModified, PathRepo repo)
+        {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.repo = new IndexedPathRepo(repo);
+            this.matcher = new RouteMatcher(this.repo);
+        }
+    }
+
+
+    /**
+     *  A least-recently-used map of inspected WARs. Callers must synchronize
+     *  on the instance.
+     */
+    private static class RepoCache
+    extends LinkedHashMap<String,CacheEntry>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private int maxSize;
+
+        public RepoCache(int maxSize)
+        {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        public synchronized int sizeSynchronized()
+        {
+            return size();
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String,CacheEntry> eldest)
+        {
+            return size() > maxSize;
+        }
+    }
+
+
+    /**
+     *  The "daemon" command, as invoked from {@link Main}.
+     */
+    static class DaemonCommand
+    implements Command
+    {
+        @Override
+        public String getUsage()
+        {
+            return Main.CMD_DAEMON + " [" + ARG_PORT + "=" + DEFAULT_PORT + "] ["
+                 + ARG_MAX_WARS + "=" + DEFAULT_MAX_WARS + "] [" + Main.ARG_THREADS + "=N]";
+        }
+
+        @Override
+        public boolean checkArgs(List<String> args)
+        {
+            return args.isEmpty();
+        }
+
+        @Override
+        public int run(CommandLine cmdline)
+        throws Exception
+        {
+            Daemon daemon = new Daemon(cmdline.getOptions(),
+                                       cmdline.getIntOrDie(ARG_PORT, DEFAULT_PORT),
+                                       cmdline.getIntOrDie(ARG_MAX_WARS, DEFAULT_MAX_WARS),
+                                       cmdline.getIntOrDie(Main.ARG_THREADS, Runtime.getRuntime().availableProcessors()),
+                                       System.out);
+            daemon.setClassCache(cmdline.getClassCache());
+            cmdline.saveClassCacheOnExit();
+            daemon.run();
+            return 0;
+        }
+    }
+}
@@ -14,38 +14,127 @@
 
 package com.kdgregory.pathfinder;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.OutputStreamWriter;
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.log4j.ConsoleAppender;
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 import org.apache.log4j.PatternLayout;
 
-import net.sf.kdgcommons.lang.UnreachableCodeException;
-
+import com.kdgregory.pathfinder.accesslog.AccessLogAttributor;
+import com.kdgregory.pathfinder.accesslog.AccessLogReport;
+import com.kdgregory.pathfinder.accesslog.AccessLogReport.DestinationLatency;
+import com.kdgregory.pathfinder.accesslog.AccessLogReport.RouteHits;
+import com.kdgregory.pathfinder.accesslog.LatencyHistogram;
 import com.kdgregory.pathfinder.core.Destination;
 import com.kdgregory.pathfinder.core.HttpMethod;
 import com.kdgregory.pathfinder.core.InvocationOptions;
 import com.kdgregory.pathfinder.core.PathRepo;
 import com.kdgregory.pathfinder.core.WarMachine;
+import com.kdgregory.pathfinder.core.impl.ClassAnnotationCache;
 import com.kdgregory.pathfinder.core.impl.PathRepoImpl;
-import com.kdgregory.pathfinder.core.impl.WarMachineImpl;
 import com.kdgregory.pathfinder.servlet.ServletInspector;
 import com.kdgregory.pathfinder.spring.SpringInspector;
+import com.kdgregory.pathfinder.util.PathRepoSnapshot;
+import com.kdgregory.pathfinder.util.RouteDiff;
+import com.kdgregory.pathfinder.util.RouteDiff.Change;
+import com.kdgregory.pathfinder.util.RouteDiff.ChangeType;
+import com.kdgregory.pathfinder.util.RouteMatcher;
+import com.kdgregory.pathfinder.util.RouteOverlapAnalyzer;
+import com.kdgregory.pathfinder.util.RouteOverlapAnalyzer.Conflict;
+import com.kdgregory.pathfinder.util.RouteWriter;
 
 
 /**
- *  PathFinder driver program.
+ *  PathFinder driver program. Normally invoked with a single WAR, and reports
+ *  the URLs that it handles. When invoked with the "logs" command, followed by
+ *  a WAR and one or more access logs, reports the number of requests handled
+ *  by each of those URLs. The "latency" command takes the same arguments, and
+ *  reports request-time percentiles for each destination. The "overlaps"
+ *  command takes a single WAR, and reports URLs that conflict with each other;
+ *  it exits with status 2 if any are shadowed or ambiguous.
+ *  <p>
+ *  The basic URL report may be written as text (the default), JSON Lines, or
+ *  CSV; see {@link RouteWriter} for details.
+ *  <p>
+ *  The "snapshot" command takes a WAR and an output file, and saves the
+ *  inspection results to that file (see {@link PathRepoSnapshot}). Any of
+ *  the other commands will accept a snapshot in place of the WAR.
+ *  <p>
+ *  The "diff" command takes two WARs (or snapshots), and reports the routes
+ *  that were added, removed, or changed between the first and the second.
+ *  <p>
+ *  The "query" command takes a WAR and a URL, and reports the route(s) that
+ *  handle that URL. Rather than inspecting the entire WAR, it picks the servlet
+ *  that handles the URL, and if that's a Spring dispatcher, inspects only that
+ *  dispatcher's context. It exits with status 2 if no route matches.
+ *  <p>
+ *  The "batch" command takes any number of WARs and/or directories containing
+ *  WARs, and reports on each of them (see {@link BatchRunner}); it exits with
+ *  status 2 if any could not be analyzed. Information about library JARs is
+ *  shared between the WARs, and may be kept between runs in the file named by
+ *  <code>--libraryCache</code>.
+ *  <p>
+ *  With <code>--watch</code>, the program is given an exploded WAR directory;
+ *  it writes the basic URL report, then watches the directory and writes the
+ *  routes that change as files are updated (see {@link WatchRunner}).
+ *  <p>
+ *  The "daemon" command starts a long-running process that answers queries
+ *  from other programs over a local socket, keeping inspected WARs in memory
+ *  between queries (see {@link Daemon}).
+ *  <p>
+ *  All but the "batch" command accept <code>--incremental=FILE</code>: the
+ *  annotations of the WAR's own classes are saved in that file, and a later run
+ *  only parses the classes whose CRC has changed (see {@link ClassAnnotationCache}).
+ *  The daemon and <code>--watch</code> run until they're stopped, and save the
+ *  file as the process exits.
  */
 public class Main
 {
+    public final static String CMD_LOGS = "logs";
+    public final static String CMD_LATENCY = "latency";
+    public final static String CMD_OVERLAPS = "overlaps";
+    public final static String CMD_SNAPSHOT = "snapshot";
+    public final static String CMD_DIFF = "diff";
+    public final static String CMD_QUERY = "query";
+    public final static String CMD_BATCH = "batch";
+    public final static String CMD_DAEMON = "daemon";
+    public final static String ARG_CONTEXT_PATH = "--contextPath";
+    public final static String ARG_ELAPSED_UNIT = "--elapsedUnit";
+    public final static String ARG_FORMAT = "--format";
+    public final static String ARG_THREADS = "--threads";
+    public final static String ARG_INCREMENTAL = "--incremental";
+    public final static String ARG_WATCH = "--watch";
+
+
     public static void main(String[] argv)
     throws Exception
     {
         Map<InvocationOptions, Boolean> options = InvocationOptions.parseCli(argv);
-        WarMachine machine = openWarOrDie(InvocationOptions.removeInvocationArguments(argv));
+        List<String> args = new ArrayList<String>(Arrays.asList(InvocationOptions.removeInvocationArguments(argv)));
+        boolean isWatch = Arrays.asList(argv).contains(ARG_WATCH);
+
+        Command command = args.isEmpty() ? null : COMMANDS.get(args.get(0));
+        if (command != null)
+            args.remove(0);
+        else
+            command = isWatch ? WATCH_COMMAND : ROUTES_COMMAND;
+
+        if ((isWatch && (command != WATCH_COMMAND)) || ! command.checkArgs(args))
+            usageAndExit();
 
         if (InvocationOptions.DEBUG.isEnabled(options) || InvocationOptions.VERBOSE.isEnabled(options))
         {
@@ -62,7 +151,130 @@ public class Main
                 logger.setLevel(Level.TRACE);
         }
 
-        new Main(options, machine, System.out).run();
+        CommandLine cmdline = new CommandLine(options, argv, args);
+        int status = command.run(cmdline);
+        cmdline.saveClassCache();
+        if (status != 0)
+            System.exit(status);
+    }
+
+
+    private static void usageAndExit()
+    {
+        List<Command> commands = new ArrayList<Command>();
+        commands.add(ROUTES_COMMAND);
+        commands.add(WATCH_COMMAND);
+        commands.addAll(COMMANDS.values());
+
+        System.err.println();
+        String prefix = "invocation: ";
+        for (Command command : commands)
+        {
+            System.err.println(prefix + "Main [OPTIONS] " + command.getUsage());
+            prefix = "            ";
+        }
+        System.err.println("(a SNAPSHOTFILE may be used anywhere that a WARFILE is expected)");
+        System.err.println("(all but " + CMD_BATCH + " accept " + ARG_INCREMENTAL + "=FILE, to reuse class analysis from a previous run)");
+        InvocationOptions.dump(System.err);
+        System.exit(1);
+    }
+
+
+//----------------------------------------------------------------------------
+//  Commands
+//----------------------------------------------------------------------------
+
+    // the default command, and the one selected by --watch, don't have names
+
+    private final static Command ROUTES_COMMAND = new WarCommand("[" + ARG_FORMAT + "=text|jsonl|csv] WARFILE", 1, 1)
+    {
+        @Override
+        protected int run(Main main, CommandLine cmdline)
+        throws Exception
+        {
+            main.run(cmdline.getFormatOrDie());
+            return 0;
+        }
+    };
+
+    private final static Command WATCH_COMMAND = new WatchRunner.WatchCommand();
+
+    private final static Map<String,Command> COMMANDS = new LinkedHashMap<String,Command>();
+    static
+    {
+        COMMANDS.put(CMD_LOGS, new WarCommand(CMD_LOGS + " [" + ARG_CONTEXT_PATH + "=PATH] WARFILE LOGFILE...", 2, Integer.MAX_VALUE)
+        {
+            @Override
+            protected int run(Main main, CommandLine cmdline)
+            throws Exception
+            {
+                main.runAccessLogReport(cmdline.getValue(ARG_CONTEXT_PATH), getLogFiles(cmdline));
+                return 0;
+            }
+        });
+        COMMANDS.put(CMD_LATENCY, new WarCommand(CMD_LATENCY + " [" + ARG_CONTEXT_PATH + "=PATH] ["
+                                                 + ARG_ELAPSED_UNIT + "=us|ms|s] WARFILE LOGFILE...", 2, Integer.MAX_VALUE)
+        {
+            @Override
+            protected int run(Main main, CommandLine cmdline)
+            throws Exception
+            {
+                main.runLatencyReport(cmdline.getValue(ARG_CONTEXT_PATH), cmdline.getElapsedUnitOrDie(), getLogFiles(cmdline));
+                return 0;
+            }
+        });
+        COMMANDS.put(CMD_OVERLAPS, new WarCommand(CMD_OVERLAPS + " WARFILE", 1, 1)
+        {
+            @Override
+            protected int run(Main main, CommandLine cmdline)
+            throws Exception
+            {
+                return (main.runOverlapReport() > 0) ? 2 : 0;
+            }
+        });
+        COMMANDS.put(CMD_SNAPSHOT, new WarCommand(CMD_SNAPSHOT + " WARFILE SNAPSHOTFILE", 2, 2)
+        {
+            @Override
+            protected int run(Main main, CommandLine cmdline)
+            throws Exception
+            {
+                main.runSnapshot(new File(cmdline.getArgs().get(1)));
+                return 0;
+            }
+        });
+        COMMANDS.put(CMD_DIFF, new WarCommand(CMD_DIFF + " OLD_WARFILE NEW_WARFILE", 2, 2)
+        {
+            @Override
+            protected int run(Main main, CommandLine cmdline)
+            throws Exception
+            {
+                main.runDiff(cmdline.createMainOrDie(cmdline.getArgs().get(1)));
+                return 0;
+            }
+        });
+        COMMANDS.put(CMD_QUERY, new WarCommand(CMD_QUERY + " WARFILE URL", 2, 2)
+        {
+            @Override
+            protected int run(Main main, CommandLine cmdline)
+            throws Exception
+            {
+                return main.runQuery(cmdline.getArgs().get(1)) ? 0 : 2;
+            }
+        });
+        COMMANDS.put(CMD_BATCH, new BatchRunner.BatchCommand());
+        COMMANDS.put(CMD_DAEMON, new Daemon.DaemonCommand());
+    }
+
+
+    /**
+     *  Returns the log files named by the arguments following the WAR.
+     */
+    private static List<File> getLogFiles(CommandLine cmdline)
+    {
+        List<File> logFiles = new ArrayList<File>();
+        for (String arg : cmdline.getArgs().subList(1, cmdline.getArgs().size()))
+            logFiles.add(new File(arg));
+        return logFiles;
     }
 
 
@@ -85,6 +297,18 @@ public class Main
     }
 
 
+    /**
+     *  Creates an instance that reports on an already-populated repository (eg,
+     *  one loaded from a snapshot), rather than inspecting a WAR.
+     */
+    public Main(Map<InvocationOptions, Boolean> options, PathRepo repo, PrintStream out)
+    {
+        this.options = options;
+        this.repo = repo;
+        this.out = out;
+    }
+
+
     /**
      *  Invokes the inspectors and dumps the repository. You can call multiple
      *  times, but it's a bit pointless: the inspectors will overwrite whatever
@@ -96,9 +320,150 @@ public class Main
     public void run()
     throws Exception
     {
-        new ServletInspector().inspect(machine, repo);
-        new SpringInspector().inspect(machine, repo);
-        dumpRepo();
+        run(RouteWriter.Format.TEXT);
+    }
+
+
+    /**
+     *  Invokes the inspectors and writes the repository in the specified format.
+     */
+    public void run(RouteWriter.Format format)
+    throws Exception
+    {
+        inspect();
+        dumpRepo(format);
+    }
+
+
+    /**
+     *  Invokes the inspectors, then attributes the requests in the passed access
+     *  logs to the URLs found by those inspectors, and writes the number of hits
+     *  for each URL, followed by the requests that couldn't be attributed.
+     *
+     *  @param  contextPath The path at which the application was deployed (this
+     *                      is included in the logged requests, and is removed
+     *                      before attempting to match). May be null.
+     *  @param  logFiles    The access logs, which may be gzipped.
+     */
+    public void runAccessLogReport(String contextPath, List<File> logFiles)
+    throws Exception
+    {
+        dumpAccessLogReport(attributeLogs(contextPath, TimeUnit.MICROSECONDS, logFiles));
+    }
+
+
+    /**
+     *  Invokes the inspectors, then attributes the requests in the passed access
+     *  logs to the destinations found by those inspectors, and writes latency
+     *  percentiles (in milliseconds) for each destination, slowest first. Only
+     *  log lines that record the time taken to serve the request are counted.
+     *
+     *  @param  contextPath The path at which the application was deployed. May
+     *                      be null.
+     *  @param  elapsedUnit The unit of the time recorded in the logs.
+     *  @param  logFiles    The access logs, which may be gzipped.
+     */
+    public void runLatencyReport(String contextPath, TimeUnit elapsedUnit, List<File> logFiles)
+    throws Exception
+    {
+        dumpLatencyReport(attributeLogs(contextPath, elapsedUnit, logFiles));
+    }
+
+
+    /**
+     *  Invokes the inspectors, then writes the routes that conflict with each
+     *  other (see {@link RouteOverlapAnalyzer}), most serious first. Returns
+     *  the number of shadowed and ambiguous routes.
+     */
+    public int runOverlapReport()
+    throws Exception
+    {
+        inspect();
+        RouteOverlapAnalyzer analyzer = new RouteOverlapAnalyzer(repo);
+        dumpOverlapReport(analyzer);
+        return analyzer.getErrorCount();
+    }
+
+
+    /**
+     *  Invokes the inspectors, then saves the repository as a snapshot.
+     */
+    public void runSnapshot(File snapshotFile)
+    throws Exception
+    {
+        inspect();
+        PathRepoSnapshot.save(repo, snapshotFile);
+        out.format("saved %d URLs to %s\n", repo.urlCount(), snapshotFile);
+    }
+
+
+    /**
+     *  Invokes the inspectors on both this object and the passed object, and
+     *  writes the routes that differ between them, treating this object as the
+     *  old version. Returns the total number of changes.
+     */
+    public int runDiff(Main that)
+    throws Exception
+    {
+        inspect();
+        that.inspect();
+        RouteDiff diff = new RouteDiff(repo, that.repo);
+        diff.run(new RouteDiff.Listener()
+        {
+            @Override
+            public void onChange(Change change)
+            {
+                dumpChange(change);
+            }
+        });
+
+        int added = diff.getCount(ChangeType.ADDED);
+        int removed = diff.getCount(ChangeType.REMOVED);
+        int changed = diff.getCount(ChangeType.CHANGED);
+        out.format("added: %d, removed: %d, changed: %d\n", added, removed, changed);
+        return added + removed + changed;
+    }
+
+
+    /**
+     *  Finds and writes the route(s) that handle a single URL (relative to the
+     *  context root), inspecting only as much of the WAR as needed: the servlet
+     *  mappings and public files, then, if the URL goes to a Spring dispatcher,
+     *  that dispatcher's context (see {@link SpringInspector#inspectDispatcher}).
+     *  Returns <code>false</code> if no route matches.
+     *  <p>
+     *  As in a servlet container, the servlet is chosen before the dispatcher's
+     *  mappings are considered. This means that a URL whose servlet mapping is
+     *  overlapped by another dispatcher's mappings may give a different result
+     *  than a lookup against the full report.
+     */
+    public boolean runQuery(String url)
+    throws Exception
+    {
+        RouteMatcher.Match match = null;
+        if (machine == null)
+        {
+            match = new RouteMatcher(repo).match(url);
+        }
+        else
+        {
+            new ServletInspector().inspect(machine, repo);
+            match = new RouteMatcher(repo).match(url);
+            if ((match != null) && new SpringInspector().inspectDispatcher(machine, repo, match.getUrl()))
+                match = new RouteMatcher(repo).match(url);
+        }
+
+        if (match == null)
+        {
+            out.println("no match");
+            return false;
+        }
+
+        for (Map.Entry<HttpMethod,Destination> entry : match.getDestinations().entrySet())
+        {
+            out.println(formatMatch(match, entry.getKey(), entry.getValue(), options));
+        }
+        return true;
     }
 
 
@@ -106,47 +471,269 @@ public class Main
 //  Internals
 //----------------------------------------------------------------------------
 
-    private static WarMachine openWarOrDie(String[] warName)
+    /**
+     *  Returns the repository; used by {@link BatchRunner} and {@link Daemon}.
+     */
+    PathRepo getRepo()
     {
-        if (warName.length != 1)
-        {
-            System.err.println();
-            System.err.println("invocation: Main [OPTIONS] WARFILE");
-            InvocationOptions.dump(System.err);
-            System.exit(1);
-        }
+        return repo;
+    }
+
 
+    /**
+     *  Runs the inspectors against the WAR again (presumably after it's been
+     *  refreshed), writes the routes that differ from the current repository
+     *  (as with "diff"), and updates the repository to match. Returns the
+     *  number of changed routes; used by {@link WatchRunner}.
+     */
+    int reinspect()
+    {
+        PathRepo updated = new PathRepoImpl();
+        inspectInto(updated);
+
+        // changes are applied afterward, so that we don't modify the repository
+        // while the diff is iterating it
+        final Set<String> changedUrls = new LinkedHashSet<String>();
+        RouteDiff diff = new RouteDiff(repo, updated);
         try
         {
-            return new WarMachineImpl(new File(warName[0]));
+            diff.run(new RouteDiff.Listener()
+            {
+                @Override
+                public void onChange(Change change)
+                {
+                    dumpChange(change);
+                    changedUrls.add(change.getUrl());
+                }
+            });
         }
         catch (Exception ex)
         {
-            System.err.println("unable to open WARFILE: " + ex.getMessage());
-            System.exit(1);
-            throw new UnreachableCodeException("The compiler[ doesn't know that exit() doesn't return");
+            // our listener doesn't throw
+            throw new IllegalStateException("unexpected exception from diff", ex);
         }
+
+        for (String url : changedUrls)
+        {
+            Map<HttpMethod,Destination> destMap = updated.get(url);
+            if (destMap.isEmpty())
+                repo.remove(url, HttpMethod.ALL);
+            else
+                repo.put(url, destMap);
+        }
+
+        return diff.getCount(ChangeType.ADDED)
+             + diff.getCount(ChangeType.REMOVED)
+             + diff.getCount(ChangeType.CHANGED);
+    }
+
+
+    /**
+     *  Formats a single matched route; used by {@link #runQuery} and {@link Daemon}.
+     */
+    static String formatMatch(RouteMatcher.Match match, HttpMethod method, Destination dest,
+                              Map<InvocationOptions,Boolean> options)
+    {
+        return String.format("%-9s  %-6s  %s  %s", match.getType(), method, match.getUrl(), dest.toString(options));
+    }
+
+
+    /**
+     *  Invokes the inspectors, without writing anything; used by {@link Daemon}.
+     */
+    void inspect()
+    throws Exception
+    {
+        // a repository loaded from a snapshot is already complete
+        if (machine == null)
+            return;
+
+        inspectInto(repo);
+    }
+
+
+    private void inspectInto(PathRepo target)
+    {
+        new ServletInspector().inspect(machine, target);
+        new SpringInspector().inspect(machine, target);
+    }
+
+
+    private AccessLogReport attributeLogs(String contextPath, TimeUnit elapsedUnit, List<File> logFiles)
+    throws Exception
+    {
+        inspect();
+        AccessLogAttributor attributor = new AccessLogAttributor(new RouteMatcher(repo), contextPath);
+        attributor.setElapsedTimeUnit(elapsedUnit);
+        for (File file : logFiles)
+        {
+            attributor.process(file);
+        }
+        return attributor.getReport();
+    }
+
+
+    private void dumpRepo(RouteWriter.Format format)
+    throws Exception
+    {
+        // the writer flushes when done; we don't close because we don't own the stream
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"), 65536);
+        RouteWriter.create(format, writer, options).write(repo);
     }
 
 
-    private void dumpRepo()
+    private void dumpAccessLogReport(AccessLogReport report)
     {
+        out.format("lines: %d, attributed: %d, unattributed: %d, unparseable: %d\n",
+                   report.getLineCount(), report.getMatchedCount(),
+                   report.getUnmatchedCount(), report.getUnparseableCount());
+
+        List<RouteHits> routeHits = report.getRouteHits();
         int urlWidth = 16;
-        for (String url : repo)
-            urlWidth = Math.max(urlWidth, url.length());
+        for (RouteHits hits : routeHits)
+            urlWidth = Math.max(urlWidth, hits.getUrl().length());
+
+        String format = "%10d  %-6s  %-" + urlWidth + "s  %s\n";
+
+        out.println();
+        for (RouteHits hits : routeHits)
+        {
+            out.format(format, hits.getHits(), hits.getMethod(), hits.getUrl(),
+                       hits.getDestination().toString(options));
+        }
+
+        List<Map.Entry<String,Long>> unmatched = report.getUnmatched();
+        if (unmatched.isEmpty())
+            return;
+
+        out.println();
+        out.println("unattributed requests:");
+        for (Map.Entry<String,Long> entry : unmatched)
+        {
+            out.format("%10d  %s\n", entry.getValue(), entry.getKey());
+        }
+    }
+
+
+    private void dumpLatencyReport(AccessLogReport report)
+    {
+        String format = "%10s  %10s  %10s  %10s  %10s  %s\n";
+        out.format(format, "count", "p50", "p90", "p99", "max", "destination");
+        for (DestinationLatency latency : report.getLatencies())
+        {
+            LatencyHistogram histogram = latency.getHistogram();
+            out.format(format,
+                       String.valueOf(histogram.getCount()),
+                       formatMillis(histogram.getPercentile(50)),
+                       formatMillis(histogram.getPercentile(90)),
+                       formatMillis(histogram.getPercentile(99)),
+                       formatMillis(histogram.getMax()),
+                       latency.getDestination().toString(options));
+        }
+    }
+
+
+    private static String formatMillis(long micros)
+    {
+        return String.format("%.3f", micros / 1000.0);
+    }
+
 
-        String format = "%-" + urlWidth + "s  %-6s  %s\n";
+    private void dumpChange(Change change)
+    {
+        switch (change.getType())
+        {
+            case ADDED :
+                out.format("+  %-6s  %s  %s\n", change.getMethod(), change.getUrl(),
+                           change.getNewDestination().toString(options));
+                break;
+            case REMOVED :
+                out.format("-  %-6s  %s  %s\n", change.getMethod(), change.getUrl(),
+                           change.getOldDestination().toString(options));
+                break;
+            default :
+                out.format("~  %-6s  %s  %s -> %s  %s\n", change.getMethod(), change.getUrl(),
+                           change.getOldDestination().toString(options),
+                           change.getNewDestination().toString(options),
+                           change.getChangedFields());
+        }
+    }
 
-        for (String url : repo)
+
+    private void dumpOverlapReport(RouteOverlapAnalyzer analyzer)
+    {
+        List<Conflict> conflicts = new ArrayList<Conflict>(analyzer.getConflicts());
+        Collections.sort(conflicts, new Comparator<Conflict>()
         {
-            Map<HttpMethod,Destination> destMap = repo.get(url);
-            for (HttpMethod method : destMap.keySet())
+            @Override
+            public int compare(Conflict c1, Conflict c2)
             {
-                Destination dest = destMap.get(method);
-                if (!dest.isDisplayed(options))
-                    continue;
-                out.format(format, url, method, dest.toString(options));
+                return c1.getType().compareTo(c2.getType());    // stable, retains URL order
             }
+        });
+
+        out.format("routes analyzed: %d, shadowed or ambiguous: %d, overlapping: %d\n",
+                   analyzer.getRouteCount(), analyzer.getErrorCount(),
+                   conflicts.size() - analyzer.getErrorCount());
+        if (conflicts.isEmpty())
+            return;
+
+        int urlWidth = 16;
+        for (Conflict conflict : conflicts)
+            urlWidth = Math.max(urlWidth, conflict.getUrl().length());
+
+        String format = "%-9s  %-6s  %-" + urlWidth + "s  %s\n";
+
+        out.println();
+        for (Conflict conflict : conflicts)
+        {
+            out.format(format, conflict.getType(), conflict.getMethod(), conflict.getUrl(), conflict.getOtherUrl());
         }
     }
+
+
+//----------------------------------------------------------------------------
+//  Supporting classes
+//----------------------------------------------------------------------------
+
+    /**
+     *  A command implemented by this class, which reports on the WAR (or
+     *  snapshot) named by its first argument.
+     */
+    private abstract static class WarCommand
+    implements Command
+    {
+        private String usage;
+        private int minArgs;
+        private int maxArgs;
+
+        public WarCommand(String usage, int minArgs, int maxArgs)
+        {
+            this.usage = usage;
+            this.minArgs = minArgs;
+            this.maxArgs = maxArgs;
+        }
+
+        @Override
+        public String getUsage()
+        {
+            return usage;
+        }
+
+        @Override
+        public boolean checkArgs(List<String> args)
+        {
+            return (args.size() >= minArgs) && (args.size() <= maxArgs);
+        }
+
+        @Override
+        public int run(CommandLine cmdline)
+        throws Exception
+        {
+            return run(cmdline.createMainOrDie(cmdline.getArgs().get(0)), cmdline);
+        }
+
+        protected abstract int run(Main main, CommandLine cmdline)
+        throws Exception;
+    }
 }
@@ -0,0 +1,301 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.impl.ClassAnnotationCache;
+import com.kdgregory.pathfinder.core.impl.WarMachineImpl;
+
+
+/**
+ *  Inspects an exploded WAR, then watches it for changes, writing the routes
+ *  that change each time files are updated. The machine and repository are
+ *  kept for the life of the program: after a change, only the changed files
+ *  are re-read (libraries are not re-read unless they change, and unchanged
+ *  classes are not re-parsed), and the repository is updated in place.
+ *  <p>
+ *  Changes are collected until the directory has been quiet for a short time,
+ *  so that a recompile that touches many files results in a single update.
+ *  <p>
+ *  Note: this class uses the <code>java.nio.file</code> watch service, so
+ *  requires a Java 7 or later runtime.
+ */
+public class WatchRunner
+{
+    private final static long QUIET_MILLIS = 200;
+
+    private Logger logger = Logger.getLogger(getClass());
+
+    private Map<InvocationOptions,Boolean> options;
+    private File warDir;
+    private PrintStream out;
+    private ClassAnnotationCache classCache;
+
+    private WarMachineImpl machine;
+    private Main main;
+    private WatchService watcher;
+    private Map<WatchKey,Path> watchedDirs = new HashMap<WatchKey,Path>();
+
+
+    /**
+     *  @param  options     Invocation options.
+     *  @param  warDir      The exploded WAR.
+     *  @param  out         Receives the reports.
+     *  @param  classCache  Class annotations from a previous run; may be null,
+     *                      in which case the runner starts with an empty cache.
+     */
+    public WatchRunner(Map<InvocationOptions,Boolean> options, File warDir, PrintStream out, ClassAnnotationCache classCache)
+    {
+        this.options = options;
+        this.warDir = warDir;
+        this.out = out;
+        this.classCache = (classCache != null) ? classCache : new ClassAnnotationCache();
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Inspects the WAR and writes the full report, then watches for changes.
+     *  Does not return until the thread is interrupted or the directory can no
+     *  longer be watched.
+     */
+    public void run()
+    throws Exception
+    {
+        start();
+        watcher = FileSystems.getDefault().newWatchService();
+        try
+        {
+            registerTree(warDir.toPath());
+            out.println("watching " + warDir + " for changes");
+            while (! watchedDirs.isEmpty())
+            {
+                update(waitForChanges());
+            }
+        }
+        catch (InterruptedException ex)
+        {
+            logger.debug("interrupted; exiting");
+        }
+        finally
+        {
+            watcher.close();
+            machine.close();
+        }
+    }
+
+
+    /**
+     *  Inspects the WAR and writes the full report. This is called by {@link
+     *  #run}; it's exposed so that the watcher can be driven by tests.
+     */
+    public void start()
+    throws Exception
+    {
+        machine = new WarMachineImpl(warDir, null, classCache);
+        main = new Main(options, machine, out);
+        main.run();
+    }
+
+
+    /**
+     *  Refreshes the WAR after the passed files have changed, and writes the
+     *  routes that changed. Returns the number of changed routes. A WAR that
+     *  can't be inspected (for example, because <code>web.xml</code> is only
+     *  partially written) is reported but otherwise ignored; the next change
+     *  will try again.
+     *
+     *  @param  changedFiles    The files that have been added, changed, or
+     *                          deleted, relative to the WAR root and with a
+     *                          leading slash.
+     */
+    public int update(Collection<String> changedFiles)
+    {
+        if (changedFiles.isEmpty())
+            return 0;
+
+        long start = System.currentTimeMillis();
+        try
+        {
+            machine.refresh(changedFiles);
+            int changes = main.reinspect();
+            out.format("%d changed routes (%d changed files, %d millis)\n",
+                       changes, changedFiles.size(), System.currentTimeMillis() - start);
+            out.flush();
+            return changes;
+        }
+        catch (Exception ex)
+        {
+            logger.debug("unable to re-inspect", ex);
+            out.println("unable to re-inspect WAR: " + ex.getMessage());
+            out.flush();
+            return 0;
+        }
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    /**
+     *  Registers the passed directory and all of its descendents with the
+     *  watch service. Returns the names of the files in those directories,
+     *  since they were presumably created along with the directory.
+     */
+    private Set<String> registerTree(Path dir)
+    throws IOException
+    {
+        final Set<String> files = new TreeSet<String>();
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>()
+        {
+            @Override
+            public FileVisitResult preVisitDirectory(Path path, BasicFileAttributes attrs)
+            throws IOException
+            {
+                WatchKey key = path.register(watcher,
+                                             StandardWatchEventKinds.ENTRY_CREATE,
+                                             StandardWatchEventKinds.ENTRY_MODIFY,
+                                             StandardWatchEventKinds.ENTRY_DELETE);
+                watchedDirs.put(key, path);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path path, BasicFileAttributes attrs)
+            {
+                files.add(toWarName(path));
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return files;
+    }
+
+
+    /**
+     *  Blocks until there's at least one change, then collects changes until
+     *  none have arrived for a short time.
+     */
+    private Set<String> waitForChanges()
+    throws InterruptedException, IOException
+    {
+        Set<String> changed = new TreeSet<String>();
+        WatchKey key = watcher.take();
+        while (key != null)
+        {
+            collectChanges(key, changed);
+            key = watcher.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        return changed;
+    }
+
+
+    private void collectChanges(WatchKey key, Set<String> changed)
+    throws IOException
+    {
+        Path dir = watchedDirs.get(key);
+        for (WatchEvent<?> event : key.pollEvents())
+        {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+            {
+                // we've lost track, so everything might have changed
+                logger.debug("watch service overflowed; refreshing all files");
+                changed.addAll(machine.getAllFiles());
+                continue;
+            }
+
+            Path path = dir.resolve((Path)event.context());
+            if ((event.kind() == StandardWatchEventKinds.ENTRY_CREATE) && Files.isDirectory(path))
+                changed.addAll(registerTree(path));
+            else
+                changed.add(toWarName(path));
+        }
+
+        // a directory that's been deleted is no longer watched
+        if (! key.reset())
+            watchedDirs.remove(key);
+    }
+
+
+    private String toWarName(Path path)
+    {
+        String relative = warDir.toPath().relativize(path).toString();
+        return "/" + relative.replace(File.separatorChar, '/');
+    }
+
+
+//----------------------------------------------------------------------------
+//  Supporting classes
+//----------------------------------------------------------------------------
+
+    /**
+     *  The <code>--watch</code> invocation, as seen by {@link Main}.
+     */
+    static class WatchCommand
+    implements Command
+    {
+        @Override
+        public String getUsage()
+        {
+            return Main.ARG_WATCH + " WARDIRECTORY";
+        }
+
+        @Override
+        public boolean checkArgs(List<String> args)
+        {
+            return args.size() == 1;
+        }
+
+        @Override
+        public int run(CommandLine cmdline)
+        throws Exception
+        {
+            File warDir = new File(cmdline.getArgs().get(0));
+            if (! warDir.isDirectory())
+                throw CommandLine.die(Main.ARG_WATCH + " requires an exploded WAR directory");
+
+            WatchRunner runner = new WatchRunner(cmdline.getOptions(), warDir, System.out, cmdline.getClassCache());
+            cmdline.saveClassCacheOnExit();
+            runner.run();
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.test.WarNames;
+import com.kdgregory.pathfinder.util.RouteWriter;
+import com.kdgregory.pathfinder.util.TestHelpers;
+
+
+public class TestBatchRunner
+{
+//----------------------------------------------------------------------------
+//  Support Code
+//----------------------------------------------------------------------------
+
+    private File warDir;
+    private File outputDir;
+
+
+    @Before
+    public void setUp()
+    throws Exception
+    {
+        warDir = createTempDir("TestBatchRunner-wars");
+        outputDir = createTempDir("TestBatchRunner-output");
+
+        // names chosen so that directory order differs from completion order
+        copyWar(WarNames.SPRING_ANNO,   "a-spring-anno.war");
+        copyWar(WarNames.SERVLET,       "b-servlet.war");
+        copyWar(WarNames.SPRING_ANNO,   "c-spring-anno-again.war");
+
+        FileOutputStream out = new FileOutputStream(new File(warDir, "d-bogus.war"));
+        out.write("this is not a WAR".getBytes("UTF-8"));
+        out.close();
+
+        new File(warDir, "ignored.txt").createNewFile();
+    }
+
+
+    @After
+    public void tearDown()
+    {
+        deleteDir(warDir);
+        deleteDir(outputDir);
+    }
+
+
+    private static File createTempDir(String prefix)
+    throws Exception
+    {
+        File dir = File.createTempFile(prefix, "");
+        dir.delete();
+        dir.mkdir();
+        return dir;
+    }
+
+
+    private static void deleteDir(File dir)
+    {
+        if (dir == null)
+            return;
+        for (File child : dir.listFiles())
+            child.delete();
+        dir.delete();
+    }
+
+
+    private void copyWar(String warName, String filename)
+    throws Exception
+    {
+        File tempFile = TestHelpers.createWarFile(warName);
+        assertTrue("moved " + warName, tempFile.renameTo(new File(warDir, filename)));
+    }
+
+
+//----------------------------------------------------------------------------
+//  Testcases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testExpandWars() throws Exception
+    {
+        List<File> wars = BatchRunner.expandWars(Arrays.asList(warDir.getPath(), "/some/explicit.war"));
+        assertEquals("number of WARs",  5, wars.size());
+        assertEquals("first from dir",  "a-spring-anno.war", wars.get(0).getName());
+        assertEquals("last from dir",   "d-bogus.war", wars.get(3).getName());
+        assertEquals("explicit file",   new File("/some/explicit.war"), wars.get(4));
+    }
+
+
+    @Test
+    public void testBatchToOutputStream() throws Exception
+    {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        BatchRunner runner = new BatchRunner(InvocationOptions.parseCli(), RouteWriter.Format.TEXT, 3, null, new PrintStream(bos));
+        int failures = runner.run(BatchRunner.expandWars(Arrays.asList(warDir.getPath())));
+        String output = new String(bos.toByteArray(), "UTF-8");
+
+        assertEquals("failures", 1, failures);
+
+        int idx1 = output.indexOf("== " + new File(warDir, "a-spring-anno.war"));
+        int idx2 = output.indexOf("== " + new File(warDir, "b-servlet.war"));
+        int idx3 = output.indexOf("== " + new File(warDir, "c-spring-anno-again.war"));
+        assertTrue("reports in input order: " + idx1 + ", " + idx2 + ", " + idx3,
+                   (idx1 >= 0) && (idx1 < idx2) && (idx2 < idx3));
+        assertTrue("report content",    output.substring(idx1, idx2).contains("ControllerE.getFoo()"));
+        assertFalse("no report for failure", output.contains("== " + new File(warDir, "d-bogus.war")));
+
+        assertTrue("failure listed",    output.contains(new File(warDir, "d-bogus.war") + "  FAILED: "));
+        assertTrue("aggregate summary", output.contains("WARs: 4, succeeded: 3, failed: 1, URLs: "));
+        assertTrue("libraries shared",  runner.getLibraryCache().getHitCount() > 0);
+    }
+
+
+    @Test
+    public void testBatchToOutputDirectory() throws Exception
+    {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        BatchRunner runner = new BatchRunner(InvocationOptions.parseCli(), RouteWriter.Format.JSONL, 2, outputDir, new PrintStream(bos));
+        runner.run(BatchRunner.expandWars(Arrays.asList(warDir.getPath())));
+        String output = new String(bos.toByteArray(), "UTF-8");
+
+        assertFalse("no reports in output",     output.contains("== "));
+        assertTrue("report file 1",             new File(outputDir, "a-spring-anno.war.jsonl").length() > 0);
+        assertTrue("report file 2",             new File(outputDir, "b-servlet.war.jsonl").length() > 0);
+        assertTrue("aggregate summary",         output.contains("WARs: 4, succeeded: 3, failed: 1, URLs: "));
+    }
+
+
+    @Test
+    public void testDuplicateWarNames() throws Exception
+    {
+        File otherDir = createTempDir("TestBatchRunner-other");
+        try
+        {
+            File tempFile = TestHelpers.createWarFile(WarNames.SERVLET);
+            assertTrue("moved " + WarNames.SERVLET, tempFile.renameTo(new File(otherDir, "a-spring-anno.war")));
+
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            BatchRunner runner = new BatchRunner(InvocationOptions.parseCli(), RouteWriter.Format.CSV, 2, outputDir, new PrintStream(bos));
+            List<File> wars = BatchRunner.expandWars(Arrays.asList(warDir.getPath(), otherDir.getPath()));
+            assertEquals("failures", 1, runner.run(wars));
+
+            File report1 = new File(outputDir, "1-a-spring-anno.war.csv");
+            File report5 = new File(outputDir, "5-a-spring-anno.war.csv");
+            assertFalse("unprefixed report",    new File(outputDir, "a-spring-anno.war.csv").exists());
+            assertTrue("unique name kept",      new File(outputDir, "b-servlet.war.csv").exists());
+            assertTrue("first duplicate",       report1.length() > 0);
+            assertTrue("second duplicate",      report5.length() > 0);
+            assertTrue("reports differ",        report1.length() != report5.length());
+        }
+        finally
+        {
+            deleteDir(otherDir);
+        }
+    }
+}
@@ -0,0 +1,273 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.impl.ClassAnnotationCache;
+import com.kdgregory.pathfinder.test.WarNames;
+import com.kdgregory.pathfinder.util.TestHelpers;
+
+
+public class TestDaemon
+{
+    private List<File> tempFiles = new ArrayList<File>();
+
+    private Daemon daemon;
+    private Thread daemonThread;
+
+    private Socket socket;
+    private BufferedReader in;
+    private Writer out;
+
+
+    @Before
+    public void setUp()
+    throws Exception
+    {
+        daemon = new Daemon(InvocationOptions.parseCli(), 0, 1, 2, new PrintStream(new ByteArrayOutputStream()));
+        daemon.start();
+        daemonThread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    daemon.run();
+                }
+                catch (Exception ex)
+                {
+                    ex.printStackTrace();
+                }
+            }
+        });
+        daemonThread.start();
+
+        socket = new Socket("127.0.0.1", daemon.getPort());
+        in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+        out = new OutputStreamWriter(socket.getOutputStream(), "UTF-8");
+    }
+
+
+    @After
+    public void tearDown()
+    throws Exception
+    {
+        socket.close();
+        daemon.shutdown();
+        daemonThread.join(5000);
+        for (File file : tempFiles)
+            file.delete();
+    }
+
+
+    private File createWar(String warName)
+    throws Exception
+    {
+        File file = TestHelpers.createWarFile(warName);
+        tempFiles.add(file);
+        return file;
+    }
+
+
+    private String query(String request)
+    throws Exception
+    {
+        out.write(request + "\n");
+        out.flush();
+
+        StringBuilder sb = new StringBuilder();
+        String line;
+        while (! (line = in.readLine()).equals("."))
+            sb.append(line).append("\n");
+        return sb.toString();
+    }
+
+
+//----------------------------------------------------------------------------
+//  Testcases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testQueries() throws Exception
+    {
+        File war = createWar(WarNames.SPRING_ANNO);
+
+        String routes = query("routes " + war);
+        assertTrue("text report",           routes.contains("ControllerB.getBar()"));
+
+        String jsonl = query("routes --format=jsonl " + war);
+        assertTrue("JSONL report",          jsonl.startsWith("{\"url\":"));
+
+        assertTrue("match, specific method",
+                   query("match GET /servlet/B/bar.html " + war)
+                   .matches("EXACT +GET +/servlet/B/bar.html  \\S+ControllerB\\.getBar\\(\\)\n"));
+        assertEquals("match, wrong method", "no match\n", query("match POST /servlet/B/bar.html " + war));
+        assertTrue("match, pattern",        query("match ALL /servlet/D/123 " + war).startsWith("PATTERN "));
+        assertEquals("no match",            "no match\n", query("match GET /nothing/here " + war));
+
+        assertTrue("stats",                 query("stats").startsWith("cached WARs: 1, hits: 5, misses: 1, "));
+    }
+
+
+    @Test
+    public void testInvalidation() throws Exception
+    {
+        File war = createWar(WarNames.SPRING_ANNO);
+
+        query("routes " + war);
+        query("routes " + war);
+        assertTrue("after repeated query",  query("stats").startsWith("cached WARs: 1, hits: 1, misses: 1, "));
+
+        assertTrue("touched WAR", war.setLastModified(war.lastModified() - 10000));
+        query("routes " + war);
+        assertTrue("after WAR changed",     query("stats").startsWith("cached WARs: 1, hits: 1, misses: 2, "));
+
+        // daemon is configured to hold a single WAR
+        File war2 = createWar(WarNames.SERVLET);
+        assertTrue("second WAR",            query("routes " + war2).contains("/servlet"));
+        query("routes " + war);
+        assertTrue("after eviction",        query("stats").startsWith("cached WARs: 1, hits: 1, misses: 4, "));
+    }
+
+
+    @Test
+    public void testIndexQueries() throws Exception
+    {
+        File war = createWar(WarNames.SPRING_ANNO);
+
+        String byClass = query("class com.kdgregory.pathfinder.test.spring3.pkg2.ControllerE " + war);
+        assertEquals("by class, count",             4, byClass.split("\n").length);
+        assertTrue("by class, first",               byClass.startsWith("        /servlet/E1  com.kdgregory.pathfinder.test.spring3.pkg2.ControllerE.getFoo()\n"));
+        assertTrue("by class, multi-URL method",    byClass.contains("/servlet/E4  com.kdgregory.pathfinder.test.spring3.pkg2.ControllerE.getBaz()\n"));
+
+        assertEquals("by method name",
+                     "        /servlet/E3  com.kdgregory.pathfinder.test.spring3.pkg2.ControllerE.getBaz()\n"
+                   + "        /servlet/E4  com.kdgregory.pathfinder.test.spring3.pkg2.ControllerE.getBaz()\n",
+                     query("method getBaz " + war));
+        assertEquals("by qualified method",
+                     "        /servlet/E2  com.kdgregory.pathfinder.test.spring3.pkg2.ControllerE.getBar()\n",
+                     query("method com.kdgregory.pathfinder.test.spring3.pkg2.ControllerE.getBar " + war));
+        assertEquals("method of wrong class",       "no match\n",
+                     query("method com.kdgregory.pathfinder.test.spring3.pkg2.ControllerB.getFoo " + war));
+
+        assertEquals("by prefix",
+                     "GET     /servlet/B/bar.html  com.kdgregory.pathfinder.test.spring3.pkg2.ControllerB.getBar()\n"
+                   + "POST    /servlet/B/baz.html  com.kdgregory.pathfinder.test.spring3.pkg2.ControllerB.setBaz()\n",
+                     query("prefix /servlet/B/ " + war));
+        assertEquals("unmatched prefix",            "no match\n", query("prefix /nothing " + war));
+
+        assertEquals("missing argument",            "ERROR: expected: class CLASSNAME WARFILE\n", query("class foo"));
+    }
+
+
+    @Test
+    public void testErrors() throws Exception
+    {
+        assertEquals("unknown request",     "ERROR: unknown request: foo\n", query("foo"));
+        assertEquals("missing file",        "ERROR: not a file: /does/not/exist\n", query("routes /does/not/exist"));
+        assertEquals("bad method",          "ERROR: invalid method: FETCH\n", query("match FETCH / /does/not/exist"));
+
+        // connection remains usable after errors
+        assertTrue("stats",                 query("stats").startsWith("cached WARs: 0, "));
+    }
+
+
+    @Test
+    public void testClassCache() throws Exception
+    {
+        ClassAnnotationCache classCache = new ClassAnnotationCache();
+        daemon.setClassCache(classCache);
+
+        query("routes " + createWar(WarNames.SPRING_ANNO));
+        assertTrue("classes recorded",      classCache.size() > 0);
+    }
+
+
+    @Test
+    public void testShutdown() throws Exception
+    {
+        assertEquals("response", "", query("shutdown"));
+        daemonThread.join(5000);
+        assertFalse("daemon stopped", daemonThread.isAlive());
+    }
+
+
+    @Test
+    public void testShutdownWithIdleConnection() throws Exception
+    {
+        Socket idleSocket = new Socket("127.0.0.1", daemon.getPort());
+        try
+        {
+            idleSocket.setSoTimeout(5000);
+            BufferedReader idleIn = new BufferedReader(new InputStreamReader(idleSocket.getInputStream(), "UTF-8"));
+            Writer idleOut = new OutputStreamWriter(idleSocket.getOutputStream(), "UTF-8");
+
+            // make sure the connection has been accepted and is waiting for a request
+            idleOut.write("stats\n");
+            idleOut.flush();
+            while (! idleIn.readLine().equals("."))
+                ;
+
+            assertEquals("response", "", query("shutdown"));
+            daemonThread.join(5000);
+            assertFalse("daemon stopped",           daemonThread.isAlive());
+            assertNull("idle connection closed",    idleIn.readLine());
+        }
+        finally
+        {
+            idleSocket.close();
+        }
+    }
+
+
+    @Test
+    public void testIdleTimeout() throws Exception
+    {
+        // ensures that the existing connection has been accepted before changing timeout
+        query("stats");
+        daemon.setIdleTimeout(200);
+
+        Socket idleSocket = new Socket("127.0.0.1", daemon.getPort());
+        try
+        {
+            idleSocket.setSoTimeout(5000);
+            BufferedReader idleIn = new BufferedReader(new InputStreamReader(idleSocket.getInputStream(), "UTF-8"));
+            assertNull("idle connection closed",    idleIn.readLine());
+        }
+        finally
+        {
+            idleSocket.close();
+        }
+
+        assertTrue("stats",                     query("stats").startsWith("cached WARs: 0, "));
+    }
+}
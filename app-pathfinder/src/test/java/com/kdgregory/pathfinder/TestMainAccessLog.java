@@ -0,0 +1,133 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.test.WarNames;
+import com.kdgregory.pathfinder.util.TestHelpers;
+
+
+public class TestMainAccessLog
+{
+//----------------------------------------------------------------------------
+//  Support Code
+//----------------------------------------------------------------------------
+
+    private File logFile;
+    private String output;
+
+
+    @After
+    public void tearDown()
+    {
+        if (logFile != null)
+            logFile.delete();
+    }
+
+
+    private void writeLog(String... urls)
+    throws Exception
+    {
+        logFile = File.createTempFile("TestMainAccessLog", ".log.gz");
+        OutputStream out = new GZIPOutputStream(new FileOutputStream(logFile));
+        for (String url : urls)
+        {
+            String elapsed = "";
+            int spaceIdx = url.indexOf(' ');
+            if (spaceIdx > 0)
+            {
+                elapsed = url.substring(spaceIdx);
+                url = url.substring(0, spaceIdx);
+            }
+            String line = "127.0.0.1 - - [10/Oct/2000:13:55:36 -0700] \"GET " + url + " HTTP/1.1\" 200 100" + elapsed + "\n";
+            out.write(line.getBytes("ISO-8859-1"));
+        }
+        out.close();
+    }
+
+
+    private Main createMain(String warName, ByteArrayOutputStream out)
+    throws Exception
+    {
+        return new Main(InvocationOptions.parseCli(),
+                        TestHelpers.createWarMachine(warName),
+                        new PrintStream(out));
+    }
+
+
+//----------------------------------------------------------------------------
+//  Testcases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testSpringLog() throws Exception
+    {
+        writeLog("/app/servlet/E1?argle=bargle",
+                 "/app/servlet/E1",
+                 "/app/index.jsp",
+                 "/app/servlet/nowhere",
+                 "/other/index.jsp");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        createMain(WarNames.SPRING_ANNO, out).runAccessLogReport("/app", Arrays.asList(logFile));
+        output = new String(out.toByteArray()); // default encoding is OK
+
+        assertTrue("summary",           output.contains("lines: 5, attributed: 3, unattributed: 2, unparseable: 0"));
+        assertTrue("controller hits",   output.matches("(?s).*\\s2  GET     /servlet/E1 .*ControllerE\\.getFoo\\(\\).*"));
+        assertTrue("JSP hits",          output.matches("(?s).*\\s1  GET     /index\\.jsp .*"));
+        assertTrue("unattributed",      output.contains("unattributed requests:"));
+        assertTrue("unattributed URL",  output.contains("1  GET /app/servlet/nowhere"));
+        assertTrue("outside context",   output.contains("1  GET /other/index.jsp"));
+    }
+
+
+    @Test
+    public void testSpringLatency() throws Exception
+    {
+        // anything after a space is written as the elapsed time, giving lines
+        // in "common + %D" format (microseconds)
+        writeLog("/servlet/E1 1000",
+                 "/servlet/E1 3000",
+                 "/servlet/E2 250000",
+                 "/servlet/E3 2000",
+                 "/servlet/E4 2000",
+                 "/index.jsp 500");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        createMain(WarNames.SPRING_ANNO, out).runLatencyReport(null, TimeUnit.MICROSECONDS, Arrays.asList(logFile));
+        output = new String(out.toByteArray()); // default encoding is OK
+
+        String[] lines = output.split("\n");
+        assertEquals("number of lines", 5, lines.length);
+        assertTrue("header",            lines[0].matches("\\s+count\\s+p50\\s+p90\\s+p99\\s+max\\s+destination"));
+        assertTrue("slowest first",     lines[1].matches("\\s+1\\s+250\\.\\d+\\s+250\\.\\d+\\s+250\\.\\d+\\s+250\\.000\\s+.*ControllerE\\.getBar\\(\\).*"));
+        assertTrue("second",            lines[2].matches("\\s+2\\s+1\\.\\d+\\s+3\\.\\d+\\s+3\\.\\d+\\s+3\\.000\\s+.*ControllerE\\.getFoo\\(\\).*"));
+        assertTrue("multiple URLs",     lines[3].matches("\\s+2\\s+2\\.\\d+\\s+2\\.\\d+\\s+2\\.\\d+\\s+2\\.000\\s+.*ControllerE\\.getBaz\\(\\).*"));
+        assertTrue("JSP last",          lines[4].matches("\\s+1\\s+0\\.5\\d+\\s+.*index\\.jsp.*"));
+    }
+}
@@ -0,0 +1,78 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.test.WarNames;
+import com.kdgregory.pathfinder.util.PathRepoSnapshot;
+import com.kdgregory.pathfinder.util.TestHelpers;
+
+
+public class TestMainDiff
+{
+    private File snapshotFile;
+
+
+    @After
+    public void tearDown()
+    {
+        if (snapshotFile != null)
+            snapshotFile.delete();
+    }
+
+
+    private Main createMain(String warName, ByteArrayOutputStream out)
+    throws Exception
+    {
+        return new Main(InvocationOptions.parseCli(), TestHelpers.createWarMachine(warName), new PrintStream(out));
+    }
+
+
+    @Test
+    public void testWarAgainstItsSnapshot() throws Exception
+    {
+        snapshotFile = File.createTempFile("TestMainDiff", ".snap");
+        createMain(WarNames.SPRING_ANNO, new ByteArrayOutputStream()).runSnapshot(snapshotFile);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Main snapshot = new Main(InvocationOptions.parseCli(), PathRepoSnapshot.load(snapshotFile), new PrintStream(out));
+        int changes = createMain(WarNames.SPRING_ANNO, out).runDiff(snapshot);
+        String output = new String(out.toByteArray());   // default encoding is OK
+
+        assertEquals("number of changes",   0, changes);
+        assertEquals("output",              "added: 0, removed: 0, changed: 0\n", output);
+    }
+
+
+    @Test
+    public void testDifferentWars() throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int changes = createMain(WarNames.SPRING_SIMPLE, out).runDiff(createMain(WarNames.SPRING_ANNO, new ByteArrayOutputStream()));
+        String output = new String(out.toByteArray());   // default encoding is OK
+
+        assertTrue("number of changes",     changes > 0);
+        assertTrue("added controller",      output.matches("(?s).*\\+ +/servlet/E1  \\S+ControllerE\\.getFoo\\(\\)\n.*"));
+        assertTrue("summary",               output.matches("(?s).*added: \\d+, removed: \\d+, changed: \\d+\\n"));
+    }
+}
@@ -0,0 +1,79 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.test.WarNames;
+import com.kdgregory.pathfinder.util.RouteWriter;
+import com.kdgregory.pathfinder.util.TestHelpers;
+
+
+public class TestMainFormat
+{
+//----------------------------------------------------------------------------
+//  Support Code
+//----------------------------------------------------------------------------
+
+    private String output;
+
+    private void run(String warName, RouteWriter.Format format)
+    throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new Main(InvocationOptions.parseCli(),
+                 TestHelpers.createWarMachine(warName),
+                 new PrintStream(out)).run(format);
+        output = new String(out.toByteArray(), "UTF-8");
+    }
+
+
+//----------------------------------------------------------------------------
+//  Testcases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testJsonLines() throws Exception
+    {
+        run(WarNames.SPRING_ANNO, RouteWriter.Format.JSONL);
+        for (String line : output.split("\n"))
+        {
+            assertTrue("line is an object: " + line, line.startsWith("{\"url\":\"/") && line.endsWith("}"));
+        }
+        assertTrue("controller with params",
+                   output.contains("{\"url\":\"/servlet/E1\",\"method\":\"ALL\",\"type\":\"spring\","
+                                   + "\"class\":\"com.kdgregory.pathfinder.test.spring3.pkg2.ControllerE\","
+                                   + "\"handlerMethod\":\"getFoo\",\"params\":[{\"name\":\"argle\",\"type\":\"java.lang.String\"}"));
+        assertTrue("JSP",
+                   output.contains("{\"url\":\"/index.jsp\",\"method\":\"ALL\",\"type\":\"jsp\",\"class\":null"));
+    }
+
+
+    @Test
+    public void testCsv() throws Exception
+    {
+        run(WarNames.SPRING_ANNO, RouteWriter.Format.CSV);
+        String[] lines = output.split("\r\n");
+        assertEquals("header", "url,method,type,class,handlerMethod,params,destination", lines[0]);
+        assertTrue("has routes", lines.length > 1);
+        assertTrue("controller",
+                   output.contains("/servlet/E1,ALL,spring,com.kdgregory.pathfinder.test.spring3.pkg2.ControllerE,getFoo,java.lang.String argle"));
+    }
+}
@@ -0,0 +1,45 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.test.WarNames;
+import com.kdgregory.pathfinder.util.TestHelpers;
+
+
+public class TestMainOverlaps
+{
+    @Test
+    public void testNoConflicts() throws Exception
+    {
+        // none of our test WARs have conflicting mappings; RouteOverlapAnalyzer
+        // has its own tests for those, so this just verifies the plumbing
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int errors = new Main(InvocationOptions.parseCli(),
+                              TestHelpers.createWarMachine(WarNames.SPRING_SIMPLE),
+                              new PrintStream(out)).runOverlapReport();
+        String output = new String(out.toByteArray()); // default encoding is OK
+
+        assertEquals("error count", 0, errors);
+        assertTrue("summary: " + output, output.matches("routes analyzed: \\d+, shadowed or ambiguous: 0, overlapping: 0\\s*"));
+    }
+}
@@ -0,0 +1,129 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Map;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.kdgregory.pathfinder.core.Destination;
+import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.test.WarNames;
+import com.kdgregory.pathfinder.util.RouteMatcher;
+import com.kdgregory.pathfinder.util.TestHelpers;
+
+
+public class TestMainQuery
+{
+    private ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+
+    private Main createMain(String warName)
+    throws Exception
+    {
+        return new Main(InvocationOptions.parseCli(), TestHelpers.createWarMachine(warName), new PrintStream(out));
+    }
+
+
+    private String takeOutput()
+    {
+        String result = new String(out.toByteArray()); // default encoding is OK
+        out.reset();
+        return result;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Testcases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testSpringRoute() throws Exception
+    {
+        Main main = createMain(WarNames.SPRING_ANNO);
+
+        assertTrue("found route", main.runQuery("/servlet/B/bar.html"));
+        assertTrue("output",      takeOutput().matches("EXACT +GET +/servlet/B/bar.html  \\S+ControllerB\\.getBar\\(\\)\\s*"));
+    }
+
+
+    @Test
+    public void testOtherDispatcherNotInspected() throws Exception
+    {
+        Main main = createMain(WarNames.SPRING_MULTI_DISPATCH);
+
+        assertTrue("found route", main.runQuery("/alt/foo"));
+        assertTrue("output",      takeOutput().contains("/alt/foo"));
+
+        assertEquals("other dispatcher not inspected", 1, main.getRepo().get("/servlet/*").size());
+        assertEquals("other dispatcher's routes",      0, main.getRepo().get("/servlet/foo").size());
+    }
+
+
+    @Test
+    public void testServletRoute() throws Exception
+    {
+        Main main = createMain(WarNames.SPRING_SIMPLE);
+
+        assertTrue("found route", main.runQuery("/servlet2"));
+        assertTrue("output",      takeOutput().matches("EXACT +/servlet2  com.example.servlet.SomeServlet\\s*"));
+    }
+
+
+    @Test
+    public void testNoMatch() throws Exception
+    {
+        Main main = createMain(WarNames.SPRING_ANNO);
+
+        assertFalse("no route",   main.runQuery("/nothing/here"));
+        assertEquals("output",    "no match", takeOutput().trim());
+    }
+
+
+    @Test
+    public void testConsistentWithFullInspection() throws Exception
+    {
+        Main full = createMain(WarNames.SPRING_MULTI_DISPATCH);
+        full.inspect();
+        RouteMatcher matcher = new RouteMatcher(full.getRepo());
+        assertEquals("sanity check: dispatched route",  "/alt/foo", matcher.match("/alt/foo").getUrl());
+        assertNull("sanity check: /* dispatcher",       matcher.match("/bar"));
+
+        String[] urls = { "/foo", "/bar", "/alt/foo", "/alt/bar", "/servlet/foo", "/servlet/baz",
+                          "/servlet2", "/index.jsp" };
+        for (String url : urls)
+        {
+            StringBuilder expected = new StringBuilder();
+            RouteMatcher.Match match = matcher.match(url);
+            if (match == null)
+            {
+                expected.append("no match\n");
+            }
+            else
+            {
+                for (Map.Entry<HttpMethod,Destination> entry : match.getDestinations().entrySet())
+                    expected.append(Main.formatMatch(match, entry.getKey(), entry.getValue(), InvocationOptions.parseCli()))
+                            .append("\n");
+            }
+
+            assertEquals("found: " + url,   match != null, createMain(WarNames.SPRING_MULTI_DISPATCH).runQuery(url));
+            assertEquals("output: " + url,  expected.toString(), takeOutput().replace(System.getProperty("line.separator"), "\n"));
+        }
+    }
+}
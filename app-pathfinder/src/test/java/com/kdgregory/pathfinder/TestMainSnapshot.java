@@ -0,0 +1,94 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.test.WarNames;
+import com.kdgregory.pathfinder.util.PathRepoSnapshot;
+import com.kdgregory.pathfinder.util.RouteWriter;
+import com.kdgregory.pathfinder.util.TestHelpers;
+
+
+public class TestMainSnapshot
+{
+    private File snapshotFile;
+
+
+    @After
+    public void tearDown()
+    {
+        if (snapshotFile != null)
+            snapshotFile.delete();
+    }
+
+
+    private String runFromWar(String warName, RouteWriter.Format format, Map<InvocationOptions,Boolean> options)
+    throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new Main(options, TestHelpers.createWarMachine(warName), new PrintStream(out)).run(format);
+        return new String(out.toByteArray(), "UTF-8");
+    }
+
+
+    private String runFromSnapshot(RouteWriter.Format format, Map<InvocationOptions,Boolean> options)
+    throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new Main(options, PathRepoSnapshot.load(snapshotFile), new PrintStream(out)).run(format);
+        return new String(out.toByteArray(), "UTF-8");
+    }
+
+
+    @Test
+    public void testSnapshotReproducesOutput() throws Exception
+    {
+        snapshotFile = File.createTempFile("TestMainSnapshot", ".snap");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new Main(InvocationOptions.parseCli(), TestHelpers.createWarMachine(WarNames.SPRING_ANNO), new PrintStream(out))
+            .runSnapshot(snapshotFile);
+        assertTrue("reported save", new String(out.toByteArray()).startsWith("saved "));
+
+        Map<InvocationOptions,Boolean> defaults = InvocationOptions.parseCli();
+        Map<InvocationOptions,Boolean> everything = InvocationOptions.parseCli(
+                                                        InvocationOptions.SHOW_STATIC.getEnableString(),
+                                                        InvocationOptions.SHOW_REQUEST_PARAMS.getEnableString());
+        Map<InvocationOptions,Boolean> noJsp = InvocationOptions.parseCli(
+                                                        InvocationOptions.SHOW_JSP.getDisableString());
+
+        assertEquals("text, default options",
+                     runFromWar(WarNames.SPRING_ANNO, RouteWriter.Format.TEXT, defaults),
+                     runFromSnapshot(RouteWriter.Format.TEXT, defaults));
+        assertEquals("text, all options",
+                     runFromWar(WarNames.SPRING_ANNO, RouteWriter.Format.TEXT, everything),
+                     runFromSnapshot(RouteWriter.Format.TEXT, everything));
+        assertEquals("text, hide JSP",
+                     runFromWar(WarNames.SPRING_ANNO, RouteWriter.Format.TEXT, noJsp),
+                     runFromSnapshot(RouteWriter.Format.TEXT, noJsp));
+        assertEquals("JSON",
+                     runFromWar(WarNames.SPRING_ANNO, RouteWriter.Format.JSONL, defaults),
+                     runFromSnapshot(RouteWriter.Format.JSONL, defaults));
+    }
+}
@@ -0,0 +1,139 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.kdgcommons.io.IOUtil;
+
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.impl.ClassAnnotationCache;
+import com.kdgregory.pathfinder.test.WarNames;
+import com.kdgregory.pathfinder.util.TestHelpers;
+
+
+/**
+ *  Drives the watcher directly, rather than waiting for file-system events.
+ */
+public class TestWatchRunner
+{
+    private final static String CONTROLLER_E = "/WEB-INF/classes/com/kdgregory/pathfinder/test/spring3/pkg2/ControllerE.class";
+
+    private File warDir;
+    private ByteArrayOutputStream out;
+    private ClassAnnotationCache classCache;
+    private WatchRunner runner;
+
+
+    @Before
+    public void setUp()
+    throws Exception
+    {
+        warDir = TestHelpers.createExplodedWar(WarNames.SPRING_ANNO);
+        out = new ByteArrayOutputStream();
+        classCache = new ClassAnnotationCache();
+        runner = new WatchRunner(InvocationOptions.parseCli(), warDir, new PrintStream(out), classCache);
+        runner.start();
+    }
+
+
+    @After
+    public void tearDown()
+    {
+        TestHelpers.deleteRecursively(warDir);
+    }
+
+
+    private String takeOutput()
+    throws Exception
+    {
+        String result = new String(out.toByteArray(), "UTF-8");
+        out.reset();
+        return result;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Testcases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testRemoveAndRestoreController() throws Exception
+    {
+        assertTrue("initial report", takeOutput().contains("ControllerE.getFoo()"));
+
+        File classFile = new File(warDir, CONTROLLER_E.substring(1));
+        byte[] content = new byte[(int)classFile.length()];
+        FileInputStream in = new FileInputStream(classFile);
+        IOUtil.readFully(in, content);
+        in.close();
+
+        List<String> changed = Arrays.asList(CONTROLLER_E);
+
+        assertTrue("deleted class file", classFile.delete());
+        int removed = runner.update(changed);
+        String output1 = takeOutput();
+        assertTrue("routes removed",    removed > 0);
+        assertTrue("removal reported",  output1.matches("(?s)-  \\S* +/servlet/E1  \\S+ControllerE\\.getFoo\\(\\)\n.*"));
+        assertTrue("summary reported",  output1.contains(removed + " changed routes (1 changed files, "));
+
+        FileOutputStream fos = new FileOutputStream(classFile);
+        fos.write(content);
+        fos.close();
+        int added = runner.update(changed);
+        String output2 = takeOutput();
+        assertEquals("routes restored", removed, added);
+        assertTrue("addition reported", output2.matches("(?s)\\+  \\S* +/servlet/E1  \\S+ControllerE\\.getFoo\\(\\)\n.*"));
+
+        assertEquals("no further changes", 0, runner.update(changed));
+    }
+
+
+    @Test
+    public void testInvalidWebXml() throws Exception
+    {
+        takeOutput();
+
+        File webXml = new File(warDir, "WEB-INF/web.xml");
+        FileOutputStream fos = new FileOutputStream(webXml);
+        fos.write("<web-app".getBytes("UTF-8"));
+        fos.close();
+
+        assertEquals("no changes",      0, runner.update(Arrays.asList("/WEB-INF/web.xml")));
+        assertTrue("error reported",    takeOutput().startsWith("unable to re-inspect WAR: "));
+    }
+
+
+    @Test
+    public void testUsesProvidedClassCache() throws Exception
+    {
+        assertTrue("classes recorded at start", classCache.size() > 0);
+
+        long hits = classCache.getHitCount();
+        runner.update(Arrays.asList(CONTROLLER_E));
+        assertTrue("unchanged classes found in cache", classCache.getHitCount() > hits);
+    }
+}
@@ -0,0 +1,364 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.accesslog;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.log4j.Logger;
+
+import net.sf.kdgcommons.io.IOUtil;
+
+import com.kdgregory.pathfinder.core.Destination;
+import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.util.RouteMatcher;
+import com.kdgregory.pathfinder.util.RouteMatcher.Match;
+
+
+/**
+ *  Attributes the lines of one or more access logs to the routes of a compiled
+ *  {@link RouteMatcher}, accumulating the results in an {@link AccessLogReport}.
+ *  <p>
+ *  Logs are read sequentially (a log may be plain text or gzipped; we look at
+ *  the content, not the filename), and divided into fixed-size chunks of lines.
+ *  Chunks are parsed and matched on a thread pool, each into its own report,
+ *  and those reports are merged on the reading thread. To bound memory, there
+ *  are never more than a few chunks per thread waiting to be processed.
+ *  <p>
+ *  Logs record the request URL as the client sent it, which includes the
+ *  application's context path (unless it's deployed as the root application).
+ *  The attributor can be given a context path to strip; requests that don't
+ *  start with it are reported as unmatched.
+ *  <p>
+ *  Lines that record the time taken to serve the request contribute to the
+ *  report's latency histograms. By default, this time is assumed to be in
+ *  microseconds (<code>%D</code>); call {@link #setElapsedTimeUnit} for logs
+ *  that use a different unit (eg, seconds for <code>%T</code>).
+ *  <p>
+ *  Instances are not thread-safe: all calls to {@link #process} must be made
+ *  from the same thread (or externally synchronized).
+ */
+public class AccessLogAttributor
+{
+    public final static int DEFAULT_CHUNK_SIZE = 4096;
+
+    private final static int GZIP_MAGIC = 0x8b1f;
+
+    private Logger logger = Logger.getLogger(getClass());
+
+    private RouteMatcher matcher;
+    private String contextPath;
+    private int numThreads;
+    private int chunkSize;
+    private double microsPerElapsedUnit = 1.0;
+
+    private AccessLogReport report = new AccessLogReport();
+
+
+    /**
+     *  Convenience constructor for the common case: the application is deployed
+     *  at the passed context path, and lines are processed using one thread per
+     *  available processor.
+     */
+    public AccessLogAttributor(RouteMatcher matcher, String contextPath)
+    {
+        this(matcher, contextPath, Runtime.getRuntime().availableProcessors(), DEFAULT_CHUNK_SIZE);
+    }
+
+
+    /**
+     *  Base constructor.
+     *
+     *  @param  matcher     Identifies the route for each request.
+     *  @param  contextPath The application's context path, which is removed from
+     *                      each request URL. May be null or empty, or "/", for an
+     *                      application deployed at the server root.
+     *  @param  numThreads  The number of threads used to process chunks. If 1, all
+     *                      processing happens on the calling thread.
+     *  @param  chunkSize   The number of lines in each chunk.
+     */
+    public AccessLogAttributor(RouteMatcher matcher, String contextPath, int numThreads, int chunkSize)
+    {
+        this.matcher = matcher;
+        this.contextPath = normalizeContextPath(contextPath);
+        this.numThreads = Math.max(1, numThreads);
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Sets the unit of the elapsed times recorded in the log. Fractional values
+     *  are permitted, so seconds with millisecond precision (eg, nginx) should
+     *  use <code>SECONDS</code>.
+     */
+    public void setElapsedTimeUnit(TimeUnit unit)
+    {
+        microsPerElapsedUnit = unit.toNanos(1) / 1000.0;
+    }
+
+
+    /**
+     *  Processes a log file, which may be gzipped.
+     */
+    public void process(File file)
+    throws IOException
+    {
+        logger.debug("processing " + file);
+        InputStream in = null;
+        try
+        {
+            in = new FileInputStream(file);
+            process(in);
+        }
+        finally
+        {
+            IOUtil.closeQuietly(in);
+        }
+    }
+
+
+    /**
+     *  Processes a log from the passed stream, which may be gzipped. The caller
+     *  is responsible for closing the stream.
+     */
+    public void process(InputStream in)
+    throws IOException
+    {
+        in = new BufferedInputStream(in, 65536);
+        in.mark(2);
+        int magic = in.read() | (in.read() << 8);
+        in.reset();
+        if (magic == GZIP_MAGIC)
+            in = new GZIPInputStream(in, 65536);
+
+        // logs should be ASCII; this decoding is fast and never fails
+        process(new InputStreamReader(in, "ISO-8859-1"));
+    }
+
+
+    /**
+     *  Processes a log from the passed reader. The caller is responsible for
+     *  closing the reader.
+     */
+    public void process(Reader in)
+    throws IOException
+    {
+        BufferedReader rdr = (in instanceof BufferedReader) ? (BufferedReader)in : new BufferedReader(in, 65536);
+        if (numThreads == 1)
+        {
+            processInline(rdr);
+            return;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+        try
+        {
+            processConcurrently(rdr, pool);
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+    }
+
+
+    /**
+     *  Returns the accumulated results of all calls to {@link #process}.
+     */
+    public AccessLogReport getReport()
+    {
+        return report;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private static String normalizeContextPath(String contextPath)
+    {
+        if ((contextPath == null) || contextPath.equals("/"))
+            return "";
+        if (contextPath.endsWith("/"))
+            contextPath = contextPath.substring(0, contextPath.length() - 1);
+        if ((contextPath.length() > 0) && ! contextPath.startsWith("/"))
+            contextPath = "/" + contextPath;
+        return contextPath;
+    }
+
+
+    private void processInline(BufferedReader rdr)
+    throws IOException
+    {
+        List<String> chunk;
+        while ((chunk = readChunk(rdr)) != null)
+        {
+            report.merge(processChunk(chunk));
+        }
+    }
+
+
+    private void processConcurrently(BufferedReader rdr, ExecutorService pool)
+    throws IOException
+    {
+        LinkedList<Future<AccessLogReport>> pending = new LinkedList<Future<AccessLogReport>>();
+        int maxPending = numThreads * 2;
+
+        List<String> chunk;
+        while ((chunk = readChunk(rdr)) != null)
+        {
+            if (pending.size() >= maxPending)
+                report.merge(waitFor(pending.removeFirst()));
+
+            final List<String> lines = chunk;
+            pending.add(pool.submit(new Callable<AccessLogReport>()
+            {
+                @Override
+                public AccessLogReport call() throws Exception
+                {
+                    return processChunk(lines);
+                }
+            }));
+        }
+
+        while (! pending.isEmpty())
+        {
+            report.merge(waitFor(pending.removeFirst()));
+        }
+    }
+
+
+    private List<String> readChunk(BufferedReader rdr)
+    throws IOException
+    {
+        List<String> chunk = new ArrayList<String>(chunkSize);
+        String line;
+        while ((chunk.size() < chunkSize) && ((line = rdr.readLine()) != null))
+        {
+            chunk.add(line);
+        }
+        return chunk.isEmpty() ? null : chunk;
+    }
+
+
+    private static AccessLogReport waitFor(Future<AccessLogReport> future)
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (ExecutionException ex)
+        {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException)cause;
+            if (cause instanceof Error)
+                throw (Error)cause;
+            throw new RuntimeException("unexpected exception processing log", cause);
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("interrupted while processing log", ex);
+        }
+    }
+
+
+    /**
+     *  Processes a chunk of lines into a new report. This is called concurrently,
+     *  so must only touch immutable state (the route matcher is immutable once
+     *  constructed).
+     */
+    private AccessLogReport processChunk(List<String> lines)
+    {
+        AccessLogReport chunkReport = new AccessLogReport();
+        for (String line : lines)
+        {
+            AccessLogEntry entry = AccessLogEntry.parse(line);
+            if (entry == null)
+            {
+                chunkReport.recordUnparseable();
+                continue;
+            }
+
+            HttpMethod method = entry.getHttpMethod();
+            String url = stripContextPath(entry.getUrl());
+            Match match = (url != null) ? matcher.match(url) : null;
+            Destination dest = (match != null) ? match.getDestination(method) : null;
+            if (dest != null)
+                chunkReport.recordMatch(match, method, toMicros(entry.getElapsed()));
+            else
+                chunkReport.recordUnmatched(entry.getMethod() + " " + stripQuery(entry.getUrl()));
+        }
+        return chunkReport;
+    }
+
+
+    private long toMicros(double elapsed)
+    {
+        return (elapsed < 0) ? -1 : Math.round(elapsed * microsPerElapsedUnit);
+    }
+
+
+    /**
+     *  Returns the URL relative to the context path, <code>null</code> if it isn't
+     *  within the context.
+     */
+    private String stripContextPath(String url)
+    {
+        if (contextPath.length() == 0)
+            return url;
+        if (! url.startsWith(contextPath))
+            return null;
+        if (url.length() == contextPath.length())
+            return "/";
+
+        char next = url.charAt(contextPath.length());
+        if ((next == '/') || (next == '?') || (next == ';'))
+            return url.substring(contextPath.length());
+        return null;
+    }
+
+
+    /**
+     *  Unmatched URLs are reported without query strings, since those would make
+     *  otherwise-identical requests appear distinct.
+     */
+    private static String stripQuery(String url)
+    {
+        int idx = url.indexOf('?');
+        return (idx < 0) ? url : url.substring(0, idx);
+    }
+}
@@ -0,0 +1,221 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.accesslog;
+
+import com.kdgregory.pathfinder.core.HttpMethod;
+
+
+/**
+ *  The parts of an access log line that we care about. Lines are expected to be
+ *  in NCSA "common" or "combined" format, which share a prefix:
+ *  <pre>
+ *      host ident user [timestamp] "METHOD /path PROTOCOL" status bytes ...
+ *  </pre>
+ *  If the line ends with a number that follows the byte count (and, for the
+ *  combined format, the quoted referer and user-agent), it's taken as the time
+ *  to serve the request: Apache's <code>%D</code> or <code>%T</code>, Tomcat's
+ *  <code>%D</code>, or nginx's <code>$request_time</code>. The units depend on
+ *  the server configuration, so are left to the caller. Anything else after the
+ *  byte count is ignored.
+ *  <p>
+ *  Parsing is done with simple string searches rather than a regex, because we
+ *  expect to process a lot of lines.
+ */
+public class AccessLogEntry
+{
+    /**
+     *  Parses a single line, returning <code>null</code> if it isn't in the
+     *  expected format (including lines whose request is "-", which servers
+     *  write for malformed requests).
+     */
+    public static AccessLogEntry parse(String line)
+    {
+        int timestampEnd = line.indexOf("] \"");
+        if (timestampEnd < 0)
+            return null;
+
+        int requestStart = timestampEnd + 3;
+        int requestEnd = line.indexOf("\" ", requestStart);
+        if (requestEnd < 0)
+            return null;
+
+        int methodEnd = line.indexOf(' ', requestStart);
+        if ((methodEnd < 0) || (methodEnd >= requestEnd))
+            return null;
+
+        int urlEnd = line.indexOf(' ', methodEnd + 1);
+        if ((urlEnd < 0) || (urlEnd > requestEnd))
+            urlEnd = requestEnd;        // HTTP/0.9 requests don't have a protocol
+
+        int status = parseStatus(line, requestEnd + 2);
+        if (status < 0)
+            return null;
+
+        String method = line.substring(requestStart, methodEnd);
+        String url = stripSchemeAndHost(line.substring(methodEnd + 1, urlEnd));
+        double elapsed = parseElapsed(line, requestEnd + 5);
+        return new AccessLogEntry(method, url, status, elapsed);
+    }
+
+
+//----------------------------------------------------------------------------
+//  Instance variables and constructor
+//----------------------------------------------------------------------------
+
+    private String method;
+    private String url;
+    private int status;
+    private double elapsed;
+
+
+    public AccessLogEntry(String method, String url, int status, double elapsed)
+    {
+        this.method = method;
+        this.url = url;
+        this.status = status;
+        this.elapsed = elapsed;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns the request method as it appears in the log.
+     */
+    public String getMethod()
+    {
+        return method;
+    }
+
+
+    /**
+     *  Returns the request method as used to find a destination. <code>HEAD</code>
+     *  is treated as <code>GET</code> (as <code>HttpServlet</code> does), and any
+     *  method that doesn't have its own destinations is treated as "all".
+     */
+    public HttpMethod getHttpMethod()
+    {
+        if (method.equals("GET") || method.equals("HEAD"))
+            return HttpMethod.GET;
+        if (method.equals("POST"))
+            return HttpMethod.POST;
+        if (method.equals("PUT"))
+            return HttpMethod.PUT;
+        if (method.equals("DELETE"))
+            return HttpMethod.DELETE;
+        return HttpMethod.ALL;
+    }
+
+
+    /**
+     *  Returns the requested URL, including any query string. If the request
+     *  used an absolute URL, the scheme and host are removed.
+     */
+    public String getUrl()
+    {
+        return url;
+    }
+
+
+    public int getStatus()
+    {
+        return status;
+    }
+
+
+    /**
+     *  Returns the time taken to serve the request, in whatever units the log
+     *  uses; -1 if the line doesn't record it.
+     */
+    public double getElapsed()
+    {
+        return elapsed;
+    }
+
+
+    @Override
+    public String toString()
+    {
+        return method + " " + url + " " + status;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private static int parseStatus(String line, int start)
+    {
+        int end = Math.min(start + 3, line.length());
+        if (end - start != 3)
+            return -1;
+
+        int status = 0;
+        for (int ii = start ; ii < end ; ii++)
+        {
+            char c = line.charAt(ii);
+            if ((c < '0') || (c > '9'))
+                return -1;
+            status = status * 10 + (c - '0');
+        }
+        return status;
+    }
+
+
+    /**
+     *  Looks for an elapsed time as the last token in the line, following the
+     *  byte count (which starts one character past the passed index).
+     */
+    private static double parseElapsed(String line, int statusEnd)
+    {
+        if ((statusEnd >= line.length()) || (line.charAt(statusEnd) != ' '))
+            return -1;
+
+        int bytesEnd = line.indexOf(' ', statusEnd + 1);
+        int lastSpace = line.lastIndexOf(' ');
+        if ((bytesEnd < 0) || (lastSpace < bytesEnd) || (lastSpace == line.length() - 1))
+            return -1;
+
+        boolean sawDigit = false;
+        boolean sawPoint = false;
+        for (int ii = lastSpace + 1 ; ii < line.length() ; ii++)
+        {
+            char c = line.charAt(ii);
+            if ((c >= '0') && (c <= '9'))
+                sawDigit = true;
+            else if ((c == '.') && ! sawPoint)
+                sawPoint = true;
+            else
+                return -1;
+        }
+        return sawDigit ? Double.parseDouble(line.substring(lastSpace + 1)) : -1;
+    }
+
+
+    private static String stripSchemeAndHost(String url)
+    {
+        if (url.startsWith("/"))
+            return url;
+
+        int schemeEnd = url.indexOf("://");
+        if (schemeEnd < 0)
+            return url;
+
+        int pathStart = url.indexOf('/', schemeEnd + 3);
+        return (pathStart < 0) ? "/" : url.substring(pathStart);
+    }
+}
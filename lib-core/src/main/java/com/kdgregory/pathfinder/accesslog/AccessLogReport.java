@@ -0,0 +1,400 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.accesslog;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.kdgregory.pathfinder.core.Destination;
+import com.kdgregory.pathfinder.core.HandlerDestination;
+import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.util.RouteMatcher.Match;
+
+
+/**
+ *  Accumulates the results of attributing access log lines to routes: hit counts
+ *  for each route and method, counts of the URLs that couldn't be attributed,
+ *  and a latency histogram for each handler (for those lines that record the
+ *  time taken to serve the request).
+ *  <p>
+ *  Inspectors create a new destination for each URL and method that a handler
+ *  serves, so latencies are aggregated by handler class and method (or, for
+ *  destinations that aren't handled by Java code, by their string value).
+ *  <p>
+ *  To bound memory, only a limited number of distinct unattributed URLs are
+ *  tracked; once that limit is reached, new URLs are only reflected in the
+ *  total.
+ *  <p>
+ *  This class is not thread-safe. Concurrent processing should use a report per
+ *  thread, and {@link #merge} them.
+ */
+public class AccessLogReport
+{
+    public final static int DEFAULT_MAX_UNMATCHED_URLS = 10000;
+
+    private final static HttpMethod[] METHODS = HttpMethod.values();
+
+    private int maxUnmatchedUrls;
+
+    private long lineCount;
+    private long unparseableCount;
+    private long matchedCount;
+    private long unmatchedCount;
+
+    // matches are canonical for a given RouteMatcher, so identity is sufficient;
+    // counts are indexed by HttpMethod ordinal
+    private Map<Match,long[]> hits = new IdentityHashMap<Match,long[]>();
+    private Map<String,Long> unmatched = new HashMap<String,Long>();
+    private Map<String,DestinationLatency> latencies = new HashMap<String,DestinationLatency>();
+
+
+    public AccessLogReport()
+    {
+        this(DEFAULT_MAX_UNMATCHED_URLS);
+    }
+
+
+    public AccessLogReport(int maxUnmatchedUrls)
+    {
+        this.maxUnmatchedUrls = maxUnmatchedUrls;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Recording
+//----------------------------------------------------------------------------
+
+    /**
+     *  Records a line that couldn't be parsed.
+     */
+    public void recordUnparseable()
+    {
+        lineCount++;
+        unparseableCount++;
+    }
+
+
+    /**
+     *  Records a line that was attributed to the passed route and method, along
+     *  with the time taken to serve it (negative if not known).
+     */
+    public void recordMatch(Match route, HttpMethod method, long elapsedMicros)
+    {
+        lineCount++;
+        matchedCount++;
+
+        long[] counts = hits.get(route);
+        if (counts == null)
+        {
+            counts = new long[METHODS.length];
+            hits.put(route, counts);
+        }
+        counts[method.ordinal()]++;
+
+        if (elapsedMicros < 0)
+            return;
+
+        Destination dest = route.getDestination(method);
+        getLatency(latencyLabel(dest), dest).getHistogram().record(elapsedMicros);
+    }
+
+
+    /**
+     *  Records a line that couldn't be attributed to a route. The passed key
+     *  identifies the request (eg, method and URL).
+     */
+    public void recordUnmatched(String key)
+    {
+        lineCount++;
+        unmatchedCount++;
+        addUnmatched(key, 1);
+    }
+
+
+    /**
+     *  Adds the counts from another report to this one.
+     */
+    public void merge(AccessLogReport that)
+    {
+        lineCount += that.lineCount;
+        unparseableCount += that.unparseableCount;
+        matchedCount += that.matchedCount;
+        unmatchedCount += that.unmatchedCount;
+
+        for (Map.Entry<Match,long[]> entry : that.hits.entrySet())
+        {
+            long[] counts = hits.get(entry.getKey());
+            if (counts == null)
+            {
+                hits.put(entry.getKey(), entry.getValue().clone());
+                continue;
+            }
+            for (int ii = 0 ; ii < counts.length ; ii++)
+                counts[ii] += entry.getValue()[ii];
+        }
+
+        for (Map.Entry<String,Long> entry : that.unmatched.entrySet())
+        {
+            addUnmatched(entry.getKey(), entry.getValue().longValue());
+        }
+
+        for (DestinationLatency latency : that.latencies.values())
+        {
+            getLatency(latency.getLabel(), latency.getDestination())
+                .getHistogram().merge(latency.getHistogram());
+        }
+    }
+
+
+//----------------------------------------------------------------------------
+//  Reporting
+//----------------------------------------------------------------------------
+
+    public long getLineCount()
+    {
+        return lineCount;
+    }
+
+
+    public long getUnparseableCount()
+    {
+        return unparseableCount;
+    }
+
+
+    public long getMatchedCount()
+    {
+        return matchedCount;
+    }
+
+
+    public long getUnmatchedCount()
+    {
+        return unmatchedCount;
+    }
+
+
+    /**
+     *  Returns the hit counts for each route and method, highest first (with
+     *  ties ordered by URL and method).
+     */
+    public List<RouteHits> getRouteHits()
+    {
+        List<RouteHits> result = new ArrayList<RouteHits>();
+        for (Map.Entry<Match,long[]> entry : hits.entrySet())
+        {
+            long[] counts = entry.getValue();
+            for (int ii = 0 ; ii < counts.length ; ii++)
+            {
+                if (counts[ii] > 0)
+                    result.add(new RouteHits(entry.getKey(), METHODS[ii], counts[ii]));
+            }
+        }
+
+        Collections.sort(result, new Comparator<RouteHits>()
+        {
+            @Override
+            public int compare(RouteHits h1, RouteHits h2)
+            {
+                if (h1.getHits() != h2.getHits())
+                    return (h1.getHits() > h2.getHits()) ? -1 : 1;
+                int cmp = h1.getUrl().compareTo(h2.getUrl());
+                return (cmp != 0) ? cmp : h1.getMethod().compareTo(h2.getMethod());
+            }
+        });
+        return result;
+    }
+
+
+    /**
+     *  Returns the unattributed requests and their counts, highest first (with
+     *  ties ordered by key).
+     */
+    public List<Map.Entry<String,Long>> getUnmatched()
+    {
+        List<Map.Entry<String,Long>> result = new ArrayList<Map.Entry<String,Long>>(unmatched.entrySet());
+        Collections.sort(result, new Comparator<Map.Entry<String,Long>>()
+        {
+            @Override
+            public int compare(Map.Entry<String,Long> e1, Map.Entry<String,Long> e2)
+            {
+                int cmp = e2.getValue().compareTo(e1.getValue());
+                return (cmp != 0) ? cmp : e1.getKey().compareTo(e2.getKey());
+            }
+        });
+        return result;
+    }
+
+
+    /**
+     *  Returns the latency histograms for each handler that had at least one
+     *  timed request, slowest (by 99th percentile) first. Ties are ordered by
+     *  the number of requests, highest first, then by label.
+     */
+    public List<DestinationLatency> getLatencies()
+    {
+        List<DestinationLatency> result = new ArrayList<DestinationLatency>(latencies.values());
+
+        Collections.sort(result, new Comparator<DestinationLatency>()
+        {
+            @Override
+            public int compare(DestinationLatency l1, DestinationLatency l2)
+            {
+                long p1 = l1.getHistogram().getPercentile(99);
+                long p2 = l2.getHistogram().getPercentile(99);
+                if (p1 != p2)
+                    return (p1 > p2) ? -1 : 1;
+                long c1 = l1.getHistogram().getCount();
+                long c2 = l2.getHistogram().getCount();
+                if (c1 != c2)
+                    return (c1 > c2) ? -1 : 1;
+                return l1.getLabel().compareTo(l2.getLabel());
+            }
+        });
+        return result;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private void addUnmatched(String key, long count)
+    {
+        Long existing = unmatched.get(key);
+        if (existing != null)
+            unmatched.put(key, Long.valueOf(existing.longValue() + count));
+        else if (unmatched.size() < maxUnmatchedUrls)
+            unmatched.put(key, Long.valueOf(count));
+    }
+
+
+    /**
+     *  Returns the key used to aggregate latencies for the passed destination.
+     */
+    private static String latencyLabel(Destination dest)
+    {
+        if (! (dest instanceof HandlerDestination))
+            return dest.toString();
+
+        HandlerDestination handler = (HandlerDestination)dest;
+        return (handler.getHandlerMethod() == null)
+             ? handler.getHandlerClass()
+             : handler.getHandlerClass() + "." + handler.getHandlerMethod();
+    }
+
+
+    private DestinationLatency getLatency(String label, Destination dest)
+    {
+        DestinationLatency latency = latencies.get(label);
+        if (latency == null)
+        {
+            latency = new DestinationLatency(label, dest, new LatencyHistogram());
+            latencies.put(label, latency);
+        }
+        return latency;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Supporting classes
+//----------------------------------------------------------------------------
+
+    /**
+     *  The number of hits for a single route and method.
+     */
+    public static class RouteHits
+    {
+        private Match route;
+        private HttpMethod method;
+        private long hits;
+
+        public RouteHits(Match route, HttpMethod method, long hits)
+        {
+            this.route = route;
+            this.method = method;
+            this.hits = hits;
+        }
+
+        public String getUrl()
+        {
+            return route.getUrl();
+        }
+
+        /**
+         *  Returns the method as recorded: a specific method, or "all" for
+         *  requests that used some other method.
+         */
+        public HttpMethod getMethod()
+        {
+            return method;
+        }
+
+        public Destination getDestination()
+        {
+            return route.getDestination(method);
+        }
+
+        public long getHits()
+        {
+            return hits;
+        }
+    }
+
+
+    /**
+     *  The latencies of requests served by a single handler.
+     */
+    public static class DestinationLatency
+    {
+        private String label;
+        private Destination destination;
+        private LatencyHistogram histogram;
+
+        public DestinationLatency(String label, Destination destination, LatencyHistogram histogram)
+        {
+            this.label = label;
+            this.destination = destination;
+            this.histogram = histogram;
+        }
+
+        /**
+         *  Returns the handler class and method (or the destination's string
+         *  value if it isn't a handler).
+         */
+        public String getLabel()
+        {
+            return label;
+        }
+
+        /**
+         *  Returns one of the handler's destinations, for reporting.
+         */
+        public Destination getDestination()
+        {
+            return destination;
+        }
+
+        public LatencyHistogram getHistogram()
+        {
+            return histogram;
+        }
+    }
+}
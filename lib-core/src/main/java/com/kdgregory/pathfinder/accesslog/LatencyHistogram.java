@@ -0,0 +1,155 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.accesslog;
+
+
+/**
+ *  A fixed-size histogram of request latencies, in microseconds, from which we
+ *  can extract approximate percentiles.
+ *  <p>
+ *  Buckets are log-linear: values below 64 have their own bucket, and above that
+ *  each power of two is divided into 32 equal buckets. Reported percentiles are
+ *  the upper bound of their bucket, so are never understated, and are within
+ *  about 3% of the actual value. Values above {@link #MAX_TRACKED_VALUE} (about
+ *  19 hours) share the last bucket; the maximum is always tracked exactly.
+ *  <p>
+ *  Each instance takes the same amount of memory (a little over 8k), no matter
+ *  how many values it records. This class is not thread-safe.
+ */
+public class LatencyHistogram
+{
+    private final static int SUB_BITS = 5;
+    private final static int SUB_COUNT = 1 << SUB_BITS;
+    private final static int LINEAR_LIMIT = SUB_COUNT * 2;
+    private final static int MAX_BITS = 36;
+
+    public final static long MAX_TRACKED_VALUE = (1L << MAX_BITS) - 1;
+
+    private final static int NUM_BUCKETS = bucketIndex(MAX_TRACKED_VALUE) + 1;
+
+    private long[] counts = new long[NUM_BUCKETS];
+    private long count;
+    private long total;
+    private long max;
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Records a single value. Negative values are recorded as 0.
+     */
+    public void record(long micros)
+    {
+        micros = Math.max(0, micros);
+        counts[bucketIndex(Math.min(micros, MAX_TRACKED_VALUE))]++;
+        count++;
+        total += micros;
+        max = Math.max(max, micros);
+    }
+
+
+    /**
+     *  Adds all values recorded by another histogram to this one.
+     */
+    public void merge(LatencyHistogram that)
+    {
+        for (int ii = 0 ; ii < counts.length ; ii++)
+            counts[ii] += that.counts[ii];
+        count += that.count;
+        total += that.total;
+        max = Math.max(max, that.max);
+    }
+
+
+    /**
+     *  Returns the number of recorded values.
+     */
+    public long getCount()
+    {
+        return count;
+    }
+
+
+    /**
+     *  Returns the sum of all recorded values.
+     */
+    public long getTotal()
+    {
+        return total;
+    }
+
+
+    /**
+     *  Returns the largest recorded value (exact), 0 if nothing has been recorded.
+     */
+    public long getMax()
+    {
+        return max;
+    }
+
+
+    /**
+     *  Returns the value at or below which the given percentage (0..100) of values
+     *  fall. This is approximate, as described in the class doc, but never more
+     *  than the maximum. Returns 0 if nothing has been recorded.
+     */
+    public long getPercentile(double percent)
+    {
+        if (count == 0)
+            return 0;
+
+        long rank = (long)Math.ceil(count * Math.min(100.0, Math.max(0.0, percent)) / 100.0);
+        rank = Math.max(1, rank);
+
+        long seen = 0;
+        for (int ii = 0 ; ii < counts.length ; ii++)
+        {
+            seen += counts[ii];
+            // the last bucket holds everything too large to track, so has no bound
+            if (seen >= rank)
+                return (ii < counts.length - 1) ? Math.min(bucketUpperBound(ii), max) : max;
+        }
+        return max;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private static int bucketIndex(long value)
+    {
+        if (value < LINEAR_LIMIT)
+            return (int)value;
+
+        int msb = 63 - Long.numberOfLeadingZeros(value);
+        int shift = msb - SUB_BITS;
+        int sub = (int)(value >>> shift) - SUB_COUNT;
+        return LINEAR_LIMIT + (shift - 1) * SUB_COUNT + sub;
+    }
+
+
+    private static long bucketUpperBound(int index)
+    {
+        if (index < LINEAR_LIMIT)
+            return index;
+
+        int shift = (index - LINEAR_LIMIT) / SUB_COUNT + 1;
+        long sub = (index - LINEAR_LIMIT) % SUB_COUNT + SUB_COUNT;
+        return ((sub + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,32 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.core;
+
+
+/**
+ *  A destination that's reached through a dispatching servlet (such as Spring's
+ *  DispatcherServlet): the app server picks the servlet using its mapping in
+ *  <code>web.xml</code>, and the servlet then picks the destination. Knowing
+ *  that mapping lets a route matcher apply the app server's rules first.
+ */
+public interface DispatchedDestination
+extends Destination
+{
+    /**
+     *  Returns the URL pattern of the servlet mapping that passes requests to
+     *  the dispatcher (eg, <code>/servlet/*</code>), or null if it isn't known.
+     */
+    public String getServletPattern();
+}
@@ -0,0 +1,45 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.core;
+
+import java.util.Map;
+
+
+/**
+ *  A destination that's implemented by Java code (as opposed to a JSP or
+ *  static file), which can identify the class and (optionally) method that
+ *  handles the request.
+ */
+public interface HandlerDestination
+extends Destination
+{
+    /**
+     *  Returns the fully-qualified name of the handler class.
+     */
+    public String getHandlerClass();
+
+    /**
+     *  Returns the name of the method that handles the request, or null if
+     *  the class itself decides (eg, a servlet or Spring 2.x controller).
+     */
+    public String getHandlerMethod();
+
+    /**
+     *  Returns the request parameters explicitly declared by the handler, as a
+     *  map from parameter name to Java type. Empty if there aren't any (or if
+     *  the handler doesn't declare them).
+     */
+    public Map<String,String> getHandlerParams();
+}
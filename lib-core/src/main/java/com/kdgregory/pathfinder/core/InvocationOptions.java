@@ -163,6 +163,27 @@ public enum InvocationOptions
     }
 
 
+    /**
+     *  Returns the value of a "--name=value" argument, <code>null</code> if the
+     *  argument isn't present. The passed name should include the leading dashes
+     *  but not the equals sign. If the argument is repeated, the last one wins.
+     *  <p>
+     *  These arguments are not represented by this enum (which is limited to
+     *  boolean options), but like them are removed by {@link #removeInvocationArguments}.
+     */
+    public static String getArgumentValue(String name, String... argv)
+    {
+        String prefix = name + "=";
+        String result = null;
+        for (String arg : argv)
+        {
+            if (arg.startsWith(prefix))
+                result = arg.substring(prefix.length());
+        }
+        return result;
+    }
+
+
     /**
      *  Extract all options from the command-line arguments. Missing arguments
      *  will be filled with their default values.
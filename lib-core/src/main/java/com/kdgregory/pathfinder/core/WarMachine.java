@@ -19,6 +19,7 @@ import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedSet;
 
 import org.w3c.dom.Document;
 
@@ -26,6 +27,8 @@ import org.apache.bcel.classfile.JavaClass;
 
 import net.sf.practicalxml.xpath.XPathWrapper;
 
+import com.kdgregory.pathfinder.util.ClassHeader;
+
 
 /**
  *  Extracts information from the WAR, for use by {@link Inspector}s.
@@ -83,6 +86,14 @@ public interface WarMachine
     public List<String> getPrivateFiles();
 
 
+    /**
+     *  Returns the entries in the WAR whose names start with the passed prefix,
+     *  in lexical order. As with {@link #getAllFiles}, names (and the prefix)
+     *  have a leading slash.
+     */
+    public SortedSet<String> getFilesWithPrefix(String prefix);
+
+
     /**
      *  Returns a list of all files on the classpath: those under WEB-INF/classes
      *  and those contained in JARfiles. Note that the return is a Set; if there
@@ -92,6 +103,24 @@ public interface WarMachine
     public Set<String> getFilesOnClasspath();
 
 
+    /**
+     *  Returns the files on the classpath whose names start with the passed prefix,
+     *  in lexical order. As with {@link #getFilesOnClasspath}, names (and the prefix)
+     *  do not have a leading slash.
+     */
+    public SortedSet<String> getClasspathFilesWithPrefix(String prefix);
+
+
+    /**
+     *  Passes every file on the classpath to the provided visitor. Where there are
+     *  multiple files with the same name, only the one that would be returned by
+     *  {@link #openClasspathFile} is visited. Files are visited in an unspecified
+     *  order, but each JAR is read only once, so this is far cheaper than opening
+     *  every file individually.
+     */
+    public void scanClasspath(ClasspathVisitor visitor);
+
+
     /**
      *  Searches the classpath for classes in a given package, optionally recursing
      *  into descendent packages.
@@ -123,11 +152,54 @@ public interface WarMachine
     public JavaClass loadClass(String classname);
 
 
+    /**
+     *  Returns the header of the named class, <code>null</code> if the class
+     *  isn't on the classpath or can't be read. This is much cheaper than
+     *  {@link #loadClass}, and is sufficient to answer questions about the
+     *  type hierarchy and the annotation types that a class references.
+     *  <p>
+     *  The returned header may be a {@link ClassHeader#summarize summary}.
+     */
+    public ClassHeader getClassHeader(String classname);
+
+
+    /**
+     *  Returns the classnames of the annotations on the named class (but not on
+     *  its members) if they're known without loading the class, <code>null</code>
+     *  if not. Callers can use this to avoid loading classes that are of no
+     *  interest; when it returns <code>null</code>, they must load the class.
+     *  <p>
+     *  An implementation may remember annotations from an earlier analysis of
+     *  the same (unchanged) class; it is not required to remember anything.
+     */
+    public Set<String> getKnownClassAnnotations(String classname);
+
+
 
 //----------------------------------------------------------------------------
 //  Supporting Objects
 //----------------------------------------------------------------------------
 
+    /**
+     *  Receives files from {@link #scanClasspath}.
+     */
+    public interface ClasspathVisitor
+    {
+        /**
+         *  Called for a single file. The stream is positioned at the start of the
+         *  file's content, and is only valid for the duration of the call; the
+         *  visitor may read as much or as little of it as desired, and closing it
+         *  has no effect. Exceptions are logged, and do not stop the scan.
+         *
+         *  @param  filename    The name of the file, relative to the classpath
+         *                      root (as with {@link #getFilesOnClasspath}).
+         *  @param  in          The file's content.
+         */
+        public void visit(String filename, InputStream in)
+        throws IOException;
+    }
+
+
     /**
      *  Servlet mappings are parsed into objects that implement this interface.
      *  Method names are simple translations of the corresponding element name.
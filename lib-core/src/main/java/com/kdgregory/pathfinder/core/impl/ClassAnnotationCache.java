@@ -0,0 +1,223 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.core.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.sf.kdgcommons.io.IOUtil;
+
+
+/**
+ *  Remembers the class-level annotations of the classes in a WAR's
+ *  <code>WEB-INF/classes</code>, so that a later analysis of a rebuilt WAR
+ *  only has to parse the classes that changed.
+ *  <p>
+ *  Classes are identified by their filename and the CRC recorded in the WAR's
+ *  directory, so an entry can be validated without reading the class. For an
+ *  exploded WAR, which has no directory, a value derived from the file's size
+ *  and modification time takes the place of the CRC. Most of
+ *  the classes in an application are neither controllers nor components, and
+ *  their annotations are enough to exclude them from component scans and from
+ *  controller lookup. {@link WarMachineImpl} records a class' annotations when
+ *  it loads the class, and reports them from <code>getKnownClassAnnotations()</code>.
+ *  <p>
+ *  The cache is loaded from, and saved to, a file. Only the entries that were
+ *  used or added since the cache was loaded are saved, so the file tracks the
+ *  previous run rather than growing without bound.
+ *  <p>
+ *  Instances are thread-safe.
+ */
+public class ClassAnnotationCache
+{
+    private final static int MAGIC = 0x50464341;    // "PFCA"
+    private final static int VERSION = 1;
+
+    private ConcurrentMap<String,Set<String>> previous = new ConcurrentHashMap<String,Set<String>>();
+    private ConcurrentMap<String,Set<String>> current = new ConcurrentHashMap<String,Set<String>>();
+    private AtomicLong hits = new AtomicLong();
+    private AtomicLong misses = new AtomicLong();
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns the annotation classnames for a class, null if the class (with
+     *  the given CRC) isn't in the cache. The returned set is unmodifiable.
+     *
+     *  @param  filename    The classfile's name, relative to the classpath root.
+     *  @param  crc         The classfile's CRC.
+     */
+    public Set<String> get(String filename, long crc)
+    {
+        String key = key(filename, crc);
+        Set<String> result = current.get(key);
+        if (result == null)
+        {
+            result = previous.get(key);
+            if (result != null)
+                current.putIfAbsent(key, result);
+        }
+
+        if (result != null)
+            hits.incrementAndGet();
+        else
+            misses.incrementAndGet();
+        return result;
+    }
+
+
+    /**
+     *  Stores the annotation classnames for a class.
+     */
+    public void put(String filename, long crc, Set<String> annotations)
+    {
+        current.put(key(filename, crc), Collections.unmodifiableSet(new TreeSet<String>(annotations)));
+    }
+
+
+    /**
+     *  Returns the number of entries that will be saved.
+     */
+    public int size()
+    {
+        return current.size();
+    }
+
+
+    /**
+     *  Returns the number of lookups that found a cached entry.
+     */
+    public long getHitCount()
+    {
+        return hits.get();
+    }
+
+
+    /**
+     *  Returns the number of lookups that did not find a cached entry.
+     */
+    public long getMissCount()
+    {
+        return misses.get();
+    }
+
+
+//----------------------------------------------------------------------------
+//  Persistence
+//----------------------------------------------------------------------------
+
+    /**
+     *  Writes the entries used or added by the current run to the passed file,
+     *  replacing anything that's already there.
+     */
+    public void save(File file)
+    throws IOException
+    {
+        DataOutputStream out = null;
+        try
+        {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 65536));
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+
+            Map<String,Set<String>> entries = new HashMap<String,Set<String>>(current);
+            out.writeInt(entries.size());
+            for (Map.Entry<String,Set<String>> entry : entries.entrySet())
+            {
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue().size());
+                for (String annotation : entry.getValue())
+                    out.writeUTF(annotation);
+            }
+            out.close();
+            out = null;
+        }
+        finally
+        {
+            IOUtil.closeQuietly(out);
+        }
+    }
+
+
+    /**
+     *  Creates a cache from a file written by {@link #save}.
+     *
+     *  @throws IOException if unable to read the file, or it isn't a complete
+     *          cache file.
+     */
+    public static ClassAnnotationCache load(File file)
+    throws IOException
+    {
+        ClassAnnotationCache cache = new ClassAnnotationCache();
+        DataInputStream in = null;
+        try
+        {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 65536));
+            if (in.readInt() != MAGIC)
+                throw new IOException("not a PathFinder class annotation cache: " + file);
+            int version = in.readUnsignedShort();
+            if (version != VERSION)
+                throw new IOException("unsupported class annotation cache version: " + version);
+
+            int count = in.readInt();
+            for (int ii = 0 ; ii < count ; ii++)
+            {
+                String key = in.readUTF();
+                int annoCount = in.readInt();
+                Set<String> annotations = new TreeSet<String>();
+                for (int jj = 0 ; jj < annoCount ; jj++)
+                    annotations.add(in.readUTF());
+                cache.previous.put(key, Collections.unmodifiableSet(annotations));
+            }
+            return cache;
+        }
+        catch (EOFException ex)
+        {
+            throw new IOException("truncated class annotation cache: " + file);
+        }
+        finally
+        {
+            IOUtil.closeQuietly(in);
+        }
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private static String key(String filename, long crc)
+    {
+        return filename + ":" + Long.toHexString(crc);
+    }
+}
@@ -0,0 +1,385 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.core.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import com.kdgregory.pathfinder.core.Destination;
+import com.kdgregory.pathfinder.core.HandlerDestination;
+import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.core.PathRepo;
+
+
+/**
+ *  A {@link PathRepo} that maintains secondary indexes, so that it can answer
+ *  questions such as "which URLs are handled by this class?" or "what's under
+ *  <code>/api</code>?" without examining every URL. The cost of a query is
+ *  proportional to the size of its result.
+ *  <p>
+ *  This is a decorator: storage is handled by a delegate repository, and each
+ *  update re-indexes the affected URL from the delegate's (updated) contents.
+ *  Class and method indexes only contain destinations that implement {@link
+ *  HandlerDestination}. Methods are indexed both by name alone (so that, for
+ *  example, all <code>list</code> methods can be found regardless of class)
+ *  and qualified by their class.
+ *  <p>
+ *  This class is not intended for use by concurrent threads (even if the
+ *  delegate is), and the delegate must not be updated except through this
+ *  object.
+ */
+public class IndexedPathRepo
+implements PathRepo
+{
+    private PathRepo delegate;
+
+    // the mappings for each URL, so that they can be removed from the other
+    // indexes; sorted so that its keys also serve as the URL prefix index
+    private NavigableMap<String,List<Mapping>> mappingsByUrl = new TreeMap<String,List<Mapping>>();
+
+    private Map<String,NavigableSet<Mapping>> byHandlerClass = new HashMap<String,NavigableSet<Mapping>>();
+    private Map<String,NavigableSet<Mapping>> byHandlerMethod = new HashMap<String,NavigableSet<Mapping>>();
+    private Map<String,NavigableSet<Mapping>> byHandlerMethodName = new HashMap<String,NavigableSet<Mapping>>();
+    private Map<HttpMethod,NavigableSet<Mapping>> byHttpMethod
+            = new EnumMap<HttpMethod,NavigableSet<Mapping>>(HttpMethod.class);
+
+
+    /**
+     *  Creates an instance that stores its mappings in a {@link PathRepoImpl}.
+     */
+    public IndexedPathRepo()
+    {
+        this(new PathRepoImpl());
+    }
+
+
+    /**
+     *  Creates an instance that decorates the passed repository, indexing its
+     *  existing contents.
+     */
+    public IndexedPathRepo(PathRepo delegate)
+    {
+        this.delegate = delegate;
+
+        // copy the URLs first, in case the delegate doesn't like being read
+        // during iteration
+        List<String> existing = new ArrayList<String>(delegate.urlCount());
+        for (String url : delegate)
+            existing.add(url);
+        for (String url : existing)
+            reindex(url);
+    }
+
+
+//----------------------------------------------------------------------------
+//  PathRepo
+//----------------------------------------------------------------------------
+
+    @Override
+    public int urlCount()
+    {
+        return delegate.urlCount();
+    }
+
+
+    @Override
+    public void put(String url, Destination dest)
+    {
+        delegate.put(url, dest);
+        reindex(url);
+    }
+
+
+    @Override
+    public void put(String url, HttpMethod method, Destination dest)
+    {
+        delegate.put(url, method, dest);
+        reindex(url);
+    }
+
+
+    @Override
+    public void put(String url, Map<HttpMethod,Destination> destMap)
+    {
+        delegate.put(url, destMap);
+        reindex(url);
+    }
+
+
+    @Override
+    public Destination get(String url, HttpMethod method)
+    {
+        return delegate.get(url, method);
+    }
+
+
+    @Override
+    public Map<HttpMethod,Destination> get(String url)
+    {
+        return delegate.get(url);
+    }
+
+
+    @Override
+    public void remove(String url, HttpMethod method)
+    {
+        delegate.remove(url, method);
+        reindex(url);
+    }
+
+
+    @Override
+    public Iterator<String> iterator()
+    {
+        return delegate.iterator();
+    }
+
+
+//----------------------------------------------------------------------------
+//  Queries
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns all mappings whose destination is handled by the named class,
+     *  ordered by URL and method.
+     */
+    public List<Mapping> findByHandlerClass(String className)
+    {
+        return toList(byHandlerClass.get(className));
+    }
+
+
+    /**
+     *  Returns all mappings whose destination is handled by a method with the
+     *  passed name, in any class, ordered by URL and method.
+     */
+    public List<Mapping> findByHandlerMethod(String methodName)
+    {
+        return toList(byHandlerMethodName.get(methodName));
+    }
+
+
+    /**
+     *  Returns all mappings whose destination is handled by the named method
+     *  of the named class, ordered by URL and method.
+     */
+    public List<Mapping> findByHandlerMethod(String className, String methodName)
+    {
+        return toList(byHandlerMethod.get(methodKey(className, methodName)));
+    }
+
+
+    /**
+     *  Returns all mappings that were stored for the specified method, ordered
+     *  by URL. Note that this is the stored method: <code>GET</code> does not
+     *  return mappings stored for {@link HttpMethod#ALL}.
+     */
+    public List<Mapping> findByHttpMethod(HttpMethod method)
+    {
+        return toList(byHttpMethod.get(method));
+    }
+
+
+    /**
+     *  Returns the URLs that start with the passed string, in order. This is an
+     *  unmodifiable view, which reflects subsequent updates to the repository.
+     */
+    public SortedSet<String> findByUrlPrefix(String prefix)
+    {
+        NavigableSet<String> urls = mappingsByUrl.navigableKeySet();
+        if (prefix.length() == 0)
+            return Collections.unmodifiableSortedSet(urls);
+
+        char last = prefix.charAt(prefix.length() - 1);
+        SortedSet<String> result = (last == Character.MAX_VALUE)
+                                 ? urls.tailSet(prefix, true)
+                                 : urls.subSet(prefix, true, prefix.substring(0, prefix.length() - 1) + (char)(last + 1), false);
+        return Collections.unmodifiableSortedSet(result);
+    }
+
+
+//----------------------------------------------------------------------------
+//  Other Public Methods
+//----------------------------------------------------------------------------
+
+    @Override
+    public String toString()
+    {
+        return delegate.toString();
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private static String methodKey(String className, String methodName)
+    {
+        return className + "." + methodName;
+    }
+
+
+    private static List<Mapping> toList(NavigableSet<Mapping> mappings)
+    {
+        if (mappings == null)
+            return Collections.emptyList();
+        return Collections.unmodifiableList(new ArrayList<Mapping>(mappings));
+    }
+
+
+    /**
+     *  Replaces the index entries for a URL with its current mappings.
+     */
+    private void reindex(String url)
+    {
+        List<Mapping> old = mappingsByUrl.remove(url);
+        if (old != null)
+        {
+            for (Mapping mapping : old)
+                index(mapping, false);
+        }
+
+        Map<HttpMethod,Destination> destMap = delegate.get(url);
+        if (destMap.isEmpty())
+            return;
+
+        List<Mapping> current = new ArrayList<Mapping>(destMap.size());
+        for (Map.Entry<HttpMethod,Destination> entry : destMap.entrySet())
+        {
+            Mapping mapping = new Mapping(url, entry.getKey(), entry.getValue());
+            current.add(mapping);
+            index(mapping, true);
+        }
+        mappingsByUrl.put(url, current);
+    }
+
+
+    private void index(Mapping mapping, boolean add)
+    {
+        update(byHttpMethod, mapping.getMethod(), mapping, add);
+
+        if (! (mapping.getDestination() instanceof HandlerDestination))
+            return;
+
+        HandlerDestination dest = (HandlerDestination)mapping.getDestination();
+        String className = dest.getHandlerClass();
+        if (className == null)
+            return;
+
+        update(byHandlerClass, className, mapping, add);
+        if (dest.getHandlerMethod() != null)
+        {
+            update(byHandlerMethod, methodKey(className, dest.getHandlerMethod()), mapping, add);
+            update(byHandlerMethodName, dest.getHandlerMethod(), mapping, add);
+        }
+    }
+
+
+    private static <K> void update(Map<K,NavigableSet<Mapping>> index, K key, Mapping mapping, boolean add)
+    {
+        NavigableSet<Mapping> mappings = index.get(key);
+        if (add)
+        {
+            if (mappings == null)
+            {
+                mappings = new TreeSet<Mapping>();
+                index.put(key, mappings);
+            }
+            mappings.add(mapping);
+        }
+        else if (mappings != null)
+        {
+            mappings.remove(mapping);
+            if (mappings.isEmpty())
+                index.remove(key);
+        }
+    }
+
+
+//----------------------------------------------------------------------------
+//  Supporting classes
+//----------------------------------------------------------------------------
+
+    /**
+     *  A single URL/method/destination tuple, as returned from the queries.
+     *  These are ordered (and considered equal) by URL and method.
+     */
+    public static class Mapping
+    implements Comparable<Mapping>
+    {
+        private String url;
+        private HttpMethod method;
+        private Destination destination;
+
+        public Mapping(String url, HttpMethod method, Destination destination)
+        {
+            this.url = url;
+            this.method = method;
+            this.destination = destination;
+        }
+
+        public String getUrl()
+        {
+            return url;
+        }
+
+        public HttpMethod getMethod()
+        {
+            return method;
+        }
+
+        public Destination getDestination()
+        {
+            return destination;
+        }
+
+        @Override
+        public int compareTo(Mapping that)
+        {
+            int cmp = this.url.compareTo(that.url);
+            return (cmp != 0) ? cmp : this.method.compareTo(that.method);
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (! (obj instanceof Mapping))
+                return false;
+            return compareTo((Mapping)obj) == 0;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return url.hashCode() * 31 + method.hashCode();
+        }
+
+        @Override
+        public String toString()
+        {
+            return method + " " + url + " " + destination;
+        }
+    }
+}
@@ -0,0 +1,284 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.core.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.sf.kdgcommons.io.IOUtil;
+
+import com.kdgregory.pathfinder.util.ClassHeader;
+
+
+/**
+ *  Holds information extracted from the library JARs in <code>WEB-INF/lib</code>,
+ *  so that it can be shared between {@link WarMachineImpl} instances that are
+ *  analyzing different WARs containing the same libraries.
+ *  <p>
+ *  Libraries are identified by content: their uncompressed size and CRC, both of
+ *  which are taken from the WAR's directory (so don't require reading the JAR).
+ *  The filename is not part of the key, so the same library is recognized even
+ *  if one WAR calls it <code>spring-web-3.1.jar</code> and another calls it
+ *  <code>spring-web.jar</code>. For each library, the cache holds:
+ *  <ul>
+ *  <li> The names of the entries in the JAR, which otherwise requires reading
+ *       (and decompressing) the entire JAR.
+ *  <li> The {@link ClassHeader#summarize summarized} headers of its classes,
+ *       which give the type hierarchy and the annotation types referenced by
+ *       each class.
+ *  </ul>
+ *  Information for a library is only added once it's been completely read, and
+ *  is never modified afterward.
+ *  <p>
+ *  A cache may be saved to disk and reloaded by a later run. The file is simply
+ *  a dump of the cache contents; there's no need to invalidate entries, because
+ *  a changed library has a different key.
+ *  <p>
+ *  Instances are thread-safe, and grow without bound; they're intended to live
+ *  for the length of a batch run.
+ */
+public class LibraryCache
+{
+    private final static int MAGIC = 0x50464C43;    // "PFLC"
+    private final static int VERSION = 1;
+
+    private ConcurrentMap<String,List<String>> entryListings = new ConcurrentHashMap<String,List<String>>();
+    private ConcurrentMap<String,Map<String,ClassHeader>> classHeaders = new ConcurrentHashMap<String,Map<String,ClassHeader>>();
+    private AtomicLong hits = new AtomicLong();
+    private AtomicLong misses = new AtomicLong();
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns the cached entry names for a library, null if they haven't been
+     *  cached. The returned list is unmodifiable.
+     *
+     *  @param  size    The library's uncompressed size.
+     *  @param  crc     The library's CRC.
+     */
+    public List<String> getEntryListing(long size, long crc)
+    {
+        return count(entryListings.get(key(size, crc)));
+    }
+
+
+    /**
+     *  Stores the entry names for a library. If another thread has already
+     *  stored them, that list is retained.
+     */
+    public void putEntryListing(long size, long crc, List<String> entries)
+    {
+        entryListings.putIfAbsent(key(size, crc), Collections.unmodifiableList(entries));
+    }
+
+
+    /**
+     *  Returns the cached class headers for a library, keyed by the classfile's
+     *  name within the JAR, null if they haven't been cached. The returned map
+     *  is unmodifiable.
+     */
+    public Map<String,ClassHeader> getClassHeaders(long size, long crc)
+    {
+        return count(classHeaders.get(key(size, crc)));
+    }
+
+
+    /**
+     *  Stores the class headers for a library. Callers should store summaries,
+     *  not full headers. If another thread has already stored headers for the
+     *  library, that map is retained.
+     */
+    public void putClassHeaders(long size, long crc, Map<String,ClassHeader> headers)
+    {
+        classHeaders.putIfAbsent(key(size, crc), Collections.unmodifiableMap(headers));
+    }
+
+
+    /**
+     *  Returns the number of distinct libraries in the cache.
+     */
+    public int size()
+    {
+        Set<String> keys = new HashSet<String>(entryListings.keySet());
+        keys.addAll(classHeaders.keySet());
+        return keys.size();
+    }
+
+
+    /**
+     *  Returns the number of lookups that found a cached entry.
+     */
+    public long getHitCount()
+    {
+        return hits.get();
+    }
+
+
+    /**
+     *  Returns the number of lookups that did not find a cached entry.
+     */
+    public long getMissCount()
+    {
+        return misses.get();
+    }
+
+
+//----------------------------------------------------------------------------
+//  Persistence
+//----------------------------------------------------------------------------
+
+    /**
+     *  Writes the contents of this cache to the passed file, replacing anything
+     *  that's already there.
+     */
+    public void save(File file)
+    throws IOException
+    {
+        DataOutputStream out = null;
+        try
+        {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 65536));
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+
+            // a snapshot of the maps, in case another thread is adding to them
+            Map<String,List<String>> listings = new HashMap<String,List<String>>(entryListings);
+            out.writeInt(listings.size());
+            for (Map.Entry<String,List<String>> entry : listings.entrySet())
+            {
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue().size());
+                for (String name : entry.getValue())
+                    out.writeUTF(name);
+            }
+
+            Map<String,Map<String,ClassHeader>> headers = new HashMap<String,Map<String,ClassHeader>>(classHeaders);
+            out.writeInt(headers.size());
+            for (Map.Entry<String,Map<String,ClassHeader>> entry : headers.entrySet())
+            {
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue().size());
+                for (Map.Entry<String,ClassHeader> header : entry.getValue().entrySet())
+                {
+                    out.writeUTF(header.getKey());
+                    header.getValue().writeTo(out);
+                }
+            }
+            out.close();
+            out = null;
+        }
+        finally
+        {
+            IOUtil.closeQuietly(out);
+        }
+    }
+
+
+    /**
+     *  Creates a cache from a file written by {@link #save}.
+     *
+     *  @throws IOException if unable to read the file, or it isn't a complete
+     *          cache file.
+     */
+    public static LibraryCache load(File file)
+    throws IOException
+    {
+        LibraryCache cache = new LibraryCache();
+        DataInputStream in = null;
+        try
+        {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 65536));
+            if (in.readInt() != MAGIC)
+                throw new IOException("not a PathFinder library cache: " + file);
+            int version = in.readUnsignedShort();
+            if (version != VERSION)
+                throw new IOException("unsupported library cache version: " + version);
+
+            int listingCount = in.readInt();
+            for (int ii = 0 ; ii < listingCount ; ii++)
+            {
+                String key = in.readUTF();
+                int entryCount = in.readInt();
+                List<String> entries = new ArrayList<String>(entryCount);
+                for (int jj = 0 ; jj < entryCount ; jj++)
+                    entries.add(in.readUTF());
+                cache.entryListings.put(key, Collections.unmodifiableList(entries));
+            }
+
+            int libraryCount = in.readInt();
+            for (int ii = 0 ; ii < libraryCount ; ii++)
+            {
+                String key = in.readUTF();
+                int headerCount = in.readInt();
+                Map<String,ClassHeader> headers = new HashMap<String,ClassHeader>();
+                for (int jj = 0 ; jj < headerCount ; jj++)
+                {
+                    String name = in.readUTF();
+                    headers.put(name, ClassHeader.readFrom(in));
+                }
+                cache.classHeaders.put(key, Collections.unmodifiableMap(headers));
+            }
+            return cache;
+        }
+        catch (EOFException ex)
+        {
+            throw new IOException("truncated library cache: " + file);
+        }
+        finally
+        {
+            IOUtil.closeQuietly(in);
+        }
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private static String key(long size, long crc)
+    {
+        return size + ":" + Long.toHexString(crc);
+    }
+
+
+    private <T> T count(T value)
+    {
+        if (value != null)
+            hits.incrementAndGet();
+        else
+            misses.incrementAndGet();
+        return value;
+    }
+}
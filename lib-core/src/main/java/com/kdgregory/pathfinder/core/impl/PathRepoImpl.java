@@ -14,13 +14,14 @@
 
 package com.kdgregory.pathfinder.core.impl;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.SortedMap;
-import java.util.TreeMap;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 import com.kdgregory.pathfinder.core.Destination;
 import com.kdgregory.pathfinder.core.HttpMethod;
@@ -36,13 +37,18 @@ import com.kdgregory.pathfinder.core.PathRepo;
  *  are allowed (and expected) to completely replace the destinations that belong
  *  to a particular URL. Both maps are sorted, to result in consisted output.
  *  <p>
+ *  Since a WAR may contain hundreds of thousands of static files, storage is
+ *  compact: the outer map is a {@link PrefixTree}, so that URLs in the same
+ *  directory share their common prefix, and the inner map is an array with a
+ *  slot for each method, which serves as its own (read-only) map view.
+ *  <p>
  *  This class is not intended for use by concurrent threads.
  */
 public class PathRepoImpl
 implements PathRepo
 {
-    private SortedMap<String,SortedMap<HttpMethod,Destination>> urlMap
-            = new TreeMap<String,SortedMap<HttpMethod,Destination>>();
+    private PrefixTree<DestinationSlots> urlMap = new PrefixTree<DestinationSlots>();
+    private int activeUrls;
 
 
 //----------------------------------------------------------------------------
@@ -52,82 +58,103 @@ implements PathRepo
     @Override
     public void put(String url, Destination dest)
     {
-        getOrCreateDestMap(url).clear();
-        put(url, HttpMethod.ALL, dest);
+        DestinationSlots slots = getOrCreateSlots(url);
+        boolean wasActive = slots.isActive();
+        slots.clearAll();
+        slots.set(HttpMethod.ALL, dest);
+        updateActiveCount(wasActive, slots);
     }
 
 
     @Override
     public void put(String url, HttpMethod method, Destination dest)
     {
-        SortedMap<HttpMethod,Destination> destMap = getOrCreateDestMap(url);
-        destMap.put(method, dest);
+        DestinationSlots slots = getOrCreateSlots(url);
+        boolean wasActive = slots.isActive();
+        slots.set(method, dest);
+        updateActiveCount(wasActive, slots);
     }
 
 
     @Override
     public void put(String url, Map<HttpMethod,Destination> destMap)
     {
-        SortedMap<HttpMethod,Destination> internal = getOrCreateDestMap(url);
-        internal.clear();
-        internal.putAll(destMap);
+        DestinationSlots slots = getOrCreateSlots(url);
+        boolean wasActive = slots.isActive();
+        slots.clearAll();
+        for (Map.Entry<HttpMethod,Destination> entry : destMap.entrySet())
+        {
+            slots.set(entry.getKey(), entry.getValue());
+        }
+        updateActiveCount(wasActive, slots);
     }
 
 
     @Override
     public Destination get(String url, HttpMethod method)
     {
-        SortedMap<HttpMethod,Destination> destMap = getOrCreateDestMap(url);
-        Destination dest = destMap.get(method);
+        DestinationSlots slots = urlMap.get(url);
+        if (slots == null)
+            return null;
+
+        Destination dest = slots.get(method);
         if (dest != null)
             return dest;
 
-        return destMap.get(HttpMethod.ALL);
+        return slots.get(HttpMethod.ALL);
     }
 
 
     @Override
     public Map<HttpMethod,Destination> get(String url)
     {
-        return Collections.unmodifiableMap(getOrCreateDestMap(url));
+        // the slots are a live, unmodifiable view, so we have to create them
+        // even if the URL doesn't have any destinations (yet)
+        return getOrCreateSlots(url);
     }
 
 
     @Override
     public void remove(String url, HttpMethod method)
     {
-        Map<HttpMethod,Destination> destMap = urlMap.get(url);
-        if (destMap == null)
+        DestinationSlots slots = urlMap.get(url);
+        if (slots == null)
             return;
 
+        boolean wasActive = slots.isActive();
         if (method.equals(HttpMethod.ALL))
         {
-            destMap.clear();
-            return;
+            slots.clearAll();
         }
-
-        if (destMap.containsKey(HttpMethod.ALL))
+        else
         {
-            Destination dest = destMap.remove(HttpMethod.ALL);
-            destMap.put(HttpMethod.GET, dest);
-            destMap.put(HttpMethod.POST, dest);
-            destMap.put(HttpMethod.PUT, dest);
-            destMap.put(HttpMethod.DELETE, dest);
+            Destination dest = slots.set(HttpMethod.ALL, null);
+            if (dest != null)
+            {
+                slots.set(HttpMethod.GET, dest);
+                slots.set(HttpMethod.POST, dest);
+                slots.set(HttpMethod.PUT, dest);
+                slots.set(HttpMethod.DELETE, dest);
+            }
+            slots.set(method, null);
         }
-
-        destMap.remove(method);
+        updateActiveCount(wasActive, slots);
     }
 
 
     @Override
     public Iterator<String> iterator()
     {
-        List<String> urls = new ArrayList<String>(urlMap.size());
-        for (Map.Entry<String,SortedMap<HttpMethod,Destination>> entry : urlMap.entrySet())
+        final List<String> urls = new ArrayList<String>(activeUrls);
+        urlMap.visit(new PrefixTree.Visitor<DestinationSlots>()
         {
-            if (entry.getValue().size() > 0)
-                urls.add(entry.getKey());
-        }
+            @Override
+            public void visit(String url, DestinationSlots slots)
+            {
+                if (slots.isActive())
+                    urls.add(url);
+            }
+        });
         return urls.iterator();
     }
 
@@ -135,13 +162,7 @@ implements PathRepo
     @Override
     public int urlCount()
     {
-        int count = 0;
-        for (Map.Entry<String,SortedMap<HttpMethod,Destination>> entry : urlMap.entrySet())
-        {
-            count += (entry.getValue().size() > 0) ? 1 : 0;
-        }
-
-        return count;
+        return activeUrls;
     }
 
 
@@ -152,14 +173,18 @@ implements PathRepo
     @Override
     public String toString()
     {
-        StringBuilder sb = new StringBuilder(64 * urlMap.size());
+        final StringBuilder sb = new StringBuilder(64 * urlMap.size());
         sb.append("[");
-        for (String url : urlMap.keySet())
+        urlMap.visit(new PrefixTree.Visitor<DestinationSlots>()
         {
-            if (sb.length() > 1)
-                sb.append(",");
-            sb.append(url);
-        }
+            @Override
+            public void visit(String url, DestinationSlots slots)
+            {
+                if (sb.length() > 1)
+                    sb.append(",");
+                sb.append(url);
+            }
+        });
         sb.append("]");
         return sb.toString();
     }
@@ -169,14 +194,144 @@ implements PathRepo
 //  Private methods
 //----------------------------------------------------------------------------
 
-    private SortedMap<HttpMethod,Destination> getOrCreateDestMap(String url)
+    private DestinationSlots getOrCreateSlots(String url)
     {
-        SortedMap<HttpMethod,Destination> destMap = urlMap.get(url);
-        if (destMap == null)
+        DestinationSlots slots = urlMap.get(url);
+        if (slots == null)
+        {
+            slots = new DestinationSlots();
+            urlMap.put(url, slots);
+        }
+        return slots;
+    }
+
+
+    private void updateActiveCount(boolean wasActive, DestinationSlots slots)
+    {
+        if (wasActive && ! slots.isActive())
+            activeUrls--;
+        else if (! wasActive && slots.isActive())
+            activeUrls++;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Supporting classes
+//----------------------------------------------------------------------------
+
+    /**
+     *  The destinations for a single URL, indexed by method ordinal. This is
+     *  also an unmodifiable map (iterated in method order) that reflects any
+     *  changes made by the repository.
+     */
+    private static class DestinationSlots
+    extends AbstractMap<HttpMethod,Destination>
+    {
+        private final static HttpMethod[] METHODS = HttpMethod.values();
+
+        private Destination[] slots = new Destination[METHODS.length];
+
+        public boolean isActive()
+        {
+            for (Destination dest : slots)
+            {
+                if (dest != null)
+                    return true;
+            }
+            return false;
+        }
+
+        /**
+         *  Updates a slot, returning its previous value. Not part of the map API,
+         *  which is read-only.
+         */
+        public Destination set(HttpMethod method, Destination dest)
+        {
+            Destination prev = slots[method.ordinal()];
+            slots[method.ordinal()] = dest;
+            return prev;
+        }
+
+        /**
+         *  Empties all slots. Like {@link #set}, not part of the map API.
+         */
+        public void clearAll()
+        {
+            for (int ii = 0 ; ii < slots.length ; ii++)
+                slots[ii] = null;
+        }
+
+        @Override
+        public Destination get(Object key)
+        {
+            return (key instanceof HttpMethod)
+                 ? slots[((HttpMethod)key).ordinal()]
+                 : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key)
+        {
+            return get(key) != null;
+        }
+
+        @Override
+        public Set<Map.Entry<HttpMethod,Destination>> entrySet()
+        {
+            return new AbstractSet<Map.Entry<HttpMethod,Destination>>()
+            {
+                @Override
+                public int size()
+                {
+                    int count = 0;
+                    for (Destination dest : slots)
+                        count += (dest != null) ? 1 : 0;
+                    return count;
+                }
+
+                @Override
+                public Iterator<Map.Entry<HttpMethod,Destination>> iterator()
+                {
+                    return new SlotIterator();
+                }
+            };
+        }
+
+        private class SlotIterator
+        implements Iterator<Map.Entry<HttpMethod,Destination>>
         {
-            destMap = new TreeMap<HttpMethod,Destination>();
-            urlMap.put(url, destMap);
+            private int next = advance(0);
+
+            @Override
+            public boolean hasNext()
+            {
+                return next < slots.length;
+            }
+
+            @Override
+            public Map.Entry<HttpMethod,Destination> next()
+            {
+                if (! hasNext())
+                    throw new NoSuchElementException();
+
+                Map.Entry<HttpMethod,Destination> entry
+                        = new AbstractMap.SimpleImmutableEntry<HttpMethod,Destination>(METHODS[next], slots[next]);
+                next = advance(next + 1);
+                return entry;
+            }
+
+            @Override
+            public void remove()
+            {
+                throw new UnsupportedOperationException("destination maps are read-only");
+            }
+
+            private int advance(int from)
+            {
+                while ((from < slots.length) && (slots[from] == null))
+                    from++;
+                return from;
+            }
         }
-        return destMap;
     }
 }
@@ -0,0 +1,187 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.core.impl;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.kdgregory.pathfinder.core.Destination;
+import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.core.PathRepo;
+
+
+/**
+ *  A repository that's filled by a single thread, and later merged into a shared
+ *  repository. This allows inspectors to run concurrently, each writing to its
+ *  own shard, with the shards merged in a predetermined order once they're done.
+ *  <p>
+ *  Reads only see the shard's own contents. Every modification is also recorded,
+ *  and {@link #mergeInto} replays those modifications in the order that they were
+ *  made. As a result, the target ends up exactly as it would if the modifications
+ *  had been made to it directly (which is not true of a simple copy: for example,
+ *  storing a specific method overrides an existing "all" entry, while storing a
+ *  destination for all methods replaces every existing entry).
+ *  <p>
+ *  Like {@link PathRepoImpl}, this class is not intended for use by concurrent
+ *  threads; the thread that merges must be properly synchronized with the thread
+ *  that filled the shard (for example, by <code>Future.get()</code>).
+ */
+public class PathRepoShard
+implements PathRepo
+{
+    private PathRepo contents = new PathRepoImpl();
+    private List<Operation> journal = new ArrayList<Operation>();
+
+
+//----------------------------------------------------------------------------
+//  PathRepo
+//----------------------------------------------------------------------------
+
+    @Override
+    public int urlCount()
+    {
+        return contents.urlCount();
+    }
+
+
+    @Override
+    public void put(String url, Destination dest)
+    {
+        contents.put(url, dest);
+        journal.add(new Operation(OperationType.PUT_ALL, url, HttpMethod.ALL, dest, null));
+    }
+
+
+    @Override
+    public void put(String url, HttpMethod method, Destination dest)
+    {
+        contents.put(url, method, dest);
+        journal.add(new Operation(OperationType.PUT_METHOD, url, method, dest, null));
+    }
+
+
+    @Override
+    public void put(String url, Map<HttpMethod,Destination> destMap)
+    {
+        // the caller may reuse their map, so we keep a copy
+        Map<HttpMethod,Destination> copy = new TreeMap<HttpMethod,Destination>(destMap);
+        contents.put(url, copy);
+        journal.add(new Operation(OperationType.PUT_MAP, url, null, null, copy));
+    }
+
+
+    @Override
+    public Destination get(String url, HttpMethod method)
+    {
+        return contents.get(url, method);
+    }
+
+
+    @Override
+    public Map<HttpMethod,Destination> get(String url)
+    {
+        return contents.get(url);
+    }
+
+
+    @Override
+    public void remove(String url, HttpMethod method)
+    {
+        contents.remove(url, method);
+        journal.add(new Operation(OperationType.REMOVE, url, method, null, null));
+    }
+
+
+    @Override
+    public Iterator<String> iterator()
+    {
+        return contents.iterator();
+    }
+
+
+//----------------------------------------------------------------------------
+//  Other public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Applies all modifications made to this shard to the passed repository,
+     *  in the order that they were made.
+     */
+    public void mergeInto(PathRepo target)
+    {
+        for (Operation op : journal)
+        {
+            op.apply(target);
+        }
+    }
+
+
+    @Override
+    public String toString()
+    {
+        return contents.toString();
+    }
+
+
+//----------------------------------------------------------------------------
+//  Supporting classes
+//----------------------------------------------------------------------------
+
+    private enum OperationType { PUT_ALL, PUT_METHOD, PUT_MAP, REMOVE }
+
+
+    private static class Operation
+    {
+        private OperationType type;
+        private String url;
+        private HttpMethod method;
+        private Destination dest;
+        private Map<HttpMethod,Destination> destMap;
+
+        public Operation(OperationType type, String url, HttpMethod method,
+                         Destination dest, Map<HttpMethod,Destination> destMap)
+        {
+            this.type = type;
+            this.url = url;
+            this.method = method;
+            this.dest = dest;
+            this.destMap = destMap;
+        }
+
+        public void apply(PathRepo target)
+        {
+            switch (type)
+            {
+                case PUT_ALL :
+                    target.put(url, dest);
+                    break;
+                case PUT_METHOD :
+                    target.put(url, method, dest);
+                    break;
+                case PUT_MAP :
+                    target.put(url, destMap);
+                    break;
+                case REMOVE :
+                    target.remove(url, method);
+                    break;
+                default :
+                    throw new IllegalStateException("unknown operation: " + type);
+            }
+        }
+    }
+}
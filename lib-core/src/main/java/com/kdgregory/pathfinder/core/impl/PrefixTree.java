@@ -0,0 +1,264 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.core.impl;
+
+import java.util.Arrays;
+
+
+/**
+ *  A string-keyed map that stores common key prefixes once: each node holds the
+ *  characters that distinguish it from its parent (a radix tree). This is much
+ *  more compact than a <code>TreeMap</code> when there are many keys that share
+ *  long prefixes, such as the URLs of static content in a WAR.
+ *  <p>
+ *  Children are kept sorted by their first character, and a node's value is
+ *  visited before its children's, so {@link #visit} presents keys in the same
+ *  order as <code>String.compareTo()</code>.
+ *  <p>
+ *  Entries can't be removed; store <code>null</code> instead (a null value is
+ *  indistinguishable from a missing entry). This class is not intended for use
+ *  by concurrent threads.
+ */
+public class PrefixTree<V>
+{
+    /**
+     *  Callback for {@link #visit}.
+     */
+    public interface Visitor<V>
+    {
+        public void visit(String key, V value);
+    }
+
+
+//----------------------------------------------------------------------------
+//  Instance variables and constructor
+//----------------------------------------------------------------------------
+
+    private final static char[] EMPTY_LABEL = new char[0];
+
+    private Node<V> root = new Node<V>(EMPTY_LABEL, null);
+    private int size;
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns the value associated with the passed key, <code>null</code> if
+     *  there isn't one.
+     */
+    public V get(String key)
+    {
+        Node<V> node = root;
+        int pos = 0;
+        while (pos < key.length())
+        {
+            Node<V> child = node.findChild(key.charAt(pos));
+            if ((child == null) || (commonPrefix(child.label, key, pos) < child.label.length))
+                return null;
+            pos += child.label.length;
+            node = child;
+        }
+        return node.value;
+    }
+
+
+    /**
+     *  Associates a value with the passed key, returning the previous value.
+     */
+    public V put(String key, V value)
+    {
+        Node<V> node = root;
+        int pos = 0;
+        while (pos < key.length())
+        {
+            Node<V> child = node.findChild(key.charAt(pos));
+            if (child == null)
+            {
+                node.addChild(new Node<V>(toLabel(key, pos, key.length()), null));
+                node = node.findChild(key.charAt(pos));
+                break;
+            }
+
+            int common = commonPrefix(child.label, key, pos);
+            if (common < child.label.length)
+            {
+                child = node.splitChild(child, common);
+            }
+            pos += common;
+            node = child;
+        }
+
+        V prev = node.value;
+        node.value = value;
+        if ((prev == null) && (value != null))
+            size++;
+        else if ((prev != null) && (value == null))
+            size--;
+        return prev;
+    }
+
+
+    /**
+     *  Returns the number of keys with non-null values.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+
+    /**
+     *  Invokes the visitor for each key with a non-null value, in key order.
+     */
+    public void visit(Visitor<V> visitor)
+    {
+        visit(root, new StringBuilder(128), visitor);
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private void visit(Node<V> node, StringBuilder key, Visitor<V> visitor)
+    {
+        int resetLength = key.length();
+        key.append(node.label);
+        if (node.value != null)
+            visitor.visit(key.toString(), node.value);
+        if (node.children != null)
+        {
+            for (Node<V> child : node.children)
+                visit(child, key, visitor);
+        }
+        key.setLength(resetLength);
+    }
+
+
+    /**
+     *  Returns the number of characters that the label shares with the key,
+     *  starting at the given key position.
+     */
+    private static int commonPrefix(char[] label, String key, int pos)
+    {
+        int max = Math.min(label.length, key.length() - pos);
+        int ii = 0;
+        while ((ii < max) && (label[ii] == key.charAt(pos + ii)))
+            ii++;
+        return ii;
+    }
+
+
+    private static char[] toLabel(String key, int start, int end)
+    {
+        char[] label = new char[end - start];
+        key.getChars(start, end, label, 0);
+        return label;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Supporting classes
+//----------------------------------------------------------------------------
+
+    private static class Node<V>
+    {
+        public char[] label;
+        public Node<V>[] children;
+        public V value;
+
+        public Node(char[] label, V value)
+        {
+            this.label = label;
+            this.value = value;
+        }
+
+        public Node<V> findChild(char c)
+        {
+            int idx = indexOf(c);
+            return (idx >= 0) ? children[idx] : null;
+        }
+
+        public void addChild(Node<V> child)
+        {
+            if (children == null)
+            {
+                children = newArray(1);
+                children[0] = child;
+                return;
+            }
+
+            int insertAt = -(indexOf(child.label[0]) + 1);
+            Node<V>[] newChildren = newArray(children.length + 1);
+            System.arraycopy(children, 0, newChildren, 0, insertAt);
+            newChildren[insertAt] = child;
+            System.arraycopy(children, insertAt, newChildren, insertAt + 1, children.length - insertAt);
+            children = newChildren;
+        }
+
+        /**
+         *  Replaces the passed child with an intermediate node that holds the
+         *  first part of its label; the child becomes that node's only child.
+         *  Returns the intermediate node.
+         */
+        public Node<V> splitChild(Node<V> child, int splitAt)
+        {
+            int idx = indexOf(child.label[0]);
+            Node<V> intermediate = new Node<V>(Arrays.copyOfRange(child.label, 0, splitAt), null);
+            child.label = Arrays.copyOfRange(child.label, splitAt, child.label.length);
+            intermediate.children = newArray(1);
+            intermediate.children[0] = child;
+            children[idx] = intermediate;
+            return intermediate;
+        }
+
+        /**
+         *  Generic arrays can't be created directly; this is the one place that
+         *  creates a raw array and casts it.
+         */
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private static <V> Node<V>[] newArray(int size)
+        {
+            return new Node[size];
+        }
+
+        /**
+         *  Binary search on first character of the children's labels; same return
+         *  convention as <code>Arrays.binarySearch()</code>.
+         */
+        private int indexOf(char c)
+        {
+            if (children == null)
+                return -1;
+
+            int lo = 0;
+            int hi = children.length - 1;
+            while (lo <= hi)
+            {
+                int mid = (lo + hi) >>> 1;
+                char midChar = children[mid].label[0];
+                if (midChar < c)
+                    lo = mid + 1;
+                else if (midChar > c)
+                    hi = mid - 1;
+                else
+                    return mid;
+            }
+            return -(lo + 1);
+        }
+    }
+}
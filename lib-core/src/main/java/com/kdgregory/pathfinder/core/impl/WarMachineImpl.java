@@ -15,9 +15,13 @@
 package com.kdgregory.pathfinder.core.impl;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
@@ -25,7 +29,11 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedSet;
 import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.jar.JarInputStream;
@@ -34,8 +42,6 @@ import java.util.zip.ZipEntry;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
-import org.xml.sax.InputSource;
-
 import org.apache.bcel.classfile.ClassParser;
 import org.apache.bcel.classfile.JavaClass;
 import org.apache.log4j.Logger;
@@ -46,16 +52,25 @@ import net.sf.kdgcommons.lang.ObjectUtil;
 import net.sf.kdgcommons.lang.StringUtil;
 import net.sf.kdgcommons.lang.UnreachableCodeException;
 import net.sf.practicalxml.DomUtil;
-import net.sf.practicalxml.ParseUtil;
 import net.sf.practicalxml.xpath.XPathWrapper;
 import net.sf.practicalxml.xpath.XPathWrapperFactory;
 import net.sf.practicalxml.xpath.XPathWrapperFactory.CacheType;
 
+import com.kdgregory.bcelx.classfile.Annotation;
+import com.kdgregory.bcelx.parser.AnnotationParser;
 import com.kdgregory.pathfinder.core.WarMachine;
+import com.kdgregory.pathfinder.util.ClassHeader;
+import com.kdgregory.pathfinder.util.LocalXmlParser;
 
 
 /**
- *  The one and only non-mock implementation of the War Machine.
+ *  The one and only non-mock implementation of the War Machine. It works with
+ *  either a WAR file or an exploded WAR (a directory with the same layout).
+ *  <p>
+ *  This implementation may be used by concurrent threads: the lazily-built
+ *  structures are constructed under synchronization, and are not modified
+ *  once built. The exception is {@link #refresh}, which discards structures
+ *  and must not be called while the machine is in use.
  */
 public class WarMachineImpl
 implements WarMachine
@@ -72,22 +87,66 @@ implements WarMachine
 
     private Logger logger = Logger.getLogger(getClass());
 
-    private JarFile mappedWar;
+    private WarContents contents;
     private Document webXml;
     private List<ServletMapping> servletMappings;
     private TreeMap<String,String> filesOnClasspath;
+    private TreeSet<String> sortedFiles;
 
     private XPathWrapperFactory xpathFact;
+    private LibraryCache libraryCache;
+    private ClassAnnotationCache classCache;
+
+    // archive name -> entry names / classfile name -> header; populated as
+    // archives are read, and retained across refreshes unless the archive changes
+    private ConcurrentMap<String,List<String>> archiveEntries
+        = new ConcurrentHashMap<String,List<String>>();
+    private ConcurrentMap<String,Map<String,ClassHeader>> archiveHeaders
+        = new ConcurrentHashMap<String,Map<String,ClassHeader>>();
+
+    // classpath name -> header, for the classes in WEB-INF/classes
+    private ConcurrentMap<String,ClassHeader> classHeaders
+        = new ConcurrentHashMap<String,ClassHeader>();
 
 
     /**
-     *  Opens the passed file and performs some basic sanity checks on it.
+     *  Opens the passed file (or directory) and performs some basic sanity
+     *  checks on it.
      *
      *  @throws IllegalArgumentException if the passed file doesn't exist or
      *          doesn't appear to be a WAR.
      */
     public WarMachineImpl(File warFile)
     {
+        this(warFile, null);
+    }
+
+
+    /**
+     *  Opens the passed file, using (and adding to) the passed cache for
+     *  information about its libraries. The cache may be null.
+     *
+     *  @throws IllegalArgumentException if the passed file doesn't exist or
+     *          doesn't appear to be a WAR.
+     */
+    public WarMachineImpl(File warFile, LibraryCache libraryCache)
+    {
+        this(warFile, libraryCache, null);
+    }
+
+
+    /**
+     *  Opens the passed file, using (and adding to) the passed caches for
+     *  information about its libraries and its own classes. Either cache may
+     *  be null.
+     *
+     *  @throws IllegalArgumentException if the passed file doesn't exist or
+     *          doesn't appear to be a WAR.
+     */
+    public WarMachineImpl(File warFile, LibraryCache libraryCache, ClassAnnotationCache classCache)
+    {
+        this.libraryCache = libraryCache;
+        this.classCache = classCache;
         openFile(warFile);
 
         // if the file doesn't have web.xml, it's not a war, so fail fast
@@ -101,11 +160,13 @@ implements WarMachine
         try
         {
             logger.debug("opening file: " + warFile);
-            mappedWar = new JarFile(warFile);
+            contents = warFile.isDirectory()
+                     ? new DirectoryContents(warFile)
+                     : new ArchiveContents(new JarFile(warFile));
         }
         catch (Exception ex)
         {
-            throw new IllegalArgumentException("unable to open: " + mappedWar, ex);
+            throw new IllegalArgumentException("unable to open: " + warFile, ex);
         }
     }
 
@@ -116,15 +177,14 @@ implements WarMachine
         try
         {
             logger.debug("looking for web.xml");
-            JarEntry entry = mappedWar.getJarEntry("WEB-INF/web.xml");
-            if (entry == null)
+            entryStream = contents.open("WEB-INF/web.xml");
+            if (entryStream == null)
             {
                 throw new IllegalArgumentException("missing web.xml");
             }
 
             logger.debug("parsing web.xml");
-            entryStream = mappedWar.getInputStream(entry);
-            webXml = ParseUtil.parse(new InputSource(entryStream));
+            webXml = LocalXmlParser.parse(entryStream);
             Element root = webXml.getDocumentElement();
 
             String rootLocalName = DomUtil.getLocalName(root);
@@ -183,7 +243,7 @@ implements WarMachine
 
 
     @Override
-    public List<ServletMapping> getServletMappings()
+    public synchronized List<ServletMapping> getServletMappings()
     {
         if (servletMappings == null)
             parseServletMappings();
@@ -195,13 +255,11 @@ implements WarMachine
     @Override
     public List<String> getAllFiles()
     {
-        List<String> result = new ArrayList<String>(mappedWar.size());
-        for (Enumeration<JarEntry> itx = mappedWar.entries() ; itx.hasMoreElements() ; )
+        List<String> names = contents.getNames();
+        List<String> result = new ArrayList<String>(names.size());
+        for (String name : names)
         {
-            JarEntry entry = itx.nextElement();
-            String filename = entry.getName();
-            if (! filename.endsWith("/"))
-                result.add("/" + filename);
+            result.add("/" + name);
         }
         return result;
     }
@@ -228,6 +286,14 @@ implements WarMachine
     }
 
 
+    @Override
+    public SortedSet<String> getFilesWithPrefix(String prefix)
+    {
+        lazyBuildSortedFiles();
+        return Collections.unmodifiableSortedSet(sortedFiles.subSet(prefix, prefixLimit(prefix)));
+    }
+
+
     @Override
     public Set<String> getFilesOnClasspath()
     {
@@ -236,6 +302,39 @@ implements WarMachine
     }
 
 
+    @Override
+    public SortedSet<String> getClasspathFilesWithPrefix(String prefix)
+    {
+        lazyBuildClasspath();
+        return Collections.unmodifiableSortedSet(
+                filesOnClasspath.navigableKeySet().subSet(prefix, true, prefixLimit(prefix), false));
+    }
+
+
+    @Override
+    public void scanClasspath(ClasspathVisitor visitor)
+    {
+        lazyBuildClasspath();
+
+        // files are only visited if the classpath index says they're the visible
+        // copy; this takes care of both WEB-INF/classes precedence and JAR order
+
+        for (String filename : getFilesWithPrefix("/WEB-INF/classes/"))
+        {
+            String classpathName = filename.substring(17);
+            if ("".equals(filesOnClasspath.get(classpathName)))
+                visitWarFile(visitor, classpathName, filename);
+        }
+
+        Set<String> contributingArchives = new HashSet<String>(filesOnClasspath.values());
+        for (String archive : getFilesWithPrefix("/WEB-INF/lib/"))
+        {
+            if (contributingArchives.contains(archive))
+                visitArchive(visitor, archive);
+        }
+    }
+
+
     @Override
     public Set<String> getClassesInPackage(String packageName, boolean recurse)
     {
@@ -273,12 +372,7 @@ implements WarMachine
         if (!filename.startsWith("/"))
             return null;
 
-        filename = filename.substring(1);
-        JarEntry entry = mappedWar.getJarEntry(filename);
-        if (entry == null)
-            return null;
-
-        return mappedWar.getInputStream(entry);
+        return contents.open(filename.substring(1));
     }
 
 
@@ -325,9 +419,14 @@ implements WarMachine
         try
         {
             in = openClasspathFile(filename);
-            return (in == null)
-                 ? null
-                 : new ClassParser(in, classname).parse();
+            if (in == null)
+                return null;
+
+            JavaClass klass = new ClassParser(in, classname).parse();
+            long version = getCacheableClassVersion(filename);
+            if (version >= 0)
+                classCache.put(filename, version, extractClassAnnotations(klass));
+            return klass;
         }
         catch (IOException ex)
         {
@@ -340,6 +439,104 @@ implements WarMachine
     }
 
 
+    @Override
+    public ClassHeader getClassHeader(String classname)
+    {
+        String filename = classname.replace(".", "/") + ".class";
+        lazyBuildClasspath();
+        String location = filesOnClasspath.get(filename);
+        if (location == null)
+            return null;
+
+        if (! StringUtil.isEmpty(location))
+            return getArchiveHeaders(location).get(filename);
+
+        ClassHeader header = classHeaders.get(filename);
+        if (header == null)
+        {
+            header = readClassHeader("/WEB-INF/classes/" + filename);
+            if (header != null)
+                classHeaders.putIfAbsent(filename, header);
+        }
+        return header;
+    }
+
+
+    @Override
+    public Set<String> getKnownClassAnnotations(String classname)
+    {
+        String filename = classname.replace(".", "/") + ".class";
+        long version = getCacheableClassVersion(filename);
+        return (version >= 0)
+             ? classCache.get(filename, version)
+             : null;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Other Public Methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Closes the underlying file. This object must not be used afterward.
+     *  Single-WAR programs can let the file be closed at exit; programs that
+     *  process many WARs must call this.
+     */
+    public void close()
+    {
+        try
+        {
+            contents.close();
+        }
+        catch (IOException ex)
+        {
+            logger.warn("unable to close WAR: " + ex.getMessage());
+        }
+    }
+
+
+    /**
+     *  Updates this machine after files in an exploded WAR have been changed,
+     *  added, or deleted. Anything derived from those files is discarded, and
+     *  will be rebuilt when next needed; information about other files (in
+     *  particular, the contents of unchanged libraries) is retained.
+     *  <p>
+     *  This method must not be called while other threads are using the machine.
+     *
+     *  @param  changedFiles    The changed files, with a leading slash (as
+     *                          returned by {@link #getAllFiles}).
+     *
+     *  @throws IllegalStateException if this machine was not opened on a
+     *          directory.
+     *  @throws IllegalArgumentException if <code>web.xml</code> has changed,
+     *          and is no longer valid.
+     */
+    public synchronized void refresh(Collection<String> changedFiles)
+    {
+        if (! (contents instanceof DirectoryContents))
+            throw new IllegalStateException("only an exploded WAR can be refreshed");
+
+        logger.debug("refreshing after " + changedFiles.size() + " changed files");
+        ((DirectoryContents)contents).rescan();
+        sortedFiles = null;
+        filesOnClasspath = null;
+
+        for (String filename : changedFiles)
+        {
+            archiveEntries.remove(filename);
+            archiveHeaders.remove(filename);
+            if (filename.startsWith("/WEB-INF/classes/"))
+                classHeaders.remove(filename.substring(17));
+        }
+
+        if (changedFiles.contains("/WEB-INF/web.xml"))
+        {
+            servletMappings = null;
+            parseWebXml();
+        }
+    }
+
+
 //----------------------------------------------------------------------------
 //  Internals
 //----------------------------------------------------------------------------
@@ -377,27 +574,47 @@ implements WarMachine
     }
 
 
-    private void lazyBuildClasspath()
+    private synchronized void lazyBuildSortedFiles()
+    {
+        if (sortedFiles == null)
+            sortedFiles = new TreeSet<String>(getAllFiles());
+    }
+
+
+    /**
+     *  Returns the exclusive upper bound for a range query that selects all
+     *  strings starting with the passed prefix.
+     */
+    private static String prefixLimit(String prefix)
+    {
+        return prefix + Character.MAX_VALUE;
+    }
+
+
+    private synchronized void lazyBuildClasspath()
     {
         if (filesOnClasspath != null)
             return;
 
-        filesOnClasspath = new TreeMap<String,String>();
+        // the map isn't published until it's complete, so that concurrent
+        // callers never see a partially-built classpath
+        TreeMap<String,String> classpath = new TreeMap<String,String>();
         for (String filename : getPrivateFiles())
         {
             if (filename.startsWith("/WEB-INF/classes"))
             {
-                addFileToClasspath(filename.substring(17), "");
+                addFileToClasspath(classpath, filename.substring(17), "");
             }
             else if (filename.startsWith("/WEB-INF/lib"))
             {
-                addArchiveToClasspath(filename);
+                addArchiveToClasspath(classpath, filename);
             }
         }
+        filesOnClasspath = classpath;
     }
 
 
-    private void addArchiveToClasspath(String filename)
+    private void addArchiveToClasspath(TreeMap<String,String> classpath, String filename)
     {
         if (!filename.toLowerCase().endsWith(".jar")
                 && filename.toLowerCase().endsWith(".zip"))
@@ -406,6 +623,82 @@ implements WarMachine
             return;
         }
 
+        List<String> entries = archiveEntries.get(filename);
+        if (entries == null)
+        {
+            // the library's directory entry gives us a cache key without reading it
+            boolean cacheable = isCacheableLibrary(filename);
+            String name = filename.substring(1);
+            entries = cacheable
+                    ? libraryCache.getEntryListing(contents.getSize(name), contents.getCrc(name))
+                    : null;
+            if (entries == null)
+            {
+                entries = new ArrayList<String>();
+                boolean complete = readArchiveEntries(filename, entries);
+                if (cacheable && complete)
+                    libraryCache.putEntryListing(contents.getSize(name), contents.getCrc(name), entries);
+            }
+            archiveEntries.put(filename, entries);
+        }
+
+        for (String name : entries)
+        {
+            addFileToClasspath(classpath, name, filename);
+        }
+    }
+
+
+    /**
+     *  Determines whether the WAR's directory entry for the named archive can be
+     *  used as a library cache key (it can't if there's no cache, or if the WAR
+     *  is exploded and therefore has no directory).
+     */
+    private boolean isCacheableLibrary(String archive)
+    {
+        String name = archive.substring(1);
+        return (libraryCache != null)
+            && (contents.getSize(name) >= 0)
+            && (contents.getCrc(name) >= 0);
+    }
+
+
+    /**
+     *  Returns the value that identifies the current version of the named
+     *  classfile in the class cache, -1 if it can't be cached (including when
+     *  there's no cache). Only the classes in <code>WEB-INF/classes</code> that
+     *  are visible on the classpath are cached; library classes don't change
+     *  between builds.
+     */
+    private long getCacheableClassVersion(String filename)
+    {
+        if (classCache == null)
+            return -1;
+
+        lazyBuildClasspath();
+        if (! "".equals(filesOnClasspath.get(filename)))
+            return -1;
+
+        return contents.getVersion("WEB-INF/classes/" + filename);
+    }
+
+
+    private static Set<String> extractClassAnnotations(JavaClass klass)
+    {
+        Set<String> result = new TreeSet<String>();
+        for (Annotation anno : new AnnotationParser(klass).getClassVisibleAnnotations())
+            result.add(anno.getClassName());
+        return result;
+    }
+
+
+    /**
+     *  Adds the names of the non-directory entries in an archive to the passed
+     *  list. Returns false if unable to read the entire archive (in which case
+     *  the list holds whatever could be read).
+     */
+    private boolean readArchiveEntries(String filename, List<String> entries)
+    {
         InputStream in = null;
         try
         {
@@ -417,12 +710,14 @@ implements WarMachine
                 String name = entry.getName();
                 if (name.endsWith("/"))
                     continue;
-                addFileToClasspath(entry.getName(), filename);
+                entries.add(name);
             }
+            return true;
         }
         catch (Exception ex)
         {
             logger.warn("unable to process archive \"" + filename + "\": " + ex.getMessage());
+            return false;
         }
         finally
         {
@@ -431,17 +726,173 @@ implements WarMachine
     }
 
 
-    private void addFileToClasspath(String filename, String srcLoc)
+    /**
+     *  Returns the summarized headers of all classes in the named archive (not
+     *  just those visible on the classpath), keyed by classfile name. The archive
+     *  is read at most once per machine, and not at all if it's in the library
+     *  cache.
+     */
+    private Map<String,ClassHeader> getArchiveHeaders(String archive)
+    {
+        Map<String,ClassHeader> headers = archiveHeaders.get(archive);
+        if (headers != null)
+            return headers;
+
+        // lock is held while reading so that concurrent callers don't all read
+        // the same archive; a second check avoids reading it twice
+        synchronized (archiveHeaders)
+        {
+            headers = archiveHeaders.get(archive);
+            if (headers != null)
+                return headers;
+
+            boolean cacheable = isCacheableLibrary(archive);
+            String name = archive.substring(1);
+            headers = cacheable
+                    ? libraryCache.getClassHeaders(contents.getSize(name), contents.getCrc(name))
+                    : null;
+            if (headers == null)
+            {
+                headers = new HashMap<String,ClassHeader>();
+                boolean complete = readArchiveHeaders(archive, headers);
+                if (cacheable && complete)
+                    libraryCache.putClassHeaders(contents.getSize(name), contents.getCrc(name), headers);
+            }
+            archiveHeaders.put(archive, headers);
+            return headers;
+        }
+    }
+
+
+    /**
+     *  Reads the headers of all classes in an archive, storing their summaries in
+     *  the passed map. Returns false if any part of the archive couldn't be read.
+     */
+    private boolean readArchiveHeaders(String archive, Map<String,ClassHeader> headers)
     {
-        if (filesOnClasspath.containsKey(filename))
+        boolean complete = true;
+        InputStream in = null;
+        try
         {
-            String prevLoc = ObjectUtil.defaultValue(filesOnClasspath.get(filename), "/WEB-INF/classes");
+            in = openFile(archive);
+            JarInputStream jis = new JarInputStream(in);
+            ZipEntry entry = null;
+            while ((entry = jis.getNextEntry()) != null)
+            {
+                String name = entry.getName();
+                if (! name.endsWith(".class"))
+                    continue;
+
+                try
+                {
+                    headers.put(name, ClassHeader.read(jis).summarize());
+                }
+                catch (IOException ex)
+                {
+                    logger.warn("unable to read header for \"" + name + "\" from \"" + archive + "\": " + ex.getMessage());
+                    complete = false;
+                }
+            }
+            return complete;
+        }
+        catch (Exception ex)
+        {
+            logger.warn("unable to process archive \"" + archive + "\": " + ex.getMessage());
+            return false;
+        }
+        finally
+        {
+            IOUtil.closeQuietly(in);
+        }
+    }
+
+
+    private ClassHeader readClassHeader(String filename)
+    {
+        InputStream in = null;
+        try
+        {
+            in = openFile(filename);
+            return (in == null) ? null : ClassHeader.read(in).summarize();
+        }
+        catch (IOException ex)
+        {
+            logger.warn("unable to read header for \"" + filename + "\": " + ex.getMessage());
+            return null;
+        }
+        finally
+        {
+            IOUtil.closeQuietly(in);
+        }
+    }
+
+
+    private void addFileToClasspath(TreeMap<String,String> classpath, String filename, String srcLoc)
+    {
+        if (classpath.containsKey(filename))
+        {
+            String prevLoc = ObjectUtil.defaultValue(classpath.get(filename), "/WEB-INF/classes");
             logger.trace("attempting to add \"" + filename + "\" to classpath"
                         + " from \"" + srcLoc + "\";"
                         + " already found in \"" + prevLoc + "\"");
             return;
         }
-        filesOnClasspath.put(filename, srcLoc);
+        classpath.put(filename, srcLoc);
+    }
+
+
+    private void visitWarFile(ClasspathVisitor visitor, String classpathName, String filename)
+    {
+        InputStream in = null;
+        try
+        {
+            in = openFile(filename);
+            visitor.visit(classpathName, new UncloseableInputStream(in));
+        }
+        catch (Exception ex)
+        {
+            logger.warn("unable to process classpath file \"" + filename + "\": " + ex.getMessage());
+        }
+        finally
+        {
+            IOUtil.closeQuietly(in);
+        }
+    }
+
+
+    private void visitArchive(ClasspathVisitor visitor, String archive)
+    {
+        InputStream in = null;
+        try
+        {
+            in = openFile(archive);
+            JarInputStream jis = new JarInputStream(in);
+            InputStream visitorStream = new UncloseableInputStream(jis);
+            ZipEntry entry = null;
+            while ((entry = jis.getNextEntry()) != null)
+            {
+                String name = entry.getName();
+                if (name.endsWith("/") || ! archive.equals(filesOnClasspath.get(name)))
+                    continue;
+
+                try
+                {
+                    visitor.visit(name, visitorStream);
+                }
+                catch (Exception ex)
+                {
+                    logger.warn("unable to process \"" + name + "\" from \"" + archive + "\": " + ex.getMessage());
+                }
+            }
+        }
+        catch (Exception ex)
+        {
+            logger.warn("unable to process archive \"" + archive + "\": " + ex.getMessage());
+        }
+        finally
+        {
+            IOUtil.closeQuietly(in);
+        }
     }
 
 
@@ -449,6 +900,209 @@ implements WarMachine
 //  Supporting classes
 //----------------------------------------------------------------------------
 
+    /**
+     *  Provides access to the files in the WAR, whether it's an archive or a
+     *  directory. Names do not have a leading slash, and do not include
+     *  directories.
+     */
+    private static abstract class WarContents
+    {
+        public abstract List<String> getNames();
+
+        /**
+         *  Returns a stream for the named file, null if it doesn't exist.
+         */
+        public abstract InputStream open(String name)
+        throws IOException;
+
+        /**
+         *  Returns the size of the named file, -1 if it doesn't exist.
+         */
+        public abstract long getSize(String name);
+
+        /**
+         *  Returns the CRC of the named file from the archive directory, -1 if
+         *  it isn't known.
+         */
+        public abstract long getCrc(String name);
+
+        /**
+         *  Returns a value that changes when the named file's content changes,
+         *  -1 if the file doesn't exist.
+         */
+        public abstract long getVersion(String name);
+
+        public abstract void close()
+        throws IOException;
+    }
+
+
+    private static class ArchiveContents
+    extends WarContents
+    {
+        private JarFile jar;
+
+        public ArchiveContents(JarFile jar)
+        {
+            this.jar = jar;
+        }
+
+        @Override
+        public List<String> getNames()
+        {
+            List<String> result = new ArrayList<String>(jar.size());
+            for (Enumeration<JarEntry> itx = jar.entries() ; itx.hasMoreElements() ; )
+            {
+                String name = itx.nextElement().getName();
+                if (! name.endsWith("/"))
+                    result.add(name);
+            }
+            return result;
+        }
+
+        @Override
+        public InputStream open(String name)
+        throws IOException
+        {
+            JarEntry entry = jar.getJarEntry(name);
+            return (entry != null) ? jar.getInputStream(entry) : null;
+        }
+
+        @Override
+        public long getSize(String name)
+        {
+            JarEntry entry = jar.getJarEntry(name);
+            return (entry != null) ? entry.getSize() : -1;
+        }
+
+        @Override
+        public long getCrc(String name)
+        {
+            JarEntry entry = jar.getJarEntry(name);
+            return (entry != null) ? entry.getCrc() : -1;
+        }
+
+        @Override
+        public long getVersion(String name)
+        {
+            return getCrc(name);
+        }
+
+        @Override
+        public void close()
+        throws IOException
+        {
+            // JarFile isn't Closeable until JDK 7
+            jar.close();
+        }
+    }
+
+
+    /**
+     *  An exploded WAR. The list of files is read when constructed, and again
+     *  when {@link #rescan} is called. Files don't have a CRC; their version
+     *  is derived from size and modification time.
+     */
+    private static class DirectoryContents
+    extends WarContents
+    {
+        private File root;
+        private List<String> names;
+
+        public DirectoryContents(File root)
+        {
+            this.root = root;
+            rescan();
+        }
+
+        public void rescan()
+        {
+            List<String> result = new ArrayList<String>();
+            addFiles(root, "", result);
+            names = result;
+        }
+
+        private static void addFiles(File dir, String prefix, List<String> result)
+        {
+            File[] children = dir.listFiles();
+            if (children == null)
+                return;
+
+            Arrays.sort(children);
+            for (File child : children)
+            {
+                String name = prefix + child.getName();
+                if (child.isDirectory())
+                    addFiles(child, name + "/", result);
+                else
+                    result.add(name);
+            }
+        }
+
+        @Override
+        public List<String> getNames()
+        {
+            return names;
+        }
+
+        @Override
+        public InputStream open(String name)
+        throws IOException
+        {
+            File file = new File(root, name);
+            return file.isFile() ? new FileInputStream(file) : null;
+        }
+
+        @Override
+        public long getSize(String name)
+        {
+            File file = new File(root, name);
+            return file.isFile() ? file.length() : -1;
+        }
+
+        @Override
+        public long getCrc(String name)
+        {
+            return -1;
+        }
+
+        @Override
+        public long getVersion(String name)
+        {
+            File file = new File(root, name);
+            return file.isFile()
+                 ? ((file.lastModified() * 31) ^ file.length()) & Long.MAX_VALUE
+                 : -1;
+        }
+
+        @Override
+        public void close()
+        {
+            // nothing to close
+        }
+    }
+
+
+    /**
+     *  Protects the streams that we pass to a visitor; in particular, closing
+     *  a JarInputStream would close the entire archive.
+     */
+    private static class UncloseableInputStream
+    extends FilterInputStream
+    {
+        public UncloseableInputStream(InputStream in)
+        {
+            super(in);
+        }
+
+        @Override
+        public void close()
+        {
+            // nothing happening here
+        }
+    }
+
+
     private class ServletMappingImpl
     implements ServletMapping
     {
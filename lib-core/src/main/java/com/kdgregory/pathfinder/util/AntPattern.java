@@ -0,0 +1,171 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.util;
+
+import java.util.regex.Pattern;
+
+
+/**
+ *  A compiled Ant-style path pattern, as used by Spring: "?" matches a single
+ *  character other than "/", "*" matches zero or more characters within a path
+ *  segment, and a segment consisting of "**" matches zero or more segments.
+ *  <p>
+ *  In addition to matching, a pattern exposes its literal prefix: the portion
+ *  before the first segment that contains a wildcard. Callers that hold their
+ *  candidates in sorted order can use this prefix to limit the candidates that
+ *  they test.
+ *  <p>
+ *  Instances are immutable and may be shared between threads.
+ */
+public class AntPattern
+{
+    /**
+     *  Determines whether the passed string contains any wildcard characters.
+     */
+    public static boolean isPattern(String str)
+    {
+        return (str.indexOf('*') >= 0) || (str.indexOf('?') >= 0);
+    }
+
+
+//----------------------------------------------------------------------------
+//  Instance variables and constructor
+//----------------------------------------------------------------------------
+
+    private String pattern;
+    private String literalPrefix;
+    private Pattern regex;
+
+
+    public AntPattern(String pattern)
+    {
+        this.pattern = pattern;
+        this.literalPrefix = extractLiteralPrefix(pattern);
+        this.regex = Pattern.compile(translate(pattern));
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns the pattern as passed to the constructor.
+     */
+    public String getPattern()
+    {
+        return pattern;
+    }
+
+
+    /**
+     *  Returns the portion of the pattern up to and including the last "/" that
+     *  precedes a wildcard; any string that matches the pattern will start with
+     *  this prefix. If the pattern has no wildcards, returns the entire pattern.
+     */
+    public String getLiteralPrefix()
+    {
+        return literalPrefix;
+    }
+
+
+    /**
+     *  Determines whether the passed path matches this pattern.
+     */
+    public boolean matches(String path)
+    {
+        return regex.matcher(path).matches();
+    }
+
+
+    @Override
+    public String toString()
+    {
+        return pattern;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private static String extractLiteralPrefix(String pattern)
+    {
+        int firstWildcard = pattern.length();
+        for (int ii = 0 ; ii < pattern.length() ; ii++)
+        {
+            char c = pattern.charAt(ii);
+            if ((c == '*') || (c == '?'))
+            {
+                firstWildcard = ii;
+                break;
+            }
+        }
+
+        if (firstWildcard == pattern.length())
+            return pattern;
+
+        return pattern.substring(0, pattern.lastIndexOf('/', firstWildcard) + 1);
+    }
+
+
+    private static String translate(String pattern)
+    {
+        StringBuilder sb = new StringBuilder(pattern.length() * 2);
+        String[] segments = pattern.split("/", -1);
+        for (int ii = 0 ; ii < segments.length ; ii++)
+        {
+            boolean isLast = (ii == segments.length - 1);
+            String segment = segments[ii];
+            if (segment.equals("**"))
+            {
+                // a non-terminal "**" consumes its trailing slash, so that it can
+                // match zero segments
+                sb.append(isLast ? ".*" : "(?:.*/)?");
+                continue;
+            }
+
+            translateSegment(segment, sb);
+            if (! isLast)
+                sb.append('/');
+        }
+        return sb.toString();
+    }
+
+
+    private static void translateSegment(String segment, StringBuilder sb)
+    {
+        StringBuilder literal = new StringBuilder();
+        for (int ii = 0 ; ii < segment.length() ; ii++)
+        {
+            char c = segment.charAt(ii);
+            if ((c != '*') && (c != '?'))
+            {
+                literal.append(c);
+                continue;
+            }
+
+            if (literal.length() > 0)
+            {
+                sb.append(Pattern.quote(literal.toString()));
+                literal.setLength(0);
+            }
+            sb.append((c == '*') ? "[^/]*" : "[^/]");
+        }
+
+        if (literal.length() > 0)
+            sb.append(Pattern.quote(literal.toString()));
+    }
+}
@@ -0,0 +1,293 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.util;
+
+import java.io.BufferedInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+
+/**
+ *  The leading portion of a classfile: its constant pool, name, superclass, and
+ *  interfaces. Reading stops at the end of the interface list, so this is much
+ *  cheaper than a full parse (which would also process fields, methods, and
+ *  attributes), and is sufficient to answer questions about the type hierarchy
+ *  and about what the class references.
+ *  <p>
+ *  Class names are returned in external form ("java.lang.Object").
+ *  <p>
+ *  Headers are immutable. A header may be reduced to a {@link #summarize summary}
+ *  for long-term retention, and written to and read from a binary stream.
+ */
+public class ClassHeader
+{
+    private final static int ACC_INTERFACE = 0x0200;
+
+
+    /**
+     *  Reads a header from the passed stream, which must be positioned at the
+     *  start of the classfile. The stream is left positioned after the interface
+     *  list; the caller is responsible for closing it.
+     *
+     *  @throws IOException if unable to read the stream, or it doesn't contain
+     *          a valid classfile.
+     */
+    public static ClassHeader read(InputStream in)
+    throws IOException
+    {
+        return new ClassHeader(new DataInputStream(new BufferedInputStream(in)));
+    }
+
+
+    /**
+     *  Reads a header that was written by {@link #writeTo}.
+     */
+    public static ClassHeader readFrom(DataInput in)
+    throws IOException
+    {
+        int accessFlags = in.readUnsignedShort();
+        String className = in.readUTF();
+        String superclassName = in.readBoolean() ? in.readUTF() : null;
+
+        int intfCount = in.readInt();
+        List<String> interfaces = new ArrayList<String>(intfCount);
+        for (int ii = 0 ; ii < intfCount ; ii++)
+            interfaces.add(in.readUTF());
+
+        int constCount = in.readInt();
+        Set<String> constants = new HashSet<String>();
+        for (int ii = 0 ; ii < constCount ; ii++)
+            constants.add(in.readUTF());
+
+        return new ClassHeader(accessFlags, className, superclassName,
+                               Collections.unmodifiableList(interfaces), constants);
+    }
+
+
+//----------------------------------------------------------------------------
+//  Instance variables and constructor
+//----------------------------------------------------------------------------
+
+    private Set<String> utf8Constants = new HashSet<String>();
+    private int accessFlags;
+    private String className;
+    private String superclassName;
+    private List<String> interfaceNames;
+
+
+    private ClassHeader(int accessFlags, String className, String superclassName,
+                        List<String> interfaceNames, Set<String> utf8Constants)
+    {
+        this.accessFlags = accessFlags;
+        this.className = className;
+        this.superclassName = superclassName;
+        this.interfaceNames = interfaceNames;
+        this.utf8Constants = utf8Constants;
+    }
+
+
+    /**
+     *  See JVM spec section 4.1 for the layout, and 4.4 for the constant pool.
+     */
+    private ClassHeader(DataInputStream in)
+    throws IOException
+    {
+        if (in.readInt() != 0xCAFEBABE)
+            throw new IOException("invalid magic number");
+        in.readUnsignedShort();     // minor version
+        in.readUnsignedShort();     // major version
+
+        // we only need Utf8 and Class entries; the rest are skipped
+        int poolSize = in.readUnsignedShort();
+        String[] utf8 = new String[poolSize];
+        int[] classRefs = new int[poolSize];
+        for (int ii = 1 ; ii < poolSize ; ii++)
+        {
+            int tag = in.readUnsignedByte();
+            switch (tag)
+            {
+                case 1 :                            // Utf8
+                    utf8[ii] = in.readUTF();
+                    utf8Constants.add(utf8[ii]);
+                    break;
+                case 7 :                            // Class
+                    classRefs[ii] = in.readUnsignedShort();
+                    break;
+                case 8 :                            // String
+                case 16 :                           // MethodType
+                case 19 :                           // Module
+                case 20 :                           // Package
+                    skipFully(in, 2);
+                    break;
+                case 15 :                           // MethodHandle
+                    skipFully(in, 3);
+                    break;
+                case 3 :                            // Integer
+                case 4 :                            // Float
+                case 9 :                            // Fieldref
+                case 10 :                           // Methodref
+                case 11 :                           // InterfaceMethodref
+                case 12 :                           // NameAndType
+                case 17 :                           // Dynamic
+                case 18 :                           // InvokeDynamic
+                    skipFully(in, 4);
+                    break;
+                case 5 :                            // Long
+                case 6 :                            // Double
+                    skipFully(in, 8);
+                    ii++;                           // these take two slots
+                    break;
+                default :
+                    throw new IOException("invalid constant pool tag: " + tag);
+            }
+        }
+
+        accessFlags = in.readUnsignedShort();
+        className = lookupClassName(utf8, classRefs, in.readUnsignedShort());
+
+        // interfaces have Object as their superclass in the classfile; we don't
+        // report it, to match the reflection API
+        int superIdx = in.readUnsignedShort();
+        superclassName = ((superIdx == 0) || isInterface())
+                       ? null
+                       : lookupClassName(utf8, classRefs, superIdx);
+
+        int intfCount = in.readUnsignedShort();
+        List<String> interfaces = new ArrayList<String>(intfCount);
+        for (int ii = 0 ; ii < intfCount ; ii++)
+        {
+            interfaces.add(lookupClassName(utf8, classRefs, in.readUnsignedShort()));
+        }
+        interfaceNames = Collections.unmodifiableList(interfaces);
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    public String getClassName()
+    {
+        return className;
+    }
+
+
+    /**
+     *  Returns the name of the direct superclass; <code>null</code> for interfaces
+     *  and <code>java.lang.Object</code>.
+     */
+    public String getSuperclassName()
+    {
+        return superclassName;
+    }
+
+
+    /**
+     *  Returns the names of the directly implemented (or extended) interfaces.
+     */
+    public List<String> getInterfaceNames()
+    {
+        return interfaceNames;
+    }
+
+
+    public boolean isInterface()
+    {
+        return (accessFlags & ACC_INTERFACE) != 0;
+    }
+
+
+    /**
+     *  Determines whether the constant pool contains the passed string as a Utf8
+     *  entry. Anything that the class refers to by name (including the types of
+     *  its annotations, as descriptors) will have such an entry, so this can be
+     *  used as a cheap pre-filter before a full parse.
+     */
+    public boolean hasUtf8Constant(String value)
+    {
+        return utf8Constants.contains(value);
+    }
+
+
+    /**
+     *  Returns a copy of this header that retains only those Utf8 constants that
+     *  are object type descriptors ("Ljava/lang/String;"). These include the types
+     *  of the class' annotations, so the summary can still be used as a pre-filter
+     *  for annotated classes, and it's much smaller than the full header.
+     */
+    public ClassHeader summarize()
+    {
+        Set<String> descriptors = new HashSet<String>();
+        for (String value : utf8Constants)
+        {
+            if ((value.length() > 2) && value.startsWith("L") && value.endsWith(";"))
+                descriptors.add(value);
+        }
+        return new ClassHeader(accessFlags, className, superclassName, interfaceNames, descriptors);
+    }
+
+
+    /**
+     *  Writes this header in a form that can be read by {@link #readFrom}.
+     */
+    public void writeTo(DataOutput out)
+    throws IOException
+    {
+        out.writeShort(accessFlags);
+        out.writeUTF(className);
+        out.writeBoolean(superclassName != null);
+        if (superclassName != null)
+            out.writeUTF(superclassName);
+
+        out.writeInt(interfaceNames.size());
+        for (String name : interfaceNames)
+            out.writeUTF(name);
+
+        out.writeInt(utf8Constants.size());
+        for (String value : utf8Constants)
+            out.writeUTF(value);
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private static String lookupClassName(String[] utf8, int[] classRefs, int idx)
+    throws IOException
+    {
+        String internalName = ((idx > 0) && (idx < classRefs.length))
+                            ? utf8[classRefs[idx]]
+                            : null;
+        if (internalName == null)
+            throw new IOException("invalid class reference: " + idx);
+        return internalName.replace('/', '.');
+    }
+
+
+    private static void skipFully(DataInputStream in, int count)
+    throws IOException
+    {
+        in.readFully(new byte[count]);
+    }
+}
@@ -84,6 +84,11 @@ public class ClasspathScanner
             if (! applyBasePackageFilter(className))
                 continue;
 
+            // if we already know the class' annotations, we may not need to load it
+            Set<String> knownAnnotations = war.getKnownClassAnnotations(className);
+            if ((knownAnnotations != null) && ! applyIncludedAnnotationFilter(knownAnnotations))
+                continue;
+
             JavaClass klass = war.loadClass(className);
             AnnotationParser ap = new AnnotationParser(klass);
             if (! applyIncludedAnnotationFilter(ap))
@@ -154,4 +159,19 @@ public class ClasspathScanner
 
         return false;
     }
+
+
+    private boolean applyIncludedAnnotationFilter(Set<String> annoClasses)
+    {
+        if (includedAnnotations == null)
+            return true;
+
+        for (String annoClass : annoClasses)
+        {
+            if (includedAnnotations.contains(annoClass))
+                return true;
+        }
+
+        return false;
+    }
 }
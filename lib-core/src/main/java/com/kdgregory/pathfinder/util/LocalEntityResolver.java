@@ -0,0 +1,146 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.stream.XMLResolver;
+
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+
+import org.apache.log4j.Logger;
+
+
+/**
+ *  Resolves external entities (in practice, the DTDs referenced by old-style
+ *  <code>web.xml</code> and Spring context files) from copies bundled with this
+ *  library. Anything that isn't bundled resolves to an empty document, so that
+ *  parsing never attempts a network connection.
+ *  <p>
+ *  Schemas are not bundled: we never validate, so a <code>schemaLocation</code>
+ *  is just an attribute, and will not be retrieved by the parser.
+ *  <p>
+ *  Instances are stateless and may be shared between threads.
+ */
+public class LocalEntityResolver
+implements EntityResolver, XMLResolver
+{
+    private final static String RESOURCE_DIR = "com/kdgregory/pathfinder/util/dtd/";
+
+    // public IDs and system IDs are both mapped, since documents may specify either
+    private final static Map<String,String> CATALOG = new HashMap<String,String>();
+    static
+    {
+        addCatalogEntry("web-app_2_2.dtd",
+                        "-//Sun Microsystems, Inc.//DTD Web Application 2.2//EN",
+                        "http://java.sun.com/j2ee/dtds/web-app_2_2.dtd");
+        addCatalogEntry("web-app_2_3.dtd",
+                        "-//Sun Microsystems, Inc.//DTD Web Application 2.3//EN",
+                        "http://java.sun.com/dtd/web-app_2_3.dtd");
+        addCatalogEntry("spring-beans.dtd",
+                        "-//SPRING//DTD BEAN//EN",
+                        "http://www.springframework.org/dtd/spring-beans.dtd");
+        addCatalogEntry("spring-beans-2.0.dtd",
+                        "-//SPRING//DTD BEAN 2.0//EN",
+                        "http://www.springframework.org/dtd/spring-beans-2.0.dtd");
+    }
+
+    private static void addCatalogEntry(String resourceName, String publicId, String systemId)
+    {
+        CATALOG.put(publicId, RESOURCE_DIR + resourceName);
+        CATALOG.put(systemId, RESOURCE_DIR + resourceName);
+    }
+
+
+//----------------------------------------------------------------------------
+//  Instance variables and constructor
+//----------------------------------------------------------------------------
+
+    private Logger logger = Logger.getLogger(getClass());
+
+
+//----------------------------------------------------------------------------
+//  EntityResolver / XMLResolver
+//----------------------------------------------------------------------------
+
+    @Override
+    public InputSource resolveEntity(String publicId, String systemId)
+    {
+        InputSource source = new InputSource(openEntity(publicId, systemId));
+        source.setPublicId(publicId);
+        source.setSystemId(systemId);
+        return source;
+    }
+
+
+    @Override
+    public Object resolveEntity(String publicId, String systemId, String baseUri, String namespace)
+    {
+        return openEntity(publicId, systemId);
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns a stream for the bundled copy of the specified entity, or an
+     *  empty stream if there isn't a bundled copy. Never returns null.
+     */
+    public InputStream openEntity(String publicId, String systemId)
+    {
+        String resourceName = lookup(publicId, systemId);
+        if (resourceName == null)
+        {
+            logger.debug("no local copy of entity; resolving as empty: "
+                         + "publicId = " + publicId + ", systemId = " + systemId);
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        logger.trace("resolved entity from " + resourceName
+                     + ": publicId = " + publicId + ", systemId = " + systemId);
+        InputStream in = getClass().getClassLoader().getResourceAsStream(resourceName);
+        return (in != null) ? in : new ByteArrayInputStream(new byte[0]);
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private static String lookup(String publicId, String systemId)
+    {
+        String resourceName = (publicId != null) ? CATALOG.get(publicId.trim()) : null;
+        if ((resourceName == null) && (systemId != null))
+            resourceName = CATALOG.get(systemId.trim());
+
+        // a relative system ID will have been resolved against the document's
+        // location, so fall back to matching on the filename alone
+        if ((resourceName == null) && (systemId != null))
+        {
+            String filename = systemId.trim();
+            filename = filename.substring(filename.lastIndexOf('/') + 1);
+            if (CATALOG.containsValue(RESOURCE_DIR + filename))
+                resourceName = RESOURCE_DIR + filename;
+        }
+
+        return resourceName;
+    }
+}
@@ -0,0 +1,167 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.w3c.dom.Document;
+
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+import org.apache.log4j.Logger;
+
+
+/**
+ *  Parses the XML files that we find in a WAR, with a configuration that never
+ *  goes to the network: external entities are resolved from local copies by
+ *  {@link LocalEntityResolver}, and nothing is validated.
+ *  <p>
+ *  DOM parsers are expensive to create, so are pooled and reused; the pool grows
+ *  to the number of threads that parse concurrently. StAX readers are cheap, and
+ *  are created from a single shared (pre-configured) factory.
+ *  <p>
+ *  All methods are static, and may be called from concurrent threads.
+ */
+public class LocalXmlParser
+{
+    private static Logger logger = Logger.getLogger(LocalXmlParser.class);
+
+    private static LocalEntityResolver resolver = new LocalEntityResolver();
+
+    private static ErrorHandler errorHandler = new ErrorHandler()
+    {
+        @Override
+        public void warning(SAXParseException ex)
+        {
+            logger.warn("XML parser warning: " + ex.getMessage());
+        }
+
+        @Override
+        public void error(SAXParseException ex)
+        throws SAXException
+        {
+            throw ex;
+        }
+
+        @Override
+        public void fatalError(SAXParseException ex)
+        throws SAXException
+        {
+            throw ex;
+        }
+    };
+
+    private static DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+    static
+    {
+        dbf.setNamespaceAware(true);
+        dbf.setValidating(false);
+    }
+
+    private static Queue<DocumentBuilder> pool = new ConcurrentLinkedQueue<DocumentBuilder>();
+
+    private static XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+    static
+    {
+        inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+        inputFactory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        inputFactory.setProperty(XMLInputFactory.IS_VALIDATING, Boolean.FALSE);
+        inputFactory.setProperty(XMLInputFactory.RESOLVER, resolver);
+    }
+
+
+    /**
+     *  Parses the passed stream into a namespace-aware DOM. The caller is responsible
+     *  for closing the stream.
+     *
+     *  @throws SAXException if the content is not well-formed XML.
+     */
+    public static Document parse(InputStream in)
+    throws IOException, SAXException
+    {
+        DocumentBuilder db = pool.poll();
+        if (db == null)
+            db = newDocumentBuilder();
+
+        try
+        {
+            return db.parse(in);
+        }
+        finally
+        {
+            // reset() also discards the resolver and error handler, so we re-apply them
+            db.reset();
+            configure(db);
+            pool.offer(db);
+        }
+    }
+
+
+    /**
+     *  Creates a namespace-aware, coalescing, StAX reader for the passed stream.
+     *  The caller is responsible for closing both reader and stream.
+     */
+    public static XMLStreamReader newStreamReader(InputStream in)
+    throws XMLStreamException
+    {
+        // the StAX spec doesn't promise that factories are thread-safe
+        synchronized (inputFactory)
+        {
+            return inputFactory.createXMLStreamReader(in);
+        }
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private static DocumentBuilder newDocumentBuilder()
+    {
+        try
+        {
+            DocumentBuilder db;
+            synchronized (dbf)
+            {
+                db = dbf.newDocumentBuilder();
+            }
+            configure(db);
+            return db;
+        }
+        catch (ParserConfigurationException ex)
+        {
+            throw new IllegalStateException("unable to create DOM parser", ex);
+        }
+    }
+
+
+    private static void configure(DocumentBuilder db)
+    {
+        db.setEntityResolver(resolver);
+        db.setErrorHandler(errorHandler);
+    }
+}
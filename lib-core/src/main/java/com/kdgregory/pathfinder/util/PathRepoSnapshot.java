@@ -0,0 +1,516 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import net.sf.kdgcommons.io.IOUtil;
+
+import com.kdgregory.pathfinder.core.Destination;
+import com.kdgregory.pathfinder.core.DispatchedDestination;
+import com.kdgregory.pathfinder.core.HandlerDestination;
+import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.PathRepo;
+import com.kdgregory.pathfinder.core.impl.PathRepoImpl;
+
+
+/**
+ *  Saves the contents of a {@link PathRepo} to a compact binary file, and loads
+ *  it back, so that the results of inspecting a WAR can be reused without
+ *  reopening the WAR or parsing its classes.
+ *  <p>
+ *  Destinations are not serialized as such: their implementation classes live
+ *  in the inspector modules (and may not even be public). Instead, each is
+ *  recorded as the information needed to report on it -- type, handler class
+ *  and method, request parameters, display text, and the invocation option
+ *  that controls whether it's displayed -- along with the servlet mapping of a
+ *  {@link DispatchedDestination}, and restored as a {@link SnapshotDestination}.
+ *  <p>
+ *  File layout (all integers big-endian):
+ *  <pre>
+ *      magic           int         "PFRS"
+ *      version         short
+ *      string table    int count, then (int length, UTF-8 bytes) per string
+ *      destinations    int count, then per destination:
+ *                          int type, int class, int method, int text,
+ *                          int textWithParams, int servletPattern,
+ *                          byte displayOption,
+ *                          short paramCount, (int name, int type) per param
+ *      routes          int count, then per URL:
+ *                          int url, byte count, (byte method, int dest) per method
+ *  </pre>
+ *  Strings are referenced by index into the string table (-1 for null), and
+ *  each distinct string is stored once; destinations are referenced by index,
+ *  and are shared between routes that shared them when saved. Version 1 files,
+ *  which don't have the servlet pattern, can still be loaded.
+ *  <p>
+ *  Loading memory-maps the file and decodes directly from the mapping.
+ */
+public class PathRepoSnapshot
+{
+    private static Logger logger = Logger.getLogger(PathRepoSnapshot.class);
+
+    private final static int MAGIC = 0x50465253;
+    private final static short VERSION = 2;
+
+    // values for display option, other than option ordinals
+    private final static byte DISPLAY_ALWAYS = -1;
+    private final static byte DISPLAY_NEVER = -2;
+
+    private final static Charset UTF8 = Charset.forName("UTF-8");
+
+
+    /**
+     *  Returns true if the passed file starts with the snapshot magic number.
+     *  Returns false for files that can't be read.
+     */
+    public static boolean isSnapshot(File file)
+    {
+        if (! file.isFile())
+            return false;
+
+        FileInputStream in = null;
+        try
+        {
+            in = new FileInputStream(file);
+            int magic = 0;
+            for (int ii = 0 ; ii < 4 ; ii++)
+            {
+                int b = in.read();
+                if (b < 0)
+                    return false;
+                magic = (magic << 8) | b;
+            }
+            return magic == MAGIC;
+        }
+        catch (IOException ex)
+        {
+            return false;
+        }
+        finally
+        {
+            IOUtil.closeQuietly(in);
+        }
+    }
+
+
+    /**
+     *  Writes the repository to the specified file, replacing anything that's
+     *  already there.
+     */
+    public static void save(PathRepo repo, File file)
+    throws IOException
+    {
+        StringTable strings = new StringTable();
+        Map<Destination,Integer> destIndexes = new IdentityHashMap<Destination,Integer>();
+        List<Destination> dests = new ArrayList<Destination>();
+        int urlCount = 0;
+        for (String url : repo)
+        {
+            strings.add(url);
+            for (Destination dest : repo.get(url).values())
+            {
+                if (destIndexes.containsKey(dest))
+                    continue;
+                destIndexes.put(dest, Integer.valueOf(dests.size()));
+                dests.add(dest);
+                addDestinationStrings(dest, strings);
+            }
+            urlCount++;
+        }
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 65536));
+        try
+        {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            strings.write(out);
+
+            out.writeInt(dests.size());
+            for (Destination dest : dests)
+                writeDestination(dest, strings, out);
+
+            out.writeInt(urlCount);
+            for (String url : repo)
+            {
+                Map<HttpMethod,Destination> destMap = repo.get(url);
+                out.writeInt(strings.indexOf(url));
+                out.writeByte(destMap.size());
+                for (Map.Entry<HttpMethod,Destination> entry : destMap.entrySet())
+                {
+                    out.writeByte(entry.getKey().ordinal());
+                    out.writeInt(destIndexes.get(entry.getValue()).intValue());
+                }
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+        logger.debug("saved " + urlCount + " URLs, " + dests.size() + " destinations, "
+                     + strings.size() + " strings to " + file);
+    }
+
+
+    /**
+     *  Loads a snapshot into a new repository.
+     */
+    public static PathRepo load(File file)
+    throws IOException
+    {
+        return load(file, new PathRepoImpl());
+    }
+
+
+    /**
+     *  Loads a snapshot into the passed repository (which is returned), replacing
+     *  any existing entries for the snapshot's URLs.
+     */
+    public static PathRepo load(File file, PathRepo repo)
+    throws IOException
+    {
+        ByteBuffer buf = map(file);
+        try
+        {
+            if (buf.getInt() != MAGIC)
+                throw new IOException("not a PathFinder snapshot: " + file);
+            short version = buf.getShort();
+            if ((version < 1) || (version > VERSION))
+                throw new IOException("unsupported snapshot version (" + version + "): " + file);
+
+            String[] strings = new String[buf.getInt()];
+            for (int ii = 0 ; ii < strings.length ; ii++)
+            {
+                byte[] bytes = new byte[buf.getInt()];
+                buf.get(bytes);
+                strings[ii] = new String(bytes, UTF8);
+            }
+
+            SnapshotDestination[] dests = new SnapshotDestination[buf.getInt()];
+            for (int ii = 0 ; ii < dests.length ; ii++)
+                dests[ii] = readDestination(buf, strings, version);
+
+            HttpMethod[] methods = HttpMethod.values();
+            int urlCount = buf.getInt();
+            for (int ii = 0 ; ii < urlCount ; ii++)
+            {
+                String url = strings[buf.getInt()];
+                int count = buf.get();
+                Map<HttpMethod,Destination> destMap = new EnumMap<HttpMethod,Destination>(HttpMethod.class);
+                for (int jj = 0 ; jj < count ; jj++)
+                {
+                    HttpMethod method = methods[buf.get()];
+                    destMap.put(method, dests[buf.getInt()]);
+                }
+                repo.put(url, destMap);
+            }
+            logger.debug("loaded " + urlCount + " URLs from " + file);
+            return repo;
+        }
+        catch (BufferUnderflowException ex)
+        {
+            throw new IOException("truncated snapshot: " + file);
+        }
+        catch (IndexOutOfBoundsException ex)
+        {
+            throw new IOException("corrupt snapshot: " + file);
+        }
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private static ByteBuffer map(File file)
+    throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try
+        {
+            FileChannel channel = raf.getChannel();
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        finally
+        {
+            // the mapping remains valid after the file is closed
+            IOUtil.closeQuietly(raf);
+        }
+    }
+
+
+    private static String text(Destination dest, boolean withParams)
+    {
+        Map<InvocationOptions,Boolean> options = new EnumMap<InvocationOptions,Boolean>(InvocationOptions.class);
+        options.put(InvocationOptions.SHOW_REQUEST_PARAMS, Boolean.valueOf(withParams));
+        return dest.toString(options);
+    }
+
+
+    /**
+     *  Determines which single option, if any, causes the destination to be
+     *  displayed. This covers the existing destinations, each of which depends
+     *  on at most one option.
+     */
+    private static byte displayOption(Destination dest)
+    {
+        Map<InvocationOptions,Boolean> options = new EnumMap<InvocationOptions,Boolean>(InvocationOptions.class);
+        if (dest.isDisplayed(options))
+            return DISPLAY_ALWAYS;
+
+        for (InvocationOptions option : InvocationOptions.values())
+        {
+            options.clear();
+            options.put(option, Boolean.TRUE);
+            if (dest.isDisplayed(options))
+                return (byte)option.ordinal();
+        }
+        return DISPLAY_NEVER;
+    }
+
+
+    private static void addDestinationStrings(Destination dest, StringTable strings)
+    {
+        strings.add(RouteWriter.destinationType(dest));
+        strings.add(RouteWriter.handlerClass(dest));
+        strings.add(RouteWriter.handlerMethod(dest));
+        strings.add(text(dest, false));
+        strings.add(text(dest, true));
+        strings.add(servletPattern(dest));
+        for (Map.Entry<String,String> param : RouteWriter.handlerParams(dest).entrySet())
+        {
+            strings.add(param.getKey());
+            strings.add(param.getValue());
+        }
+    }
+
+
+    private static void writeDestination(Destination dest, StringTable strings, DataOutputStream out)
+    throws IOException
+    {
+        Map<String,String> params = RouteWriter.handlerParams(dest);
+
+        out.writeInt(strings.indexOf(RouteWriter.destinationType(dest)));
+        out.writeInt(strings.indexOf(RouteWriter.handlerClass(dest)));
+        out.writeInt(strings.indexOf(RouteWriter.handlerMethod(dest)));
+        out.writeInt(strings.indexOf(text(dest, false)));
+        out.writeInt(strings.indexOf(text(dest, true)));
+        out.writeInt(strings.indexOf(servletPattern(dest)));
+        out.writeByte(displayOption(dest));
+        out.writeShort(params.size());
+        for (Map.Entry<String,String> param : params.entrySet())
+        {
+            out.writeInt(strings.indexOf(param.getKey()));
+            out.writeInt(strings.indexOf(param.getValue()));
+        }
+    }
+
+
+    private static SnapshotDestination readDestination(ByteBuffer buf, String[] strings, short version)
+    {
+        String type = lookup(strings, buf.getInt());
+        String handlerClass = lookup(strings, buf.getInt());
+        String handlerMethod = lookup(strings, buf.getInt());
+        String text = lookup(strings, buf.getInt());
+        String textWithParams = lookup(strings, buf.getInt());
+        String servletPattern = (version > 1) ? lookup(strings, buf.getInt()) : null;
+        byte displayOption = buf.get();
+
+        int paramCount = buf.getShort();
+        Map<String,String> params = Collections.emptyMap();
+        if (paramCount > 0)
+        {
+            params = new LinkedHashMap<String,String>();
+            for (int ii = 0 ; ii < paramCount ; ii++)
+                params.put(lookup(strings, buf.getInt()), lookup(strings, buf.getInt()));
+        }
+
+        return new SnapshotDestination(type, handlerClass, handlerMethod, params,
+                                       text, textWithParams, servletPattern, displayOption);
+    }
+
+
+    private static String servletPattern(Destination dest)
+    {
+        return (dest instanceof DispatchedDestination)
+             ? ((DispatchedDestination)dest).getServletPattern()
+             : null;
+    }
+
+
+    private static String lookup(String[] strings, int index)
+    {
+        return (index < 0) ? null : strings[index];
+    }
+
+
+//----------------------------------------------------------------------------
+//  Supporting classes
+//----------------------------------------------------------------------------
+
+    /**
+     *  Assigns indexes to distinct strings, in order of first appearance.
+     */
+    private static class StringTable
+    {
+        private Map<String,Integer> indexes = new HashMap<String,Integer>();
+        private List<String> strings = new ArrayList<String>();
+
+        public void add(String value)
+        {
+            if ((value == null) || indexes.containsKey(value))
+                return;
+            indexes.put(value, Integer.valueOf(strings.size()));
+            strings.add(value);
+        }
+
+        public int indexOf(String value)
+        {
+            return (value == null) ? -1 : indexes.get(value).intValue();
+        }
+
+        public int size()
+        {
+            return strings.size();
+        }
+
+        public void write(DataOutputStream out)
+        throws IOException
+        {
+            out.writeInt(strings.size());
+            for (String value : strings)
+            {
+                byte[] bytes = value.getBytes(UTF8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+    }
+
+
+    /**
+     *  A destination restored from a snapshot. It reports the same information
+     *  as the original: handler details, display text (with and without request
+     *  parameters), and visibility under the current invocation options.
+     */
+    public static class SnapshotDestination
+    implements HandlerDestination, DispatchedDestination
+    {
+        private String type;
+        private String handlerClass;
+        private String handlerMethod;
+        private Map<String,String> params;
+        private String text;
+        private String textWithParams;
+        private String servletPattern;
+        private byte displayOption;
+
+        private SnapshotDestination(
+                String type, String handlerClass, String handlerMethod, Map<String,String> params,
+                String text, String textWithParams, String servletPattern, byte displayOption)
+        {
+            this.type = type;
+            this.handlerClass = handlerClass;
+            this.handlerMethod = handlerMethod;
+            this.params = params;
+            this.text = text;
+            this.textWithParams = textWithParams;
+            this.servletPattern = servletPattern;
+            this.displayOption = displayOption;
+        }
+
+        /**
+         *  Returns the type of the original destination, as reported by {@link
+         *  RouteWriter} (eg, "spring" or "jsp").
+         */
+        public String getType()
+        {
+            return type;
+        }
+
+        @Override
+        public String getHandlerClass()
+        {
+            return handlerClass;
+        }
+
+        @Override
+        public String getHandlerMethod()
+        {
+            return handlerMethod;
+        }
+
+        @Override
+        public Map<String,String> getHandlerParams()
+        {
+            return params;
+        }
+
+        @Override
+        public String getServletPattern()
+        {
+            return servletPattern;
+        }
+
+        @Override
+        public boolean isDisplayed(Map<InvocationOptions,Boolean> options)
+        {
+            switch (displayOption)
+            {
+                case DISPLAY_ALWAYS :
+                    return true;
+                case DISPLAY_NEVER :
+                    return false;
+                default :
+                    return InvocationOptions.values()[displayOption].isEnabled(options);
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            return text;
+        }
+
+        @Override
+        public String toString(Map<InvocationOptions,Boolean> options)
+        {
+            return InvocationOptions.SHOW_REQUEST_PARAMS.isEnabled(options)
+                 ? textWithParams
+                 : text;
+        }
+    }
+}
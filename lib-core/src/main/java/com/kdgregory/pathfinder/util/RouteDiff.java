@@ -0,0 +1,295 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.sf.kdgcommons.lang.ObjectUtil;
+
+import com.kdgregory.pathfinder.core.Destination;
+import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.PathRepo;
+
+
+/**
+ *  Compares two repositories, reporting the routes (URL and method) that were
+ *  added, removed, or now go to a different destination.
+ *  <p>
+ *  Both repositories are iterated in parallel, relying on their URLs being
+ *  returned in <code>String</code> order, and changes are passed to a {@link
+ *  Listener} as they're found; nothing is retained between URLs.
+ *  <p>
+ *  Methods are compared using the repository's lookup rules, so a URL that
+ *  was mapped for all methods and is now mapped for each method individually
+ *  (to the same destination) is not reported as changed. Destinations are
+ *  compared by the information that's visible in reports: type, handler class
+ *  and method, request parameters, and display text.
+ */
+public class RouteDiff
+{
+    /**
+     *  The different kinds of change.
+     */
+    public enum ChangeType
+    {
+        ADDED, REMOVED, CHANGED
+    }
+
+
+    /**
+     *  Receives changes as they're found.
+     */
+    public interface Listener
+    {
+        public void onChange(Change change)
+        throws Exception;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Instance variables and constructor
+//----------------------------------------------------------------------------
+
+    private PathRepo oldRepo;
+    private PathRepo newRepo;
+
+    private int[] counts = new int[ChangeType.values().length];
+
+
+    public RouteDiff(PathRepo oldRepo, PathRepo newRepo)
+    {
+        this.oldRepo = oldRepo;
+        this.newRepo = newRepo;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Compares the repositories, invoking the listener for each change (in
+     *  URL order). Any exception thrown by the listener stops the comparison
+     *  and is propagated to the caller.
+     */
+    public void run(Listener listener)
+    throws Exception
+    {
+        counts = new int[ChangeType.values().length];
+
+        Iterator<String> oldItx = oldRepo.iterator();
+        Iterator<String> newItx = newRepo.iterator();
+        String oldUrl = next(oldItx);
+        String newUrl = next(newItx);
+
+        while ((oldUrl != null) || (newUrl != null))
+        {
+            int cmp = (oldUrl == null) ? 1
+                    : (newUrl == null) ? -1
+                    : oldUrl.compareTo(newUrl);
+            if (cmp < 0)
+            {
+                compareUrl(oldUrl, oldRepo.get(oldUrl), null, listener);
+                oldUrl = next(oldItx);
+            }
+            else if (cmp > 0)
+            {
+                compareUrl(newUrl, null, newRepo.get(newUrl), listener);
+                newUrl = next(newItx);
+            }
+            else
+            {
+                compareUrl(oldUrl, oldRepo.get(oldUrl), newRepo.get(newUrl), listener);
+                oldUrl = next(oldItx);
+                newUrl = next(newItx);
+            }
+        }
+    }
+
+
+    /**
+     *  Returns the number of changes of the given type reported by the last
+     *  call to {@link #run}.
+     */
+    public int getCount(ChangeType type)
+    {
+        return counts[type.ordinal()];
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private static String next(Iterator<String> itx)
+    {
+        return itx.hasNext() ? itx.next() : null;
+    }
+
+
+    private void compareUrl(String url, Map<HttpMethod,Destination> oldMap, Map<HttpMethod,Destination> newMap, Listener listener)
+    throws Exception
+    {
+        Set<HttpMethod> methods = EnumSet.noneOf(HttpMethod.class);
+        if (oldMap != null)
+            methods.addAll(oldMap.keySet());
+        if (newMap != null)
+            methods.addAll(newMap.keySet());
+
+        // if one side maps ALL and the other has specific methods, compare
+        // each specific method
+        if ((methods.size() > 1) && methods.remove(HttpMethod.ALL))
+            methods = EnumSet.complementOf(EnumSet.of(HttpMethod.ALL));
+
+        for (HttpMethod method : methods)
+        {
+            Destination oldDest = (oldMap == null) ? null : lookup(oldMap, method);
+            Destination newDest = (newMap == null) ? null : lookup(newMap, method);
+
+            Change change = null;
+            if (oldDest == null)
+                change = new Change(ChangeType.ADDED, url, method, null, newDest, Collections.<String>emptyList());
+            else if (newDest == null)
+                change = new Change(ChangeType.REMOVED, url, method, oldDest, null, Collections.<String>emptyList());
+            else
+            {
+                List<String> fields = compareDestinations(oldDest, newDest);
+                if (! fields.isEmpty())
+                    change = new Change(ChangeType.CHANGED, url, method, oldDest, newDest, fields);
+            }
+
+            if (change != null)
+            {
+                counts[change.getType().ordinal()]++;
+                listener.onChange(change);
+            }
+        }
+    }
+
+
+    /**
+     *  Mirrors the lookup rules of {@link PathRepo#get(String,HttpMethod)}.
+     */
+    private static Destination lookup(Map<HttpMethod,Destination> destMap, HttpMethod method)
+    {
+        Destination dest = destMap.get(method);
+        return (dest != null) ? dest : destMap.get(HttpMethod.ALL);
+    }
+
+
+    private static List<String> compareDestinations(Destination oldDest, Destination newDest)
+    {
+        List<String> result = new ArrayList<String>(4);
+        if (! ObjectUtil.equals(RouteWriter.destinationType(oldDest), RouteWriter.destinationType(newDest)))
+            result.add("type");
+        if (! ObjectUtil.equals(RouteWriter.handlerClass(oldDest), RouteWriter.handlerClass(newDest)))
+            result.add("class");
+        if (! ObjectUtil.equals(RouteWriter.handlerMethod(oldDest), RouteWriter.handlerMethod(newDest)))
+            result.add("handlerMethod");
+        if (! RouteWriter.handlerParams(oldDest).equals(RouteWriter.handlerParams(newDest)))
+            result.add("params");
+        if (result.isEmpty() && ! text(oldDest).equals(text(newDest)))
+            result.add("destination");
+        return result;
+    }
+
+
+    private static String text(Destination dest)
+    {
+        return dest.toString(Collections.<InvocationOptions,Boolean>emptyMap());
+    }
+
+
+//----------------------------------------------------------------------------
+//  Supporting classes
+//----------------------------------------------------------------------------
+
+    /**
+     *  A single changed route. For a <code>CHANGED</code> route, identifies the
+     *  fields that are different, using the names from {@link RouteWriter}.
+     */
+    public static class Change
+    {
+        private ChangeType type;
+        private String url;
+        private HttpMethod method;
+        private Destination oldDestination;
+        private Destination newDestination;
+        private List<String> changedFields;
+
+        private Change(ChangeType type, String url, HttpMethod method,
+                       Destination oldDestination, Destination newDestination,
+                       List<String> changedFields)
+        {
+            this.type = type;
+            this.url = url;
+            this.method = method;
+            this.oldDestination = oldDestination;
+            this.newDestination = newDestination;
+            this.changedFields = changedFields;
+        }
+
+        public ChangeType getType()
+        {
+            return type;
+        }
+
+        public String getUrl()
+        {
+            return url;
+        }
+
+        public HttpMethod getMethod()
+        {
+            return method;
+        }
+
+        /**
+         *  Returns the destination in the old repository, null if the route
+         *  was added.
+         */
+        public Destination getOldDestination()
+        {
+            return oldDestination;
+        }
+
+        /**
+         *  Returns the destination in the new repository, null if the route
+         *  was removed.
+         */
+        public Destination getNewDestination()
+        {
+            return newDestination;
+        }
+
+        public List<String> getChangedFields()
+        {
+            return changedFields;
+        }
+
+        @Override
+        public String toString()
+        {
+            return type + " " + method + " " + url + " " + changedFields;
+        }
+    }
+}
@@ -0,0 +1,668 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import com.kdgregory.pathfinder.core.Destination;
+import com.kdgregory.pathfinder.core.DispatchedDestination;
+import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.core.PathRepo;
+
+
+/**
+ *  Resolves a concrete request URL (such as <code>/servlet/D/42</code>) to the
+ *  repository entry that would handle it (such as <code>/servlet/D/{id}</code>).
+ *  <p>
+ *  Matching happens in two steps, as it does in the app server. First we pick
+ *  the servlet mapping, using the servlet spec's precedence; the first of these
+ *  that matches wins:
+ *  <ol>
+ *  <li> <b>Exact</b>: a mapping without wildcards.
+ *  <li> <b>Prefix</b>: a mapping of the form <code>/path/*</code>; the longest
+ *       matching prefix wins.
+ *  <li> <b>Extension</b>: a mapping of the form <code>*.ext</code>.
+ *  <li> <b>Default</b>: the mapping <code>/</code>.
+ *  </ol>
+ *  If that mapping belongs to a dispatching servlet, the routes that it produced
+ *  (identified by {@link DispatchedDestination#getServletPattern}) are then
+ *  matched, and no others: a request that the dispatcher can't handle doesn't
+ *  match anything. An exact route wins over a pattern, and if several patterns
+ *  match, the most specific wins, using the same rules as Spring's
+ *  <code>AntPathMatcher</code>: fewest variables and wildcards (<code>**</code>
+ *  counts double), then longest pattern.
+ *  <p>
+ *  Repositories loaded from older snapshots (or populated by hand) may contain
+ *  Spring patterns that don't identify their dispatcher. These are matched after
+ *  exact mappings but before prefix mappings, since without the dispatcher's
+ *  mapping there's no better way to rank them.
+ *  <p>
+ *  The matcher is compiled from a snapshot of the repository, and doesn't see
+ *  later changes. Exact, prefix, and extension lookups are hash lookups, and
+ *  patterns are held in a tree keyed by path segment, so the cost of a match
+ *  depends on the length of the URL rather than the number of routes.
+ *  <p>
+ *  Instances are immutable, and may be shared between threads.
+ */
+public class RouteMatcher
+{
+    /**
+     *  Identifies how a URL was matched.
+     */
+    public enum MatchType { EXACT, PATTERN, PREFIX, EXTENSION, DEFAULT }
+
+
+//----------------------------------------------------------------------------
+//  Instance variables and constructor
+//----------------------------------------------------------------------------
+
+    private Map<String,ServletNode> exact = new HashMap<String,ServletNode>();
+    private Map<String,ServletNode> prefixes = new HashMap<String,ServletNode>();
+    private Map<String,ServletNode> extensions = new HashMap<String,ServletNode>();
+    private ServletNode defaultServlet;
+    private ServletNode unknownDispatcher = new ServletNode();
+    private int routeCount;
+
+
+    /**
+     *  Compiles the URLs in the passed repository.
+     */
+    public RouteMatcher(PathRepo repo)
+    {
+        for (String url : repo)
+        {
+            Map<HttpMethod,Destination> destinations = Collections.unmodifiableMap(
+                    new TreeMap<HttpMethod,Destination>(repo.get(url)));
+            addRoute(url, destinations);
+            routeCount++;
+        }
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns the number of routes that were compiled.
+     */
+    public int getRouteCount()
+    {
+        return routeCount;
+    }
+
+
+    /**
+     *  Returns the route that would handle the passed URL, <code>null</code> if
+     *  there isn't one. The URL is relative to the context root; any query string
+     *  or path parameters (such as <code>;jsessionid</code>) are ignored.
+     */
+    public Match match(String url)
+    {
+        String path = stripParameters(url);
+
+        ServletNode servlet = exact.get(path);
+        if (servlet == null)
+        {
+            Match match = unknownDispatcher.match(path);
+            if (match != null)
+                return match;
+            servlet = matchPrefix(path);
+        }
+        if (servlet == null)
+            servlet = matchExtension(path);
+        if (servlet == null)
+            servlet = defaultServlet;
+
+        return (servlet != null) ? servlet.match(path) : null;
+    }
+
+
+    /**
+     *  Returns the destination that would handle the passed URL and method,
+     *  <code>null</code> if there isn't one. Note that only the best-matching
+     *  route is considered: if it doesn't handle the method, we don't look
+     *  for a less-specific route that does (nor would the app server).
+     */
+    public Destination getDestination(String url, HttpMethod method)
+    {
+        Match match = match(url);
+        return (match != null) ? match.getDestination(method) : null;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals -- compilation
+//----------------------------------------------------------------------------
+
+    private void addRoute(String url, Map<HttpMethod,Destination> destinations)
+    {
+        String servletPattern = getServletPattern(destinations);
+        if (servletPattern != null)
+        {
+            getServletNode(servletPattern).addRoute(url, destinations);
+            return;
+        }
+
+        MatchType type = classify(url);
+        if (type == MatchType.PATTERN)
+            unknownDispatcher.addRoute(url, destinations);
+        else
+            getServletNode(url).servletMatch = new Match(url, type, destinations);
+    }
+
+
+    /**
+     *  Returns the node for the passed servlet mapping, creating it if needed.
+     *  A pattern that isn't a valid servlet mapping gets the node for routes
+     *  whose dispatcher isn't known.
+     */
+    private ServletNode getServletNode(String servletPattern)
+    {
+        switch (classify(servletPattern))
+        {
+            case DEFAULT :
+                if (defaultServlet == null)
+                    defaultServlet = new ServletNode();
+                return defaultServlet;
+            case EXACT :
+                // servlet spec: the empty string maps the context root
+                return getOrCreate(exact, servletPattern.equals("") ? "/" : servletPattern);
+            case PREFIX :
+                return getOrCreate(prefixes, servletPattern.substring(0, servletPattern.length() - 2));
+            case EXTENSION :
+                return getOrCreate(extensions, servletPattern.substring(2));
+            default :
+                return unknownDispatcher;
+        }
+    }
+
+
+    private static ServletNode getOrCreate(Map<String,ServletNode> map, String key)
+    {
+        ServletNode node = map.get(key);
+        if (node == null)
+        {
+            node = new ServletNode();
+            map.put(key, node);
+        }
+        return node;
+    }
+
+
+    /**
+     *  Determines the form of a repository URL, when treated as a servlet mapping;
+     *  returns <code>PATTERN</code> for anything that can only be a Spring pattern.
+     */
+    static MatchType classify(String url)
+    {
+        if (url.equals("/"))
+            return MatchType.DEFAULT;
+        if (url.startsWith("*.") && (url.indexOf('/') < 0) && ! isPattern(url.substring(2)))
+            return MatchType.EXTENSION;
+        if (url.endsWith("/*") && ! isPattern(url.substring(0, url.length() - 2)))
+            return MatchType.PREFIX;
+        if (isPattern(url))
+            return MatchType.PATTERN;
+        return MatchType.EXACT;
+    }
+
+
+    /**
+     *  Returns the servlet mapping that owns the passed destinations, null if
+     *  they don't come from a dispatcher (or don't say which).
+     */
+    static String getServletPattern(Map<HttpMethod,Destination> destinations)
+    {
+        for (Destination dest : destinations.values())
+        {
+            if (dest instanceof DispatchedDestination)
+            {
+                String servletPattern = ((DispatchedDestination)dest).getServletPattern();
+                if (servletPattern != null)
+                    return servletPattern;
+            }
+        }
+        return null;
+    }
+
+
+    static boolean isPattern(String url)
+    {
+        return (url.indexOf('*') >= 0)
+            || (url.indexOf('?') >= 0)
+            || (url.indexOf('{') >= 0);
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals -- matching
+//----------------------------------------------------------------------------
+
+    private static String stripParameters(String url)
+    {
+        for (int ii = 0 ; ii < url.length() ; ii++)
+        {
+            char c = url.charAt(ii);
+            if ((c == '?') || (c == ';') || (c == '#'))
+                return url.substring(0, ii);
+        }
+        return url;
+    }
+
+
+    /**
+     *  Splits a path into its segments, ignoring the leading slash but retaining
+     *  a trailing empty segment (so that "/foo/" doesn't match "/foo").
+     */
+    static String[] splitPath(String path)
+    {
+        int start = path.startsWith("/") ? 1 : 0;
+        List<String> segments = new ArrayList<String>();
+        for (int idx = path.indexOf('/', start) ; idx >= 0 ; idx = path.indexOf('/', start))
+        {
+            segments.add(path.substring(start, idx));
+            start = idx + 1;
+        }
+        segments.add(path.substring(start));
+        return segments.toArray(new String[segments.size()]);
+    }
+
+
+    private ServletNode matchPrefix(String path)
+    {
+        if (prefixes.isEmpty())
+            return null;
+
+        // servlet spec: "/foo/*" matches both "/foo" and "/foo/bar"
+        ServletNode match = prefixes.get(path);
+        for (int idx = path.lastIndexOf('/') ; (match == null) && (idx >= 0) ; idx = path.lastIndexOf('/', idx - 1))
+        {
+            match = prefixes.get(path.substring(0, idx));
+        }
+        return match;
+    }
+
+
+    private ServletNode matchExtension(String path)
+    {
+        if (extensions.isEmpty())
+            return null;
+
+        int lastSlash = path.lastIndexOf('/');
+        int lastDot = path.lastIndexOf('.');
+        return (lastDot > lastSlash)
+             ? extensions.get(path.substring(lastDot + 1))
+             : null;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Supporting classes
+//----------------------------------------------------------------------------
+
+    /**
+     *  The result of a successful match.
+     */
+    public static class Match
+    {
+        private String url;
+        private MatchType type;
+        private Map<HttpMethod,Destination> destinations;
+
+        private Match(String url, MatchType type, Map<HttpMethod,Destination> destinations)
+        {
+            this.url = url;
+            this.type = type;
+            this.destinations = destinations;
+        }
+
+        /**
+         *  Returns the repository URL (pattern) that matched.
+         */
+        public String getUrl()
+        {
+            return url;
+        }
+
+        public MatchType getType()
+        {
+            return type;
+        }
+
+        /**
+         *  Returns the destinations for the matched URL, keyed by method.
+         */
+        public Map<HttpMethod,Destination> getDestinations()
+        {
+            return destinations;
+        }
+
+        /**
+         *  Returns the destination for a specific method, falling back to the
+         *  "all methods" destination; <code>null</code> if neither exists.
+         */
+        public Destination getDestination(HttpMethod method)
+        {
+            Destination dest = destinations.get(method);
+            return (dest != null) ? dest : destinations.get(HttpMethod.ALL);
+        }
+
+        @Override
+        public String toString()
+        {
+            return type + ": " + url;
+        }
+    }
+
+
+    /**
+     *  The routes reached through a single servlet mapping. For an ordinary servlet
+     *  this is just the mapping itself; for a dispatcher it's the exact URLs and
+     *  patterns that the dispatcher handles. If the repository has both (which
+     *  it shouldn't), the dispatcher's routes are tried first.
+     */
+    private static class ServletNode
+    {
+        public Match servletMatch;
+        public Map<String,Match> exact = new HashMap<String,Match>();
+        public PatternNode patterns = new PatternNode();
+
+        public void addRoute(String url, Map<HttpMethod,Destination> destinations)
+        {
+            if (! isPattern(url))
+            {
+                exact.put(url.equals("") ? "/" : url, new Match(url, MatchType.EXACT, destinations));
+                return;
+            }
+
+            PatternNode node = patterns;
+            for (String segment : splitPath(url))
+            {
+                if (segment.equals("**"))
+                {
+                    if (node.doubleWildcard == null)
+                        node.doubleWildcard = new PatternNode();
+                    node = node.doubleWildcard;
+                }
+                else if (isPattern(segment))
+                {
+                    node = node.getOrCreateWildcard(segment);
+                }
+                else
+                {
+                    node = node.getOrCreateLiteral(segment);
+                }
+            }
+            node.routes.add(new PatternRoute(url, destinations));
+        }
+
+        public Match match(String path)
+        {
+            Match match = exact.get(path);
+            if ((match == null) && ! patterns.isEmpty())
+            {
+                PatternRoute best = patterns.match(splitPath(path), 0, null);
+                if (best != null)
+                    match = best.match;
+            }
+            return (match != null) ? match : servletMatch;
+        }
+    }
+
+
+    /**
+     *  A pattern route, with its precomputed specificity.
+     */
+    static class PatternRoute
+    {
+        public Match match;
+        public boolean catchAll;
+        public int wildcardCount;
+        public int effectiveLength;
+        public int singleWildcards;
+        public int variables;
+
+        public PatternRoute(String url, Map<HttpMethod,Destination> destinations)
+        {
+            match = new Match(url, MatchType.PATTERN, destinations);
+            catchAll = url.equals("/**");
+
+            int doubleWildcards = 0;
+            for (int ii = 0 ; ii < url.length() ; ii++)
+            {
+                char c = url.charAt(ii);
+                if (c == '{')
+                {
+                    variables++;
+                    int close = url.indexOf('}', ii);
+                    ii = (close > ii) ? close : url.length();
+                    effectiveLength++;                  // variable counts as one char
+                    continue;
+                }
+                if ((c == '*') && (ii + 1 < url.length()) && (url.charAt(ii + 1) == '*'))
+                {
+                    doubleWildcards++;
+                    ii++;
+                    effectiveLength += 2;
+                    continue;
+                }
+                if ((c == '*') || (c == '?'))
+                    singleWildcards++;
+                effectiveLength++;
+            }
+            wildcardCount = variables + singleWildcards + 2 * doubleWildcards;
+        }
+
+        /**
+         *  Returns true if this route is more specific than the passed route
+         *  (which may be null).
+         */
+        public boolean isBetterThan(PatternRoute that)
+        {
+            if (that == null)
+                return true;
+            int cmp = compareSpecificity(that);
+            // for determinism
+            return (cmp != 0) ? (cmp < 0) : this.match.getUrl().compareTo(that.match.getUrl()) < 0;
+        }
+
+        /**
+         *  Compares the specificity of this route and the passed route: negative
+         *  if this route is more specific, positive if less, and 0 if Spring would
+         *  consider them equally specific.
+         */
+        public int compareSpecificity(PatternRoute that)
+        {
+            if (this.catchAll != that.catchAll)
+                return this.catchAll ? 1 : -1;
+            if (this.wildcardCount != that.wildcardCount)
+                return (this.wildcardCount < that.wildcardCount) ? -1 : 1;
+            if (this.effectiveLength != that.effectiveLength)
+                return (this.effectiveLength > that.effectiveLength) ? -1 : 1;
+            if (this.singleWildcards != that.singleWildcards)
+                return (this.singleWildcards < that.singleWildcards) ? -1 : 1;
+            if (this.variables != that.variables)
+                return (this.variables < that.variables) ? -1 : 1;
+            return 0;
+        }
+    }
+
+
+    /**
+     *  A node in the pattern tree. Children are keyed by the path segment that
+     *  leads to them: literal segments are found by hash lookup, segments with
+     *  wildcards or variables are tested in turn, and <code>**</code> (which can
+     *  consume any number of segments) has its own child.
+     */
+    private static class PatternNode
+    {
+        public Map<String,PatternNode> literals;
+        public List<WildcardEdge> wildcards;
+        public PatternNode doubleWildcard;
+        public List<PatternRoute> routes = new ArrayList<PatternRoute>(1);
+
+        public boolean isEmpty()
+        {
+            return (literals == null) && (wildcards == null) && (doubleWildcard == null) && routes.isEmpty();
+        }
+
+        public PatternNode getOrCreateLiteral(String segment)
+        {
+            if (literals == null)
+                literals = new HashMap<String,PatternNode>();
+
+            PatternNode child = literals.get(segment);
+            if (child == null)
+            {
+                child = new PatternNode();
+                literals.put(segment, child);
+            }
+            return child;
+        }
+
+        public PatternNode getOrCreateWildcard(String segment)
+        {
+            if (wildcards == null)
+                wildcards = new ArrayList<WildcardEdge>(2);
+
+            for (WildcardEdge edge : wildcards)
+            {
+                if (edge.segment.equals(segment))
+                    return edge.child;
+            }
+            WildcardEdge edge = new WildcardEdge(segment);
+            wildcards.add(edge);
+            return edge.child;
+        }
+
+        /**
+         *  Finds the best route that matches the segments starting at the given
+         *  index, given the best route found so far (which may be null).
+         */
+        public PatternRoute match(String[] segments, int idx, PatternRoute best)
+        {
+            if (idx == segments.length)
+            {
+                for (PatternRoute route : routes)
+                {
+                    if (route.isBetterThan(best))
+                        best = route;
+                }
+                // a trailing "**" may match zero segments
+                if (doubleWildcard != null)
+                    best = doubleWildcard.match(segments, idx, best);
+                return best;
+            }
+
+            String segment = segments[idx];
+            if (literals != null)
+            {
+                PatternNode child = literals.get(segment);
+                if (child != null)
+                    best = child.match(segments, idx + 1, best);
+            }
+
+            if (wildcards != null)
+            {
+                for (WildcardEdge edge : wildcards)
+                {
+                    if (edge.matches(segment))
+                        best = edge.child.match(segments, idx + 1, best);
+                }
+            }
+
+            if (doubleWildcard != null)
+            {
+                for (int next = idx ; next <= segments.length ; next++)
+                    best = doubleWildcard.match(segments, next, best);
+            }
+
+            return best;
+        }
+    }
+
+
+    /**
+     *  A path segment that contains wildcards or variables, translated into a
+     *  regex; a segment that's just a wildcard or variable matches anything.
+     */
+    static class WildcardEdge
+    {
+        public String segment;
+        public Pattern regex;
+        public PatternNode child = new PatternNode();
+
+        public WildcardEdge(String segment)
+        {
+            this.segment = segment;
+            if (! segment.equals("*") && ! segment.matches("\\{[^:}]*\\}"))
+                regex = Pattern.compile(toRegex(segment));
+        }
+
+        public boolean matches(String value)
+        {
+            // like AntPathMatcher, a bare wildcard or variable needs a segment to match
+            return (regex == null)
+                 ? value.length() > 0
+                 : regex.matcher(value).matches();
+        }
+
+        private static String toRegex(String segment)
+        {
+            StringBuilder sb = new StringBuilder(segment.length() * 2);
+            int literalStart = 0;
+            for (int ii = 0 ; ii < segment.length() ; ii++)
+            {
+                char c = segment.charAt(ii);
+                if ((c != '*') && (c != '?') && (c != '{'))
+                    continue;
+
+                if (ii > literalStart)
+                    sb.append(Pattern.quote(segment.substring(literalStart, ii)));
+
+                if (c == '*')
+                {
+                    sb.append("[^/]*");
+                }
+                else if (c == '?')
+                {
+                    sb.append("[^/]");
+                }
+                else
+                {
+                    // Spring variables may specify their own regex: {name:regex}
+                    int close = segment.indexOf('}', ii);
+                    if (close < 0)
+                        close = segment.length();
+                    String var = segment.substring(ii + 1, close);
+                    int colon = var.indexOf(':');
+                    sb.append((colon >= 0) ? "(?:" + var.substring(colon + 1) + ")" : "[^/]*");
+                    ii = close;
+                }
+                literalStart = ii + 1;
+            }
+            if (literalStart < segment.length())
+                sb.append(Pattern.quote(segment.substring(literalStart)));
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,626 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.util;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import com.kdgregory.pathfinder.core.Destination;
+import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.core.PathRepo;
+import com.kdgregory.pathfinder.util.RouteMatcher.MatchType;
+import com.kdgregory.pathfinder.util.RouteMatcher.PatternRoute;
+import com.kdgregory.pathfinder.util.RouteMatcher.WildcardEdge;
+
+
+/**
+ *  Finds repository URLs that can match the same request, using the precedence
+ *  rules of {@link RouteMatcher}. Conflicts are reported per HTTP method, and
+ *  only when both routes handle that method, so a GET-only mapping and a
+ *  POST-only mapping for the same pattern don't conflict. There are three kinds:
+ *  <ul>
+ *  <li> <b>Shadowed</b>: every URL matched by a route is matched by another
+ *       route that takes precedence, so the first route is unreachable (for
+ *       example, <code>/a/{x}</code> and <code>/a/{y}</code>).
+ *  <li> <b>Ambiguous</b>: two Spring patterns that can match the same URL, and
+ *       that Spring considers equally specific (for example, <code>/a/{x}/b</code>
+ *       and <code>/a/b/{y}</code>). Which one is invoked is arbitrary.
+ *  <li> <b>Overlap</b>: two routes that can match the same URL, where neither
+ *       one includes all of the other's URLs (for example, the servlet mappings
+ *       <code>/reports/*</code> and <code>*.pdf</code>). This is legal, but may
+ *       not be what was intended.
+ *  </ul>
+ *  A route that is a specialization of another (such as <code>/a/{x}</code>
+ *  and <code>/a/**</code>) is normal, and isn't reported. Nor are partial
+ *  overlaps in which a Spring pattern wins over an extension mapping (almost any
+ *  pattern could be given a URL with an extension), exact URLs, or the default
+ *  servlet (<code>/</code>), which by design matches whatever nothing else does.
+ *  <p>
+ *  As with <code>RouteMatcher</code>, a Spring pattern that identifies its
+ *  dispatcher's servlet mapping is ranked against servlet mappings by that
+ *  mapping, and against other Spring patterns by specificity only when they
+ *  come from the same mapping.
+ *  <p>
+ *  Rather than comparing every pair of routes, all patterns (with prefix and
+ *  extension mappings expressed as patterns) are loaded into a tree keyed by
+ *  path segment, and each route walks that tree to find the routes that could
+ *  match the same URLs. The cost of the walk depends on the number of routes
+ *  that actually overlap, not the total number of routes.
+ *  <p>
+ *  Segments containing wildcards are compared by their fixed leading and
+ *  trailing text; the regular expressions of Spring variables (<code>{id:\d+}</code>)
+ *  are not compared, so two such segments may be reported as overlapping when
+ *  they can't match the same text.
+ */
+public class RouteOverlapAnalyzer
+{
+    /**
+     *  The kinds of conflict, most serious first.
+     */
+    public enum ConflictType { SHADOWED, AMBIGUOUS, OVERLAP }
+
+
+//----------------------------------------------------------------------------
+//  Instance variables and constructor
+//----------------------------------------------------------------------------
+
+    private List<Route> routes = new ArrayList<Route>();
+    private Node root = new Node(null);
+    private List<Conflict> conflicts;
+
+
+    /**
+     *  Analyzes a snapshot of the passed repository.
+     */
+    public RouteOverlapAnalyzer(PathRepo repo)
+    {
+        for (String url : repo)
+        {
+            Route route = Route.create(url, new TreeMap<HttpMethod,Destination>(repo.get(url)), routes.size());
+            if (route != null)
+            {
+                routes.add(route);
+                root.add(route, 0);
+            }
+        }
+        conflicts = Collections.unmodifiableList(analyze());
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns the number of routes that were analyzed (ie, all but exact URLs
+     *  and the default servlet).
+     */
+    public int getRouteCount()
+    {
+        return routes.size();
+    }
+
+
+    /**
+     *  Returns all conflicts, ordered by affected URL.
+     */
+    public List<Conflict> getConflicts()
+    {
+        return conflicts;
+    }
+
+
+    /**
+     *  Returns the number of shadowed and ambiguous routes; these are almost
+     *  certainly mistakes, whereas overlaps may be intentional.
+     */
+    public int getErrorCount()
+    {
+        int count = 0;
+        for (Conflict conflict : conflicts)
+        {
+            if (conflict.getType() != ConflictType.OVERLAP)
+                count++;
+        }
+        return count;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private List<Conflict> analyze()
+    {
+        List<Set<Route>> coveredBy = new ArrayList<Set<Route>>(routes.size());
+        for (Route route : routes)
+        {
+            Set<Route> found = new HashSet<Route>();
+            walk(route.segments, 0, root, true, found, new IdentityHashMap<Node,BitSet>());
+            found.remove(route);
+            coveredBy.add(found);
+        }
+
+        List<Conflict> result = new ArrayList<Conflict>();
+        Set<Long> comparedPairs = new HashSet<Long>();
+        for (Route route : routes)
+        {
+            Set<Route> found = new HashSet<Route>();
+            walk(route.segments, 0, root, false, found, new IdentityHashMap<Node,BitSet>());
+            for (Route other : found)
+            {
+                if (other == route)
+                    continue;
+
+                int lo = Math.min(route.index, other.index);
+                int hi = Math.max(route.index, other.index);
+                if (comparedPairs.add(Long.valueOf(((long)lo << 32) | hi)))
+                {
+                    classify(route, other,
+                             coveredBy.get(route.index).contains(other),
+                             coveredBy.get(other.index).contains(route),
+                             result);
+                }
+            }
+        }
+
+        Collections.sort(result, new Comparator<Conflict>()
+        {
+            @Override
+            public int compare(Conflict c1, Conflict c2)
+            {
+                int cmp = c1.getUrl().compareTo(c2.getUrl());
+                if (cmp == 0)
+                    cmp = c1.getOtherUrl().compareTo(c2.getOtherUrl());
+                if (cmp == 0)
+                    cmp = c1.getMethod().compareTo(c2.getMethod());
+                return cmp;
+            }
+        });
+        return result;
+    }
+
+
+    /**
+     *  Finds the routes in the tree that could match the same URLs as the passed
+     *  segments (starting at the given index). If <code>cover</code> is true, only
+     *  finds the routes that match <em>all</em> of those URLs.
+     *  <p>
+     *  Each combination of node and index only needs to be visited once, which
+     *  bounds the work when both sides have <code>**</code>.
+     */
+    private void walk(Segment[] segs, int idx, Node node, boolean cover, Set<Route> found, Map<Node,BitSet> visited)
+    {
+        BitSet seen = visited.get(node);
+        if (seen == null)
+        {
+            seen = new BitSet(segs.length + 1);
+            visited.put(node, seen);
+        }
+        if (seen.get(idx))
+            return;
+        seen.set(idx);
+
+        if (idx == segs.length)
+            found.addAll(node.routes);
+
+        // the tree's "**" consumes any number of our segments (including none)
+        if (node.doubleWildcard != null)
+        {
+            for (int next = idx ; next <= segs.length ; next++)
+                walk(segs, next, node.doubleWildcard, cover, found, visited);
+        }
+
+        if (idx == segs.length)
+            return;
+
+        Segment seg = segs[idx];
+        if (seg.doubleWildcard)
+        {
+            // only the tree's "**" (handled above) covers our "**"; for overlaps,
+            // ours consumes any number of the tree's segments
+            if (cover)
+                return;
+
+            walk(segs, idx + 1, node, cover, found, visited);
+            for (Node child : node.literalChildren())
+                walk(segs, idx, child, cover, found, visited);
+            for (Node child : node.wildcardChildren())
+                walk(segs, idx, child, cover, found, visited);
+            return;
+        }
+
+        if (node.literals != null)
+        {
+            if (seg.literal)
+            {
+                Node child = node.literals.get(seg.text);
+                if (child != null)
+                    walk(segs, idx + 1, child, cover, found, visited);
+            }
+            else if (! cover)
+            {
+                for (Map.Entry<String,Node> entry : node.literals.entrySet())
+                {
+                    if (seg.matches(entry.getKey()))
+                        walk(segs, idx + 1, entry.getValue(), cover, found, visited);
+                }
+            }
+        }
+
+        if (node.wildcards != null)
+        {
+            for (Node child : node.wildcards.values())
+            {
+                if (cover ? child.edge.covers(seg) : child.edge.overlaps(seg))
+                    walk(segs, idx + 1, child, cover, found, visited);
+            }
+        }
+    }
+
+
+    private static void classify(Route r1, Route r2, boolean r1CoveredByR2, boolean r2CoveredByR1, List<Conflict> result)
+    {
+        List<HttpMethod> methods = commonMethods(r1, r2);
+        if (methods.isEmpty())
+            return;
+
+        int cmp = r1.compareRank(r2);
+        Route winner = (cmp < 0) ? r1 : (cmp > 0) ? r2 : (r1.url.compareTo(r2.url) < 0) ? r1 : r2;
+        Route loser = (winner == r1) ? r2 : r1;
+        boolean winnerCoversLoser = (winner == r1) ? r2CoveredByR1 : r1CoveredByR2;
+        boolean loserCoversWinner = (winner == r1) ? r1CoveredByR2 : r2CoveredByR1;
+
+        // note: equally-specific patterns are resolved by string order, so if the
+        //       one that sorts first covers the other, the other is unreachable
+        ConflictType type;
+        if (winnerCoversLoser)
+            type = ConflictType.SHADOWED;
+        else if (cmp == 0)
+            type = ConflictType.AMBIGUOUS;
+        else if (loserCoversWinner)
+            return;     // the winner is a specialization of the loser
+        else if (loser.type == MatchType.EXTENSION && winner.type == MatchType.PATTERN)
+            return;     // almost every pattern could end with an extension
+        else
+            type = ConflictType.OVERLAP;
+
+        for (HttpMethod method : methods)
+            result.add(new Conflict(type, method, loser.url, winner.url));
+    }
+
+
+    /**
+     *  Returns the methods handled by both routes. If both handle all methods,
+     *  this is just {@link HttpMethod#ALL}.
+     */
+    private static List<HttpMethod> commonMethods(Route r1, Route r2)
+    {
+        List<HttpMethod> result = new ArrayList<HttpMethod>();
+        if (r1.handlesOnlyAll() && r2.handlesOnlyAll())
+        {
+            result.add(HttpMethod.ALL);
+            return result;
+        }
+
+        for (HttpMethod method : HttpMethod.values())
+        {
+            if ((method != HttpMethod.ALL) && r1.handles(method) && r2.handles(method))
+                result.add(method);
+        }
+        return result;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Supporting classes
+//----------------------------------------------------------------------------
+
+    /**
+     *  A single conflict: the route identified by {@link #getUrl} loses to the
+     *  route identified by {@link #getOtherUrl}, for the given method, for some
+     *  or all of its URLs (or, if ambiguous, might lose).
+     */
+    public static class Conflict
+    {
+        private ConflictType type;
+        private HttpMethod method;
+        private String url;
+        private String otherUrl;
+
+        public Conflict(ConflictType type, HttpMethod method, String url, String otherUrl)
+        {
+            this.type = type;
+            this.method = method;
+            this.url = url;
+            this.otherUrl = otherUrl;
+        }
+
+        public ConflictType getType()
+        {
+            return type;
+        }
+
+        public HttpMethod getMethod()
+        {
+            return method;
+        }
+
+        public String getUrl()
+        {
+            return url;
+        }
+
+        public String getOtherUrl()
+        {
+            return otherUrl;
+        }
+
+        @Override
+        public String toString()
+        {
+            return type + " " + method + " " + url + " (" + otherUrl + ")";
+        }
+    }
+
+
+    /**
+     *  A repository URL, expressed as a sequence of segments. Prefix mappings
+     *  become <code>/path/**</code>, extension mappings <code>/**&#47;*.ext</code>.
+     */
+    private static class Route
+    {
+        public int index;
+        public String url;
+        public MatchType type;
+        public String servletUrl;
+        public MatchType servletType;
+        public Segment[] segments;
+        public Map<HttpMethod,Destination> destinations;
+        public PatternRoute pattern;
+
+        /**
+         *  Returns null for the routes that we don't analyze.
+         */
+        public static Route create(String url, Map<HttpMethod,Destination> destinations, int index)
+        {
+            Route route = new Route();
+            route.index = index;
+            route.url = url;
+            route.destinations = destinations;
+
+            // a route with a known dispatcher is always a Spring URL, even if it
+            // looks like a servlet mapping
+            String servletPattern = RouteMatcher.getServletPattern(destinations);
+            route.servletUrl = (servletPattern != null) ? servletPattern : url;
+            route.servletType = RouteMatcher.classify(route.servletUrl);
+            route.type = RouteMatcher.classify(url);
+            if ((servletPattern != null) && RouteMatcher.isPattern(url))
+                route.type = MatchType.PATTERN;
+
+            List<String> segments = new ArrayList<String>();
+            switch (route.type)
+            {
+                case EXTENSION :
+                    segments.add("**");
+                    segments.add(url);
+                    break;
+                case PREFIX :
+                    String prefix = url.substring(0, url.length() - 2);
+                    if (prefix.length() > 0)
+                        Collections.addAll(segments, RouteMatcher.splitPath(prefix));
+                    segments.add("**");
+                    break;
+                case PATTERN :
+                    route.pattern = new PatternRoute(url, destinations);
+                    Collections.addAll(segments, RouteMatcher.splitPath(url));
+                    break;
+                default :
+                    // exact URLs and the default servlet
+                    return null;
+            }
+
+            route.segments = new Segment[segments.size()];
+            for (int ii = 0 ; ii < route.segments.length ; ii++)
+                route.segments[ii] = new Segment(segments.get(ii));
+            return route;
+        }
+
+        public boolean handlesOnlyAll()
+        {
+            return (destinations.size() == 1) && destinations.containsKey(HttpMethod.ALL);
+        }
+
+        public boolean handles(HttpMethod method)
+        {
+            return destinations.containsKey(method) || destinations.containsKey(HttpMethod.ALL);
+        }
+
+        /**
+         *  Compares precedence per <code>RouteMatcher</code>: negative if this route
+         *  wins, positive if the other does, 0 if they're equally specific patterns.
+         */
+        public int compareRank(Route that)
+        {
+            // the app server picks the servlet mapping before the dispatcher sees the request
+            if (! this.servletUrl.equals(that.servletUrl) || (this.type != MatchType.PATTERN) || (that.type != MatchType.PATTERN))
+            {
+                if (this.servletType != that.servletType)
+                    return this.servletType.compareTo(that.servletType);
+                if (servletType != MatchType.PATTERN)
+                    // longest prefix wins; extensions can't overlap each other
+                    return that.servletUrl.length() - this.servletUrl.length();
+            }
+            return this.pattern.compareSpecificity(that.pattern);
+        }
+    }
+
+
+    /**
+     *  A single path segment: a literal, a "**", or something with wildcards
+     *  or variables.
+     */
+    private static class Segment
+    {
+        public String text;
+        public boolean literal;
+        public boolean doubleWildcard;
+        public WildcardEdge matcher;
+        public String fixedPrefix;
+        public String fixedSuffix;
+        public boolean starForm;
+
+        public Segment(String text)
+        {
+            this.text = text;
+            doubleWildcard = text.equals("**");
+            literal = ! doubleWildcard && ! RouteMatcher.isPattern(text);
+            if (literal || doubleWildcard)
+                return;
+
+            matcher = new WildcardEdge(text);
+
+            int firstWild = text.length();
+            int lastWildEnd = 0;
+            for (int ii = 0 ; ii < text.length() ; ii++)
+            {
+                char c = text.charAt(ii);
+                if ((c == '*') || (c == '?') || (c == '{'))
+                {
+                    firstWild = Math.min(firstWild, ii);
+                    int end = (c == '{') ? text.indexOf('}', ii) : ii;
+                    ii = (end < 0) ? text.length() : end;
+                    lastWildEnd = ii + 1;
+                }
+            }
+            fixedPrefix = text.substring(0, firstWild);
+            fixedSuffix = text.substring(Math.min(lastWildEnd, text.length()));
+            starForm = (text.indexOf('*') == text.lastIndexOf('*'))
+                    && (text.indexOf('?') < 0)
+                    && (text.indexOf('{') < 0);
+        }
+
+        public boolean matches(String value)
+        {
+            return matcher.matches(value);
+        }
+
+        /**
+         *  Determines whether this (wildcard) segment could match the same text
+         *  as the passed (non-"**") segment.
+         */
+        public boolean overlaps(Segment that)
+        {
+            if (that.literal)
+                return matches(that.text);
+            return (this.fixedPrefix.startsWith(that.fixedPrefix) || that.fixedPrefix.startsWith(this.fixedPrefix))
+                && (this.fixedSuffix.endsWith(that.fixedSuffix) || that.fixedSuffix.endsWith(this.fixedSuffix));
+        }
+
+        /**
+         *  Determines whether this (wildcard) segment matches all text matched by
+         *  the passed (non-"**") segment.
+         */
+        public boolean covers(Segment that)
+        {
+            if (that.literal)
+                return matches(that.text);
+            if (this.text.equals(that.text) || (this.matcher.regex == null))
+                return true;
+            return starForm
+                && that.fixedPrefix.startsWith(this.fixedPrefix)
+                && that.fixedSuffix.endsWith(this.fixedSuffix);
+        }
+    }
+
+
+    /**
+     *  A node in the tree of routes. Children are keyed by the text of the
+     *  segment that leads to them, and know that segment.
+     */
+    private static class Node
+    {
+        public Segment edge;
+        public Map<String,Node> literals;
+        public Map<String,Node> wildcards;
+        public Node doubleWildcard;
+        public List<Route> routes = new ArrayList<Route>(1);
+
+        public Node(Segment edge)
+        {
+            this.edge = edge;
+        }
+
+        public void add(Route route, int idx)
+        {
+            if (idx == route.segments.length)
+            {
+                routes.add(route);
+                return;
+            }
+
+            Segment seg = route.segments[idx];
+            Node child;
+            if (seg.doubleWildcard)
+            {
+                if (doubleWildcard == null)
+                    doubleWildcard = new Node(seg);
+                child = doubleWildcard;
+            }
+            else if (seg.literal)
+            {
+                if (literals == null)
+                    literals = new HashMap<String,Node>();
+                child = literals.get(seg.text);
+                if (child == null)
+                {
+                    child = new Node(seg);
+                    literals.put(seg.text, child);
+                }
+            }
+            else
+            {
+                if (wildcards == null)
+                    wildcards = new HashMap<String,Node>();
+                child = wildcards.get(seg.text);
+                if (child == null)
+                {
+                    child = new Node(seg);
+                    wildcards.put(seg.text, child);
+                }
+            }
+            child.add(route, idx + 1);
+        }
+
+        public Iterable<Node> literalChildren()
+        {
+            return (literals != null) ? literals.values() : Collections.<Node>emptyList();
+        }
+
+        public Iterable<Node> wildcardChildren()
+        {
+            return (wildcards != null) ? wildcards.values() : Collections.<Node>emptyList();
+        }
+    }
+}
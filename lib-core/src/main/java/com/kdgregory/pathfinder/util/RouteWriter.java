@@ -0,0 +1,407 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.Map;
+
+import com.kdgregory.pathfinder.core.Destination;
+import com.kdgregory.pathfinder.core.HandlerDestination;
+import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.PathRepo;
+
+
+/**
+ *  Writes the contents of a {@link PathRepo}, one route (URL and method) per
+ *  line, in one of several formats. Each route is written as soon as it's read
+ *  from the repository, and nothing is retained afterward, so memory use does
+ *  not depend on the size of the repository. The text format makes an extra
+ *  pass over the repository's URLs first, to size its URL column.
+ *  <p>
+ *  The structured formats (JSON Lines and CSV) have the following fields:
+ *  <ul>
+ *  <li> <code>url</code>
+ *  <li> <code>method</code>: the HTTP method, <code>ALL</code> if the route
+ *       accepts any method.
+ *  <li> <code>type</code>: the kind of destination, derived from its class name
+ *       (eg, <code>servlet</code>, <code>spring</code>, <code>jsp</code>).
+ *  <li> <code>class</code>, <code>handlerMethod</code>: from {@link HandlerDestination};
+ *       null/empty for other destinations, or if not known.
+ *  <li> <code>params</code>: request parameters declared by the handler. In JSON
+ *       this is an array of <code>{"name","type"}</code> objects; in CSV it's a
+ *       single field of semicolon-separated <code>type name</code> pairs.
+ *  <li> <code>destination</code>: the destination as it appears in text output.
+ *  </ul>
+ *  Only destinations that are displayed under the current invocation options
+ *  are written.
+ *  <p>
+ *  The caller owns the <code>Writer</code>, and should provide a buffered one;
+ *  {@link #write} flushes but does not close it.
+ */
+public abstract class RouteWriter
+{
+    /**
+     *  The supported output formats. These correspond to the values of the
+     *  command-line <code>--format</code> argument.
+     */
+    public enum Format
+    {
+        TEXT, JSONL, CSV;
+
+        /**
+         *  Returns the format corresponding to the passed command-line value
+         *  (case-insensitive), null if there isn't one.
+         */
+        public static Format fromString(String value)
+        {
+            for (Format format : values())
+            {
+                if (format.name().equalsIgnoreCase(value))
+                    return format;
+            }
+            return null;
+        }
+    }
+
+
+    /**
+     *  Creates a writer for the specified format.
+     */
+    public static RouteWriter create(Format format, Writer out, Map<InvocationOptions,Boolean> options)
+    {
+        switch (format)
+        {
+            case JSONL :
+                return new JsonLinesWriter(out, options);
+            case CSV :
+                return new CsvWriter(out, options);
+            default :
+                return new TextWriter(out, options);
+        }
+    }
+
+
+//----------------------------------------------------------------------------
+//  Instance variables and constructor
+//----------------------------------------------------------------------------
+
+    protected Writer out;
+    protected Map<InvocationOptions,Boolean> options;
+
+
+    protected RouteWriter(Writer out, Map<InvocationOptions,Boolean> options)
+    {
+        this.out = out;
+        this.options = options;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Writes every displayed route in the repository, then flushes the output.
+     */
+    public void write(PathRepo repo)
+    throws IOException
+    {
+        writeHeader();
+        for (String url : repo)
+        {
+            Map<HttpMethod,Destination> destMap = repo.get(url);
+            for (Map.Entry<HttpMethod,Destination> entry : destMap.entrySet())
+            {
+                Destination dest = entry.getValue();
+                if (! dest.isDisplayed(options))
+                    continue;
+                writeRoute(url, entry.getKey(), dest);
+            }
+        }
+        out.flush();
+    }
+
+
+//----------------------------------------------------------------------------
+//  Subclass hooks and helpers
+//----------------------------------------------------------------------------
+
+    /**
+     *  Called once, before any routes are written. Default does nothing.
+     */
+    protected void writeHeader()
+    throws IOException
+    {
+        // default is no header
+    }
+
+
+    /**
+     *  Writes a single route, including the terminating newline.
+     */
+    protected abstract void writeRoute(String url, HttpMethod method, Destination dest)
+    throws IOException;
+
+
+    /**
+     *  Returns the short type name of a destination: its simple class name, in
+     *  lowercase, without any "Destination" suffix. Destinations loaded from a
+     *  snapshot report the type of their original.
+     */
+    protected static String destinationType(Destination dest)
+    {
+        if (dest instanceof PathRepoSnapshot.SnapshotDestination)
+            return ((PathRepoSnapshot.SnapshotDestination)dest).getType();
+
+        String name = dest.getClass().getSimpleName();
+        if (name.endsWith("Destination") && (name.length() > "Destination".length()))
+            name = name.substring(0, name.length() - "Destination".length());
+        return name.toLowerCase();
+    }
+
+
+    protected static String handlerClass(Destination dest)
+    {
+        return (dest instanceof HandlerDestination)
+             ? ((HandlerDestination)dest).getHandlerClass()
+             : null;
+    }
+
+
+    protected static String handlerMethod(Destination dest)
+    {
+        return (dest instanceof HandlerDestination)
+             ? ((HandlerDestination)dest).getHandlerMethod()
+             : null;
+    }
+
+
+    protected static Map<String,String> handlerParams(Destination dest)
+    {
+        Map<String,String> params = (dest instanceof HandlerDestination)
+                                  ? ((HandlerDestination)dest).getHandlerParams()
+                                  : null;
+        return (params != null) ? params : Collections.<String,String>emptyMap();
+    }
+
+
+//----------------------------------------------------------------------------
+//  Implementations
+//----------------------------------------------------------------------------
+
+    /**
+     *  The traditional human-readable format, with the URL column as wide as
+     *  the widest URL in the repository.
+     */
+    private static class TextWriter
+    extends RouteWriter
+    {
+        private int urlWidth = 16;
+
+        public TextWriter(Writer out, Map<InvocationOptions,Boolean> options)
+        {
+            super(out, options);
+        }
+
+        @Override
+        public void write(PathRepo repo)
+        throws IOException
+        {
+            for (String url : repo)
+                urlWidth = Math.max(urlWidth, url.length());
+            super.write(repo);
+        }
+
+        @Override
+        protected void writeRoute(String url, HttpMethod method, Destination dest)
+        throws IOException
+        {
+            pad(url, urlWidth);
+            out.write("  ");
+            pad(method.toString(), 6);
+            out.write("  ");
+            out.write(dest.toString(options));
+            out.write('\n');
+        }
+
+        private void pad(String value, int width)
+        throws IOException
+        {
+            out.write(value);
+            for (int ii = value.length() ; ii < width ; ii++)
+                out.write(' ');
+        }
+    }
+
+
+    /**
+     *  One JSON object per line.
+     */
+    private static class JsonLinesWriter
+    extends RouteWriter
+    {
+        public JsonLinesWriter(Writer out, Map<InvocationOptions,Boolean> options)
+        {
+            super(out, options);
+        }
+
+        @Override
+        protected void writeRoute(String url, HttpMethod method, Destination dest)
+        throws IOException
+        {
+            out.write("{\"url\":");
+            writeString(url);
+            out.write(",\"method\":");
+            writeString(method.name());
+            out.write(",\"type\":");
+            writeString(destinationType(dest));
+            out.write(",\"class\":");
+            writeString(handlerClass(dest));
+            out.write(",\"handlerMethod\":");
+            writeString(handlerMethod(dest));
+            out.write(",\"params\":[");
+            boolean first = true;
+            for (Map.Entry<String,String> param : handlerParams(dest).entrySet())
+            {
+                if (! first)
+                    out.write(',');
+                first = false;
+                out.write("{\"name\":");
+                writeString(param.getKey());
+                out.write(",\"type\":");
+                writeString(param.getValue());
+                out.write('}');
+            }
+            out.write("],\"destination\":");
+            writeString(dest.toString(options));
+            out.write("}\n");
+        }
+
+        private void writeString(String value)
+        throws IOException
+        {
+            if (value == null)
+            {
+                out.write("null");
+                return;
+            }
+
+            out.write('"');
+            for (int ii = 0 ; ii < value.length() ; ii++)
+            {
+                char c = value.charAt(ii);
+                switch (c)
+                {
+                    case '"' :
+                        out.write("\\\"");
+                        break;
+                    case '\\' :
+                        out.write("\\\\");
+                        break;
+                    case '\n' :
+                        out.write("\\n");
+                        break;
+                    case '\r' :
+                        out.write("\\r");
+                        break;
+                    case '\t' :
+                        out.write("\\t");
+                        break;
+                    default :
+                        if (c < 0x20)
+                            out.write(String.format("\\u%04x", Integer.valueOf(c)));
+                        else
+                            out.write(c);
+                }
+            }
+            out.write('"');
+        }
+    }
+
+
+    /**
+     *  RFC 4180 CSV, with a header line.
+     */
+    private static class CsvWriter
+    extends RouteWriter
+    {
+        public CsvWriter(Writer out, Map<InvocationOptions,Boolean> options)
+        {
+            super(out, options);
+        }
+
+        @Override
+        protected void writeHeader()
+        throws IOException
+        {
+            out.write("url,method,type,class,handlerMethod,params,destination\r\n");
+        }
+
+        @Override
+        protected void writeRoute(String url, HttpMethod method, Destination dest)
+        throws IOException
+        {
+            StringBuilder params = new StringBuilder();
+            for (Map.Entry<String,String> param : handlerParams(dest).entrySet())
+            {
+                if (params.length() > 0)
+                    params.append(';');
+                params.append(param.getValue()).append(' ').append(param.getKey());
+            }
+
+            writeField(url);
+            out.write(',');
+            writeField(method.name());
+            out.write(',');
+            writeField(destinationType(dest));
+            out.write(',');
+            writeField(handlerClass(dest));
+            out.write(',');
+            writeField(handlerMethod(dest));
+            out.write(',');
+            writeField(params.toString());
+            out.write(',');
+            writeField(dest.toString(options));
+            out.write("\r\n");
+        }
+
+        private void writeField(String value)
+        throws IOException
+        {
+            if (value == null)
+                return;
+
+            boolean quote = false;
+            for (int ii = 0 ; ii < value.length() && !quote ; ii++)
+            {
+                char c = value.charAt(ii);
+                quote = (c == ',') || (c == '"') || (c == '\n') || (c == '\r');
+            }
+
+            if (! quote)
+            {
+                out.write(value);
+                return;
+            }
+
+            out.write('"');
+            out.write(value.replace("\"", "\"\""));
+            out.write('"');
+        }
+    }
+}
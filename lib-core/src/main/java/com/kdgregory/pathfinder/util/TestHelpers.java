@@ -15,8 +15,13 @@
 package com.kdgregory.pathfinder.util;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Enumeration;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
 
 import net.sf.kdgcommons.io.IOUtil;
 
@@ -36,6 +41,18 @@ public abstract class TestHelpers
      */
     public static WarMachine createWarMachine(String warName)
     throws IOException
+    {
+        return new WarMachineImpl(createWarFile(warName));
+    }
+
+
+    /**
+     *  Extracts a WAR that's stored as a resource on the classpath, and returns
+     *  the temporary file, for tests that need to construct the machine (or
+     *  need the file itself).
+     */
+    public static File createWarFile(String warName)
+    throws IOException
     {
         InputStream in = null;
         try
@@ -43,12 +60,75 @@ public abstract class TestHelpers
             in = TestHelpers.class.getClassLoader().getResourceAsStream(warName);
             if (in == null)
                 throw new IllegalArgumentException("couldn't find " + warName + " on classpath");
-            File warFile = IOUtil.createTempFile(in, warName);
-            return new WarMachineImpl(warFile);
+            return IOUtil.createTempFile(in, warName);
         }
         finally
         {
             IOUtil.closeQuietly(in);
         }
     }
+
+
+    /**
+     *  Extracts a WAR that's stored as a resource on the classpath, and unpacks
+     *  it into a temporary directory. The caller is responsible for deleting
+     *  the directory.
+     */
+    public static File createExplodedWar(String warName)
+    throws IOException
+    {
+        File warFile = createWarFile(warName);
+        File dir = File.createTempFile(warName, ".dir");
+        dir.delete();
+        dir.mkdir();
+
+        JarFile jar = new JarFile(warFile);
+        try
+        {
+            for (Enumeration<JarEntry> itx = jar.entries() ; itx.hasMoreElements() ; )
+            {
+                JarEntry entry = itx.nextElement();
+                File file = new File(dir, entry.getName());
+                if (entry.isDirectory())
+                {
+                    file.mkdirs();
+                    continue;
+                }
+
+                file.getParentFile().mkdirs();
+                InputStream in = jar.getInputStream(entry);
+                OutputStream out = new FileOutputStream(file);
+                try
+                {
+                    IOUtil.copy(in, out);
+                }
+                finally
+                {
+                    IOUtil.closeQuietly(in);
+                    IOUtil.closeQuietly(out);
+                }
+            }
+        }
+        finally
+        {
+            jar.close();
+            warFile.delete();
+        }
+        return dir;
+    }
+
+
+    /**
+     *  Recursively deletes a file or directory.
+     */
+    public static void deleteRecursively(File file)
+    {
+        File[] children = file.listFiles();
+        if (children != null)
+        {
+            for (File child : children)
+                deleteRecursively(child);
+        }
+        file.delete();
+    }
 }
@@ -0,0 +1,213 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.util;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.log4j.Logger;
+
+import com.kdgregory.pathfinder.core.WarMachine;
+
+
+/**
+ *  Answers questions about the superclasses and interfaces of classes on a WAR's
+ *  classpath. Rather than loading the entire classfile, each class is read only
+ *  as far as its {@link ClassHeader} (which the WAR may have cached). Classes
+ *  are read when first needed, and both their direct supertypes and the
+ *  transitive closure of those supertypes are remembered, so an instance should
+ *  be shared by everything that examines the same WAR.
+ *  <p>
+ *  A class that isn't on the WAR's classpath (for example, a JDK or container
+ *  class), or that can't be read, is "unresolved": it is treated as having no
+ *  supertypes. As a result, supertype queries have a defined answer: they
+ *  return <code>true</code> only if the relationship can be proven from the
+ *  classes that are present.
+ *  <p>
+ *  Instances are thread-safe.
+ */
+public class TypeHierarchy
+{
+    private final static String OBJECT = "java.lang.Object";
+
+    private Logger logger = Logger.getLogger(getClass());
+
+    private WarMachine war;
+    private ConcurrentMap<String,TypeNode> nodes = new ConcurrentHashMap<String,TypeNode>();
+    private ConcurrentMap<String,Set<String>> supertypes = new ConcurrentHashMap<String,Set<String>>();
+
+
+    public TypeHierarchy(WarMachine war)
+    {
+        this.war = war;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Determines whether the named class can be found and read. Always returns
+     *  <code>true</code> for <code>java.lang.Object</code>.
+     */
+    public boolean isResolvable(String className)
+    {
+        return getNode(className).resolved;
+    }
+
+
+    /**
+     *  Returns the name of the direct superclass of the named class. Returns
+     *  <code>null</code> for <code>java.lang.Object</code>, interfaces, and
+     *  unresolved classes.
+     */
+    public String getSuperclass(String className)
+    {
+        return getNode(className).superclass;
+    }
+
+
+    /**
+     *  Returns the names of the interfaces directly implemented (or, for an
+     *  interface, extended) by the named class. Returns an empty list for
+     *  unresolved classes.
+     */
+    public List<String> getInterfaces(String className)
+    {
+        return getNode(className).interfaces;
+    }
+
+
+    /**
+     *  Returns the names of all superclasses and interfaces of the named class,
+     *  including those inherited from superclasses and super-interfaces. Names
+     *  are ordered breadth-first, superclass before interfaces; unresolved types
+     *  appear in the result but contribute no supertypes of their own. The class
+     *  itself is not included.
+     */
+    public Set<String> getAllSupertypes(String className)
+    {
+        Set<String> result = supertypes.get(className);
+        if (result == null)
+        {
+            result = Collections.unmodifiableSet(buildSupertypes(className));
+            supertypes.putIfAbsent(className, result);
+        }
+        return result;
+    }
+
+
+    /**
+     *  Determines whether the first class is the same as, or a subtype of, the
+     *  second. Returns <code>false</code> if this can't be determined because
+     *  some part of the first class' hierarchy is unresolved.
+     */
+    public boolean isAssignableTo(String className, String supertypeName)
+    {
+        return className.equals(supertypeName)
+            || getAllSupertypes(className).contains(supertypeName);
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private Set<String> buildSupertypes(String className)
+    {
+        // a visited set, rather than recursion, protects us from malformed
+        // (cyclic) hierarchies
+        Set<String> result = new LinkedHashSet<String>();
+        LinkedList<String> queue = new LinkedList<String>();
+        queue.add(className);
+        while (! queue.isEmpty())
+        {
+            TypeNode node = getNode(queue.removeFirst());
+            if (node.superclass != null && result.add(node.superclass))
+                queue.add(node.superclass);
+            for (String intf : node.interfaces)
+            {
+                if (result.add(intf))
+                    queue.add(intf);
+            }
+        }
+        result.remove(className);
+        return result;
+    }
+
+
+    private TypeNode getNode(String className)
+    {
+        TypeNode node = nodes.get(className);
+        if (node == null)
+        {
+            // two threads may read the same class; they'll get the same result
+            node = readNode(className);
+            TypeNode existing = nodes.putIfAbsent(className, node);
+            if (existing != null)
+                node = existing;
+        }
+        return node;
+    }
+
+
+    private TypeNode readNode(String className)
+    {
+        if (className.equals(OBJECT))
+            return new TypeNode(null, Collections.<String>emptyList());
+
+        ClassHeader header = war.getClassHeader(className);
+        if (header == null)
+        {
+            logger.debug("unable to find or read class; treating as unresolved: " + className);
+            return TypeNode.UNRESOLVED;
+        }
+        return new TypeNode(header.getSuperclassName(), header.getInterfaceNames());
+    }
+
+
+//----------------------------------------------------------------------------
+//  Supporting classes
+//----------------------------------------------------------------------------
+
+    private static class TypeNode
+    {
+        public final static TypeNode UNRESOLVED = new TypeNode();
+
+        public final boolean resolved;
+        public final String superclass;
+        public final List<String> interfaces;
+
+        public TypeNode(String superclass, List<String> interfaces)
+        {
+            this.resolved = true;
+            this.superclass = superclass;
+            this.interfaces = interfaces;
+        }
+
+        private TypeNode()
+        {
+            this.resolved = false;
+            this.superclass = null;
+            this.interfaces = Collections.emptyList();
+        }
+    }
+}
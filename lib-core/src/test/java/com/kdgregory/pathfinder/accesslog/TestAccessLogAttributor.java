@@ -0,0 +1,296 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.accesslog;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.kdgregory.pathfinder.accesslog.AccessLogReport.DestinationLatency;
+import com.kdgregory.pathfinder.accesslog.AccessLogReport.RouteHits;
+import com.kdgregory.pathfinder.core.Destination;
+import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.PathRepo;
+import com.kdgregory.pathfinder.core.impl.PathRepoImpl;
+import com.kdgregory.pathfinder.util.RouteMatcher;
+
+
+public class TestAccessLogAttributor
+{
+//----------------------------------------------------------------------------
+//  Support Code
+//----------------------------------------------------------------------------
+
+    private static class MyDestination
+    implements Destination
+    {
+        private String name;
+
+        public MyDestination(String name)
+        {
+            this.name = name;
+        }
+
+        @Override
+        public boolean isDisplayed(Map<InvocationOptions,Boolean> options)
+        {
+            return true;
+        }
+
+        @Override
+        public String toString(Map<InvocationOptions,Boolean> options)
+        {
+            return name;
+        }
+
+        @Override
+        public String toString()
+        {
+            return name;
+        }
+    }
+
+
+    private static RouteMatcher createMatcher()
+    {
+        PathRepo repo = new PathRepoImpl();
+        repo.put("/index.jsp", new MyDestination("index"));
+        repo.put("/servlet/*", new MyDestination("servlet"));
+        repo.put("/static.html", HttpMethod.GET, new MyDestination("static"));
+        repo.put("/api/{id}", HttpMethod.GET, new MyDestination("getItem"));
+        repo.put("/api/{id}", HttpMethod.POST, new MyDestination("postItem"));
+        return new RouteMatcher(repo);
+    }
+
+
+    private static String logLine(String method, String url, int status)
+    {
+        return "127.0.0.1 - frank [10/Oct/2000:13:55:36 -0700] \""
+             + method + " " + url + " HTTP/1.1\" " + status + " 2326";
+    }
+
+
+    private static String createLog(int repeat)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int ii = 0 ; ii < repeat ; ii++)
+        {
+            sb.append(logLine("GET", "/index.jsp", 200)).append("\n");
+            sb.append(logLine("GET", "/api/123?x=y", 200)).append("\n");
+            sb.append(logLine("POST", "/api/456", 201)).append("\n");
+            sb.append(logLine("HEAD", "/static.html", 200)).append("\n");
+            sb.append(logLine("POST", "/static.html", 405)).append("\n");
+            sb.append(logLine("GET", "/missing.html?foo=bar", 404)).append("\n");
+            sb.append("this is not a log line\n");
+        }
+        return sb.toString();
+    }
+
+
+    private static Map<String,Long> hitsByDestination(AccessLogReport report)
+    {
+        Map<String,Long> result = new TreeMap<String,Long>();
+        for (RouteHits hits : report.getRouteHits())
+            result.put(hits.getMethod() + " " + hits.getDestination(), Long.valueOf(hits.getHits()));
+        return result;
+    }
+
+
+    private static void assertExpectedCounts(AccessLogReport report, int repeat)
+    {
+        assertEquals("line count",          7 * repeat, report.getLineCount());
+        assertEquals("matched count",       4 * repeat, report.getMatchedCount());
+        assertEquals("unmatched count",     2 * repeat, report.getUnmatchedCount());
+        assertEquals("unparseable count",   1 * repeat, report.getUnparseableCount());
+
+        Map<String,Long> hits = hitsByDestination(report);
+        assertEquals("number of routes",    4,                          hits.size());
+        assertEquals("index",               Long.valueOf(repeat),       hits.get("GET index"));
+        assertEquals("getItem",             Long.valueOf(repeat),       hits.get("GET getItem"));
+        assertEquals("postItem",            Long.valueOf(repeat),       hits.get("POST postItem"));
+        assertEquals("static",              Long.valueOf(repeat),       hits.get("GET static"));
+
+        List<Map.Entry<String,Long>> unmatched = report.getUnmatched();
+        assertEquals("distinct unmatched",  2,                          unmatched.size());
+        assertEquals("unmatched #1",        "GET /missing.html",        unmatched.get(0).getKey());
+        assertEquals("unmatched #1 count",  Long.valueOf(repeat),       unmatched.get(0).getValue());
+        assertEquals("unmatched #2",        "POST /static.html",        unmatched.get(1).getKey());
+    }
+
+
+//----------------------------------------------------------------------------
+//  Testcases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testParseEntry() throws Exception
+    {
+        AccessLogEntry e1 = AccessLogEntry.parse(logLine("GET", "/foo?bar=baz", 200));
+        assertEquals("common: method",      "GET",                      e1.getMethod());
+        assertEquals("common: URL",         "/foo?bar=baz",             e1.getUrl());
+        assertEquals("common: status",      200,                        e1.getStatus());
+
+        AccessLogEntry e2 = AccessLogEntry.parse(
+                "10.0.0.1 - - [10/Oct/2000:13:55:36 -0700] \"POST http://example.com/bar HTTP/1.0\" 302 -"
+                + " \"http://example.com/\" \"Mozilla/4.08 [en] (Win98; I ;Nav)\"");
+        assertEquals("combined: method",    "POST",                     e2.getMethod());
+        assertEquals("combined: URL",       "/bar",                     e2.getUrl());
+        assertEquals("combined: status",    302,                        e2.getStatus());
+        assertEquals("combined: no elapsed", -1.0,                      e2.getElapsed(), 0.0);
+
+        AccessLogEntry e3 = AccessLogEntry.parse("10.0.0.1 - - [10/Oct/2000:13:55:36 -0700] \"GET /\" 200 10");
+        assertEquals("HTTP/0.9: URL",       "/",                        e3.getUrl());
+        assertEquals("common: no elapsed",  -1.0,                       e3.getElapsed(), 0.0);
+
+        AccessLogEntry e4 = AccessLogEntry.parse(logLine("GET", "/", 200) + " 12345");
+        assertEquals("common + %D",         12345.0,                    e4.getElapsed(), 0.0);
+
+        AccessLogEntry e5 = AccessLogEntry.parse(
+                "10.0.0.1 - - [10/Oct/2000:13:55:36 -0700] \"GET / HTTP/1.1\" 200 - \"-\" \"curl/7.1\" 0.125");
+        assertEquals("combined + fraction", 0.125,                      e5.getElapsed(), 0.0);
+
+        assertEquals("HEAD treated as GET", HttpMethod.GET,             AccessLogEntry.parse(logLine("HEAD", "/", 200)).getHttpMethod());
+        assertEquals("unknown method",      HttpMethod.ALL,             AccessLogEntry.parse(logLine("PATCH", "/", 200)).getHttpMethod());
+
+        assertNull("malformed request",     AccessLogEntry.parse("10.0.0.1 - - [10/Oct/2000:13:55:36 -0700] \"-\" 400 0"));
+        assertNull("missing status",        AccessLogEntry.parse("10.0.0.1 - - [10/Oct/2000:13:55:36 -0700] \"GET / HTTP/1.1\" -"));
+        assertNull("garbage",               AccessLogEntry.parse("foo bar baz"));
+    }
+
+
+    @Test
+    public void testSingleThreaded() throws Exception
+    {
+        AccessLogAttributor attributor = new AccessLogAttributor(createMatcher(), null, 1, 5);
+        attributor.process(new StringReader(createLog(3)));
+        assertExpectedCounts(attributor.getReport(), 3);
+    }
+
+
+    @Test
+    public void testMultiThreaded() throws Exception
+    {
+        AccessLogAttributor attributor = new AccessLogAttributor(createMatcher(), null, 4, 10);
+        attributor.process(new StringReader(createLog(1000)));
+        assertExpectedCounts(attributor.getReport(), 1000);
+    }
+
+
+    @Test
+    public void testMultipleLogsAccumulate() throws Exception
+    {
+        AccessLogAttributor attributor = new AccessLogAttributor(createMatcher(), null, 2, 100);
+        attributor.process(new StringReader(createLog(10)));
+        attributor.process(new StringReader(createLog(15)));
+        assertExpectedCounts(attributor.getReport(), 25);
+    }
+
+
+    @Test
+    public void testGzippedLog() throws Exception
+    {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        GZIPOutputStream out = new GZIPOutputStream(bos);
+        out.write(createLog(100).getBytes("ISO-8859-1"));
+        out.close();
+
+        AccessLogAttributor a1 = new AccessLogAttributor(createMatcher(), null, 2, 64);
+        a1.process(new ByteArrayInputStream(bos.toByteArray()));
+        assertExpectedCounts(a1.getReport(), 100);
+
+        // and verify that uncompressed streams aren't mistaken for gzipped
+        AccessLogAttributor a2 = new AccessLogAttributor(createMatcher(), null, 2, 64);
+        a2.process(new ByteArrayInputStream(createLog(100).getBytes("ISO-8859-1")));
+        assertExpectedCounts(a2.getReport(), 100);
+    }
+
+
+    @Test
+    public void testContextPath() throws Exception
+    {
+        String log = logLine("GET", "/myapp/index.jsp", 200) + "\n"
+                   + logLine("GET", "/myapp/servlet/foo", 200) + "\n"
+                   + logLine("GET", "/myapp", 200) + "\n"
+                   + logLine("GET", "/myappx/index.jsp", 200) + "\n"
+                   + logLine("GET", "/index.jsp", 200) + "\n";
+
+        AccessLogAttributor attributor = new AccessLogAttributor(createMatcher(), "myapp/", 1, 100);
+        attributor.process(new StringReader(log));
+
+        AccessLogReport report = attributor.getReport();
+        assertEquals("matched count",       2,                          report.getMatchedCount());
+        assertEquals("unmatched count",     3,                          report.getUnmatchedCount());
+
+        Map<String,Long> hits = hitsByDestination(report);
+        assertEquals("index",               Long.valueOf(1),            hits.get("GET index"));
+        assertEquals("servlet",             Long.valueOf(1),            hits.get("GET servlet"));
+    }
+
+
+    @Test
+    public void testLatencies() throws Exception
+    {
+        StringBuilder log = new StringBuilder();
+        for (int ii = 1 ; ii <= 100 ; ii++)
+        {
+            log.append(logLine("GET", "/api/" + ii, 200)).append(" 0.").append(String.format("%03d", ii)).append("\n");
+            log.append(logLine("GET", "/index.jsp", 200)).append(" 0.002\n");
+        }
+        log.append(logLine("GET", "/index.jsp", 200)).append("\n");        // no time, not counted
+
+        AccessLogAttributor attributor = new AccessLogAttributor(createMatcher(), null, 2, 16);
+        attributor.setElapsedTimeUnit(TimeUnit.SECONDS);
+        attributor.process(new StringReader(log.toString()));
+
+        List<DestinationLatency> latencies = attributor.getReport().getLatencies();
+        assertEquals("number of destinations",  2,                      latencies.size());
+
+        DestinationLatency slowest = latencies.get(0);
+        assertEquals("slowest destination",     "getItem",              slowest.getDestination().toString());
+        assertEquals("slowest count",           100,                    slowest.getHistogram().getCount());
+        assertEquals("slowest max",             100000,                 slowest.getHistogram().getMax());
+        assertTrue("slowest p50",               Math.abs(slowest.getHistogram().getPercentile(50) - 50000) < 1600);
+
+        DestinationLatency fastest = latencies.get(1);
+        assertEquals("fastest destination",     "index",                fastest.getDestination().toString());
+        assertEquals("fastest count",           100,                    fastest.getHistogram().getCount());
+        assertEquals("fastest max",             2000,                   fastest.getHistogram().getMax());
+    }
+
+
+    @Test
+    public void testUnmatchedUrlsAreBounded() throws Exception
+    {
+        AccessLogReport report = new AccessLogReport(2);
+        report.recordUnmatched("GET /a");
+        report.recordUnmatched("GET /b");
+        report.recordUnmatched("GET /c");
+        report.recordUnmatched("GET /a");
+
+        assertEquals("total unmatched",     4,                          report.getUnmatchedCount());
+        assertEquals("distinct unmatched",  2,                          report.getUnmatched().size());
+        assertEquals("most common",         "GET /a",                   report.getUnmatched().get(0).getKey());
+        assertEquals("most common count",   Long.valueOf(2),            report.getUnmatched().get(0).getValue());
+    }
+}
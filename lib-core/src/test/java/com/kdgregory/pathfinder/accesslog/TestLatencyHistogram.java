@@ -0,0 +1,95 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.accesslog;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+public class TestLatencyHistogram
+{
+    @Test
+    public void testEmpty() throws Exception
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals("count",   0, histogram.getCount());
+        assertEquals("max",     0, histogram.getMax());
+        assertEquals("p50",     0, histogram.getPercentile(50));
+    }
+
+
+    @Test
+    public void testSmallValuesAreExact() throws Exception
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int ii = 1 ; ii <= 50 ; ii++)
+            histogram.record(ii);
+
+        assertEquals("count",   50,   histogram.getCount());
+        assertEquals("total",   1275, histogram.getTotal());
+        assertEquals("p50",     25,   histogram.getPercentile(50));
+        assertEquals("p90",     45,   histogram.getPercentile(90));
+        assertEquals("p100",    50,   histogram.getPercentile(100));
+        assertEquals("max",     50,   histogram.getMax());
+    }
+
+
+    @Test
+    public void testPercentilesAreWithinErrorBounds() throws Exception
+    {
+        Random rnd = new Random(42);
+        long[] values = new long[100000];
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int ii = 0 ; ii < values.length ; ii++)
+        {
+            // log-normal-ish, from microseconds to tens of seconds
+            values[ii] = (long)Math.exp(rnd.nextGaussian() * 2.5 + 9);
+            histogram.record(values[ii]);
+        }
+        Arrays.sort(values);
+
+        for (double pct : new double[] { 50, 90, 99, 99.9 })
+        {
+            long expected = values[(int)Math.ceil(values.length * pct / 100) - 1];
+            long actual = histogram.getPercentile(pct);
+            assertTrue("p" + pct + " not understated: " + actual + " vs " + expected, actual >= expected);
+            assertTrue("p" + pct + " within 3.2%: " + actual + " vs " + expected, actual <= expected * 1.032 + 1);
+        }
+        assertEquals("max", values[values.length - 1], histogram.getMax());
+    }
+
+
+    @Test
+    public void testMerge() throws Exception
+    {
+        LatencyHistogram h1 = new LatencyHistogram();
+        LatencyHistogram h2 = new LatencyHistogram();
+        for (int ii = 0 ; ii < 100 ; ii++)
+            h1.record(1000);
+        for (int ii = 0 ; ii < 100 ; ii++)
+            h2.record(100000);
+        h2.record(LatencyHistogram.MAX_TRACKED_VALUE * 2);
+
+        h1.merge(h2);
+        assertEquals("count",   201,                                    h1.getCount());
+        assertEquals("max",     LatencyHistogram.MAX_TRACKED_VALUE * 2, h1.getMax());
+        assertTrue("p25",       Math.abs(h1.getPercentile(25) - 1000) < 32);
+        assertTrue("p75",       Math.abs(h1.getPercentile(75) - 100000) < 3200);
+        assertEquals("p100",    LatencyHistogram.MAX_TRACKED_VALUE * 2, h1.getPercentile(100));
+    }
+}
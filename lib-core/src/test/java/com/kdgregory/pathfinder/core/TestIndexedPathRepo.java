@@ -0,0 +1,215 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.kdgregory.pathfinder.core.impl.IndexedPathRepo;
+import com.kdgregory.pathfinder.core.impl.IndexedPathRepo.Mapping;
+import com.kdgregory.pathfinder.core.impl.PathRepoImpl;
+
+
+public class TestIndexedPathRepo
+{
+//----------------------------------------------------------------------------
+//  Test Data
+//----------------------------------------------------------------------------
+
+    private final static MyDestination FOO_GET  = new MyDestination("com.example.FooController", "get");
+    private final static MyDestination FOO_POST = new MyDestination("com.example.FooController", "post");
+    private final static MyDestination BAR      = new MyDestination("com.example.BarServlet", null);
+    private final static MyDestination JSP      = new MyDestination(null, null);
+
+//----------------------------------------------------------------------------
+//  Support Code
+//----------------------------------------------------------------------------
+
+    private static class MyDestination
+    implements HandlerDestination
+    {
+        private String handlerClass;
+        private String handlerMethod;
+
+        public MyDestination(String handlerClass, String handlerMethod)
+        {
+            this.handlerClass = handlerClass;
+            this.handlerMethod = handlerMethod;
+        }
+
+        @Override
+        public String getHandlerClass()
+        {
+            return handlerClass;
+        }
+
+        @Override
+        public String getHandlerMethod()
+        {
+            return handlerMethod;
+        }
+
+        @Override
+        public Map<String,String> getHandlerParams()
+        {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public boolean isDisplayed(Map<InvocationOptions,Boolean> options)
+        {
+            throw new IllegalStateException("we shouldn't be testing output");
+        }
+
+        @Override
+        public String toString(Map<InvocationOptions,Boolean> options)
+        {
+            throw new IllegalStateException("we shouldn't be testing output");
+        }
+    }
+
+
+    private static List<String> describe(List<Mapping> mappings)
+    {
+        List<String> result = new ArrayList<String>();
+        for (Mapping mapping : mappings)
+            result.add(mapping.getMethod() + " " + mapping.getUrl());
+        return result;
+    }
+
+
+    private static IndexedPathRepo createPopulatedRepo()
+    {
+        IndexedPathRepo repo = new IndexedPathRepo();
+        repo.put("/foo",            HttpMethod.GET,  FOO_GET);
+        repo.put("/foo",            HttpMethod.POST, FOO_POST);
+        repo.put("/foo/bar",        HttpMethod.GET,  FOO_GET);
+        repo.put("/bar",            BAR);
+        repo.put("/index.jsp",      JSP);
+        return repo;
+    }
+
+
+//----------------------------------------------------------------------------
+//  TestCases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testQueries() throws Exception
+    {
+        IndexedPathRepo repo = createPopulatedRepo();
+
+        assertEquals("url count",           4, repo.urlCount());
+        assertSame("delegated get",         FOO_POST, repo.get("/foo", HttpMethod.POST));
+
+        assertEquals("by class",            Arrays.asList("GET /foo", "POST /foo", "GET /foo/bar"),
+                                            describe(repo.findByHandlerClass("com.example.FooController")));
+        assertEquals("by class, no method", Arrays.asList(" /bar"),
+                                            describe(repo.findByHandlerClass("com.example.BarServlet")));
+        assertEquals("by method",           Arrays.asList("GET /foo", "GET /foo/bar"),
+                                            describe(repo.findByHandlerMethod("com.example.FooController", "get")));
+        assertEquals("by HTTP method",      Arrays.asList("GET /foo", "GET /foo/bar"),
+                                            describe(repo.findByHttpMethod(HttpMethod.GET)));
+        assertEquals("by HTTP method, ALL", Arrays.asList(" /bar", " /index.jsp"),
+                                            describe(repo.findByHttpMethod(HttpMethod.ALL)));
+        assertEquals("unknown class",       0, repo.findByHandlerClass("com.example.Bogus").size());
+        assertEquals("unknown method",      0, repo.findByHandlerMethod("com.example.BarServlet", "get").size());
+        assertEquals("unused HTTP method",  0, repo.findByHttpMethod(HttpMethod.DELETE).size());
+
+        assertEquals("by prefix",           Arrays.asList("/foo", "/foo/bar"),
+                                            new ArrayList<String>(repo.findByUrlPrefix("/foo")));
+        assertEquals("by longer prefix",    Arrays.asList("/foo/bar"),
+                                            new ArrayList<String>(repo.findByUrlPrefix("/foo/")));
+        assertEquals("empty prefix",        Arrays.asList("/bar", "/foo", "/foo/bar", "/index.jsp"),
+                                            new ArrayList<String>(repo.findByUrlPrefix("")));
+        assertEquals("unmatched prefix",    0, repo.findByUrlPrefix("/baz").size());
+    }
+
+
+    @Test
+    public void testIndexesFollowUpdates() throws Exception
+    {
+        IndexedPathRepo repo = createPopulatedRepo();
+
+        // replace one method's destination
+        repo.put("/foo", HttpMethod.POST, BAR);
+        assertEquals("class after replace",     Arrays.asList("GET /foo", "GET /foo/bar"),
+                                                describe(repo.findByHandlerClass("com.example.FooController")));
+        assertEquals("method after replace",    0, repo.findByHandlerMethod("com.example.FooController", "post").size());
+        assertEquals("new class after replace", Arrays.asList(" /bar", "POST /foo"),
+                                                describe(repo.findByHandlerClass("com.example.BarServlet")));
+
+        // removing one method of an ALL mapping splits it into explicit methods
+        repo.remove("/bar", HttpMethod.GET);
+        assertEquals("ALL after split",         Arrays.asList(" /index.jsp"),
+                                                describe(repo.findByHttpMethod(HttpMethod.ALL)));
+        assertEquals("DELETE after split",      Arrays.asList("DELETE /bar"),
+                                                describe(repo.findByHttpMethod(HttpMethod.DELETE)));
+
+        // removing everything drops the URL from all indexes
+        repo.remove("/foo/bar", HttpMethod.ALL);
+        assertEquals("prefix after remove",     Arrays.asList("/foo"),
+                                                new ArrayList<String>(repo.findByUrlPrefix("/foo")));
+        assertEquals("method after remove",     Arrays.asList("GET /foo"),
+                                                describe(repo.findByHandlerMethod("com.example.FooController", "get")));
+
+        List<String> urls = new ArrayList<String>();
+        for (String url : repo)
+            urls.add(url);
+        assertEquals("iterator",                Arrays.asList("/bar", "/foo", "/index.jsp"), urls);
+    }
+
+
+    @Test
+    public void testMethodNameSpansClasses() throws Exception
+    {
+        IndexedPathRepo repo = createPopulatedRepo();
+        repo.put("/baz", HttpMethod.GET, new MyDestination("com.example.BazController", "get"));
+
+        assertEquals("by method name",          Arrays.asList("GET /baz", "GET /foo", "GET /foo/bar"),
+                                                describe(repo.findByHandlerMethod("get")));
+        assertEquals("qualified by class",      Arrays.asList("GET /baz"),
+                                                describe(repo.findByHandlerMethod("com.example.BazController", "get")));
+
+        repo.remove("/foo", HttpMethod.GET);
+        assertEquals("after remove",            Arrays.asList("GET /baz", "GET /foo/bar"),
+                                                describe(repo.findByHandlerMethod("get")));
+        assertEquals("unknown method name",     0, repo.findByHandlerMethod("delete").size());
+    }
+
+
+    @Test
+    public void testIndexesExistingDelegate() throws Exception
+    {
+        PathRepoImpl delegate = new PathRepoImpl();
+        delegate.put("/foo", HttpMethod.GET, FOO_GET);
+        delegate.put("/bar", BAR);
+
+        IndexedPathRepo repo = new IndexedPathRepo(delegate);
+        assertEquals("by class",                Arrays.asList("GET /foo"),
+                                                describe(repo.findByHandlerClass("com.example.FooController")));
+        assertEquals("by prefix",               Arrays.asList("/bar"),
+                                                new ArrayList<String>(repo.findByUrlPrefix("/b")));
+
+        repo.put("/baz", JSP);
+        assertSame("updates delegate",          JSP, delegate.get("/baz", HttpMethod.GET));
+    }
+}
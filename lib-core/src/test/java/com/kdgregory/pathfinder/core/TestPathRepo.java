@@ -14,14 +14,18 @@
 
 package com.kdgregory.pathfinder.core;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.TreeMap;
 
 import org.junit.Test;
 import static org.junit.Assert.*;
 
 import com.kdgregory.pathfinder.core.impl.PathRepoImpl;
+import com.kdgregory.pathfinder.core.impl.PathRepoShard;
 
 
 public class TestPathRepo
@@ -165,6 +169,34 @@ public class TestPathRepo
     }
 
 
+    @Test
+    public void testDestinationMapIsLiveReadOnlyView() throws Exception
+    {
+        PathRepoImpl repo = new PathRepoImpl();
+
+        Map<HttpMethod,Destination> destMap = repo.get(URL_1);
+        assertEquals("initially empty", 0, destMap.size());
+
+        repo.put(URL_1, HttpMethod.POST, DEST_2);
+        repo.put(URL_1, HttpMethod.GET, DEST_1);
+        assertEquals("reflects updates", 2, destMap.size());
+        assertEquals("sorted by method",
+                     Arrays.asList(HttpMethod.GET, HttpMethod.POST),
+                     new ArrayList<HttpMethod>(destMap.keySet()));
+        assertEquals("equal to a normal map", new TreeMap<HttpMethod,Destination>(destMap), destMap);
+
+        try
+        {
+            destMap.put(HttpMethod.PUT, DEST_1);
+            fail("able to modify destination map");
+        }
+        catch (UnsupportedOperationException ex)
+        {
+            // success
+        }
+    }
+
+
     @Test
     public void testPutDestinationMap() throws Exception
     {
@@ -300,4 +332,40 @@ public class TestPathRepo
         assertEquals("removed entire mapping", 2, repo.urlCount());
     }
 
+
+    @Test
+    public void testShardMergeReplaysOperations() throws Exception
+    {
+        PathRepoImpl direct = new PathRepoImpl();
+        PathRepoImpl merged = new PathRepoImpl();
+        PathRepoShard shard = new PathRepoShard();
+
+        // the targets start with entries that the shard's operations will interact with
+        for (PathRepo repo : Arrays.<PathRepo>asList(direct, merged))
+        {
+            repo.put(URL_1, DEST_1);
+            repo.put(URL_2, HttpMethod.GET, DEST_1);
+            repo.put(URL_3, DEST_1);
+        }
+
+        // and these are applied to both direct target and shard
+        for (PathRepo repo : Arrays.<PathRepo>asList(direct, shard))
+        {
+            repo.put(URL_1, HttpMethod.GET, DEST_2);        // overrides ALL
+            repo.put(URL_2, DEST_2);                        // replaces GET
+            repo.remove(URL_3, HttpMethod.POST);            // splits ALL
+        }
+
+        assertEquals("shard only sees its own URLs", 2, shard.urlCount());
+        assertSame("shard read", DEST_2, shard.get(URL_1, HttpMethod.GET));
+        assertNull("shard doesn't see target",  shard.get(URL_1, HttpMethod.POST));
+
+        shard.mergeInto(merged);
+
+        for (String url : Arrays.asList(URL_1, URL_2, URL_3))
+        {
+            assertEquals("destinations for " + url, direct.get(url), merged.get(url));
+        }
+        assertEquals("url count", direct.urlCount(), merged.urlCount());
+    }
 }
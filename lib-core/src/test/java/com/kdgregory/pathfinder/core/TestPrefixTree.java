@@ -0,0 +1,132 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.kdgregory.pathfinder.core.impl.PrefixTree;
+
+
+public class TestPrefixTree
+{
+//----------------------------------------------------------------------------
+//  Support Code
+//----------------------------------------------------------------------------
+
+    private static <V> List<String> keys(PrefixTree<V> tree)
+    {
+        final List<String> result = new ArrayList<String>();
+        tree.visit(new PrefixTree.Visitor<V>()
+        {
+            @Override
+            public void visit(String key, V value)
+            {
+                result.add(key);
+            }
+        });
+        return result;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Testcases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testPutAndGet() throws Exception
+    {
+        PrefixTree<String> tree = new PrefixTree<String>();
+
+        assertNull("put, new key",              tree.put("/foo/bar", "A"));
+        assertNull("put, key that splits node", tree.put("/foo/baz", "B"));
+        assertNull("put, prefix of key",        tree.put("/foo", "C"));
+        assertNull("put, extension of key",     tree.put("/foo/bar.html", "D"));
+        assertEquals("put, replace existing", "A", tree.put("/foo/bar", "E"));
+
+        assertEquals("get, leaf",           "E", tree.get("/foo/bar"));
+        assertEquals("get, after split",    "B", tree.get("/foo/baz"));
+        assertEquals("get, interior",       "C", tree.get("/foo"));
+        assertEquals("get, extension",      "D", tree.get("/foo/bar.html"));
+        assertNull("get, intermediate node",     tree.get("/foo/ba"));
+        assertNull("get, partial label",         tree.get("/fo"));
+        assertNull("get, past leaf",             tree.get("/foo/bar.htmlx"));
+        assertNull("get, nonexistent",           tree.get("/argle"));
+
+        assertEquals("size", 4, tree.size());
+    }
+
+
+    @Test
+    public void testEmptyKey() throws Exception
+    {
+        PrefixTree<String> tree = new PrefixTree<String>();
+        tree.put("", "A");
+        tree.put("/", "B");
+
+        assertEquals("empty key",  "A", tree.get(""));
+        assertEquals("other key",  "B", tree.get("/"));
+        assertEquals("keys", Arrays.asList("", "/"), keys(tree));
+    }
+
+
+    @Test
+    public void testNullValueIsNotCountedOrVisited() throws Exception
+    {
+        PrefixTree<String> tree = new PrefixTree<String>();
+        tree.put("/foo", "A");
+        tree.put("/bar", "B");
+        tree.put("/foo", null);
+
+        assertNull("cleared value", tree.get("/foo"));
+        assertEquals("size", 1, tree.size());
+        assertEquals("keys", Arrays.asList("/bar"), keys(tree));
+    }
+
+
+    @Test
+    public void testVisitOrderMatchesStringOrder() throws Exception
+    {
+        // short keys from a small alphabet produce lots of shared prefixes; the
+        // alphabet includes characters that sort before and after '/'
+        char[] alphabet = "/-.aZz0".toCharArray();
+        Random rnd = new Random(42);
+
+        PrefixTree<Integer> tree = new PrefixTree<Integer>();
+        Map<String,Integer> expected = new TreeMap<String,Integer>();
+        for (int ii = 0 ; ii < 5000 ; ii++)
+        {
+            StringBuilder sb = new StringBuilder();
+            int len = rnd.nextInt(8);
+            for (int jj = 0 ; jj < len ; jj++)
+                sb.append(alphabet[rnd.nextInt(alphabet.length)]);
+
+            String key = sb.toString();
+            assertEquals("put " + key, expected.put(key, Integer.valueOf(ii)), tree.put(key, Integer.valueOf(ii)));
+        }
+
+        assertEquals("size", expected.size(), tree.size());
+        assertEquals("keys", new ArrayList<String>(expected.keySet()), keys(tree));
+        for (Map.Entry<String,Integer> entry : expected.entrySet())
+            assertEquals("get " + entry.getKey(), entry.getValue(), tree.get(entry.getKey()));
+    }
+}
@@ -14,10 +14,17 @@
 
 package com.kdgregory.pathfinder.core;
 
+import java.io.DataInputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.SortedSet;
+import java.util.jar.JarFile;
 
 import org.w3c.dom.Element;
 
@@ -30,8 +37,11 @@ import org.apache.commons.io.IOUtils;
 import net.sf.kdgcommons.io.IOUtil;
 
 import com.kdgregory.pathfinder.core.WarMachine.ServletMapping;
+import com.kdgregory.pathfinder.core.impl.ClassAnnotationCache;
+import com.kdgregory.pathfinder.core.impl.LibraryCache;
 import com.kdgregory.pathfinder.core.impl.WarMachineImpl;
 import com.kdgregory.pathfinder.test.WarNames;
+import com.kdgregory.pathfinder.util.ClassHeader;
 import com.kdgregory.pathfinder.util.TestHelpers;
 
 
@@ -159,6 +169,55 @@ public class TestWarMachine
     }
 
 
+    @Test
+    public void testGetFilesWithPrefix() throws Exception
+    {
+        WarMachine machine = TestHelpers.createWarMachine(WarNames.SERVLET);
+
+        SortedSet<String> files = machine.getFilesWithPrefix("/WEB-INF/views/");
+        assertEquals("files under WEB-INF/views", Arrays.asList("/WEB-INF/views/hidden.jsp"),
+                                                  new ArrayList<String>(files));
+
+        assertEquals("nonexistent prefix", 0, machine.getFilesWithPrefix("/bogus/").size());
+    }
+
+
+    @Test
+    public void testGetClasspathFilesWithPrefix() throws Exception
+    {
+        WarMachine machine = TestHelpers.createWarMachine(WarNames.SERVLET);
+
+        SortedSet<String> files = machine.getClasspathFilesWithPrefix("net/sf/practicalxml/xpath/");
+        assertTrue("file in JAR",                   files.contains("net/sf/practicalxml/xpath/XPathWrapper.class"));
+        assertTrue("file in nested package",        files.contains("net/sf/practicalxml/xpath/function/Constants.class"));
+        assertFalse("file outside prefix",          files.contains("net/sf/practicalxml/DomUtil.class"));
+
+        assertEquals("nonexistent prefix", 0, machine.getClasspathFilesWithPrefix("bogus/").size());
+    }
+
+
+    @Test
+    public void testScanClasspath() throws Exception
+    {
+        WarMachine machine = TestHelpers.createWarMachine(WarNames.SERVLET);
+
+        final Set<String> visited = new HashSet<String>();
+        machine.scanClasspath(new WarMachine.ClasspathVisitor()
+        {
+            @Override
+            public void visit(String filename, InputStream in)
+            throws IOException
+            {
+                assertTrue("first visit for " + filename, visited.add(filename));
+                if (filename.endsWith(".class"))
+                    assertEquals("magic number for " + filename, 0xCAFEBABE, new DataInputStream(in).readInt());
+            }
+        });
+
+        assertEquals("visited all classpath files", machine.getFilesOnClasspath(), visited);
+    }
+
+
     @Test
     public void testGetClassesInPackage() throws Exception
     {
@@ -260,4 +319,154 @@ public class TestWarMachine
     }
 
 
+    @Test
+    public void testSharedLibraryCache() throws Exception
+    {
+        File warFile = TestHelpers.createWarFile(WarNames.SERVLET);
+        LibraryCache cache = new LibraryCache();
+
+        WarMachineImpl machine1 = new WarMachineImpl(warFile, cache);
+        Set<String> files1 = new HashSet<String>(machine1.getFilesOnClasspath());
+        assertTrue("cache populated",       cache.size() > 0);
+        assertEquals("first WAR: no hits",  0, cache.getHitCount());
+
+        WarMachineImpl machine2 = new WarMachineImpl(warFile, cache);
+        Set<String> files2 = new HashSet<String>(machine2.getFilesOnClasspath());
+        assertEquals("second WAR: all hits", cache.size(), cache.getHitCount());
+        assertEquals("same classpath",       files1, files2);
+        assertClassFile("can open cached file", machine2.openClasspathFile("net/sf/practicalxml/DomUtil.class"));
+
+        machine1.close();
+        machine2.close();
+    }
+
+
+    @Test
+    public void testGetClassHeader() throws Exception
+    {
+        WarMachine machine = TestHelpers.createWarMachine(WarNames.SERVLET);
+
+        ClassHeader h1 = machine.getClassHeader("com.example.servlet.SomeServlet");
+        assertNotNull("found class in WEB-INF/classes",     h1);
+        assertEquals("superclass of class in WEB-INF/classes",
+                     "javax.servlet.http.HttpServlet",
+                     h1.getSuperclassName());
+
+        ClassHeader h2 = machine.getClassHeader("net.sf.practicalxml.DomUtil");
+        assertNotNull("found class in enclosed JAR",        h2);
+        assertEquals("name-check class in enclosed JAR",    "net.sf.practicalxml.DomUtil", h2.getClassName());
+        assertSame("archive headers retained",              h2, machine.getClassHeader("net.sf.practicalxml.DomUtil"));
+
+        assertNull("class that shouldn't be in WAR",        machine.getClassHeader("java.lang.String"));
+    }
+
+
+    @Test
+    public void testPersistentLibraryCache() throws Exception
+    {
+        File warFile = TestHelpers.createWarFile(WarNames.SERVLET);
+        File cacheFile = File.createTempFile("TestWarMachine", ".cache");
+        cacheFile.deleteOnExit();
+
+        LibraryCache cache1 = new LibraryCache();
+        WarMachineImpl machine1 = new WarMachineImpl(warFile, cache1);
+        ClassHeader h1 = machine1.getClassHeader("net.sf.practicalxml.DomUtil");
+        machine1.close();
+        cache1.save(cacheFile);
+
+        LibraryCache cache2 = LibraryCache.load(cacheFile);
+        assertEquals("reloaded cache size",     cache1.size(), cache2.size());
+
+        WarMachineImpl machine2 = new WarMachineImpl(warFile, cache2);
+        ClassHeader h2 = machine2.getClassHeader("net.sf.practicalxml.DomUtil");
+        assertEquals("no misses after reload",  0, cache2.getMissCount());
+        assertEquals("class name",              h1.getClassName(), h2.getClassName());
+        assertEquals("superclass",              h1.getSuperclassName(), h2.getSuperclassName());
+        assertEquals("interfaces",              h1.getInterfaceNames(), h2.getInterfaceNames());
+        machine2.close();
+    }
+
+
+    @Test
+    public void testClassAnnotationCache() throws Exception
+    {
+        File warFile = TestHelpers.createWarFile(WarNames.SERVLET);
+        File cacheFile = File.createTempFile("TestWarMachine", ".cache");
+        cacheFile.deleteOnExit();
+
+        WarMachine uncached = TestHelpers.createWarMachine(WarNames.SERVLET);
+        uncached.loadClass("com.example.servlet.SomeServlet");
+        assertNull("no cache, nothing known",   uncached.getKnownClassAnnotations("com.example.servlet.SomeServlet"));
+
+        ClassAnnotationCache cache1 = new ClassAnnotationCache();
+        WarMachineImpl machine1 = new WarMachineImpl(warFile, null, cache1);
+        assertNull("not known before load",     machine1.getKnownClassAnnotations("com.example.servlet.SomeServlet"));
+        machine1.loadClass("com.example.servlet.SomeServlet");
+        machine1.loadClass("net.sf.practicalxml.DomUtil");
+        assertNotNull("known after load",       machine1.getKnownClassAnnotations("com.example.servlet.SomeServlet"));
+        assertNull("library classes not cached", machine1.getKnownClassAnnotations("net.sf.practicalxml.DomUtil"));
+        machine1.close();
+        cache1.save(cacheFile);
+
+        ClassAnnotationCache cache2 = ClassAnnotationCache.load(cacheFile);
+        WarMachineImpl machine2 = new WarMachineImpl(warFile, null, cache2);
+        assertEquals("known from previous run",
+                     cache1.get("com/example/servlet/SomeServlet.class", getCrc(warFile, "WEB-INF/classes/com/example/servlet/SomeServlet.class")),
+                     machine2.getKnownClassAnnotations("com.example.servlet.SomeServlet"));
+        assertEquals("only used entries retained", 1, cache2.size());
+        machine2.close();
+    }
+
+
+    @Test
+    public void testExplodedWar() throws Exception
+    {
+        WarMachine archive = TestHelpers.createWarMachine(WarNames.SERVLET);
+        File warDir = TestHelpers.createExplodedWar(WarNames.SERVLET);
+        try
+        {
+            WarMachineImpl exploded = new WarMachineImpl(warDir);
+            assertEquals("all files",       new HashSet<String>(archive.getAllFiles()),
+                                            new HashSet<String>(exploded.getAllFiles()));
+            assertEquals("classpath",       archive.getFilesOnClasspath(), exploded.getFilesOnClasspath());
+            assertEquals("servlet mappings", archive.getServletMappings().size(), exploded.getServletMappings().size());
+            assertClassFile("class from directory",  exploded.openClasspathFile("com/example/servlet/SomeServlet.class"));
+            assertClassFile("class from JAR",        exploded.openClasspathFile("net/sf/practicalxml/DomUtil.class"));
+
+            File classFile = new File(warDir, "WEB-INF/classes/com/example/servlet/SomeServlet.class");
+            assertTrue("deleted class", classFile.delete());
+            assertTrue("before refresh", exploded.getFilesOnClasspath().contains("com/example/servlet/SomeServlet.class"));
+            exploded.refresh(Arrays.asList("/WEB-INF/classes/com/example/servlet/SomeServlet.class"));
+            assertFalse("after refresh", exploded.getFilesOnClasspath().contains("com/example/servlet/SomeServlet.class"));
+            assertNull("header after refresh", exploded.getClassHeader("com.example.servlet.SomeServlet"));
+            exploded.close();
+        }
+        finally
+        {
+            TestHelpers.deleteRecursively(warDir);
+        }
+    }
+
+
+    @Test(expected=IllegalStateException.class)
+    public void testRefreshArchive() throws Exception
+    {
+        WarMachineImpl machine = new WarMachineImpl(TestHelpers.createWarFile(WarNames.SERVLET));
+        machine.refresh(Arrays.asList("/WEB-INF/web.xml"));
+    }
+
+
+    private static long getCrc(File warFile, String entryName)
+    throws Exception
+    {
+        JarFile jar = new JarFile(warFile);
+        try
+        {
+            return jar.getJarEntry(entryName).getCrc();
+        }
+        finally
+        {
+            jar.close();
+        }
+    }
 }
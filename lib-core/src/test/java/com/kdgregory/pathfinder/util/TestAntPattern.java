@@ -0,0 +1,74 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.util;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+public class TestAntPattern
+{
+    @Test
+    public void testIsPattern() throws Exception
+    {
+        assertFalse("no wildcards",  AntPattern.isPattern("/WEB-INF/spring/context.xml"));
+        assertTrue("star",           AntPattern.isPattern("/WEB-INF/spring/*.xml"));
+        assertTrue("question mark",  AntPattern.isPattern("/WEB-INF/spring/context?.xml"));
+    }
+
+
+    @Test
+    public void testLiteralPrefix() throws Exception
+    {
+        assertEquals("no wildcards",        "/foo/bar.xml",  new AntPattern("/foo/bar.xml").getLiteralPrefix());
+        assertEquals("wildcard in file",    "/foo/",         new AntPattern("/foo/*.xml").getLiteralPrefix());
+        assertEquals("wildcard directory",  "/foo/",         new AntPattern("/foo/**/bar.xml").getLiteralPrefix());
+        assertEquals("partial segment",     "/foo/",         new AntPattern("/foo/ba?/bar.xml").getLiteralPrefix());
+        assertEquals("no leading path",     "",              new AntPattern("*.xml").getLiteralPrefix());
+    }
+
+
+    @Test
+    public void testSingleSegmentWildcards() throws Exception
+    {
+        AntPattern pattern = new AntPattern("/foo/*-context.xml");
+        assertTrue("simple match",                  pattern.matches("/foo/bar-context.xml"));
+        assertTrue("star matches empty",            pattern.matches("/foo/-context.xml"));
+        assertFalse("star doesn't cross segments",  pattern.matches("/foo/bar/baz-context.xml"));
+        assertFalse("literals are not regexes",     pattern.matches("/foo/bar-contextXxml"));
+
+        AntPattern pattern2 = new AntPattern("/foo/context?.xml");
+        assertTrue("question mark matches one",     pattern2.matches("/foo/context1.xml"));
+        assertFalse("question mark requires one",   pattern2.matches("/foo/context.xml"));
+        assertFalse("question mark only one",       pattern2.matches("/foo/context12.xml"));
+    }
+
+
+    @Test
+    public void testMultiSegmentWildcards() throws Exception
+    {
+        AntPattern pattern = new AntPattern("/foo/**/*.xml");
+        assertTrue("zero segments",                 pattern.matches("/foo/bar.xml"));
+        assertTrue("one segment",                   pattern.matches("/foo/bar/baz.xml"));
+        assertTrue("multiple segments",             pattern.matches("/foo/bar/baz/bargle.xml"));
+        assertFalse("prefix must match",            pattern.matches("/fooo/bar.xml"));
+        assertFalse("suffix must match",            pattern.matches("/foo/bar/baz.txt"));
+
+        AntPattern pattern2 = new AntPattern("/foo/**");
+        assertTrue("trailing, one segment",         pattern2.matches("/foo/bar.xml"));
+        assertTrue("trailing, multiple segments",   pattern2.matches("/foo/bar/baz.xml"));
+        assertFalse("trailing, prefix must match",  pattern2.matches("/bar/baz.xml"));
+    }
+}
@@ -0,0 +1,113 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+
+import org.w3c.dom.Document;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import org.xml.sax.SAXException;
+
+
+public class TestLocalXmlParser
+{
+//----------------------------------------------------------------------------
+//  Test Data
+//----------------------------------------------------------------------------
+
+    // the DTD defines default attributes, so we can tell whether it was read
+    private final static String BUNDLED_DTD
+            = "<!DOCTYPE beans PUBLIC \"-//SPRING//DTD BEAN 2.0//EN\""
+            + " \"http://www.springframework.org/dtd/spring-beans-2.0.dtd\">"
+            + "<beans><bean id=\"foo\" class=\"com.example.Foo\"/></beans>";
+
+    // the ".invalid" TLD is guaranteed not to resolve
+    private final static String UNKNOWN_DTD
+            = "<!DOCTYPE foo SYSTEM \"http://example.invalid/foo.dtd\">"
+            + "<foo>bar</foo>";
+
+
+//----------------------------------------------------------------------------
+//  Support Code
+//----------------------------------------------------------------------------
+
+    private static InputStream toStream(String xml)
+    throws Exception
+    {
+        return new ByteArrayInputStream(xml.getBytes("UTF-8"));
+    }
+
+
+//----------------------------------------------------------------------------
+//  Testcases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testDomResolvesBundledDTD() throws Exception
+    {
+        Document dom = LocalXmlParser.parse(toStream(BUNDLED_DTD));
+        assertEquals("default attribute from DTD", "false",
+                     dom.getDocumentElement().getAttribute("default-lazy-init"));
+    }
+
+
+    @Test
+    public void testDomIgnoresUnknownDTD() throws Exception
+    {
+        Document dom = LocalXmlParser.parse(toStream(UNKNOWN_DTD));
+        assertEquals("content", "bar", dom.getDocumentElement().getTextContent());
+    }
+
+
+    @Test
+    public void testDomParserIsReusable() throws Exception
+    {
+        // a failed parse must not poison the pooled parser
+        try
+        {
+            LocalXmlParser.parse(toStream("<foo>"));
+            fail("parsed invalid XML");
+        }
+        catch (SAXException ex)
+        {
+            // success
+        }
+
+        for (int ii = 0 ; ii < 3 ; ii++)
+        {
+            Document dom = LocalXmlParser.parse(toStream("<foo>" + ii + "</foo>"));
+            assertEquals("content, iteration " + ii, String.valueOf(ii), dom.getDocumentElement().getTextContent());
+        }
+    }
+
+
+    @Test
+    public void testStaxIgnoresUnknownDTD() throws Exception
+    {
+        XMLStreamReader reader = LocalXmlParser.newStreamReader(toStream(UNKNOWN_DTD));
+        while (reader.next() != XMLStreamConstants.START_ELEMENT)
+            ;
+        assertEquals("root element", "foo", reader.getLocalName());
+        assertEquals("content", "bar", reader.getElementText());
+        reader.close();
+    }
+}
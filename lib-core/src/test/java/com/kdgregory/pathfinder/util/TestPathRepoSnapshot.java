@@ -0,0 +1,237 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.kdgregory.pathfinder.core.Destination;
+import com.kdgregory.pathfinder.core.DispatchedDestination;
+import com.kdgregory.pathfinder.core.HandlerDestination;
+import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.PathRepo;
+import com.kdgregory.pathfinder.core.impl.PathRepoImpl;
+import com.kdgregory.pathfinder.util.PathRepoSnapshot.SnapshotDestination;
+
+
+public class TestPathRepoSnapshot
+{
+//----------------------------------------------------------------------------
+//  Support Code
+//----------------------------------------------------------------------------
+
+    private File file;
+
+
+    @Before
+    public void setUp()
+    throws Exception
+    {
+        file = File.createTempFile("TestPathRepoSnapshot", ".snap");
+    }
+
+
+    @After
+    public void tearDown()
+    {
+        file.delete();
+    }
+
+
+    private static class ControllerDestination
+    implements HandlerDestination, DispatchedDestination
+    {
+        private String method;
+        private Map<String,String> params = new LinkedHashMap<String,String>();
+
+        public ControllerDestination(String method, String... namesAndTypes)
+        {
+            this.method = method;
+            for (int ii = 0 ; ii < namesAndTypes.length ; ii += 2)
+                params.put(namesAndTypes[ii], namesAndTypes[ii + 1]);
+        }
+
+        @Override
+        public String getHandlerClass()
+        {
+            return "com.example.Controller";
+        }
+
+        @Override
+        public String getHandlerMethod()
+        {
+            return method;
+        }
+
+        @Override
+        public Map<String,String> getHandlerParams()
+        {
+            return params;
+        }
+
+        @Override
+        public String getServletPattern()
+        {
+            return "/servlet/*";
+        }
+
+        @Override
+        public boolean isDisplayed(Map<InvocationOptions,Boolean> options)
+        {
+            return true;
+        }
+
+        @Override
+        public String toString(Map<InvocationOptions,Boolean> options)
+        {
+            return InvocationOptions.SHOW_REQUEST_PARAMS.isEnabled(options)
+                 ? "Controller." + method + "(" + params.keySet() + ")"
+                 : "Controller." + method + "()";
+        }
+    }
+
+
+    private static class JspDestination
+    implements Destination
+    {
+        @Override
+        public boolean isDisplayed(Map<InvocationOptions,Boolean> options)
+        {
+            return InvocationOptions.SHOW_JSP.isEnabled(options);
+        }
+
+        @Override
+        public String toString(Map<InvocationOptions,Boolean> options)
+        {
+            return "/WEB-INF/index.jsp";
+        }
+    }
+
+
+    private static Map<InvocationOptions,Boolean> options(InvocationOptions... enabled)
+    {
+        Map<InvocationOptions,Boolean> result = new LinkedHashMap<InvocationOptions,Boolean>();
+        for (InvocationOptions option : enabled)
+            result.put(option, Boolean.TRUE);
+        return result;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Testcases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testRoundTrip() throws Exception
+    {
+        ControllerDestination getDest = new ControllerDestination("get", "id", "int", "q", "java.lang.String");
+        ControllerDestination postDest = new ControllerDestination("post");
+
+        PathRepo repo = new PathRepoImpl();
+        repo.put("/foo",                HttpMethod.GET, getDest);
+        repo.put("/foo",                HttpMethod.POST, postDest);
+        repo.put("/foo/{id}",           HttpMethod.GET, getDest);
+        repo.put("/index.jsp",          new JspDestination());
+        repo.put("/\u00e9t\u00e9",      new JspDestination());
+
+        PathRepoSnapshot.save(repo, file);
+        assertTrue("recognized as snapshot", PathRepoSnapshot.isSnapshot(file));
+
+        PathRepo loaded = PathRepoSnapshot.load(file);
+        assertEquals("url count",               4, loaded.urlCount());
+        assertEquals("methods for /foo",        repo.get("/foo").keySet(), loaded.get("/foo").keySet());
+        assertNull("no DELETE for /foo",        loaded.get("/foo", HttpMethod.DELETE));
+        assertNotNull("non-ASCII URL",          loaded.get("/\u00e9t\u00e9", HttpMethod.ALL));
+
+        SnapshotDestination dest = (SnapshotDestination)loaded.get("/foo", HttpMethod.GET);
+        assertEquals("type",                    "controller", dest.getType());
+        assertEquals("handler class",           "com.example.Controller", dest.getHandlerClass());
+        assertEquals("handler method",          "get", dest.getHandlerMethod());
+        assertEquals("handler params",          getDest.getHandlerParams(), dest.getHandlerParams());
+        assertEquals("param type",              "java.lang.String", dest.getHandlerParams().get("q"));
+        assertEquals("text",                    "Controller.get()", dest.toString(options()));
+        assertEquals("text with params",        "Controller.get([id, q])", dest.toString(options(InvocationOptions.SHOW_REQUEST_PARAMS)));
+        assertEquals("servlet pattern",         "/servlet/*", dest.getServletPattern());
+        assertSame("shared destination",        dest, loaded.get("/foo/{id}", HttpMethod.GET));
+        assertTrue("controller displayed",      dest.isDisplayed(options()));
+
+        SnapshotDestination jsp = (SnapshotDestination)loaded.get("/index.jsp", HttpMethod.ALL);
+        assertEquals("JSP type",                "jsp", jsp.getType());
+        assertNull("JSP has no class",          jsp.getHandlerClass());
+        assertNull("JSP has no servlet pattern",jsp.getServletPattern());
+        assertEquals("JSP text",                "/WEB-INF/index.jsp", jsp.toString());
+        assertFalse("JSP hidden by default",    jsp.isDisplayed(options()));
+        assertTrue("JSP shown by option",       jsp.isDisplayed(options(InvocationOptions.SHOW_JSP)));
+    }
+
+
+    @Test
+    public void testRejectsOtherFiles() throws Exception
+    {
+        OutputStream out = new FileOutputStream(file);
+        out.write("PK this is not a snapshot".getBytes("UTF-8"));
+        out.close();
+
+        assertFalse("not recognized", PathRepoSnapshot.isSnapshot(file));
+        try
+        {
+            PathRepoSnapshot.load(file);
+            fail("loaded a non-snapshot");
+        }
+        catch (IOException ex)
+        {
+            assertTrue("exception message", ex.getMessage().startsWith("not a PathFinder snapshot"));
+        }
+    }
+
+
+    @Test
+    public void testTruncatedFile() throws Exception
+    {
+        PathRepo repo = new PathRepoImpl();
+        repo.put("/index.jsp", new JspDestination());
+        PathRepoSnapshot.save(repo, file);
+
+        byte[] truncated = new byte[(int)file.length() - 3];
+        FileInputStream in = new FileInputStream(file);
+        assertEquals("read file", truncated.length, in.read(truncated));
+        in.close();
+
+        OutputStream out = new FileOutputStream(file);
+        out.write(truncated);
+        out.close();
+
+        try
+        {
+            PathRepoSnapshot.load(file);
+            fail("loaded a truncated snapshot");
+        }
+        catch (IOException ex)
+        {
+            assertTrue("exception message", ex.getMessage().startsWith("truncated snapshot"));
+        }
+    }
+}
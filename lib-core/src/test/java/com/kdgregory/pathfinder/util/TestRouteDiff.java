@@ -0,0 +1,216 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.kdgregory.pathfinder.core.HandlerDestination;
+import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.PathRepo;
+import com.kdgregory.pathfinder.core.impl.PathRepoImpl;
+import com.kdgregory.pathfinder.util.RouteDiff.Change;
+import com.kdgregory.pathfinder.util.RouteDiff.ChangeType;
+
+
+public class TestRouteDiff
+{
+//----------------------------------------------------------------------------
+//  Support Code
+//----------------------------------------------------------------------------
+
+    private static class MyDestination
+    implements HandlerDestination
+    {
+        private String handlerClass;
+        private String handlerMethod;
+        private Map<String,String> params = new LinkedHashMap<String,String>();
+
+        public MyDestination(String handlerClass, String handlerMethod, String... namesAndTypes)
+        {
+            this.handlerClass = handlerClass;
+            this.handlerMethod = handlerMethod;
+            for (int ii = 0 ; ii < namesAndTypes.length ; ii += 2)
+                params.put(namesAndTypes[ii], namesAndTypes[ii + 1]);
+        }
+
+        @Override
+        public String getHandlerClass()
+        {
+            return handlerClass;
+        }
+
+        @Override
+        public String getHandlerMethod()
+        {
+            return handlerMethod;
+        }
+
+        @Override
+        public Map<String,String> getHandlerParams()
+        {
+            return params;
+        }
+
+        @Override
+        public boolean isDisplayed(Map<InvocationOptions,Boolean> options)
+        {
+            return true;
+        }
+
+        @Override
+        public String toString(Map<InvocationOptions,Boolean> options)
+        {
+            return handlerClass + "." + handlerMethod + "()";
+        }
+    }
+
+
+    private static List<String> run(RouteDiff diff)
+    throws Exception
+    {
+        final List<String> result = new ArrayList<String>();
+        diff.run(new RouteDiff.Listener()
+        {
+            @Override
+            public void onChange(Change change)
+            {
+                result.add(change.getType() + " " + change.getMethod().name() + " " + change.getUrl()
+                           + (change.getChangedFields().isEmpty() ? "" : " " + change.getChangedFields()));
+            }
+        });
+        return result;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Testcases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testIdenticalRepos() throws Exception
+    {
+        PathRepo oldRepo = new PathRepoImpl();
+        PathRepo newRepo = new PathRepoImpl();
+        oldRepo.put("/foo", HttpMethod.GET, new MyDestination("Foo", "get", "id", "int"));
+        newRepo.put("/foo", HttpMethod.GET, new MyDestination("Foo", "get", "id", "int"));
+
+        RouteDiff diff = new RouteDiff(oldRepo, newRepo);
+        assertEquals("changes", Collections.emptyList(), run(diff));
+        assertEquals("count",   0, diff.getCount(ChangeType.CHANGED));
+    }
+
+
+    @Test
+    public void testAddedRemovedChanged() throws Exception
+    {
+        PathRepo oldRepo = new PathRepoImpl();
+        oldRepo.put("/a",       new MyDestination("A", "a"));
+        oldRepo.put("/b",       HttpMethod.GET, new MyDestination("B", "get"));
+        oldRepo.put("/b",       HttpMethod.POST, new MyDestination("B", "post", "id", "int"));
+        oldRepo.put("/c",       HttpMethod.GET, new MyDestination("C", "get"));
+        oldRepo.put("/e",       HttpMethod.GET, new MyDestination("E", "get"));
+
+        PathRepo newRepo = new PathRepoImpl();
+        newRepo.put("/b",       HttpMethod.GET, new MyDestination("B2", "get"));
+        newRepo.put("/b",       HttpMethod.POST, new MyDestination("B", "post", "id", "long"));
+        newRepo.put("/b",       HttpMethod.PUT, new MyDestination("B", "put"));
+        newRepo.put("/c",       HttpMethod.GET, new MyDestination("C", "fetch"));
+        newRepo.put("/d",       new MyDestination("D", "d"));
+        newRepo.put("/e",       HttpMethod.GET, new MyDestination("E", "get"));
+
+        RouteDiff diff = new RouteDiff(oldRepo, newRepo);
+        assertEquals("changes",
+                     Arrays.asList("REMOVED ALL /a",
+                                   "CHANGED GET /b [class]",
+                                   "CHANGED POST /b [params]",
+                                   "ADDED PUT /b",
+                                   "CHANGED GET /c [handlerMethod]",
+                                   "ADDED ALL /d"),
+                     run(diff));
+
+        final List<Change> changes = new ArrayList<Change>();
+        diff.run(new RouteDiff.Listener()
+        {
+            @Override
+            public void onChange(Change change)
+            {
+                changes.add(change);
+            }
+        });
+
+        assertEquals("added",           2, diff.getCount(ChangeType.ADDED));
+        assertEquals("removed",         1, diff.getCount(ChangeType.REMOVED));
+        assertEquals("changed",         3, diff.getCount(ChangeType.CHANGED));
+        assertNull("removed has no new destination", changes.get(0).getNewDestination());
+        assertEquals("old destination", "B.get()", changes.get(1).getOldDestination().toString(null));
+        assertEquals("new destination", "B2.get()", changes.get(1).getNewDestination().toString(null));
+    }
+
+
+    @Test
+    public void testAllVersusSpecificMethods() throws Exception
+    {
+        MyDestination dest = new MyDestination("A", "a");
+
+        PathRepo oldRepo = new PathRepoImpl();
+        oldRepo.put("/a", dest);
+        oldRepo.put("/b", dest);
+
+        // /a is split into methods with the same destination, /b loses DELETE
+        PathRepo newRepo = new PathRepoImpl();
+        newRepo.put("/a", dest);
+        newRepo.remove("/a", HttpMethod.DELETE);
+        newRepo.put("/a", HttpMethod.DELETE, dest);
+        newRepo.put("/b", dest);
+        newRepo.remove("/b", HttpMethod.DELETE);
+
+        assertEquals("changes",
+                     Arrays.asList("REMOVED DELETE /b"),
+                     run(new RouteDiff(oldRepo, newRepo)));
+    }
+
+
+    @Test
+    public void testLargeRepos() throws Exception
+    {
+        PathRepo oldRepo = new PathRepoImpl();
+        PathRepo newRepo = new PathRepoImpl();
+        for (int ii = 0 ; ii < 50000 ; ii++)
+        {
+            String url = "/api/v1/resource" + ii + "/{id}";
+            oldRepo.put(url, HttpMethod.GET, new MyDestination("Controller" + (ii / 10), "get"));
+            if (ii % 1000 != 0)
+                newRepo.put(url, HttpMethod.GET, new MyDestination("Controller" + (ii / 10), "get"));
+        }
+
+        long start = System.currentTimeMillis();
+        RouteDiff diff = new RouteDiff(oldRepo, newRepo);
+        run(diff);
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertEquals("removed",     50, diff.getCount(ChangeType.REMOVED));
+        assertEquals("added",       0,  diff.getCount(ChangeType.ADDED));
+        assertTrue("elapsed time: " + elapsed, elapsed < 5000);
+    }
+}
@@ -0,0 +1,302 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.util;
+
+import java.util.Map;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.kdgregory.pathfinder.core.Destination;
+import com.kdgregory.pathfinder.core.DispatchedDestination;
+import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.PathRepo;
+import com.kdgregory.pathfinder.core.impl.PathRepoImpl;
+import com.kdgregory.pathfinder.util.RouteMatcher.Match;
+import com.kdgregory.pathfinder.util.RouteMatcher.MatchType;
+
+
+public class TestRouteMatcher
+{
+//----------------------------------------------------------------------------
+//  Support Code
+//----------------------------------------------------------------------------
+
+    private static class MyDestination
+    implements Destination
+    {
+        private String name;
+
+        public MyDestination(String name)
+        {
+            this.name = name;
+        }
+
+        @Override
+        public boolean isDisplayed(Map<InvocationOptions,Boolean> options)
+        {
+            return true;
+        }
+
+        @Override
+        public String toString(Map<InvocationOptions,Boolean> options)
+        {
+            return name;
+        }
+
+        @Override
+        public String toString()
+        {
+            return name;
+        }
+    }
+
+
+    private static class MyDispatchedDestination
+    extends MyDestination
+    implements DispatchedDestination
+    {
+        private String servletPattern;
+
+        public MyDispatchedDestination(String name, String servletPattern)
+        {
+            super(name);
+            this.servletPattern = servletPattern;
+        }
+
+        @Override
+        public String getServletPattern()
+        {
+            return servletPattern;
+        }
+    }
+
+
+    /**
+     *  Adds routes that were produced by the dispatcher at the given mapping.
+     */
+    private static PathRepo addDispatched(PathRepo repo, String servletPattern, String... urls)
+    {
+        for (String url : urls)
+            repo.put(url, new MyDispatchedDestination(url, servletPattern));
+        return repo;
+    }
+
+
+    /**
+     *  Creates a repository in which each URL maps to a destination with the
+     *  same name, for all methods.
+     */
+    private static PathRepo createRepo(String... urls)
+    {
+        PathRepo repo = new PathRepoImpl();
+        for (String url : urls)
+            repo.put(url, new MyDestination(url));
+        return repo;
+    }
+
+
+    private static void assertMatch(RouteMatcher matcher, String url, MatchType expectedType, String expectedUrl)
+    {
+        Match match = matcher.match(url);
+        assertNotNull("match for " + url, match);
+        assertEquals("matched URL for " + url,  expectedUrl,  match.getUrl());
+        assertEquals("match type for " + url,   expectedType, match.getType());
+    }
+
+
+//----------------------------------------------------------------------------
+//  Testcases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testServletPrecedence() throws Exception
+    {
+        RouteMatcher matcher = new RouteMatcher(createRepo(
+                "/", "/foo/*", "/foo/bar/*", "/foo/bar/index.html", "*.do", "/*.bogus"));
+
+        assertMatch(matcher, "/foo/bar/index.html", MatchType.EXACT,     "/foo/bar/index.html");
+        assertMatch(matcher, "/foo/bar/baz.do",     MatchType.PREFIX,    "/foo/bar/*");
+        assertMatch(matcher, "/foo/bar",            MatchType.PREFIX,    "/foo/bar/*");
+        assertMatch(matcher, "/foo/barbaz",         MatchType.PREFIX,    "/foo/*");
+        assertMatch(matcher, "/argle/bargle.do",    MatchType.EXTENSION, "*.do");
+        assertMatch(matcher, "/argle/bargle",       MatchType.DEFAULT,   "/");
+        assertMatch(matcher, "/argle.do/bargle",    MatchType.DEFAULT,   "/");
+
+        assertEquals("route count", 6, matcher.getRouteCount());
+    }
+
+
+    @Test
+    public void testNoMatch() throws Exception
+    {
+        RouteMatcher matcher = new RouteMatcher(createRepo("/foo", "/bar/*"));
+
+        assertNull("no default mapping", matcher.match("/baz"));
+        assertNull("no destination",     matcher.getDestination("/baz", HttpMethod.GET));
+    }
+
+
+    @Test
+    public void testSpringVariables() throws Exception
+    {
+        RouteMatcher matcher = new RouteMatcher(createRepo(
+                "/servlet/D/{id}", "/servlet/D/{id}/edit", "/servlet/D/new", "/servlet/E/{id:\\d+}.html"));
+
+        assertMatch(matcher, "/servlet/D/42",       MatchType.PATTERN, "/servlet/D/{id}");
+        assertMatch(matcher, "/servlet/D/42/edit",  MatchType.PATTERN, "/servlet/D/{id}/edit");
+        assertMatch(matcher, "/servlet/D/new",      MatchType.EXACT,   "/servlet/D/new");
+        assertMatch(matcher, "/servlet/E/12.html",  MatchType.PATTERN, "/servlet/E/{id:\\d+}.html");
+
+        assertNull("variable requires a segment",   matcher.match("/servlet/D/"));
+        assertNull("variable with regex",           matcher.match("/servlet/E/abc.html"));
+    }
+
+
+    @Test
+    public void testAntWildcards() throws Exception
+    {
+        RouteMatcher matcher = new RouteMatcher(createRepo(
+                "/**", "/app/**", "/app/**/*.html", "/app/*.html", "/app/page?.html"));
+
+        assertMatch(matcher, "/app/page1.html",         MatchType.PATTERN, "/app/page?.html");
+        assertMatch(matcher, "/app/index.html",         MatchType.PATTERN, "/app/*.html");
+        assertMatch(matcher, "/app/x/y/index.jsp",      MatchType.PATTERN, "/app/**");
+        // as with Spring, "**" counts as two wildcards, so the shorter pattern wins
+        assertMatch(matcher, "/app/x/y/index.html",     MatchType.PATTERN, "/app/**");
+        assertMatch(matcher, "/app",                    MatchType.PATTERN, "/app/**");
+        assertMatch(matcher, "/other",                  MatchType.PATTERN, "/**");
+    }
+
+
+    @Test
+    public void testMultiSegmentWildcardInMiddle() throws Exception
+    {
+        RouteMatcher matcher = new RouteMatcher(createRepo("/app/**/*.html", "/app/**/edit/{id}"));
+
+        assertMatch(matcher, "/app/index.html",         MatchType.PATTERN, "/app/**/*.html");
+        assertMatch(matcher, "/app/x/y/index.html",     MatchType.PATTERN, "/app/**/*.html");
+        assertMatch(matcher, "/app/x/edit/12",          MatchType.PATTERN, "/app/**/edit/{id}");
+        assertNull("no match",                          matcher.match("/app/x/y/index.jsp"));
+    }
+
+
+    @Test
+    public void testPatternsWithoutDispatcher() throws Exception
+    {
+        // patterns that don't identify their dispatcher rank just below exact mappings
+        RouteMatcher matcher = new RouteMatcher(createRepo(
+                "/servlet/*", "*.html", "/servlet/{page}.html", "/servlet/index.html"));
+
+        assertMatch(matcher, "/servlet/index.html",     MatchType.EXACT,   "/servlet/index.html");
+        assertMatch(matcher, "/servlet/other.html",     MatchType.PATTERN, "/servlet/{page}.html");
+        assertMatch(matcher, "/servlet/other.jsp",      MatchType.PREFIX,  "/servlet/*");
+        assertMatch(matcher, "/other.html",             MatchType.EXTENSION, "*.html");
+    }
+
+
+    @Test
+    public void testServletMappingSelectsDispatcher() throws Exception
+    {
+        PathRepo repo = createRepo("/servlet/special/*", "*.html", "/");
+        addDispatched(repo, "/servlet/*", "/servlet/index.html", "/servlet/{page}.html", "/servlet/**/*.html");
+        RouteMatcher matcher = new RouteMatcher(repo);
+
+        assertMatch(matcher, "/servlet/index.html",         MatchType.EXACT,     "/servlet/index.html");
+        assertMatch(matcher, "/servlet/other.html",         MatchType.PATTERN,   "/servlet/{page}.html");
+        assertMatch(matcher, "/servlet/x/other.html",       MatchType.PATTERN,   "/servlet/**/*.html");
+        assertMatch(matcher, "/servlet/special/x.html",     MatchType.PREFIX,    "/servlet/special/*");
+        assertMatch(matcher, "/other.html",                 MatchType.EXTENSION, "*.html");
+        assertMatch(matcher, "/other.jsp",                  MatchType.DEFAULT,   "/");
+
+        // the dispatcher gets the request, even though it can't handle it
+        assertNull("not handled by dispatcher",             matcher.match("/servlet/other.jsp"));
+
+        assertEquals("route count", 6, matcher.getRouteCount());
+    }
+
+
+    @Test
+    public void testDispatchersAreIndependent() throws Exception
+    {
+        PathRepo repo = createRepo("*.do");
+        addDispatched(repo, "/a/*", "/a/{x}");
+        addDispatched(repo, "/*",   "/**", "/a/{x}/{y}");
+        addDispatched(repo, "/",    "/b/{x}");
+        RouteMatcher matcher = new RouteMatcher(repo);
+
+        assertMatch(matcher, "/a/foo",                      MatchType.PATTERN,   "/a/{x}");
+        assertMatch(matcher, "/b/foo",                      MatchType.PATTERN,   "/**");
+        assertMatch(matcher, "/c/foo.do",                   MatchType.PATTERN,   "/**");
+        assertNull("other dispatcher's pattern",            matcher.match("/a/foo/bar"));
+    }
+
+
+    @Test
+    public void testDefaultDispatcher() throws Exception
+    {
+        PathRepo repo = createRepo("*.do", "/static/*");
+        addDispatched(repo, "/", "/app/{id}", "/app/list");
+        RouteMatcher matcher = new RouteMatcher(repo);
+
+        assertMatch(matcher, "/app/12",                     MatchType.PATTERN,   "/app/{id}");
+        assertMatch(matcher, "/app/list",                   MatchType.EXACT,     "/app/list");
+        assertMatch(matcher, "/app/12.do",                  MatchType.EXTENSION, "*.do");
+        assertMatch(matcher, "/static/app/12",              MatchType.PREFIX,    "/static/*");
+        assertNull("not handled by dispatcher",             matcher.match("/other"));
+    }
+
+
+    @Test
+    public void testRequestParametersAreIgnored() throws Exception
+    {
+        RouteMatcher matcher = new RouteMatcher(createRepo("/foo", "/bar/{id}"));
+
+        assertMatch(matcher, "/foo?argle=bargle",        MatchType.EXACT,   "/foo");
+        assertMatch(matcher, "/foo;jsessionid=1234",     MatchType.EXACT,   "/foo");
+        assertMatch(matcher, "/bar/12?argle=bargle",     MatchType.PATTERN, "/bar/{id}");
+    }
+
+
+    @Test
+    public void testContextRoot() throws Exception
+    {
+        RouteMatcher matcher = new RouteMatcher(createRepo("", "/"));
+
+        assertMatch(matcher, "/",       MatchType.EXACT,   "");
+        assertMatch(matcher, "/foo",    MatchType.DEFAULT, "/");
+    }
+
+
+    @Test
+    public void testDestinationByMethod() throws Exception
+    {
+        PathRepo repo = new PathRepoImpl();
+        MyDestination getDest = new MyDestination("get");
+        MyDestination allDest = new MyDestination("all");
+        repo.put("/foo/{id}", HttpMethod.GET, getDest);
+        repo.put("/foo/*", allDest);
+
+        RouteMatcher matcher = new RouteMatcher(repo);
+        assertSame("explicit method",           getDest, matcher.getDestination("/foo/12", HttpMethod.GET));
+        assertNull("best route lacks method",            matcher.getDestination("/foo/12", HttpMethod.POST));
+        assertSame("all methods",               allDest, matcher.getDestination("/foo/12/bar", HttpMethod.POST));
+
+        // the matcher is a snapshot
+        repo.put("/foo/{id}", HttpMethod.POST, allDest);
+        assertNull("unaffected by later changes", matcher.getDestination("/foo/12", HttpMethod.POST));
+    }
+}
@@ -0,0 +1,242 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.util;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.kdgregory.pathfinder.core.Destination;
+import com.kdgregory.pathfinder.core.DispatchedDestination;
+import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.PathRepo;
+import com.kdgregory.pathfinder.core.impl.PathRepoImpl;
+import com.kdgregory.pathfinder.util.RouteOverlapAnalyzer.Conflict;
+import com.kdgregory.pathfinder.util.RouteOverlapAnalyzer.ConflictType;
+
+
+public class TestRouteOverlapAnalyzer
+{
+//----------------------------------------------------------------------------
+//  Support Code
+//----------------------------------------------------------------------------
+
+    private static class MyDestination
+    implements Destination
+    {
+        private String name;
+
+        public MyDestination(String name)
+        {
+            this.name = name;
+        }
+
+        @Override
+        public boolean isDisplayed(Map<InvocationOptions,Boolean> options)
+        {
+            return true;
+        }
+
+        @Override
+        public String toString(Map<InvocationOptions,Boolean> options)
+        {
+            return name;
+        }
+    }
+
+
+    private static class MyDispatchedDestination
+    extends MyDestination
+    implements DispatchedDestination
+    {
+        private String servletPattern;
+
+        public MyDispatchedDestination(String name, String servletPattern)
+        {
+            super(name);
+            this.servletPattern = servletPattern;
+        }
+
+        @Override
+        public String getServletPattern()
+        {
+            return servletPattern;
+        }
+    }
+
+
+    private static PathRepo createRepo(String... urls)
+    {
+        PathRepo repo = new PathRepoImpl();
+        for (String url : urls)
+            repo.put(url, new MyDestination(url));
+        return repo;
+    }
+
+
+    private static void assertConflict(Conflict conflict, ConflictType type, HttpMethod method, String url, String otherUrl)
+    {
+        assertEquals("type: " + conflict,       type,       conflict.getType());
+        assertEquals("method: " + conflict,     method,     conflict.getMethod());
+        assertEquals("url: " + conflict,        url,        conflict.getUrl());
+        assertEquals("other url: " + conflict,  otherUrl,   conflict.getOtherUrl());
+    }
+
+
+//----------------------------------------------------------------------------
+//  Testcases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testNoConflicts() throws Exception
+    {
+        RouteOverlapAnalyzer analyzer = new RouteOverlapAnalyzer(createRepo(
+                "/", "/index.jsp", "/a/b", "/a/{x}", "/a/**", "/b/*", "/b/c/{x}", "/b/c/*"));
+
+        assertEquals("routes analyzed",     5, analyzer.getRouteCount());
+        assertEquals("conflicts",           0, analyzer.getConflicts().size());
+    }
+
+
+    @Test
+    public void testShadowedAndAmbiguousPatterns() throws Exception
+    {
+        RouteOverlapAnalyzer analyzer = new RouteOverlapAnalyzer(createRepo(
+                "/a/{x}", "/a/{y}", "/b/{id}", "/b/{id:\\d+}"));
+
+        // Spring considers the two "/b" patterns equally specific, so both are
+        // candidates for "/b/123"
+        List<Conflict> conflicts = analyzer.getConflicts();
+        assertEquals("conflicts",           2, conflicts.size());
+        assertConflict(conflicts.get(0),    ConflictType.SHADOWED,  HttpMethod.ALL, "/a/{y}", "/a/{x}");
+        assertConflict(conflicts.get(1),    ConflictType.AMBIGUOUS, HttpMethod.ALL, "/b/{id}", "/b/{id:\\d+}");
+        assertEquals("error count",         2, analyzer.getErrorCount());
+    }
+
+
+    @Test
+    public void testAmbiguousPatterns() throws Exception
+    {
+        RouteOverlapAnalyzer analyzer = new RouteOverlapAnalyzer(createRepo(
+                "/a/{x}/c", "/a/c/{y}", "/b/x*", "/b/*y"));
+
+        List<Conflict> conflicts = analyzer.getConflicts();
+        assertEquals("conflicts",           2, conflicts.size());
+        assertConflict(conflicts.get(0),    ConflictType.AMBIGUOUS, HttpMethod.ALL, "/a/{x}/c", "/a/c/{y}");
+        assertConflict(conflicts.get(1),    ConflictType.AMBIGUOUS, HttpMethod.ALL, "/b/x*", "/b/*y");
+    }
+
+
+    @Test
+    public void testServletMappings() throws Exception
+    {
+        RouteOverlapAnalyzer a1 = new RouteOverlapAnalyzer(createRepo(
+                "/reports/*", "/reports/daily/*", "*.pdf", "*.jsp", "/other/{x}.pdf"));
+
+        List<Conflict> c1 = a1.getConflicts();
+        assertEquals("conflicts",           4, c1.size());
+        assertConflict(c1.get(0),           ConflictType.OVERLAP, HttpMethod.ALL, "*.jsp", "/reports/*");
+        assertConflict(c1.get(1),           ConflictType.OVERLAP, HttpMethod.ALL, "*.jsp", "/reports/daily/*");
+        assertConflict(c1.get(2),           ConflictType.OVERLAP, HttpMethod.ALL, "*.pdf", "/reports/*");
+        assertConflict(c1.get(3),           ConflictType.OVERLAP, HttpMethod.ALL, "*.pdf", "/reports/daily/*");
+        assertEquals("error count",         0, a1.getErrorCount());
+
+        RouteOverlapAnalyzer a2 = new RouteOverlapAnalyzer(createRepo("/*", "*.jsp", "/a/{x}"));
+        List<Conflict> c2 = a2.getConflicts();
+        assertEquals("conflicts",           1, c2.size());
+        assertConflict(c2.get(0),           ConflictType.SHADOWED, HttpMethod.ALL, "*.jsp", "/*");
+    }
+
+
+    @Test
+    public void testDispatchedPatterns() throws Exception
+    {
+        PathRepo repo = createRepo("/app/special/*", "*.pdf");
+        repo.put("/app/special/{id}",   new MyDispatchedDestination("/app/special/{id}", "/app/*"));
+        repo.put("/app/{page}",         new MyDispatchedDestination("/app/{page}", "/app/*"));
+        repo.put("/other/{x}.pdf",      new MyDispatchedDestination("/other/{x}.pdf", "/"));
+
+        // the app server picks the longer prefix, and the extension over the default
+        // mapping, before the dispatcher can apply its patterns
+        List<Conflict> conflicts = new RouteOverlapAnalyzer(repo).getConflicts();
+        assertEquals("conflicts",           4, conflicts.size());
+        assertConflict(conflicts.get(0),    ConflictType.OVERLAP,  HttpMethod.ALL, "*.pdf", "/app/special/*");
+        assertConflict(conflicts.get(1),    ConflictType.SHADOWED, HttpMethod.ALL, "/app/special/{id}", "/app/special/*");
+        assertConflict(conflicts.get(2),    ConflictType.OVERLAP,  HttpMethod.ALL, "/app/{page}", "/app/special/*");
+        assertConflict(conflicts.get(3),    ConflictType.SHADOWED, HttpMethod.ALL, "/other/{x}.pdf", "*.pdf");
+    }
+
+
+    @Test
+    public void testDoubleWildcards() throws Exception
+    {
+        RouteOverlapAnalyzer analyzer = new RouteOverlapAnalyzer(createRepo(
+                "/a/**/x", "/a/b/**", "/c/**", "/c/{x}/**"));
+
+        // "/a/**/x" and "/a/b/**" are equally specific, and can both match "/a/b/x";
+        // Spring considers "/c/**" more specific than "/c/{x}/**" (fewer wildcards)
+        List<Conflict> conflicts = analyzer.getConflicts();
+        assertEquals("conflicts",           2, conflicts.size());
+        assertConflict(conflicts.get(0),    ConflictType.AMBIGUOUS, HttpMethod.ALL, "/a/b/**", "/a/**/x");
+        assertConflict(conflicts.get(1),    ConflictType.SHADOWED,  HttpMethod.ALL, "/c/{x}/**", "/c/**");
+    }
+
+
+    @Test
+    public void testConflictsArePerMethod() throws Exception
+    {
+        PathRepo repo = new PathRepoImpl();
+        repo.put("/a/{x}", HttpMethod.GET, new MyDestination("get"));
+        repo.put("/a/{y}", HttpMethod.POST, new MyDestination("post"));
+        repo.put("/a/{z}", HttpMethod.GET, new MyDestination("get2"));
+        repo.put("/a/{z}", HttpMethod.DELETE, new MyDestination("delete"));
+        repo.put("/a/{zz}", new MyDestination("all"));
+
+        // these patterns are equally specific, so the one that sorts first wins
+        // (and "/a/{zz}" sorts before "/a/{z}"); conflicts are sorted the same way
+        List<Conflict> conflicts = new RouteOverlapAnalyzer(repo).getConflicts();
+        assertEquals("conflicts",           5, conflicts.size());
+        assertConflict(conflicts.get(0),    ConflictType.SHADOWED, HttpMethod.GET,    "/a/{zz}", "/a/{x}");
+        assertConflict(conflicts.get(1),    ConflictType.SHADOWED, HttpMethod.POST,   "/a/{zz}", "/a/{y}");
+        assertConflict(conflicts.get(2),    ConflictType.SHADOWED, HttpMethod.GET,    "/a/{z}",  "/a/{x}");
+        assertConflict(conflicts.get(3),    ConflictType.SHADOWED, HttpMethod.GET,    "/a/{z}",  "/a/{zz}");
+        assertConflict(conflicts.get(4),    ConflictType.SHADOWED, HttpMethod.DELETE, "/a/{z}",  "/a/{zz}");
+    }
+
+
+    @Test
+    public void testManyRoutes() throws Exception
+    {
+        // the walk only visits routes that share a prefix, so this is fast even
+        // though a pairwise comparison would be 50 million comparisons
+        PathRepo repo = new PathRepoImpl();
+        for (int ii = 0 ; ii < 10000 ; ii++)
+        {
+            repo.put("/api/res" + ii + "/{id}", HttpMethod.GET, new MyDestination("get" + ii));
+            repo.put("/api/res" + ii + "/{id}", HttpMethod.PUT, new MyDestination("put" + ii));
+        }
+        repo.put("/api/res42/{key}", HttpMethod.PUT, new MyDestination("conflict"));
+
+        RouteOverlapAnalyzer analyzer = new RouteOverlapAnalyzer(repo);
+        assertEquals("routes analyzed",     10001, analyzer.getRouteCount());
+
+        List<Conflict> conflicts = analyzer.getConflicts();
+        assertEquals("conflicts",           1, conflicts.size());
+        assertConflict(conflicts.get(0),    ConflictType.SHADOWED, HttpMethod.PUT, "/api/res42/{key}", "/api/res42/{id}");
+    }
+}
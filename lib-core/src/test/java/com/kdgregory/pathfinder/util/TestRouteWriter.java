@@ -0,0 +1,197 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.util;
+
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.kdgregory.pathfinder.core.Destination;
+import com.kdgregory.pathfinder.core.HandlerDestination;
+import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.PathRepo;
+import com.kdgregory.pathfinder.core.impl.PathRepoImpl;
+
+
+public class TestRouteWriter
+{
+//----------------------------------------------------------------------------
+//  Support Code
+//----------------------------------------------------------------------------
+
+    private static class ControllerDestination
+    implements HandlerDestination
+    {
+        private Map<String,String> params = new LinkedHashMap<String,String>();
+
+        public ControllerDestination(String... namesAndTypes)
+        {
+            for (int ii = 0 ; ii < namesAndTypes.length ; ii += 2)
+                params.put(namesAndTypes[ii], namesAndTypes[ii + 1]);
+        }
+
+        @Override
+        public String getHandlerClass()
+        {
+            return "com.example.Controller";
+        }
+
+        @Override
+        public String getHandlerMethod()
+        {
+            return "handle";
+        }
+
+        @Override
+        public Map<String,String> getHandlerParams()
+        {
+            return params;
+        }
+
+        @Override
+        public boolean isDisplayed(Map<InvocationOptions,Boolean> options)
+        {
+            return true;
+        }
+
+        @Override
+        public String toString(Map<InvocationOptions,Boolean> options)
+        {
+            return "com.example.Controller.handle()";
+        }
+    }
+
+
+    private static class FileDestination
+    implements Destination
+    {
+        private String filename;
+        private boolean displayed;
+
+        public FileDestination(String filename, boolean displayed)
+        {
+            this.filename = filename;
+            this.displayed = displayed;
+        }
+
+        @Override
+        public boolean isDisplayed(Map<InvocationOptions,Boolean> options)
+        {
+            return displayed;
+        }
+
+        @Override
+        public String toString(Map<InvocationOptions,Boolean> options)
+        {
+            return filename;
+        }
+    }
+
+
+    private static PathRepo createRepo()
+    {
+        PathRepo repo = new PathRepoImpl();
+        repo.put("/foo",                HttpMethod.GET, new ControllerDestination("id", "int", "q", "java.lang.String"));
+        repo.put("/foo",                HttpMethod.POST, new ControllerDestination());
+        repo.put("/quote\"d,url",       new FileDestination("tab\there", true));
+        repo.put("/hidden.gif",         new FileDestination("/hidden.gif", false));
+        return repo;
+    }
+
+
+    private static String write(RouteWriter.Format format)
+    throws Exception
+    {
+        StringWriter out = new StringWriter();
+        RouteWriter.create(format, out, Collections.<InvocationOptions,Boolean>emptyMap()).write(createRepo());
+        return out.toString();
+    }
+
+
+//----------------------------------------------------------------------------
+//  Testcases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testFormatFromString() throws Exception
+    {
+        assertSame("jsonl",         RouteWriter.Format.JSONL, RouteWriter.Format.fromString("jsonl"));
+        assertSame("CSV",           RouteWriter.Format.CSV,   RouteWriter.Format.fromString("CSV"));
+        assertNull("bogus",         RouteWriter.Format.fromString("xml"));
+    }
+
+
+    @Test
+    public void testText() throws Exception
+    {
+        String[] lines = write(RouteWriter.Format.TEXT).split("\n");
+        assertEquals("number of lines", 3, lines.length);
+        assertEquals("line 0", "/foo              GET     com.example.Controller.handle()",  lines[0]);
+        assertEquals("line 1", "/foo              POST    com.example.Controller.handle()",  lines[1]);
+        assertEquals("line 2", "/quote\"d,url              tab\there",                    lines[2]);
+    }
+
+
+    @Test
+    public void testTextColumnsAreAligned() throws Exception
+    {
+        PathRepo repo = new PathRepoImpl();
+        repo.put("/a",                                  new FileDestination("a", true));
+        repo.put("/b/a/rather/long/url/that/sorts/last", new FileDestination("b", true));
+
+        StringWriter out = new StringWriter();
+        RouteWriter.create(RouteWriter.Format.TEXT, out, Collections.<InvocationOptions,Boolean>emptyMap()).write(repo);
+
+        String[] lines = out.toString().split("\n");
+        assertEquals("line 0", "/a                                            a", lines[0]);
+        assertEquals("line 1", "/b/a/rather/long/url/that/sorts/last          b", lines[1]);
+    }
+
+
+    @Test
+    public void testJsonLines() throws Exception
+    {
+        String[] lines = write(RouteWriter.Format.JSONL).split("\n");
+        assertEquals("number of lines", 3, lines.length);
+        assertEquals("line 0",
+                     "{\"url\":\"/foo\",\"method\":\"GET\",\"type\":\"controller\","
+                     + "\"class\":\"com.example.Controller\",\"handlerMethod\":\"handle\","
+                     + "\"params\":[{\"name\":\"id\",\"type\":\"int\"},{\"name\":\"q\",\"type\":\"java.lang.String\"}],"
+                     + "\"destination\":\"com.example.Controller.handle()\"}",
+                     lines[0]);
+        assertEquals("line 2",
+                     "{\"url\":\"/quote\\\"d,url\",\"method\":\"ALL\",\"type\":\"file\","
+                     + "\"class\":null,\"handlerMethod\":null,\"params\":[],"
+                     + "\"destination\":\"tab\\there\"}",
+                     lines[2]);
+    }
+
+
+    @Test
+    public void testCsv() throws Exception
+    {
+        String[] lines = write(RouteWriter.Format.CSV).split("\r\n");
+        assertEquals("number of lines", 4, lines.length);
+        assertEquals("header",  "url,method,type,class,handlerMethod,params,destination",                    lines[0]);
+        assertEquals("line 1",  "/foo,GET,controller,com.example.Controller,handle,int id;java.lang.String q,"
+                                + "com.example.Controller.handle()",                                      lines[1]);
+        assertEquals("line 3",  "\"/quote\"\"d,url\",ALL,file,,,,tab\there",                                lines[3]);
+    }
+}
@@ -0,0 +1,106 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.util;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.kdgregory.pathfinder.core.WarMachine;
+import com.kdgregory.pathfinder.test.WarNames;
+
+
+public class TestTypeHierarchy
+{
+    private final static String FOO_CONTROLLER      = "com.kdgregory.pathfinder.test.spring2.FooController";
+    private final static String ABSTRACT_CONTROLLER = "org.springframework.web.servlet.mvc.AbstractController";
+    private final static String CONTROLLER          = "org.springframework.web.servlet.mvc.Controller";
+    private final static String SOME_SERVLET        = "com.example.servlet.SomeServlet";
+    private final static String HTTP_SERVLET        = "javax.servlet.http.HttpServlet";
+
+    private static WarMachine war;
+
+
+    @BeforeClass
+    public static void init()
+    throws Exception
+    {
+        war = TestHelpers.createWarMachine(WarNames.SPRING_CLASS_NAME);
+    }
+
+
+//----------------------------------------------------------------------------
+//  Testcases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testDirectSupertypes() throws Exception
+    {
+        TypeHierarchy types = new TypeHierarchy(war);
+
+        assertTrue("resolvable",                types.isResolvable(FOO_CONTROLLER));
+        assertEquals("superclass",              ABSTRACT_CONTROLLER, types.getSuperclass(FOO_CONTROLLER));
+        assertEquals("interfaces",              0, types.getInterfaces(FOO_CONTROLLER).size());
+        assertEquals("superclass' interfaces",  Arrays.asList(CONTROLLER), types.getInterfaces(ABSTRACT_CONTROLLER));
+
+        // the classfile says that interfaces extend Object, but we don't
+        assertNull("interface superclass",      types.getSuperclass(CONTROLLER));
+        assertNull("Object superclass",         types.getSuperclass("java.lang.Object"));
+    }
+
+
+    @Test
+    public void testTransitiveSupertypes() throws Exception
+    {
+        TypeHierarchy types = new TypeHierarchy(war);
+
+        Set<String> supertypes = types.getAllSupertypes(FOO_CONTROLLER);
+        assertTrue("contains superclass",               supertypes.contains(ABSTRACT_CONTROLLER));
+        assertTrue("contains interface of superclass",  supertypes.contains(CONTROLLER));
+        assertTrue("contains super-interface",          supertypes.contains("org.springframework.beans.factory.Aware"));
+        assertTrue("contains Object",                   supertypes.contains("java.lang.Object"));
+        assertFalse("doesn't contain self",             supertypes.contains(FOO_CONTROLLER));
+
+        assertSame("memoized", supertypes, types.getAllSupertypes(FOO_CONTROLLER));
+
+        assertTrue("assignable to interface",           types.isAssignableTo(FOO_CONTROLLER, CONTROLLER));
+        assertTrue("assignable to self",                types.isAssignableTo(FOO_CONTROLLER, FOO_CONTROLLER));
+        assertFalse("not assignable to subclass",       types.isAssignableTo(ABSTRACT_CONTROLLER, FOO_CONTROLLER));
+    }
+
+
+    @Test
+    public void testUnresolvedTypes() throws Exception
+    {
+        TypeHierarchy types = new TypeHierarchy(war);
+
+        // the servlet API is provided by the container, so isn't in the WAR
+        assertTrue("class is resolvable",           types.isResolvable(SOME_SERVLET));
+        assertFalse("superclass is unresolvable",   types.isResolvable(HTTP_SERVLET));
+
+        assertEquals("hierarchy stops at unresolved class",
+                     Arrays.asList(HTTP_SERVLET),
+                     Arrays.asList(types.getAllSupertypes(SOME_SERVLET).toArray()));
+        assertFalse("can't prove relationship past unresolved class",
+                    types.isAssignableTo(SOME_SERVLET, "javax.servlet.Servlet"));
+
+        assertFalse("unknown class",                types.isResolvable("com.example.Bogus"));
+        assertNull("unknown class superclass",      types.getSuperclass("com.example.Bogus"));
+        assertEquals("unknown class supertypes",    0, types.getAllSupertypes("com.example.Bogus").size());
+    }
+}
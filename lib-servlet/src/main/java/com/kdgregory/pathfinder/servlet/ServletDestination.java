@@ -14,13 +14,14 @@
 
 package com.kdgregory.pathfinder.servlet;
 
+import java.util.Collections;
 import java.util.Map;
 
-import com.kdgregory.pathfinder.core.Destination;
+import com.kdgregory.pathfinder.core.HandlerDestination;
 import com.kdgregory.pathfinder.core.InvocationOptions;
 
 class ServletDestination
-implements Destination
+implements HandlerDestination
 {
     private String servletClass;
 
@@ -29,6 +30,24 @@ implements Destination
         this.servletClass = servletClass;
     }
 
+    @Override
+    public String getHandlerClass()
+    {
+        return servletClass;
+    }
+
+    @Override
+    public String getHandlerMethod()
+    {
+        return null;
+    }
+
+    @Override
+    public Map<String,String> getHandlerParams()
+    {
+        return Collections.emptyMap();
+    }
+
     @Override
     public boolean isDisplayed(Map<InvocationOptions,Boolean> options)
     {
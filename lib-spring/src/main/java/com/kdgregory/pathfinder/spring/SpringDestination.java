@@ -15,22 +15,25 @@
 package com.kdgregory.pathfinder.spring;
 
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import net.sf.kdgcommons.lang.StringUtil;
 
-import com.kdgregory.pathfinder.core.Destination;
+import com.kdgregory.pathfinder.core.DispatchedDestination;
+import com.kdgregory.pathfinder.core.HandlerDestination;
 import com.kdgregory.pathfinder.core.InvocationOptions;
 import com.kdgregory.pathfinder.spring.context.BeanDefinition;
 
 
 public class SpringDestination
-implements Destination
+implements HandlerDestination, DispatchedDestination
 {
     private String beanId;
     private String className;
     private String methodName;
     private Map<String,RequestParameter> requestParams;
+    private String servletPattern;
 
 
     /**
@@ -88,6 +91,48 @@ implements Destination
         return requestParams;
     }
 
+
+    /**
+     *  Records the dispatcher servlet mapping that produced this destination;
+     *  called by {@link SpringInspector} once the mapping has been inspected.
+     */
+    void setServletPattern(String servletPattern)
+    {
+        this.servletPattern = servletPattern;
+    }
+
+
+    @Override
+    public String getServletPattern()
+    {
+        return servletPattern;
+    }
+
+
+    @Override
+    public String getHandlerClass()
+    {
+        return className;
+    }
+
+
+    @Override
+    public String getHandlerMethod()
+    {
+        return StringUtil.isBlank(methodName) ? null : methodName;
+    }
+
+
+    @Override
+    public Map<String,String> getHandlerParams()
+    {
+        Map<String,String> result = new LinkedHashMap<String,String>();
+        for (RequestParameter param : requestParams.values())
+            result.put(param.getName(), param.getType());
+        return result;
+    }
+
+
     @Override
     public boolean isDisplayed(Map<InvocationOptions,Boolean> options)
     {
@@ -18,32 +18,78 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.log4j.Logger;
 
 import net.sf.kdgcommons.lang.StringUtil;
 
+import com.kdgregory.pathfinder.core.Destination;
 import com.kdgregory.pathfinder.core.HttpMethod;
 import com.kdgregory.pathfinder.core.Inspector;
 import com.kdgregory.pathfinder.core.PathRepo;
 import com.kdgregory.pathfinder.core.WarMachine;
 import com.kdgregory.pathfinder.core.WarMachine.ServletMapping;
+import com.kdgregory.pathfinder.core.impl.PathRepoShard;
 import com.kdgregory.pathfinder.spring.context.SpringConstants;
 import com.kdgregory.pathfinder.spring.context.SpringContext;
 import com.kdgregory.pathfinder.spring.inspectors.AnnotationInspector;
 import com.kdgregory.pathfinder.spring.inspectors.BeanInspector;
+import com.kdgregory.pathfinder.spring.inspectors.ControllerIndex;
+import com.kdgregory.pathfinder.spring.inspectors.RequestMappingIndex;
+import com.kdgregory.pathfinder.util.TypeHierarchy;
 
 
 /**
  *  Finds any mappings to Spring's DispatcherServlet, and replaces them with mappings
  *  found by inspecting the various Spring context files. Supports both XML-driven and
  *  Annotation-driven configuration; does not support (at presnt) Code-driven config.
+ *  <p>
+ *  Each dispatcher mapping is processed independently (and concurrently, if there
+ *  are several), with results merged in URL-pattern order.
+ *  <p>
+ *  A caller that only cares about one dispatcher mapping (for example, to find the
+ *  handler for a single URL) can call {@link #inspectDispatcher}, which loads only
+ *  that dispatcher's context (and the root context), and scans only the packages
+ *  named by those contexts.
  */
 public class SpringInspector
 implements Inspector
 {
     private Logger logger = Logger.getLogger(getClass());
 
+    private int maxThreads;
+
+
+//----------------------------------------------------------------------------
+//  Constructors
+//----------------------------------------------------------------------------
+
+    /**
+     *  Default constructor, which uses up to one thread per available processor.
+     */
+    public SpringInspector()
+    {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+
+    /**
+     *  Base constructor.
+     *
+     *  @param  maxThreads  The maximum number of threads used to inspect dispatcher
+     *                      mappings. If 1, all mappings are inspected in turn on
+     *                      the calling thread.
+     */
+    public SpringInspector(int maxThreads)
+    {
+        this.maxThreads = Math.max(1, maxThreads);
+    }
+
 
 //----------------------------------------------------------------------------
 //  Inspector
@@ -56,23 +102,59 @@ implements Inspector
 
         SpringContext rootContext = loadRootContext(war);
 
+        // these don't depend on the context, so are shared by all mappings
+        TypeHierarchy types = new TypeHierarchy(war);
+        ControllerIndex controllers = new ControllerIndex(war);
+        RequestMappingIndex requestMappings = new RequestMappingIndex(war, controllers);
+
         List<ServletMapping> springMappings = extractSpringMappings(war, paths);
         logger.debug("extracted " + springMappings.size() + " Spring mappings");
-        for (ServletMapping mapping : springMappings)
+
+        // mappings are sorted by URL pattern, as are the shards, so the merged
+        // result is the same as if we'd processed each mapping in turn
+        for (PathRepoShard shard : inspectMappings(war, rootContext, types, controllers,
+                                                   requestMappings, springMappings))
         {
-            String urlPrefix = StringUtil.extractLeftOfLast(mapping.getUrlPattern(), "/");
-            String configLoc = mapping.getInitParams().get("contextConfigLocation");
-            if (StringUtil.isBlank(configLoc))
+            shard.mergeInto(paths);
+        }
+        logger.info("SpringInspector finished");
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Inspects only the dispatcher servlet mapped to the specified URL pattern,
+     *  replacing that pattern in the repository with the dispatcher's mappings.
+     *  Returns <code>false</code>, without changing the repository, if the pattern
+     *  isn't mapped to a dispatcher servlet.
+     */
+    public boolean inspectDispatcher(WarMachine war, PathRepo paths, String urlPattern)
+    {
+        ServletMapping dispatcher = null;
+        for (ServletMapping servlet : war.getServletMappings())
+        {
+            if (servlet.getUrlPattern().equals(urlPattern)
+                    && servlet.getServletClass().equals(SpringConstants.CLASS_DISPATCHER_SERVLET))
             {
-                configLoc = "/WEB-INF/" + mapping.getServletName() + "-servlet.xml";
+                dispatcher = servlet;
+                break;
             }
-
-            logger.debug("processing mapping for \"" + urlPrefix + "\" from configFile " + configLoc);
-            SpringContext context = new SpringContext(rootContext, war, configLoc);
-            new BeanInspector(war, context, paths).inspect(urlPrefix);
-            new AnnotationInspector(war, context, paths).inspect(urlPrefix);
         }
-        logger.info("SpringInspector finished");
+
+        if (dispatcher == null)
+            return false;
+
+        logger.info("SpringInspector started for " + urlPattern);
+        paths.remove(urlPattern, HttpMethod.ALL);
+        ControllerIndex controllers = new ControllerIndex(war);
+        PathRepoShard shard = inspectMapping(war, loadRootContext(war), new TypeHierarchy(war), controllers,
+                                             new RequestMappingIndex(war, controllers), dispatcher);
+        shard.mergeInto(paths);
+        logger.info("SpringInspector finished for " + urlPattern);
+        return true;
     }
 
 
@@ -80,6 +162,101 @@ implements Inspector
 //  Internals
 //----------------------------------------------------------------------------
 
+    /**
+     *  Inspects each of the passed mappings, returning a shard per mapping (in the
+     *  same order). Mappings are independent of each other, so when there are
+     *  several we process them on a pool of threads.
+     */
+    private List<PathRepoShard> inspectMappings(
+            final WarMachine war, final SpringContext rootContext,
+            final TypeHierarchy types, final ControllerIndex controllers,
+            final RequestMappingIndex requestMappings,
+            List<ServletMapping> mappings)
+    {
+        List<PathRepoShard> result = new ArrayList<PathRepoShard>(mappings.size());
+        if ((mappings.size() <= 1) || (maxThreads == 1))
+        {
+            for (ServletMapping mapping : mappings)
+                result.add(inspectMapping(war, rootContext, types, controllers, requestMappings, mapping));
+            return result;
+        }
+
+        int numThreads = Math.min(mappings.size(), maxThreads);
+        logger.debug("inspecting " + mappings.size() + " mappings using " + numThreads + " threads");
+
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try
+        {
+            List<Future<PathRepoShard>> futures = new ArrayList<Future<PathRepoShard>>(mappings.size());
+            for (final ServletMapping mapping : mappings)
+            {
+                futures.add(executor.submit(new Callable<PathRepoShard>()
+                {
+                    @Override
+                    public PathRepoShard call() throws Exception
+                    {
+                        return inspectMapping(war, rootContext, types, controllers, requestMappings, mapping);
+                    }
+                }));
+            }
+
+            for (Future<PathRepoShard> future : futures)
+            {
+                result.add(future.get());
+            }
+            return result;
+        }
+        catch (ExecutionException ex)
+        {
+            if (ex.getCause() instanceof RuntimeException)
+                throw (RuntimeException)ex.getCause();
+            if (ex.getCause() instanceof Error)
+                throw (Error)ex.getCause();
+            throw new IllegalStateException("unable to inspect Spring mappings", ex.getCause());
+        }
+        catch (InterruptedException ex)
+        {
+            throw new IllegalStateException("interrupted while inspecting Spring mappings", ex);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+
+    private PathRepoShard inspectMapping(
+            WarMachine war, SpringContext rootContext,
+            TypeHierarchy types, ControllerIndex controllers,
+            RequestMappingIndex requestMappings,
+            ServletMapping mapping)
+    {
+        String urlPrefix = StringUtil.extractLeftOfLast(mapping.getUrlPattern(), "/");
+        String configLoc = mapping.getInitParams().get("contextConfigLocation");
+        if (StringUtil.isBlank(configLoc))
+        {
+            configLoc = "/WEB-INF/" + mapping.getServletName() + "-servlet.xml";
+        }
+
+        logger.debug("processing mapping for \"" + urlPrefix + "\" from configFile " + configLoc);
+        PathRepoShard shard = new PathRepoShard();
+        SpringContext context = new SpringContext(rootContext, war, configLoc);
+        new BeanInspector(types, context, shard).inspect(urlPrefix);
+        new AnnotationInspector(controllers, requestMappings, context, shard).inspect(urlPrefix);
+
+        // the destinations were created for this mapping, so aren't shared with other shards
+        for (String url : shard)
+        {
+            for (Destination dest : shard.get(url).values())
+            {
+                if (dest instanceof SpringDestination)
+                    ((SpringDestination)dest).setServletPattern(mapping.getUrlPattern());
+            }
+        }
+        return shard;
+    }
+
+
     private SpringContext loadRootContext(WarMachine war)
     {
         // if there's no root context listener, we're done
@@ -0,0 +1,425 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.spring.context;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import org.apache.log4j.Logger;
+
+import net.sf.kdgcommons.io.IOUtil;
+import net.sf.kdgcommons.lang.StringUtil;
+import net.sf.practicalxml.DomUtil;
+
+import com.kdgregory.pathfinder.spring.InvalidContextException;
+import com.kdgregory.pathfinder.util.LocalXmlParser;
+
+
+/**
+ *  Extracts the top-level <code>&lt;bean&gt;</code>, <code>&lt;import&gt;</code>,
+ *  and <code>&lt;context:component-scan&gt;</code> elements from a context file,
+ *  using a StAX parser so that the file is never held in memory as a DOM. The
+ *  parser is provided by {@link LocalXmlParser}, so will not go to the network
+ *  to retrieve a DTD.
+ *  <p>
+ *  Each bean is turned into a compact {@link XmlBeanDefinition}. The bean's
+ *  property definitions are only retained for the handler mappings (the only
+ *  beans that we normally ask for properties), and for beans that don't specify
+ *  a class (because they will inherit one from their parent, and it may be a
+ *  handler mapping). For any other bean, the definition is re-read from the
+ *  file if it's asked for (for example, because it's the parent of a handler
+ *  mapping); this requires that the parser be constructed with a {@link Source}.
+ *  Without one, {@link XmlBeanDefinition#getBeanDef} returns <code>null</code>
+ *  for those beans, and their property lookups return <code>null</code>.
+ *  <p>
+ *  Instances are used for a single file, and are not thread-safe. However,
+ *  separate instances may be used concurrently.
+ */
+public class ContextParser
+{
+    /**
+     *  The bean classes for which property definitions are retained.
+     */
+    public final static Set<String> RETAINED_CLASSES = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
+            SpringConstants.CLASS_SIMPLE_URL_HANDLER,
+            SpringConstants.CLASS_BEAN_NAME_HANDLER,
+            SpringConstants.CLASS_CLASS_NAME_HANDLER)));
+
+
+    /**
+     *  Re-opens the file being parsed, so that definitions that weren't retained
+     *  can be read when they're needed.
+     */
+    public interface Source
+    {
+        public InputStream open()
+        throws IOException;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Instance variables and constructor
+//----------------------------------------------------------------------------
+
+    private Logger logger = Logger.getLogger(getClass());
+
+    private SpringContext context;
+    private Source source;
+
+    // owner for retained property definitions; created when first needed
+    private Document ownerDoc;
+
+    private List<XmlBeanDefinition> beans = new ArrayList<XmlBeanDefinition>();
+    private List<String> imports = new ArrayList<String>();
+    private List<String> componentScans = new ArrayList<String>();
+
+    // used when re-reading a single definition (see DeferredDefinition)
+    private int beanCount;
+    private int targetIndex = -1;
+    private Element target;
+
+
+    /**
+     *  Creates an instance that will produce bean definitions belonging to the
+     *  specified context (which is used to resolve parent references). Property
+     *  definitions that aren't retained will not be available.
+     */
+    public ContextParser(SpringContext context)
+    {
+        this(context, null);
+    }
+
+
+    /**
+     *  Creates an instance that will produce bean definitions belonging to the
+     *  specified context, which re-read their property definitions from the
+     *  passed source if they weren't retained.
+     */
+    public ContextParser(SpringContext context, Source source)
+    {
+        this.context = context;
+        this.source = source;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Parses the passed stream, accumulating definitions. The caller is
+     *  responsible for closing the stream. Returns this object, so that
+     *  calls can be chained.
+     */
+    public ContextParser parse(InputStream in)
+    throws XMLStreamException
+    {
+        XMLStreamReader reader = LocalXmlParser.newStreamReader(in);
+        try
+        {
+            // the only elements we care about are children of the root, so we
+            // skip over everything else without tracking its structure
+            int depth = 0;
+            boolean validRoot = false;
+            while (reader.hasNext() && (target == null))
+            {
+                int event = reader.next();
+                if (event == XMLStreamConstants.END_ELEMENT)
+                {
+                    depth--;
+                }
+                else if ((event == XMLStreamConstants.START_ELEMENT) && (depth == 0))
+                {
+                    depth++;
+                    validRoot = isNamed(reader, SpringConstants.NS_BEANS, "beans");
+                }
+                else if ((event == XMLStreamConstants.START_ELEMENT) && validRoot)
+                {
+                    processTopLevelElement(reader);
+                }
+                else if (event == XMLStreamConstants.START_ELEMENT)
+                {
+                    skipElement(reader);
+                }
+            }
+            return this;
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+
+    /**
+     *  Returns the bean definitions found in the file, in document order.
+     */
+    public List<XmlBeanDefinition> getBeans()
+    {
+        return beans;
+    }
+
+
+    /**
+     *  Returns the <code>resource</code> values of all <code>&lt;import&gt;</code>
+     *  elements, in document order. Missing or empty resources are not included.
+     */
+    public List<String> getImports()
+    {
+        return imports;
+    }
+
+
+    /**
+     *  Returns the <code>base-package</code> values of all component scans, in
+     *  document order. Each value may be a comma-separated list.
+     */
+    public List<String> getComponentScans()
+    {
+        return componentScans;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    // all of the following methods are called with the reader positioned on
+    // a START_ELEMENT, and return with it positioned on the matching END_ELEMENT
+
+    private void processTopLevelElement(XMLStreamReader reader)
+    throws XMLStreamException
+    {
+        if (isNamed(reader, SpringConstants.NS_BEANS, "bean"))
+        {
+            processBean(reader);
+        }
+        else if (isNamed(reader, SpringConstants.NS_BEANS, "import"))
+        {
+            String resource = getAttribute(reader, "resource");
+            if (StringUtil.isEmpty(resource))
+                logger.warn("missing resource attribute; skipping import");
+            else
+                imports.add(resource);
+            skipElement(reader);
+        }
+        else if (isNamed(reader, SpringConstants.NS_CONTEXT, "component-scan"))
+        {
+            componentScans.add(getAttribute(reader, "base-package"));
+            skipElement(reader);
+        }
+        else
+        {
+            skipElement(reader);
+        }
+    }
+
+
+    private void processBean(XMLStreamReader reader)
+    throws XMLStreamException
+    {
+        String beanId = getAttribute(reader, "id").trim();
+        String beanName = getAttribute(reader, "name").trim();
+        String beanClass = getAttribute(reader, "class").trim();
+        String parentRef = StringUtil.trimToNull(getAttribute(reader, "parent"));
+        int beanIndex = beanCount++;
+
+        if (targetIndex >= 0)
+        {
+            if (beanIndex == targetIndex)
+                target = retainPropertyDefinitions(reader);
+            else
+                skipElement(reader);
+        }
+        else if (StringUtil.isEmpty(beanClass) || RETAINED_CLASSES.contains(beanClass))
+        {
+            Element beanDef = retainPropertyDefinitions(reader);
+            beans.add(new XmlBeanDefinition(context, beanId, beanName, beanClass, parentRef, beanDef));
+        }
+        else
+        {
+            skipElement(reader);
+            DeferredDefinition deferred = (source != null) ? new DeferredDefinition(source, beanIndex) : null;
+            beans.add(new XmlBeanDefinition(context, beanId, beanName, beanClass, parentRef, deferred));
+        }
+    }
+
+
+    private Element retainPropertyDefinitions(XMLStreamReader reader)
+    throws XMLStreamException
+    {
+        Element beanDef = createElement(reader);
+        while (reader.next() != XMLStreamConstants.END_ELEMENT)
+        {
+            if (reader.getEventType() != XMLStreamConstants.START_ELEMENT)
+                continue;
+
+            if (isNamed(reader, SpringConstants.NS_BEANS, "property"))
+                beanDef.appendChild(copyElement(reader));
+            else
+                skipElement(reader);
+        }
+        return beanDef;
+    }
+
+
+    private Element copyElement(XMLStreamReader reader)
+    throws XMLStreamException
+    {
+        Element elem = createElement(reader);
+        while (true)
+        {
+            switch (reader.next())
+            {
+                case XMLStreamConstants.START_ELEMENT :
+                    elem.appendChild(copyElement(reader));
+                    break;
+                case XMLStreamConstants.CHARACTERS :
+                case XMLStreamConstants.CDATA :
+                case XMLStreamConstants.SPACE :
+                    elem.appendChild(ownerDoc.createTextNode(reader.getText()));
+                    break;
+                case XMLStreamConstants.END_ELEMENT :
+                    return elem;
+                default :
+                    // comments and processing instructions are discarded
+            }
+        }
+    }
+
+
+    private Element createElement(XMLStreamReader reader)
+    {
+        if (ownerDoc == null)
+            ownerDoc = DomUtil.newDocument();
+
+        Element elem = ownerDoc.createElementNS(
+                            StringUtil.trimToNull(reader.getNamespaceURI()),
+                            qualifiedName(reader.getPrefix(), reader.getLocalName()));
+        for (int ii = 0 ; ii < reader.getAttributeCount() ; ii++)
+        {
+            elem.setAttributeNS(
+                    StringUtil.trimToNull(reader.getAttributeNamespace(ii)),
+                    qualifiedName(reader.getAttributePrefix(ii), reader.getAttributeLocalName(ii)),
+                    reader.getAttributeValue(ii));
+        }
+        return elem;
+    }
+
+
+    private static void skipElement(XMLStreamReader reader)
+    throws XMLStreamException
+    {
+        int depth = 1;
+        while (depth > 0)
+        {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT)
+                depth++;
+            else if (event == XMLStreamConstants.END_ELEMENT)
+                depth--;
+        }
+    }
+
+
+    private static boolean isNamed(XMLStreamReader reader, String nsUri, String localName)
+    {
+        return nsUri.equals(reader.getNamespaceURI())
+            && localName.equals(reader.getLocalName());
+    }
+
+
+    /**
+     *  Returns an unqualified attribute, empty string if it doesn't exist (this
+     *  matches the behavior of DOM <code>getAttribute()</code>).
+     */
+    private static String getAttribute(XMLStreamReader reader, String name)
+    {
+        String value = reader.getAttributeValue(null, name);
+        return (value != null) ? value : "";
+    }
+
+
+    private static String qualifiedName(String prefix, String localName)
+    {
+        return StringUtil.isEmpty(prefix)
+             ? localName
+             : prefix + ":" + localName;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Supporting classes
+//----------------------------------------------------------------------------
+
+    /**
+     *  Identifies a bean whose property definitions weren't retained: its file,
+     *  and its position among the file's top-level beans.
+     */
+    static class DeferredDefinition
+    {
+        private Source source;
+        private int beanIndex;
+
+        public DeferredDefinition(Source source, int beanIndex)
+        {
+            this.source = source;
+            this.beanIndex = beanIndex;
+        }
+
+        /**
+         *  Re-reads the file, returning the bean element and its property
+         *  definitions; null if the file no longer has that bean.
+         */
+        public Element load()
+        {
+            InputStream in = null;
+            try
+            {
+                in = source.open();
+                if (in == null)
+                    throw new InvalidContextException("unable to re-open context file");
+
+                ContextParser parser = new ContextParser(null);
+                parser.targetIndex = beanIndex;
+                parser.parse(in);
+                return parser.target;
+            }
+            catch (Exception ex)
+            {
+                if (ex instanceof InvalidContextException)
+                    throw (InvalidContextException)ex;
+                throw new InvalidContextException("unable to re-read bean definition", ex);
+            }
+            finally
+            {
+                IOUtil.closeQuietly(in);
+            }
+        }
+    }
+}
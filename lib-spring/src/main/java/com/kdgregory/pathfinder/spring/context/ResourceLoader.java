@@ -21,9 +21,12 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+import org.apache.log4j.Logger;
+
 import net.sf.kdgcommons.lang.StringUtil;
 
 import com.kdgregory.pathfinder.core.WarMachine;
+import com.kdgregory.pathfinder.util.AntPattern;
 
 
 /**
@@ -32,12 +35,14 @@ import com.kdgregory.pathfinder.core.WarMachine;
  *  are treated as file paths within the WAR, relative to either the base of the
  *  WAR or a predefined path.
  *  <p>
- *  In addition to resource loading, provides the {@link #decomposeResourceRefs}
- *  method, which breaks appart a resource list and supports the "classpath*:"
- *  scheme.
+ *  In addition to resource loading, provides the {@link #decomposeResourceReferences}
+ *  method, which breaks apart a resource list, and the {@link #resolveResourceReferences}
+ *  method, which also expands Ant-style patterns and the "classpath*:" scheme.
  */
 public class ResourceLoader
 {
+    private Logger logger = Logger.getLogger(getClass());
+
     private WarMachine war;
     private String baseDir;
 
@@ -92,9 +97,8 @@ public class ResourceLoader
     /**
      *  Breaks the passed string into zero or more resource references, which may
      *  then be passed to {@link #getResourceAsStream}. The passed reference may
-     *  be a comma-delimited list.
-     *  <p>
-     *  TODO: Support globbing
+     *  be a comma-delimited list. The references are returned as-is; see {@link
+     *  #resolveResourceReferences} to expand patterns.
      */
     public static List<String> decomposeResourceReferences(String resourceConfig)
     {
@@ -113,6 +117,41 @@ public class ResourceLoader
     }
 
 
+    /**
+     *  Breaks the passed string into resource references (as with {@link
+     *  #decomposeResourceReferences}), and expands any that contain Ant-style
+     *  wildcards into the matching files. Also handles the "classpath*:" scheme,
+     *  which Spring uses to select all matching classpath files; since a WAR's
+     *  classpath is indexed by filename, with the first file of a given name
+     *  hiding any later ones, it's treated the same as "classpath:" except that
+     *  it's not an error for there to be no matches.
+     *  <p>
+     *  Candidates are selected from the WAR's sorted indexes using the literal
+     *  prefix of the pattern, so only files that might match are examined. The
+     *  matches for each pattern are returned in lexical order, and references
+     *  without wildcards are returned unchanged, so the result is deterministic.
+     *  <p>
+     *  If this loader doesn't have a WAR, patterns (whether WAR-relative or on the
+     *  classpath) can't be expanded; they're logged and dropped.
+     */
+    public List<String> resolveResourceReferences(String resourceConfig)
+    {
+        List<String> result = new ArrayList<String>();
+        for (String ref : decomposeResourceReferences(resourceConfig))
+        {
+            if (ref.startsWith("classpath*:"))
+                resolveClasspathReference(StringUtil.extractRight(ref, "classpath*:"), true, result);
+            else if (ref.startsWith("classpath:"))
+                resolveClasspathReference(StringUtil.extractRight(ref, "classpath:"), false, result);
+            else if (ref.startsWith("file:") || ! AntPattern.isPattern(ref))
+                result.add(ref);
+            else
+                resolveWarReference(ref, result);
+        }
+        return result;
+    }
+
+
 //----------------------------------------------------------------------------
 //  Internals
 //----------------------------------------------------------------------------
@@ -143,4 +182,65 @@ public class ResourceLoader
 
         return war.openFile(baseDir + name);
     }
+
+
+    private void resolveClasspathReference(String name, boolean allowMissing, List<String> result)
+    {
+        if (name.startsWith("/"))
+            name = name.substring(1);
+
+        if (! AntPattern.isPattern(name))
+        {
+            if (allowMissing && (war != null) && ! war.getFilesOnClasspath().contains(name))
+                logger.debug("no classpath file matches: " + name);
+            else
+                result.add("classpath:" + name);
+            return;
+        }
+
+        if (war == null)
+        {
+            logger.warn("unable to resolve classpath pattern without WAR: " + name);
+            return;
+        }
+
+        AntPattern pattern = new AntPattern(name);
+        int count = 0;
+        for (String filename : war.getClasspathFilesWithPrefix(pattern.getLiteralPrefix()))
+        {
+            if (pattern.matches(filename))
+            {
+                result.add("classpath:" + filename);
+                count++;
+            }
+        }
+        logger.debug("classpath pattern \"" + name + "\" matched " + count + " files");
+    }
+
+
+    private void resolveWarReference(String name, List<String> result)
+    {
+        if (name.startsWith("/"))
+            name = name.substring(1);
+
+        if (war == null)
+        {
+            logger.warn("unable to resolve pattern without WAR: " + name);
+            return;
+        }
+
+        // matches are returned relative to the base directory, so that they
+        // can be passed back to getResourceAsStream()
+        AntPattern pattern = new AntPattern(baseDir + name);
+        int count = 0;
+        for (String filename : war.getFilesWithPrefix(pattern.getLiteralPrefix()))
+        {
+            if (pattern.matches(filename))
+            {
+                result.add("/" + filename.substring(baseDir.length()));
+                count++;
+            }
+        }
+        logger.debug("pattern \"" + baseDir + name + "\" matched " + count + " files");
+    }
 }
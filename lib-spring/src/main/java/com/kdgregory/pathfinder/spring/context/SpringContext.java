@@ -14,6 +14,7 @@
 
 package com.kdgregory.pathfinder.spring.context;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -22,20 +23,16 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-
-import org.xml.sax.InputSource;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.log4j.Logger;
 
 import net.sf.kdgcommons.io.IOUtil;
 import net.sf.kdgcommons.lang.StringUtil;
-import net.sf.practicalxml.DomUtil;
-import net.sf.practicalxml.ParseUtil;
-import net.sf.practicalxml.xpath.XPathWrapperFactory;
-import net.sf.practicalxml.xpath.XPathWrapperFactory.CacheType;
 
 import com.kdgregory.bcelx.parser.AnnotationParser;
 import com.kdgregory.pathfinder.core.WarMachine;
@@ -50,11 +47,6 @@ public class SpringContext
 {
     private Logger logger = Logger.getLogger(getClass());
 
-    private XPathWrapperFactory xpfact
-            = new XPathWrapperFactory(CacheType.SIMPLE)
-              .bindNamespace("b",   "http://www.springframework.org/schema/beans")
-              .bindNamespace("ctx", "http://www.springframework.org/schema/context");
-
 
 //----------------------------------------------------------------------------
 //  Instance Variables and Constructor
@@ -67,7 +59,12 @@ public class SpringContext
 
     /**
      *  Creates a new instance, first parsing <code>contextLocation</code> into
-     *  one or more references to classpath resources, then loading them in turn.
+     *  one or more references to classpath resources (expanding any wildcards),
+     *  then loading them in turn.
+     *  Files are read using a streaming parser, and only the information needed
+     *  by the inspectors is retained (see {@link ContextParser}). When there are
+     *  multiple files they are loaded concurrently, but their beans are added in
+     *  the order that the files are listed, so later files override earlier ones.
      *  If <code>war</code> is <code>null</code>, the resources will be loaded
      *  from the runtime classpath (this is used for testing); otherwise, they
      *  will be loaded from the WAR's classpath (WEB-INF/classes and any JARs).
@@ -94,12 +91,11 @@ public class SpringContext
             beanDefinitionsByName.putAll(parent.beanDefinitionsByName);
         }
 
-        for (String path : ResourceLoader.decomposeResourceReferences(contextLocation))
+        List<String> paths = new ResourceLoader(war).resolveResourceReferences(contextLocation);
+        for (List<BeanDefinition> defs : loadContextFiles(war, paths))
         {
-            Document dom = parseContextFile(war, path, "");
-            processImports(war, path, dom);
-            processXmlConfig(path, dom);
-            processComponentScans(war, dom);
+            for (BeanDefinition def : defs)
+                addBeanDefinition(def);
         }
     }
 
@@ -152,7 +148,88 @@ public class SpringContext
 //  Internals
 //----------------------------------------------------------------------------
 
-    private Document parseContextFile(WarMachine war, String file, String baseDir)
+    /**
+     *  Loads each of the passed files, returning their bean definitions in the same
+     *  order as the files. Files are independent of each other (and of this context),
+     *  so when there are several we load them on a pool of threads.
+     */
+    private List<List<BeanDefinition>> loadContextFiles(final WarMachine war, List<String> paths)
+    {
+        List<List<BeanDefinition>> result = new ArrayList<List<BeanDefinition>>(paths.size());
+        if (paths.size() <= 1)
+        {
+            for (String path : paths)
+                result.add(loadContextFile(war, path));
+            return result;
+        }
+
+        int numThreads = Math.min(paths.size(), Runtime.getRuntime().availableProcessors());
+        logger.debug("loading " + paths.size() + " context files using " + numThreads + " threads");
+
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try
+        {
+            List<Future<List<BeanDefinition>>> futures = new ArrayList<Future<List<BeanDefinition>>>(paths.size());
+            for (final String path : paths)
+            {
+                futures.add(executor.submit(new Callable<List<BeanDefinition>>()
+                {
+                    @Override
+                    public List<BeanDefinition> call() throws Exception
+                    {
+                        return loadContextFile(war, path);
+                    }
+                }));
+            }
+
+            for (Future<List<BeanDefinition>> future : futures)
+            {
+                result.add(future.get());
+            }
+            return result;
+        }
+        catch (ExecutionException ex)
+        {
+            if (ex.getCause() instanceof InvalidContextException)
+                throw (InvalidContextException)ex.getCause();
+            throw new InvalidContextException("unable to load context: " + paths, ex.getCause());
+        }
+        catch (InterruptedException ex)
+        {
+            throw new InvalidContextException("interrupted while loading context: " + paths, ex);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+
+    /**
+     *  Loads a single file and the files that it imports, returning the defined beans.
+     *  Beans from imported files follow the importing file's beans, as if they were
+     *  appended to it; beans found by component scans follow all explicit beans.
+     */
+    private List<BeanDefinition> loadContextFile(WarMachine war, String path)
+    {
+        ContextParser parsed = parseContextFile(war, path, "");
+        List<ContextParser> imported = processImports(war, path, parsed);
+
+        List<BeanDefinition> result = new ArrayList<BeanDefinition>();
+
+        processXmlConfig(path, parsed, result);
+        for (ContextParser importedFile : imported)
+            processXmlConfig(path, importedFile, result);
+
+        processComponentScans(war, parsed, result);
+        for (ContextParser importedFile : imported)
+            processComponentScans(war, importedFile, result);
+
+        return result;
+    }
+
+
+    private ContextParser parseContextFile(final WarMachine war, final String file, final String baseDir)
     {
         logger.debug("parsing context file: " + file);
 
@@ -162,7 +239,16 @@ public class SpringContext
             in = new ResourceLoader(war, baseDir).getResourceAsStream(file);
             if (in == null)
                 throw new InvalidContextException("invalid context location: " + file);
-            return ParseUtil.parse(new InputSource(in));
+            ContextParser.Source source = new ContextParser.Source()
+            {
+                @Override
+                public InputStream open()
+                throws IOException
+                {
+                    return new ResourceLoader(war, baseDir).getResourceAsStream(file);
+                }
+            };
+            return new ContextParser(this, source).parse(in);
         }
         catch (Exception ex)
         {
@@ -177,21 +263,15 @@ public class SpringContext
     }
 
 
-    private void processImports(WarMachine war, String origFile, Document dom)
+    private List<ContextParser> processImports(WarMachine war, String origFile, ContextParser parsed)
     {
-        // < ="services.xml"/>
-        List<Element> importDefs = xpfact.newXPath("/b:beans/b:import")
-                                   .evaluate(dom, Element.class);
-        logger.debug(origFile + " has " + importDefs.size() + " imports");
-        for (Element importDef : importDefs)
-        {
-            String importLoc = importDef.getAttribute("resource");
-            if (StringUtil.isEmpty(importLoc))
-            {
-                logger.warn("missing resource attribute; skipping import");
-                continue;
-            }
+        // note: imports are not processed recursively
+        List<String> importLocs = parsed.getImports();
+        logger.debug(origFile + " has " + importLocs.size() + " imports");
 
+        List<ContextParser> result = new ArrayList<ContextParser>(importLocs.size());
+        for (String importLoc : importLocs)
+        {
             if (importLoc.startsWith("/"))
             {
                 logger.warn("imported context is an absolute path, but Spring treats as relative: " + importLoc);
@@ -199,57 +279,46 @@ public class SpringContext
 
             logger.debug("processing imported file \"" + importLoc + "\" from " + origFile);
             String baseDir = StringUtil.extractLeftOfLast(origFile, "/");
-            Document importDom = parseContextFile(war, importLoc, baseDir);
-            for (Element child : DomUtil.getChildren(importDom.getDocumentElement()))
-            {
-                child = (Element)dom.importNode(child, true);
-                dom.getDocumentElement().appendChild(child);
-            }
+            result.add(parseContextFile(war, importLoc, baseDir));
         }
+        return result;
     }
 
 
-    private void processXmlConfig(String filename, Document dom)
+    private void processXmlConfig(String filename, ContextParser parsed, List<BeanDefinition> result)
     {
-        List<Element> beans = xpfact.newXPath("/b:beans/b:bean").evaluate(dom, Element.class);
+        List<XmlBeanDefinition> beans = parsed.getBeans();
         logger.debug("found " + beans.size() + " bean definitions in " + filename);
 
-        for (Element bean : beans)
-        {
-            XmlBeanDefinition def = new XmlBeanDefinition(xpfact, this, bean);
-            addBeanDefinition(def);
-        }
+        result.addAll(beans);
     }
 
 
-
-    private void processComponentScans(WarMachine war, Document dom)
+    private void processComponentScans(WarMachine war, ContextParser parsed, List<BeanDefinition> result)
     {
-        for (ClasspathScanner scanner : getComponentScans(dom))
+        for (ClasspathScanner scanner : getComponentScans(parsed))
         {
             Collection<AnnotationParser> parsedClasses = scanner.scan(war).values();
             logger.debug("found " + parsedClasses.size() + " classes by component scan");
             for (AnnotationParser parsedClass : parsedClasses)
             {
                 ScannedBeanDefinition def = new ScannedBeanDefinition(parsedClass.getParsedClass(), parsedClass);
-                addBeanDefinition(def);
+                result.add(def);
             }
         }
     }
 
 
-    private List<ClasspathScanner> getComponentScans(Document dom)
+    private List<ClasspathScanner> getComponentScans(ContextParser parsed)
     {
-        List<Element> scanDefs = xpfact.newXPath("/b:beans/ctx:component-scan")
-                                 .evaluate(dom, Element.class);
+        List<String> scanDefs = parsed.getComponentScans();
 
         List<ClasspathScanner> result = new ArrayList<ClasspathScanner>(scanDefs.size());
-        for (Element elem : scanDefs)
+        for (String basePackage : scanDefs)
         {
             ClasspathScanner scanner = new ClasspathScanner()
                                        .addIncludedAnnotation(SpringConstants.ANNO_CONTROLLER)
                                        .addIncludedAnnotation(SpringConstants.ANNO_COMPONENT);
-            String basePackage = elem.getAttribute("base-package");
             String[] bp2 = basePackage.split(",");
             for (String pkg : bp2)
             {
@@ -16,14 +16,16 @@ package com.kdgregory.pathfinder.spring.context;
 
 import java.io.IOException;
 import java.io.StringReader;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 import org.w3c.dom.Element;
 
 import net.sf.kdgcommons.lang.StringUtil;
 import net.sf.practicalxml.DomUtil;
-import net.sf.practicalxml.xpath.XPathWrapperFactory;
 
 import com.kdgregory.pathfinder.spring.InvalidContextException;
 
@@ -34,26 +36,59 @@ import com.kdgregory.pathfinder.spring.InvalidContextException;
 public class XmlBeanDefinition
 extends BeanDefinition
 {
-    // the following two objects are shared across instances
-    private XPathWrapperFactory xpfact;
+    // this object is shared across instances
     private SpringContext context;
 
-    // this is unique to the bean definition
+    // this is unique to the bean definition; if it wasn't retained by the parser,
+    // it's loaded when first needed (see ContextParser)
     private Element beanDef;
+    private ContextParser.DeferredDefinition deferredDef;
 
-    // the string is extracted at compile-time, used as a flag; the definition is lazily assigned
+    // the string is extracted at parse-time, used as a flag; the definition is lazily assigned
     private String parentRef;
     private XmlBeanDefinition parent;
 
+    // property elements keyed by name, including those inherited from the parent;
+    // built on first access, because most beans are never asked for properties
+    private Map<String,Element> propertyIndex;
 
-    public XmlBeanDefinition(XPathWrapperFactory xpfact, SpringContext context, Element def)
+
+    /**
+     *  Constructs an instance from values extracted by {@link ContextParser}.
+     *
+     *  @param  context     The context that holds this bean; used to resolve parents.
+     *  @param  beanId      The <code>id</code> attribute; empty if not present.
+     *  @param  beanName    The <code>name</code> attribute; empty if not present.
+     *  @param  beanClass   The <code>class</code> attribute; empty if not present.
+     *  @param  parentRef   The <code>parent</code> attribute; null if not present.
+     *  @param  beanDef     The bean element, containing only its property definitions;
+     *                      null if the bean doesn't have any.
+     */
+    public XmlBeanDefinition(
+            SpringContext context, String beanId, String beanName, String beanClass,
+            String parentRef, Element beanDef)
     {
-        super(DefinitionType.XML, extractBeanId(def), extractBeanName(def), extractBeanClass(def));
+        super(DefinitionType.XML, beanId, beanName, beanClass);
 
-        this.xpfact = xpfact;
         this.context = context;
-        beanDef = def;
-        parentRef = StringUtil.trimToNull(def.getAttribute("parent"));
+        this.parentRef = parentRef;
+        this.beanDef = beanDef;
+    }
+
+
+    /**
+     *  Constructs an instance whose property definitions were not retained by
+     *  {@link ContextParser}, and will be re-read if needed.
+     *
+     *  @param  deferredDef Used to load the definition; null if it can't be
+     *                      loaded (in which case the bean has no properties).
+     */
+    XmlBeanDefinition(
+            SpringContext context, String beanId, String beanName, String beanClass,
+            String parentRef, ContextParser.DeferredDefinition deferredDef)
+    {
+        this(context, beanId, beanName, beanClass, parentRef, (Element)null);
+        this.deferredDef = deferredDef;
     }
 
 
@@ -62,10 +97,18 @@ extends BeanDefinition
 //----------------------------------------------------------------------------
 
     /**
-     *  Returns the raw XML of the bean definition.
+     *  Returns the XML of the bean definition, reduced to the bean element and
+     *  its property definitions. For beans whose properties were not retained
+     *  during parsing, this re-reads the context file on first call; it returns
+     *  <code>null</code> if that isn't possible (see {@link ContextParser}).
      */
-    public Element getBeanDef()
+    public synchronized Element getBeanDef()
     {
+        if ((beanDef == null) && (deferredDef != null))
+        {
+            beanDef = deferredDef.load();
+            deferredDef = null;
+        }
         return beanDef;
     }
 
@@ -90,7 +133,10 @@ extends BeanDefinition
 
         String value = propDef.getAttribute("value");
         if (StringUtil.isEmpty(value))
-            value = xpfact.newXPath("b:value").evaluateAsString(propDef);
+        {
+            Element valueElem = DomUtil.getChild(propDef, SpringConstants.NS_BEANS, "value");
+            value = (valueElem != null) ? valueElem.getTextContent() : "";
+        }
 
         return value;
     }
@@ -126,25 +172,11 @@ extends BeanDefinition
 //  Internals
 //----------------------------------------------------------------------------
 
-    private static String extractBeanId(Element def)
-    {
-        return def.getAttribute("id").trim();
-    }
+    // lazily-resolved fields are guarded by the instance lock: definitions from
+    // a root context are shared by dispatcher contexts inspected concurrently;
+    // locks are always acquired from child to parent
 
-
-    private static String extractBeanName(Element def)
-    {
-        return def.getAttribute("name").trim();
-    }
-
-
-    private static String extractBeanClass(Element def)
-    {
-        return def.getAttribute("class").trim();
-    }
-
-
-    private XmlBeanDefinition resolveParent(boolean failIfNoParent)
+    private synchronized XmlBeanDefinition resolveParent(boolean failIfNoParent)
     {
         if (parent != null)
             return parent;
@@ -165,14 +197,40 @@ extends BeanDefinition
 
     private Element getPropertyDefinition(String name)
     {
-        // FIXME - consider binding a variable here
-        Element propDef = xpfact.newXPath("b:property[@name='" + name+ "']")
-                          .evaluateAsElement(getBeanDef());
+        return getPropertyIndex().get(name);
+    }
+
+
+    private synchronized Map<String,Element> getPropertyIndex()
+    {
+        if (propertyIndex != null)
+            return propertyIndex;
+
+        // first definition wins within a bean, and the bean's own definitions
+        // win over the parent's; the parent's index is built (once) as needed
+        Map<String,Element> index = new HashMap<String,Element>();
+        Element def = getBeanDef();
+        List<Element> propDefs = (def != null)
+                               ? DomUtil.getChildren(def, SpringConstants.NS_BEANS, "property")
+                               : Collections.<Element>emptyList();
+        for (Element propDef : propDefs)
+        {
+            String propName = propDef.getAttribute("name");
+            if (! index.containsKey(propName))
+                index.put(propName, propDef);
+        }
 
-        if ((propDef == null) && (resolveParent(false) != null))
-            propDef = parent.getPropertyDefinition(name);
+        if (resolveParent(false) != null)
+        {
+            for (Map.Entry<String,Element> entry : parent.getPropertyIndex().entrySet())
+            {
+                if (! index.containsKey(entry.getKey()))
+                    index.put(entry.getKey(), entry.getValue());
+            }
+        }
 
-        return propDef;
+        propertyIndex = index;
+        return propertyIndex;
     }
 
 
@@ -181,7 +239,7 @@ extends BeanDefinition
         // single value is what's in the document, so try it first ... note that
         // we can't use a string eval, because it returns empty if the element
         // isn't present
-        Element valueElem = xpfact.newXPath("b:value").evaluateAsElement(propDef);
+        Element valueElem = DomUtil.getChild(propDef, SpringConstants.NS_BEANS, "value");
         if (valueElem == null)
             return null;
 
@@ -203,14 +261,15 @@ extends BeanDefinition
     private Properties tryParsePropertiesFromProps(Element propDef)
     {
         // FIXME - this will return an empty list if there's no "props" element
-        List<Element> props = xpfact.newXPath("b:props/b:prop").evaluate(propDef, Element.class);
-
         Properties ret = new Properties();
-        for (Element prop : props)
+        for (Element props : DomUtil.getChildren(propDef, SpringConstants.NS_BEANS, "props"))
         {
-            String propName  = prop.getAttribute("key");
-            String propValue = prop.getTextContent().trim();
-            ret.put(propName, propValue);
+            for (Element prop : DomUtil.getChildren(props, SpringConstants.NS_BEANS, "prop"))
+            {
+                String propName  = prop.getAttribute("key");
+                String propValue = prop.getTextContent().trim();
+                ret.put(propName, propValue);
+            }
         }
         return ret;
     }
@@ -20,7 +20,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
-import org.apache.bcel.classfile.JavaClass;
 import org.apache.bcel.classfile.LocalVariable;
 import org.apache.bcel.classfile.Method;
 import org.apache.bcel.generic.Type;
@@ -35,7 +34,6 @@ import com.kdgregory.bcelx.classfile.Annotation.ParamValue;
 import com.kdgregory.bcelx.parser.AnnotationParser;
 import com.kdgregory.pathfinder.core.HttpMethod;
 import com.kdgregory.pathfinder.core.PathRepo;
-import com.kdgregory.pathfinder.core.WarMachine;
 import com.kdgregory.pathfinder.spring.SpringDestination;
 import com.kdgregory.pathfinder.spring.SpringDestination.RequestParameter;
 import com.kdgregory.pathfinder.spring.context.BeanDefinition;
@@ -43,6 +41,8 @@ import com.kdgregory.pathfinder.spring.context.ScannedBeanDefinition;
 import com.kdgregory.pathfinder.spring.context.SpringConstants;
 import com.kdgregory.pathfinder.spring.context.SpringContext;
 import com.kdgregory.pathfinder.spring.context.BeanDefinition.DefinitionType;
+import com.kdgregory.pathfinder.spring.inspectors.RequestMappingIndex.ControllerMappings;
+import com.kdgregory.pathfinder.spring.inspectors.RequestMappingIndex.MappedMethod;
 
 // Copyright (c) Keith D Gregory
 //
@@ -66,14 +66,27 @@ public class AnnotationInspector
 {
     private Logger logger = Logger.getLogger(getClass());
 
-    private WarMachine war;
+    private ControllerIndex controllers;
+    private RequestMappingIndex mappings;
     private SpringContext context;
     private PathRepo paths;
 
 
-    public AnnotationInspector(WarMachine war, SpringContext context, PathRepo paths)
+    /**
+     *  @param  controllers Used to find the annotations for XML-defined beans;
+     *                      may (and should) be shared between all inspectors
+     *                      for a single WAR.
+     *  @param  mappings    Resolves the request mappings for a controller,
+     *                      including inherited mappings; also shared.
+     *  @param  context     The context to be inspected.
+     *  @param  paths       Receives the mappings found.
+     */
+    public AnnotationInspector(
+            ControllerIndex controllers, RequestMappingIndex mappings,
+            SpringContext context, PathRepo paths)
     {
-        this.war = war;
+        this.controllers = controllers;
+        this.mappings = mappings;
         this.context = context;
         this.paths = paths;
     }
@@ -92,10 +105,19 @@ public class AnnotationInspector
         for (BeanDefinition bean : context.getBeans().values())
         {
             AnnotationParser ap = getAnnotationsForBean(bean);
-            if (ap.getClassAnnotation(SpringConstants.ANNO_CONTROLLER) == null)
+            if (ap == null)
                 continue;
 
-            processAnnotatedController(urlPrefix, bean, ap);
+            // the parser builds its internal maps lazily, and parsers for XML-defined
+            // beans are shared between inspectors that may be running concurrently
+            boolean isController;
+            synchronized (ap)
+            {
+                isController = ap.getClassAnnotation(SpringConstants.ANNO_CONTROLLER) != null;
+            }
+
+            if (isController)
+                processAnnotatedController(urlPrefix, bean);
         }
     }
 
@@ -111,36 +133,42 @@ public class AnnotationInspector
             return ((ScannedBeanDefinition)bean).getAnnotationParser();
         }
 
-        // assume that it's an XML definition
-        JavaClass klass = war.loadClass(bean.getBeanClass());
-        return new AnnotationParser(klass);
+        // assume that it's an XML definition; the index only loads the class if
+        // there's a chance that it's a controller
+        return controllers.getControllerAnnotations(bean.getBeanClass());
     }
 
 
-    private void processAnnotatedController(
-            String urlPrefix, BeanDefinition bean, AnnotationParser ap)
+    private void processAnnotatedController(String urlPrefix, BeanDefinition bean)
     {
         logger.debug("processing annotated bean: " + bean);
         logger.debug("initial urlPrefix: " + urlPrefix);
-        Annotation classMapping = ap.getClassAnnotation(SpringConstants.ANNO_REQUEST_MAPPING);
-        for (String classPrefix : getMappingUrls(urlPrefix, classMapping))
+        ControllerMappings controllerMappings = mappings.getMappings(bean.getBeanClass());
+        for (String classPrefix : getMappingUrls(urlPrefix, controllerMappings.getClassMapping()))
         {
             logger.debug("updated prefix from controller mapping: " + classPrefix);
-            for (Method method : ap.getAnnotatedMethods(SpringConstants.ANNO_REQUEST_MAPPING))
+            for (MappedMethod method : controllerMappings.getMethods())
             {
-                processAnnotatedControllerMethods(classPrefix, bean, ap, method);
+                processAnnotatedControllerMethods(classPrefix, bean, method);
             }
         }
     }
 
 
     private void processAnnotatedControllerMethods(
-            String urlPrefix, BeanDefinition bean, AnnotationParser ap, Method method)
+            String urlPrefix, BeanDefinition bean, MappedMethod mappedMethod)
     {
+        // the method may be declared by a superclass, in which case its parameter
+        // annotations come from the superclass
+        Method method = mappedMethod.getMethod();
         String methodName = method.getName();
-        Map<String,RequestParameter> requestParams = processParameterAnnotations(method, ap);
+        Map<String,RequestParameter> requestParams;
+        synchronized (mappedMethod.getParser())
+        {
+            requestParams = processParameterAnnotations(method, mappedMethod.getParser());
+        }
 
-        Annotation anno = ap.getMethodAnnotation(method, SpringConstants.ANNO_REQUEST_MAPPING);
+        Annotation anno = mappedMethod.getMapping();
         for (String methodUrl : getMappingUrls(urlPrefix, anno))
         {
             for (HttpMethod reqMethod : getRequestMethods(anno))
@@ -267,6 +295,10 @@ public class AnnotationInspector
 
     private RequestParameter extractParameterFromAnnotationAndMethod(Annotation anno, Method method, int paramIndex)
     {
+        // inherited methods may come from a JAR that was compiled without debug info
+        if (method.getLocalVariableTable() == null)
+            return null;
+
         int lvtIndex = paramIndex + 1;  // compensate for this
         LocalVariable[] lvt = method.getLocalVariableTable().getLocalVariableTable();
         if (lvt.length <= lvtIndex)
@@ -18,19 +18,18 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 
-import org.apache.bcel.classfile.JavaClass;
 import org.apache.log4j.Logger;
 
 import net.sf.kdgcommons.lang.StringUtil;
 
 import com.kdgregory.pathfinder.core.PathRepo;
-import com.kdgregory.pathfinder.core.WarMachine;
 import com.kdgregory.pathfinder.spring.SpringDestination;
 import com.kdgregory.pathfinder.spring.context.BeanDefinition;
 import com.kdgregory.pathfinder.spring.context.SpringConstants;
 import com.kdgregory.pathfinder.spring.context.SpringContext;
 import com.kdgregory.pathfinder.spring.context.XmlBeanDefinition;
 import com.kdgregory.pathfinder.spring.context.BeanDefinition.DefinitionType;
+import com.kdgregory.pathfinder.util.TypeHierarchy;
 
 
 /**
@@ -40,14 +39,20 @@ public class BeanInspector
 {
     private Logger logger = Logger.getLogger(getClass());
 
-    private WarMachine war;
+    private TypeHierarchy types;
     private SpringContext context;
     private PathRepo paths;
 
 
-    public BeanInspector(WarMachine war, SpringContext context, PathRepo paths)
+    /**
+     *  @param  types       Used to identify controller beans; may (and should) be
+     *                      shared between all inspectors for a single WAR.
+     *  @param  context     The context to be inspected.
+     *  @param  paths       Receives the mappings found.
+     */
+    public BeanInspector(TypeHierarchy types, SpringContext context, PathRepo paths)
     {
-        this.war = war;
+        this.types = types;
         this.context = context;
         this.paths = paths;
     }
@@ -185,22 +190,16 @@ public class BeanInspector
 
 
     /**
-     *  Examines the passed bean's class data to determine whether it implements
-     *  <code>Controller</code>. Will examine all reachable superclasses.
+     *  Determines whether the passed bean's class implements <code>Controller</code>,
+     *  either directly or via a superclass or super-interface. Beans whose class (or
+     *  part of whose hierarchy) isn't in the WAR are not considered controllers.
      */
     private boolean isController(BeanDefinition bean)
     {
         String className = bean.getBeanClass();
-        while (! className.equals("java.lang.Object"))
-        {
-            JavaClass klass = war.loadClass(className);
-            for (String intf : klass.getInterfaceNames())
-            {
-                if (intf.equals(SpringConstants.INTF_CONTROLLER))
-                    return true;
-            }
-            className = klass.getSuperclassName();
-        }
-        return false;
+        if (StringUtil.isBlank(className))
+            return false;
+
+        return types.isAssignableTo(className, SpringConstants.INTF_CONTROLLER);
     }
 }
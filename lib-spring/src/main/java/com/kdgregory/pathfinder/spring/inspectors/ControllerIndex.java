@@ -0,0 +1,158 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.spring.inspectors;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.log4j.Logger;
+
+import net.sf.kdgcommons.lang.StringUtil;
+
+import com.kdgregory.bcelx.parser.AnnotationParser;
+import com.kdgregory.pathfinder.core.WarMachine;
+import com.kdgregory.pathfinder.spring.context.SpringConstants;
+import com.kdgregory.pathfinder.util.ClassHeader;
+
+
+/**
+ *  Identifies the classes in a WAR that are annotated with <code>@Controller</code>,
+ *  so that {@link AnnotationInspector} doesn't have to load and parse every bean
+ *  in the context to find them.
+ *  <p>
+ *  A class is a "candidate" if its {@link ClassHeader} (which the WAR may have
+ *  cached for library classes) references the annotation. Candidates are found
+ *  as classes are asked for, so a caller that only looks at the beans of one
+ *  context only reads the headers of those beans (and their supertypes); the
+ *  full list of candidates is built with a single pass over the classpath, and
+ *  only if asked for. A candidate is fully parsed when first asked for, to
+ *  verify that it's actually annotated, and the parsed annotations are retained.
+ *  An instance should be shared by all dispatcher contexts for a WAR, so that
+ *  each controller is parsed once.
+ *  <p>
+ *  Instances are thread-safe.
+ */
+public class ControllerIndex
+{
+    private final static String CONTROLLER_DESCRIPTOR
+        = "L" + SpringConstants.ANNO_CONTROLLER.replace('.', '/') + ";";
+
+    private Logger logger = Logger.getLogger(getClass());
+
+    private WarMachine war;
+    private Set<String> candidates;
+    private ConcurrentMap<String,AnnotationParser> controllers = new ConcurrentHashMap<String,AnnotationParser>();
+    private Set<String> rejected = Collections.newSetFromMap(new ConcurrentHashMap<String,Boolean>());
+
+
+    public ControllerIndex(WarMachine war)
+    {
+        this.war = war;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns the names of all classes that reference the <code>@Controller</code>
+     *  annotation, in sorted order. This is a superset of the annotated classes.
+     */
+    public synchronized Set<String> getCandidates()
+    {
+        if (candidates == null)
+            candidates = Collections.unmodifiableSet(buildCandidates());
+        return candidates;
+    }
+
+
+    /**
+     *  Returns the parsed annotations for the named class if it is annotated with
+     *  <code>@Controller</code>, <code>null</code> if it isn't (or if it can't be
+     *  loaded). Classes that aren't candidates are never loaded.
+     */
+    public AnnotationParser getControllerAnnotations(String className)
+    {
+        if (StringUtil.isBlank(className) || rejected.contains(className))
+            return null;
+
+        AnnotationParser ap = controllers.get(className);
+        if (ap != null)
+            return ap;
+
+        if (! isCandidate(className))
+        {
+            rejected.add(className);
+            return null;
+        }
+
+        // an unchanged class that wasn't a controller last time still isn't
+        Set<String> knownAnnotations = war.getKnownClassAnnotations(className);
+        JavaClass klass = ((knownAnnotations == null) || knownAnnotations.contains(SpringConstants.ANNO_CONTROLLER))
+                        ? war.loadClass(className)
+                        : null;
+        ap = (klass != null) ? new AnnotationParser(klass) : null;
+        if ((ap == null) || (ap.getClassAnnotation(SpringConstants.ANNO_CONTROLLER) == null))
+        {
+            logger.debug("candidate is not an annotated controller: " + className);
+            rejected.add(className);
+            return null;
+        }
+
+        AnnotationParser existing = controllers.putIfAbsent(className, ap);
+        return (existing != null) ? existing : ap;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private boolean isCandidate(String className)
+    {
+        synchronized (this)
+        {
+            if (candidates != null)
+                return candidates.contains(className);
+        }
+
+        ClassHeader header = war.getClassHeader(className);
+        return (header != null) && header.hasUtf8Constant(CONTROLLER_DESCRIPTOR);
+    }
+
+
+    private Set<String> buildCandidates()
+    {
+        Set<String> result = new TreeSet<String>();
+        for (String filename : war.getFilesOnClasspath())
+        {
+            if (! filename.endsWith(".class"))
+                continue;
+
+            String className = StringUtil.extractLeftOfLast(filename, ".class").replace('/', '.');
+            ClassHeader header = war.getClassHeader(className);
+            if ((header != null) && header.hasUtf8Constant(CONTROLLER_DESCRIPTOR))
+                result.add(header.getClassName());
+        }
+
+        logger.debug("found " + result.size() + " candidate controller classes");
+        return result;
+    }
+}
@@ -0,0 +1,333 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.spring.inspectors;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.classfile.Method;
+import org.apache.log4j.Logger;
+
+import net.sf.kdgcommons.lang.StringUtil;
+
+import com.kdgregory.bcelx.classfile.Annotation;
+import com.kdgregory.bcelx.parser.AnnotationParser;
+import com.kdgregory.pathfinder.core.WarMachine;
+import com.kdgregory.pathfinder.spring.context.SpringConstants;
+
+
+/**
+ *  Resolves the <code>@RequestMapping</code> annotations that apply to a class,
+ *  including those inherited from superclasses and interfaces. The rules follow
+ *  Spring's <code>AnnotationUtils.findAnnotation()</code>:
+ *  <ul>
+ *  <li> The class-level mapping is the one on the class itself; if none, the
+ *       first found on its interfaces; if none, the one that applies to its
+ *       superclass.
+ *  <li> A concrete method's mapping is the one on the method itself; if none,
+ *       the one on a method with the same signature in the class' interfaces;
+ *       if none, the one that applies to that method in the superclass.
+ *  <li> A class' handler methods are its own mapped methods, plus any mapped
+ *       methods from its superclass that it doesn't override.
+ *  </ul>
+ *  The result for each class is built from the results for its direct supertypes,
+ *  and is retained. As a result, a base class or interface is parsed once, no
+ *  matter how many controllers extend it. An instance should be shared by all
+ *  dispatcher contexts for a WAR.
+ *  <p>
+ *  Classes that can't be loaded from the WAR (including all JDK classes) are
+ *  treated as having no mappings.
+ *  <p>
+ *  Instances are thread-safe. However, the parsers returned by {@link MappedMethod}
+ *  are shared, and build their internal maps lazily; callers must synchronize on
+ *  the parser when using it.
+ */
+public class RequestMappingIndex
+{
+    private Logger logger = Logger.getLogger(getClass());
+
+    private WarMachine war;
+    private ControllerIndex controllers;
+    private ConcurrentMap<String,ControllerMappings> mappings = new ConcurrentHashMap<String,ControllerMappings>();
+
+
+    /**
+     *  @param  war         The WAR that contains the classes.
+     *  @param  controllers Used to retrieve already-parsed controller classes;
+     *                      other classes are loaded from the WAR.
+     */
+    public RequestMappingIndex(WarMachine war, ControllerIndex controllers)
+    {
+        this.war = war;
+        this.controllers = controllers;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns the mappings that apply to the named class. Never returns
+     *  <code>null</code>; a class without mappings (or that can't be loaded)
+     *  returns an empty object.
+     */
+    public ControllerMappings getMappings(String className)
+    {
+        return getMappings(className, new HashSet<String>());
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    /**
+     *  The set of classes currently being resolved protects us from a malformed
+     *  (cyclic) hierarchy; it isn't shared between threads. Two threads that
+     *  resolve the same class at the same time will produce equivalent results,
+     *  and only one is retained.
+     */
+    private ControllerMappings getMappings(String className, Set<String> inProgress)
+    {
+        if (StringUtil.isBlank(className))
+            return ControllerMappings.EMPTY;
+
+        ControllerMappings result = mappings.get(className);
+        if (result != null)
+            return result;
+
+        if (! inProgress.add(className))
+        {
+            logger.warn("cyclic class hierarchy: " + className);
+            return ControllerMappings.EMPTY;
+        }
+
+        result = buildMappings(className, inProgress);
+        inProgress.remove(className);
+
+        ControllerMappings existing = mappings.putIfAbsent(className, result);
+        return (existing != null) ? existing : result;
+    }
+
+
+    private ControllerMappings buildMappings(String className, Set<String> inProgress)
+    {
+        AnnotationParser ap = controllers.getControllerAnnotations(className);
+        if (ap == null)
+        {
+            // supertypes such as java.lang.Object aren't in the WAR; there's no
+            // point asking the WarMachine to load them (it would log a warning)
+            if (! war.getFilesOnClasspath().contains(className.replace('.', '/') + ".class"))
+                return ControllerMappings.EMPTY;
+
+            JavaClass klass = war.loadClass(className);
+            if (klass == null)
+                return ControllerMappings.EMPTY;
+            ap = new AnnotationParser(klass);
+        }
+
+        logger.debug("resolving request mappings for: " + className);
+
+        // supertypes are resolved outside the lock, so that we never hold more
+        // than one parser's lock at a time
+        String superclassName;
+        String[] interfaceNames;
+        synchronized (ap)
+        {
+            superclassName = ap.getParsedClass().isInterface() ? null : ap.getParsedClass().getSuperclassName();
+            interfaceNames = ap.getParsedClass().getInterfaceNames();
+        }
+
+        List<ControllerMappings> interfaces = new ArrayList<ControllerMappings>(interfaceNames.length);
+        for (String intf : interfaceNames)
+        {
+            interfaces.add(getMappings(intf, inProgress));
+        }
+        ControllerMappings superclass = (superclassName != null)
+                                      ? getMappings(superclassName, inProgress)
+                                      : ControllerMappings.EMPTY;
+
+        synchronized (ap)
+        {
+            return buildMappings(ap, superclass, interfaces);
+        }
+    }
+
+
+    private ControllerMappings buildMappings(
+            AnnotationParser ap, ControllerMappings superclass, List<ControllerMappings> interfaces)
+    {
+        Annotation classMapping = ap.getClassAnnotation(SpringConstants.ANNO_REQUEST_MAPPING);
+        for (ControllerMappings intf : interfaces)
+        {
+            if (classMapping == null)
+                classMapping = intf.getClassMapping();
+        }
+        if (classMapping == null)
+            classMapping = superclass.getClassMapping();
+
+        Map<String,Annotation> inheritable = new LinkedHashMap<String,Annotation>();
+        Map<String,MappedMethod> handlers = new LinkedHashMap<String,MappedMethod>();
+        Set<String> declared = new HashSet<String>();
+        for (Method method : ap.getParsedClass().getMethods())
+        {
+            if (method.isSynthetic() || method.isVolatile())    // ACC_BRIDGE shares a bit with ACC_VOLATILE
+                continue;
+
+            String key = methodKey(method);
+            declared.add(key);
+
+            Annotation anno = ap.getMethodAnnotation(method, SpringConstants.ANNO_REQUEST_MAPPING);
+            for (ControllerMappings intf : interfaces)
+            {
+                if (anno == null)
+                    anno = intf.inheritable.get(key);
+            }
+            if (anno == null)
+                anno = superclass.inheritable.get(key);
+            if (anno == null)
+                continue;
+
+            inheritable.put(key, anno);
+            if (! method.isAbstract())
+                handlers.put(key, new MappedMethod(ap, method, anno));
+        }
+
+        for (ControllerMappings intf : interfaces)
+        {
+            putAllAbsent(inheritable, intf.inheritable);
+        }
+        putAllAbsent(inheritable, superclass.inheritable);
+
+        for (MappedMethod method : superclass.getMethods())
+        {
+            String key = methodKey(method.getMethod());
+            if (! declared.contains(key))
+                handlers.put(key, method);
+        }
+
+        return new ControllerMappings(classMapping, inheritable, new ArrayList<MappedMethod>(handlers.values()));
+    }
+
+
+    private static String methodKey(Method method)
+    {
+        return method.getName() + method.getSignature();
+    }
+
+
+    private static <K,V> void putAllAbsent(Map<K,V> dest, Map<K,V> src)
+    {
+        for (Map.Entry<K,V> entry : src.entrySet())
+        {
+            if (! dest.containsKey(entry.getKey()))
+                dest.put(entry.getKey(), entry.getValue());
+        }
+    }
+
+
+//----------------------------------------------------------------------------
+//  Supporting classes
+//----------------------------------------------------------------------------
+
+    /**
+     *  The mappings that apply to a single class.
+     */
+    public static class ControllerMappings
+    {
+        public final static ControllerMappings EMPTY
+            = new ControllerMappings(null, Collections.<String,Annotation>emptyMap(), Collections.<MappedMethod>emptyList());
+
+        private Annotation classMapping;
+        private Map<String,Annotation> inheritable;
+        private List<MappedMethod> methods;
+
+        private ControllerMappings(Annotation classMapping, Map<String,Annotation> inheritable, List<MappedMethod> methods)
+        {
+            this.classMapping = classMapping;
+            this.inheritable = inheritable;
+            this.methods = Collections.unmodifiableList(methods);
+        }
+
+        /**
+         *  Returns the class-level mapping, <code>null</code> if there isn't one.
+         */
+        public Annotation getClassMapping()
+        {
+            return classMapping;
+        }
+
+        /**
+         *  Returns the concrete methods that handle requests, in declaration
+         *  order (subclass first).
+         */
+        public List<MappedMethod> getMethods()
+        {
+            return methods;
+        }
+    }
+
+
+    /**
+     *  A handler method, along with the mapping that applies to it (which may
+     *  be declared by a supertype).
+     */
+    public static class MappedMethod
+    {
+        private AnnotationParser parser;
+        private Method method;
+        private Annotation mapping;
+
+        private MappedMethod(AnnotationParser parser, Method method, Annotation mapping)
+        {
+            this.parser = parser;
+            this.method = method;
+            this.mapping = mapping;
+        }
+
+        /**
+         *  Returns the parser for the class that implements the method. This is
+         *  used to retrieve the method's parameter annotations.
+         */
+        public AnnotationParser getParser()
+        {
+            return parser;
+        }
+
+        public Method getMethod()
+        {
+            return method;
+        }
+
+        public Annotation getMapping()
+        {
+            return mapping;
+        }
+
+        public String getDeclaringClass()
+        {
+            return parser.getParsedClass().getClassName();
+        }
+    }
+}
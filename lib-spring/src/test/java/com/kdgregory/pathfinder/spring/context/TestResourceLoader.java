@@ -18,6 +18,7 @@ import java.io.File;
 import java.io.InputStream;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 
 import org.w3c.dom.Document;
 import org.xml.sax.InputSource;
@@ -275,4 +276,91 @@ extends AbstractSpringTestcase
                      ResourceLoader.decomposeResourceReferences("    classpath:foo.xml, ,/bar.xml  "));
     }
 
+
+    @Test
+    public void testResolveResourceReferencesWithoutPatterns() throws Exception
+    {
+        logger.info("testResolveResourceReferencesWithoutPatterns()");
+
+        ResourceLoader loader = new ResourceLoader(war);
+
+        assertEquals("non-pattern references are unchanged",
+                     Arrays.asList("/WEB-INF/spring/servletContext.xml", "classpath:bogus.xml"),
+                     loader.resolveResourceReferences("/WEB-INF/spring/servletContext.xml, classpath:bogus.xml"));
+        assertEquals("classpath*: translated to classpath:",
+                     Arrays.asList("classpath:loader/propContext.xml"),
+                     loader.resolveResourceReferences("classpath*:loader/propContext.xml"));
+        assertEquals("classpath*: ignores missing files",
+                     Collections.<String>emptyList(),
+                     loader.resolveResourceReferences("classpath*:bogus.xml"));
+    }
+
+
+    @Test
+    public void testResolveWarPatterns() throws Exception
+    {
+        logger.info("testResolveWarPatterns()");
+
+        ResourceLoader loader = new ResourceLoader(war);
+
+        assertEquals("single-directory wildcard",
+                     Arrays.asList("/WEB-INF/spring/importedContext.xml", "/WEB-INF/spring/servletContext.xml"),
+                     loader.resolveResourceReferences("/WEB-INF/spring/*.xml"));
+        assertEquals("multi-directory wildcard",
+                     Arrays.asList("/WEB-INF/classes/loader/propContext.xml",
+                                   "/WEB-INF/spring/importedContext.xml",
+                                   "/WEB-INF/spring/servletContext.xml"),
+                     loader.resolveResourceReferences("/WEB-INF/**/*Context.xml"));
+        assertEquals("no matches",
+                     Collections.<String>emptyList(),
+                     loader.resolveResourceReferences("/WEB-INF/spring/*.bogus"));
+
+        // results are relative to the loader's base directory, and can be used to load the file
+        ResourceLoader loader2 = new ResourceLoader(war, "/WEB-INF/spring");
+        List<String> refs = loader2.resolveResourceReferences("imp*.xml");
+        assertEquals("relative to basedir", Arrays.asList("/importedContext.xml"), refs);
+
+        in = loader2.getResourceAsStream(refs.get(0));
+        assertNotNull("able to open resolved reference", in);
+    }
+
+
+    @Test
+    public void testResolveClasspathPatterns() throws Exception
+    {
+        logger.info("testResolveClasspathPatterns()");
+
+        ResourceLoader loader = new ResourceLoader(war);
+
+        assertEquals("classpath: with wildcard",
+                     Arrays.asList("classpath:loader/propContext.xml"),
+                     loader.resolveResourceReferences("classpath:loader/*.xml"));
+
+        // these files appear in multiple Spring JARs; we only report one copy
+        assertEquals("classpath*: with wildcard",
+                     Arrays.asList("classpath:META-INF/spring.handlers",
+                                   "classpath:META-INF/spring.schemas"),
+                     loader.resolveResourceReferences("classpath*:META-INF/spring.*s"));
+
+        List<String> refs = loader.resolveResourceReferences("classpath*:**/propContext.xml");
+        assertEquals("classpath*: with multi-directory wildcard", Arrays.asList("classpath:loader/propContext.xml"), refs);
+
+        in = loader.getResourceAsStream(refs.get(0));
+        assertNotNull("able to open resolved reference", in);
+    }
+
+
+    @Test
+    public void testResolvePatternsWithoutWar() throws Exception
+    {
+        logger.info("testResolvePatternsWithoutWar()");
+
+        ResourceLoader loader = new ResourceLoader(null);
+
+        assertEquals("patterns dropped, other references unchanged",
+                     Arrays.asList("file:foo.xml", "/WEB-INF/spring/servletContext.xml"),
+                     loader.resolveResourceReferences("/WEB-INF/spring/*.xml, classpath:loader/*.xml, "
+                                                      + "file:foo.xml, /WEB-INF/spring/servletContext.xml"));
+    }
+
 }
@@ -14,6 +14,7 @@
 
 package com.kdgregory.pathfinder.spring.context;
 
+import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -103,6 +104,29 @@ extends AbstractSpringTestcase
     }
 
 
+    @Test
+    public void testDeferredPropertyDefinitions() throws Exception
+    {
+        logger.info("testDeferredPropertyDefinitions()");
+
+        // properties are only retained for handler mappings; other beans re-read
+        // their definition when asked, which requires a source for the file
+
+        InputStream in = getClass().getClassLoader().getResourceAsStream("contexts/propContext.xml");
+        ContextParser parser = new ContextParser(null).parse(in);
+        in.close();
+        XmlBeanDefinition unloadable = parser.getBeans().get(0);
+        assertEquals("bean id",                         "example", unloadable.getBeanId());
+        assertNull("no definition without source",      unloadable.getBeanDef());
+        assertNull("no property without source",        unloadable.getPropertyAsString("propAsStringAttribute"));
+
+        SpringContext context = new SpringContext(null, "classpath:contexts/propContext.xml");
+        XmlBeanDefinition bean = (XmlBeanDefinition)context.getBean("example");
+        assertNotNull("definition loaded from source",  bean.getBeanDef());
+        assertSame("definition retained once loaded",   bean.getBeanDef(), bean.getBeanDef());
+    }
+
+
     @Test
     public void testInheritProperty() throws Exception
     {
@@ -130,6 +154,24 @@ extends AbstractSpringTestcase
     }
 
 
+    @Test
+    public void testOverrideInheritedProperty() throws Exception
+    {
+        logger.info("testOverrideInheritedProperty()");
+
+        SpringContext context = new SpringContext(null, "classpath:contexts/inheritProp.xml");
+        BeanDefinition bean = context.getBean("overridden");
+        assertNotNull("able to find bean", bean);
+
+        assertEquals("overridden property",  "baz", bean.getPropertyAsString("propAsStringAttribute"));
+        assertEquals("inherited property",   "bar", bean.getPropertyAsString("propAsStringValue"));
+        assertNull("nonexistent property",          bean.getPropertyAsString("noSuchProperty"));
+
+        // and the parent isn't affected by the child
+        assertEquals("parent property",      "foo", context.getBean("base").getPropertyAsString("propAsStringAttribute"));
+    }
+
+
     @Test
     public void testInheritClass() throws Exception
     {
@@ -204,6 +246,25 @@ extends AbstractSpringTestcase
     }
 
 
+    @Test
+    public void testCombinedContextOverridesInDeclarationOrder() throws Exception
+    {
+        logger.info("testCombinedContextOverridesInDeclarationOrder()");
+
+        // files may be loaded concurrently, but the last one listed must win
+
+        SpringContext ctx1 = new SpringContext(null, "classpath:contexts/combined1.xml,classpath:contexts/combined2.xml,classpath:contexts/combined3.xml");
+        assertEquals("bean count",                  4, ctx1.getBeans().size());
+        assertEquals("later file overrides",        "org.springframework.web.servlet.view.InternalResourceViewResolver",
+                                                    ctx1.getBean("viewResolver").getBeanClass());
+
+        SpringContext ctx2 = new SpringContext(null, "classpath:contexts/combined3.xml,classpath:contexts/combined2.xml,classpath:contexts/combined1.xml");
+        assertEquals("bean count",                  4, ctx2.getBeans().size());
+        assertEquals("later file overrides",        "org.springframework.web.servlet.view.UrlBasedViewResolver",
+                                                    ctx2.getBean("viewResolver").getBeanClass());
+    }
+
+
     @Test
     public void testComponentScan() throws Exception
     {
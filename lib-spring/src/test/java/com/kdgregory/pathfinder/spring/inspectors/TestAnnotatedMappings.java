@@ -191,6 +191,48 @@ extends AbstractSpringTestcase
     }
 
 
+    @Test
+    public void testInheritedMappings() throws Exception
+    {
+        logger.info("testInheritedMappings()");
+
+        processWar(WarNames.SPRING_ANNO);
+
+        // ControllerF inherits everything: class mapping and two methods from its
+        // base class, a third method from the base class' interface
+
+        SpringDestination dest1 = (SpringDestination)pathRepo.get("/servlet/F/base.html", HttpMethod.GET);
+        assertNotNull("base class method", dest1);
+        assertEquals("base class method: class",  "com.kdgregory.pathfinder.test.spring3.pkg3.ControllerF", dest1.getBeanClass());
+        assertEquals("base class method: method", "getBase", dest1.getMethodName());
+
+        SpringDestination dest2 = (SpringDestination)pathRepo.get("/servlet/F/list.html", HttpMethod.GET);
+        assertNotNull("interface method", dest2);
+        assertEquals("interface method: method",  "list", dest2.getMethodName());
+
+        SpringDestination dest3 = (SpringDestination)pathRepo.get("/servlet/F/edit.html", HttpMethod.GET);
+        assertNotNull("overridden abstract method", dest3);
+        assertEquals("overridden abstract method: method",  "getEdit", dest3.getMethodName());
+        assertEquals("overridden abstract method: params",  1, dest3.getParams().size());
+        assertTrue("overridden abstract method: param",     dest3.getParams().get("id").isRequired());
+
+        // ControllerG replaces the class mapping and one method mapping
+
+        assertNull("base mapping not used for G", pathRepo.get("/servlet/G/edit.html", HttpMethod.GET));
+
+        SpringDestination dest4 = (SpringDestination)pathRepo.get("/servlet/G/base.html", HttpMethod.GET);
+        assertNotNull("base class method, overridden class mapping", dest4);
+        assertEquals("base class method, overridden class mapping: class",
+                     "com.kdgregory.pathfinder.test.spring3.pkg3.ControllerG", dest4.getBeanClass());
+
+        SpringDestination dest5 = (SpringDestination)pathRepo.get("/servlet/G/modify.html", HttpMethod.POST);
+        assertNotNull("overridden method mapping", dest5);
+        assertEquals("overridden method mapping: method", "getEdit", dest5.getMethodName());
+
+        assertNotNull("interface method", pathRepo.get("/servlet/G/list.html", HttpMethod.GET));
+    }
+
+
     @Test
     public void testExplicitControllerDefs() throws Exception
     {
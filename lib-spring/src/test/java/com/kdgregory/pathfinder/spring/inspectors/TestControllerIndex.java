@@ -0,0 +1,73 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.spring.inspectors;
+
+import java.util.Set;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.kdgregory.bcelx.parser.AnnotationParser;
+import com.kdgregory.pathfinder.core.WarMachine;
+import com.kdgregory.pathfinder.spring.AbstractSpringTestcase;
+import com.kdgregory.pathfinder.test.WarNames;
+import com.kdgregory.pathfinder.util.TestHelpers;
+
+
+public class TestControllerIndex
+extends AbstractSpringTestcase
+{
+    private final static String CONTROLLER_A = "com.kdgregory.pathfinder.test.spring3.pkg1.ControllerA";
+    private final static String CONTROLLER_B = "com.kdgregory.pathfinder.test.spring3.pkg1.ControllerB";
+
+
+    @Test
+    public void testCandidatesFromClasspath() throws Exception
+    {
+        logger.info("testCandidatesFromClasspath()");
+
+        // this WAR has two annotated controllers, only one of which is defined as a bean
+        WarMachine war = TestHelpers.createWarMachine(WarNames.SPRING_ANNO_NOSCAN);
+        ControllerIndex index = new ControllerIndex(war);
+
+        Set<String> candidates = index.getCandidates();
+        assertTrue("candidates include controller A", candidates.contains(CONTROLLER_A));
+        assertTrue("candidates include controller B", candidates.contains(CONTROLLER_B));
+        assertFalse("candidates don't include Spring's view resolver",
+                    candidates.contains("org.springframework.web.servlet.view.UrlBasedViewResolver"));
+        assertSame("candidates are only found once", candidates, index.getCandidates());
+    }
+
+
+    @Test
+    public void testGetControllerAnnotations() throws Exception
+    {
+        logger.info("testGetControllerAnnotations()");
+
+        WarMachine war = TestHelpers.createWarMachine(WarNames.SPRING_ANNO_NOSCAN);
+        ControllerIndex index = new ControllerIndex(war);
+
+        AnnotationParser ap = index.getControllerAnnotations(CONTROLLER_B);
+        assertNotNull("found annotations for controller", ap);
+        assertSame("annotations are retained", ap, index.getControllerAnnotations(CONTROLLER_B));
+
+        assertNull("non-controller class",
+                   index.getControllerAnnotations("org.springframework.web.servlet.view.UrlBasedViewResolver"));
+        assertNull("nonexistent class",
+                   index.getControllerAnnotations("com.example.Bogus"));
+        assertNull("empty classname",
+                   index.getControllerAnnotations(""));
+    }
+}
@@ -14,13 +14,20 @@
 
 package com.kdgregory.pathfinder.spring.inspectors;
 
+import java.util.Map;
+
 import org.junit.Test;
 import static org.junit.Assert.*;
 
+import com.kdgregory.pathfinder.core.Destination;
 import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.core.impl.PathRepoImpl;
+import com.kdgregory.pathfinder.servlet.ServletInspector;
 import com.kdgregory.pathfinder.spring.AbstractSpringTestcase;
 import com.kdgregory.pathfinder.spring.SpringDestination;
+import com.kdgregory.pathfinder.spring.SpringInspector;
 import com.kdgregory.pathfinder.test.WarNames;
+import com.kdgregory.pathfinder.util.TestHelpers;
 
 
 /**
@@ -103,4 +110,89 @@ extends AbstractSpringTestcase
         assertEquals("controllerC", dest3.getBeanId());
         assertEquals("com.kdgregory.pathfinder.test.spring2.BazCtrl", dest3.getBeanClass());
     }
+
+
+    @Test
+    public void testMultipleDispatcherMappings() throws Exception
+    {
+        logger.info("testMultipleDispatcherMappings()");
+
+        // reference run processes the mappings in turn
+        processWar(WarNames.SPRING_MULTI_DISPATCH, new SpringInspector(1));
+        String sequential = dumpRepo();
+
+        assertEquals("/servlet/* removed",  0, pathRepo.get("/servlet/*").size());
+        assertEquals("/alt/* removed",      0, pathRepo.get("/alt/*").size());
+        assertEquals("/* removed",          0, pathRepo.get("/*").size());
+        assertEquals("/servlet2 remains",   1, pathRepo.get("/servlet2").size());
+
+        SpringDestination dest1 = (SpringDestination)pathRepo.get("/servlet/foo", HttpMethod.GET);
+        assertEquals("/servlet/foo",        "controllerA", dest1.getBeanId());
+
+        SpringDestination dest2 = (SpringDestination)pathRepo.get("/foo", HttpMethod.GET);
+        assertEquals("/foo",                "controllerB", dest2.getBeanId());
+
+        // both dispatchers produce this URL; the /alt/* mapping sorts after /* so wins
+        SpringDestination dest3 = (SpringDestination)pathRepo.get("/alt/foo", HttpMethod.GET);
+        assertEquals("/alt/foo",            "controllerA", dest3.getBeanId());
+
+        // concurrency must not affect the results
+        for (int ii = 0 ; ii < 5 ; ii++)
+        {
+            processWar(WarNames.SPRING_MULTI_DISPATCH, new SpringInspector(4));
+            assertEquals("concurrent run " + ii, sequential, dumpRepo());
+        }
+    }
+
+
+    @Test
+    public void testInspectSingleDispatcher() throws Exception
+    {
+        logger.info("testInspectSingleDispatcher()");
+
+        machine = TestHelpers.createWarMachine(WarNames.SPRING_MULTI_DISPATCH);
+        pathRepo = new PathRepoImpl();
+        new ServletInspector().inspect(machine, pathRepo);
+        SpringInspector inspector = new SpringInspector();
+
+        assertFalse("not a dispatcher",     inspector.inspectDispatcher(machine, pathRepo, "/servlet2"));
+        assertFalse("not mapped",           inspector.inspectDispatcher(machine, pathRepo, "/bogus/*"));
+        assertTrue("dispatcher",            inspector.inspectDispatcher(machine, pathRepo, "/alt/*"));
+
+        SpringDestination dest = (SpringDestination)pathRepo.get("/alt/foo", HttpMethod.GET);
+        assertEquals("controllerA", dest.getBeanId());
+
+        assertEquals("/alt/* removed",      0, pathRepo.get("/alt/*").size());
+        assertEquals("/servlet/* remains",  1, pathRepo.get("/servlet/*").size());
+        assertEquals("/servlet/foo absent", 0, pathRepo.get("/servlet/foo").size());
+    }
+
+
+//----------------------------------------------------------------------------
+//  Support code
+//----------------------------------------------------------------------------
+
+    private void processWar(String warName, SpringInspector inspector)
+    throws Exception
+    {
+        machine = TestHelpers.createWarMachine(warName);
+        pathRepo = new PathRepoImpl();
+        new ServletInspector().inspect(machine, pathRepo);
+        inspector.inspect(machine, pathRepo);
+    }
+
+
+    private String dumpRepo()
+    {
+        StringBuilder sb = new StringBuilder();
+        for (String url : pathRepo)
+        {
+            for (Map.Entry<HttpMethod,Destination> entry : pathRepo.get(url).entrySet())
+            {
+                sb.append(url).append(" ").append(entry.getKey()).append(" ")
+                  .append(entry.getValue()).append("\n");
+            }
+        }
+        return sb.toString();
+    }
 }
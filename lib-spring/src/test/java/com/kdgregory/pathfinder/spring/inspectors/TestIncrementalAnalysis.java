@@ -0,0 +1,87 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.spring.inspectors;
+
+import java.io.File;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import com.kdgregory.pathfinder.core.PathRepo;
+import com.kdgregory.pathfinder.core.impl.ClassAnnotationCache;
+import com.kdgregory.pathfinder.core.impl.PathRepoImpl;
+import com.kdgregory.pathfinder.core.impl.WarMachineImpl;
+import com.kdgregory.pathfinder.servlet.ServletInspector;
+import com.kdgregory.pathfinder.spring.SpringInspector;
+import com.kdgregory.pathfinder.test.WarNames;
+import com.kdgregory.pathfinder.util.RouteDiff;
+import com.kdgregory.pathfinder.util.RouteDiff.Change;
+import com.kdgregory.pathfinder.util.RouteDiff.ChangeType;
+import com.kdgregory.pathfinder.util.TestHelpers;
+
+
+/**
+ *  Verifies that a run using class annotations from a previous run finds the
+ *  same mappings as a full analysis.
+ */
+public class TestIncrementalAnalysis
+{
+    private static PathRepo inspect(File warFile, ClassAnnotationCache cache)
+    {
+        WarMachineImpl machine = new WarMachineImpl(warFile, null, cache);
+        PathRepo repo = new PathRepoImpl();
+        new ServletInspector().inspect(machine, repo);
+        new SpringInspector().inspect(machine, repo);
+        machine.close();
+        return repo;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Testcases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testRerunWithPreviousResults() throws Exception
+    {
+        File warFile = TestHelpers.createWarFile(WarNames.SPRING_ANNO);
+        File cacheFile = File.createTempFile("TestIncrementalAnalysis", ".cache");
+        cacheFile.deleteOnExit();
+
+        ClassAnnotationCache cache1 = new ClassAnnotationCache();
+        PathRepo repo1 = inspect(warFile, cache1);
+        assertTrue("first run populated cache", cache1.size() > 0);
+        assertTrue("first run: misses",         cache1.getMissCount() > 0);
+        cache1.save(cacheFile);
+
+        ClassAnnotationCache cache2 = ClassAnnotationCache.load(cacheFile);
+        PathRepo repo2 = inspect(warFile, cache2);
+        assertTrue("second run: hits",          cache2.getHitCount() > 0);
+        assertEquals("second run: no misses",   0, cache2.getMissCount());
+
+        RouteDiff diff = new RouteDiff(repo1, repo2);
+        diff.run(new RouteDiff.Listener()
+        {
+            @Override
+            public void onChange(Change change)
+            {
+                fail("unexpected change: " + change);
+            }
+        });
+        assertEquals("no added routes", 0, diff.getCount(ChangeType.ADDED));
+        assertTrue("found routes", repo2.urlCount() > 0);
+    }
+}
@@ -0,0 +1,115 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.spring.inspectors;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.kdgregory.pathfinder.core.WarMachine;
+import com.kdgregory.pathfinder.spring.AbstractSpringTestcase;
+import com.kdgregory.pathfinder.spring.inspectors.RequestMappingIndex.ControllerMappings;
+import com.kdgregory.pathfinder.spring.inspectors.RequestMappingIndex.MappedMethod;
+import com.kdgregory.pathfinder.test.WarNames;
+import com.kdgregory.pathfinder.util.TestHelpers;
+
+
+public class TestRequestMappingIndex
+extends AbstractSpringTestcase
+{
+    private final static String BASE_CONTROLLER = "com.kdgregory.pathfinder.test.spring3.pkg3.AbstractBaseController";
+    private final static String CONTROLLER_F    = "com.kdgregory.pathfinder.test.spring3.pkg3.ControllerF";
+    private final static String CONTROLLER_G    = "com.kdgregory.pathfinder.test.spring3.pkg3.ControllerG";
+
+
+//----------------------------------------------------------------------------
+//  Support Code
+//----------------------------------------------------------------------------
+
+    private static Map<String,MappedMethod> methodsByName(ControllerMappings mappings)
+    {
+        Map<String,MappedMethod> result = new HashMap<String,MappedMethod>();
+        for (MappedMethod method : mappings.getMethods())
+        {
+            result.put(method.getMethod().getName(), method);
+        }
+        return result;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Testcases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testInheritedMappings() throws Exception
+    {
+        logger.info("testInheritedMappings()");
+
+        WarMachine war = TestHelpers.createWarMachine(WarNames.SPRING_ANNO);
+        RequestMappingIndex index = new RequestMappingIndex(war, new ControllerIndex(war));
+
+        ControllerMappings mappings = index.getMappings(CONTROLLER_F);
+        assertNotNull("class mapping", mappings.getClassMapping());
+        assertEquals("class mapping", "/F", mappings.getClassMapping().getValue().asListOfObjects().get(0));
+
+        Map<String,MappedMethod> methods = methodsByName(mappings);
+        assertEquals("number of handler methods", 3, methods.size());
+        assertEquals("inherited method is implemented by base",  BASE_CONTROLLER, methods.get("getBase").getDeclaringClass());
+        assertEquals("overriding method is implemented by self", CONTROLLER_F,    methods.get("getEdit").getDeclaringClass());
+        assertEquals("interface method is implemented by self",  CONTROLLER_F,    methods.get("list").getDeclaringClass());
+
+        assertSame("mappings are retained", mappings, index.getMappings(CONTROLLER_F));
+    }
+
+
+    @Test
+    public void testBaseClassIsSharedBySubclasses() throws Exception
+    {
+        logger.info("testBaseClassIsSharedBySubclasses()");
+
+        WarMachine war = TestHelpers.createWarMachine(WarNames.SPRING_ANNO);
+        RequestMappingIndex index = new RequestMappingIndex(war, new ControllerIndex(war));
+
+        MappedMethod methodF = methodsByName(index.getMappings(CONTROLLER_F)).get("getBase");
+        MappedMethod methodG = methodsByName(index.getMappings(CONTROLLER_G)).get("getBase");
+        assertSame("base class was parsed once", methodF.getParser(), methodG.getParser());
+        assertSame("base class method",          methodF, methodG);
+    }
+
+
+    @Test
+    public void testInterfaceAndMissingClass() throws Exception
+    {
+        logger.info("testInterfaceAndMissingClass()");
+
+        WarMachine war = TestHelpers.createWarMachine(WarNames.SPRING_ANNO);
+        RequestMappingIndex index = new RequestMappingIndex(war, new ControllerIndex(war));
+
+        // the interface has a mapped method, but it can't handle requests
+        ControllerMappings mappings1 = index.getMappings("com.kdgregory.pathfinder.test.spring3.pkg3.MappedInterface");
+        assertNull("interface: class mapping", mappings1.getClassMapping());
+        assertEquals("interface: methods", 0, mappings1.getMethods().size());
+
+        ControllerMappings mappings2 = index.getMappings("com.example.Bogus");
+        assertNull("missing class: class mapping", mappings2.getClassMapping());
+        assertEquals("missing class: methods", 0, mappings2.getMethods().size());
+
+        // JDK classes aren't in the WAR, so must not be loaded
+        assertSame("JDK class", ControllerMappings.EMPTY, index.getMappings("java.lang.Object"));
+    }
+}
@@ -26,7 +26,7 @@ import org.springframework.web.servlet.ModelAndView;
 /**
  *  Controller for testing request parameters. Method {@link #getFoo} uses explicit
  *  parameter definitions, method {@link #getBar} infers parameter types from debug
- *  information.
+ *  information. Method {@link #getBaz} is mapped to multiple URLs.
  */
 @Controller
 public class ControllerE
@@ -66,4 +66,17 @@ public class ControllerE
         mav.addObject("bargle", bargle);
         return mav;
     }
+
+
+    @RequestMapping(value={"/E3", "/E4"})
+    protected ModelAndView getBaz(
+            HttpServletRequest request,
+            HttpServletResponse response)
+    throws Exception
+    {
+        ModelAndView mav = new ModelAndView("simple");
+        mav.addObject("reqUrl", request.getRequestURI());
+        mav.addObject("controller", getClass().getName());
+        return mav;
+    }
 }
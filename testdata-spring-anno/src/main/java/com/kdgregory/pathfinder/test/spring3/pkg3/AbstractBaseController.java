@@ -0,0 +1,52 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.test.spring3.pkg3;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.servlet.ModelAndView;
+
+
+/**
+ *  A base class that provides class-level and method-level mappings for its
+ *  subclasses. It isn't annotated with @Controller, so isn't itself a bean.
+ */
+@RequestMapping("/F")
+public abstract class AbstractBaseController
+implements MappedInterface
+{
+    @RequestMapping(value="/base.html", method=RequestMethod.GET)
+    protected ModelAndView getBase(
+            HttpServletRequest request,
+            HttpServletResponse response)
+    throws Exception
+    {
+        ModelAndView mav = new ModelAndView("simple");
+        mav.addObject("reqUrl", request.getRequestURI());
+        mav.addObject("controller", getClass().getName());
+        return mav;
+    }
+
+
+    @RequestMapping(value="/edit.html", method=RequestMethod.GET)
+    protected abstract ModelAndView getEdit(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            String id)
+    throws Exception;
+}
@@ -0,0 +1,61 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.test.spring3.pkg3;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.ModelAndView;
+
+
+/**
+ *  This controller doesn't have any mappings of its own: the class-level mapping
+ *  and the mappings for {@link #getBase} and {@link #getEdit} come from its base
+ *  class, while the mapping for {@link #list} comes from the base class' interface.
+ *  The parameter annotation on {@link #getEdit} is its own.
+ */
+@Controller
+public class ControllerF
+extends AbstractBaseController
+{
+    @Override
+    public ModelAndView list(
+            HttpServletRequest request,
+            HttpServletResponse response)
+    throws Exception
+    {
+        ModelAndView mav = new ModelAndView("simple");
+        mav.addObject("reqUrl", request.getRequestURI());
+        mav.addObject("controller", getClass().getName());
+        return mav;
+    }
+
+
+    @Override
+    protected ModelAndView getEdit(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            @RequestParam(value="id", required=true) String id)
+    throws Exception
+    {
+        ModelAndView mav = new ModelAndView("simple");
+        mav.addObject("reqUrl", request.getRequestURI());
+        mav.addObject("controller", getClass().getName());
+        mav.addObject("id", id);
+        return mav;
+    }
+}
@@ -0,0 +1,62 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.test.spring3.pkg3;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.servlet.ModelAndView;
+
+
+/**
+ *  This controller shares a base class with {@link ControllerF}, but replaces the
+ *  inherited class-level mapping, and the mapping for {@link #getEdit}, with its
+ *  own. The mappings for <code>getBase()</code> and {@link #list} are inherited.
+ */
+@Controller
+@RequestMapping("/G")
+public class ControllerG
+extends AbstractBaseController
+{
+    @Override
+    public ModelAndView list(
+            HttpServletRequest request,
+            HttpServletResponse response)
+    throws Exception
+    {
+        ModelAndView mav = new ModelAndView("simple");
+        mav.addObject("reqUrl", request.getRequestURI());
+        mav.addObject("controller", getClass().getName());
+        return mav;
+    }
+
+
+    @Override
+    @RequestMapping(value="/modify.html", method=RequestMethod.POST)
+    protected ModelAndView getEdit(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            String id)
+    throws Exception
+    {
+        ModelAndView mav = new ModelAndView("simple");
+        mav.addObject("reqUrl", request.getRequestURI());
+        mav.addObject("controller", getClass().getName());
+        return mav;
+    }
+}
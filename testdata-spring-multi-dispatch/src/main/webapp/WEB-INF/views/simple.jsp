@@ -0,0 +1,14 @@
+<%@page contentType="text/html"%>
+<%@page pageEncoding="UTF-8"%>
+<html>
+    <head>
+        <title>Simple View JSP</title>
+    </head>
+    <body>
+
+    The request URL was <code>${data.reqUrl}</code>
+    <br/>
+    It was handled by <code>${data.controller}</code>
+
+    </body>
+</html>
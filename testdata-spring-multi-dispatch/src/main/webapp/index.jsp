@@ -0,0 +1,12 @@
+<%@page contentType="text/html"%>
+<%@page pageEncoding="UTF-8"%>
+<html>
+    <head>
+        <title>Sample JSP</title>
+    </head>
+    <body>
+
+    There's nothing here, perhaps you should try /servlet?
+    
+    </body>
+</html>